@@ -0,0 +1,42 @@
+package nus.iss.se.admin.kafka.handler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.admin.constant.TaskStatus;
+import nus.iss.se.admin.constant.TaskType;
+import nus.iss.se.admin.entity.AdminTask;
+import nus.iss.se.admin.kafka.EventTopicType;
+import nus.iss.se.admin.kafka.event.MerchantRegisterEvent;
+import nus.iss.se.admin.service.IAdminTaskService;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.EventHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * 商家注册：创建待审核的代办任务
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EventHandler(topic = EventTopicType.MERCHANT_REGISTERED)
+public class MerchantRegisteredHandler implements DomainEventHandler<MerchantRegisterEvent> {
+    private final IAdminTaskService adminTaskService;
+
+    @Override
+    public void handle(MerchantRegisterEvent registeredEvent, EventEnvelope envelope) {
+        AdminTask task = new AdminTask();
+        task.setData(envelope.data());
+        task.setApplicant(registeredEvent.getUserId());
+        task.setTitle("Merchant registration review - " + registeredEvent.getShopName());
+
+        task.setType(TaskType.MERCHANT_APPROVAL.getCode());
+        task.setStatus(TaskStatus.PENDING.getCode());
+        task.setStartTime(new Date());
+
+        adminTaskService.save(task);
+        log.info("Merchant approval task created: {}", envelope.messageId());
+    }
+}
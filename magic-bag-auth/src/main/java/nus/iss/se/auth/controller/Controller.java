@@ -75,16 +75,13 @@ public class Controller {
         // 3. 生成 JWT 令牌
         String token = jwtUtil.generateAuthToken(userDetails.getUsername(), userDetails.user().getRole());
 
-        // 4.把token放到redis中
-        tokenCacheService.saveToken(userDetails.getUsername(), token, jwtUtil.getDefaultExpirationMinutes() + 5);
-
-        // 5. 发布事件，把用户信息存到redis中
+        // 4. 把token和用户信息一次性存到redis中（同时撤销该用户之前的token）
         UserContext userContext = new UserContext();
         BeanUtils.copyProperties(userDetails.user(), userContext);
         userContext.setLoginTime(new Date());
-        userCacheService.cacheUser(userContext);
+        tokenCacheService.saveToken(userDetails.getUsername(), token, jwtUtil.getDefaultExpirationMinutes() + 5, userContext);
 
-        // 6. 返回 Token 给前端
+        // 5. 返回 Token 给前端
         response.setCharacterEncoding("UTF-8");
         response.setContentType("application/json;charset=UTF-8");
         response.setHeader("X-New-Token", token);
@@ -0,0 +1,28 @@
+package nus.iss.se.auth.kafka.handler;
+
+import jakarta.mail.MessagingException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.auth.kafka.EventTopicType;
+import nus.iss.se.auth.service.EmailService;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.EventHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户注册后发送激活邮件，data 为用户名
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EventHandler(topic = EventTopicType.USER_REGISTERED)
+public class UserRegisteredHandler implements DomainEventHandler<String> {
+    private final EmailService emailService;
+
+    @Override
+    public void handle(String username, EventEnvelope envelope) throws MessagingException {
+        emailService.sendActivationEmail(username);
+        log.info("success!: {}", envelope);
+    }
+}
@@ -0,0 +1,94 @@
+package nus.iss.se.cart.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.cart.api.ProductClient;
+import nus.iss.se.cart.dto.MagicBagDto;
+import nus.iss.se.common.Result;
+import nus.iss.se.common.batch.BatchLoader;
+import nus.iss.se.common.constant.ResultStatus;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 购物车展示用的盲盒信息（名称、价格）本地缓存
+ * 购物车每次修改后都要重算总价，命中时不再调用 product 服务；价格以下单时 order 服务查询的为准，这里允许短暂过期。
+ */
+@Slf4j
+@Component
+public class MagicBagCache implements DisposableBean {
+    private final ProductClient productClient;
+
+    private static final Duration LOCAL_CACHE_TTL = Duration.ofSeconds(60);
+    private static final long LOCAL_CACHE_MAX_SIZE = 10_000;
+    private static final Duration BATCH_WINDOW = Duration.ofMillis(5);
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final Cache<Integer, MagicBagDto> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_CACHE_MAX_SIZE)
+            .expireAfterWrite(LOCAL_CACHE_TTL)
+            .build();
+
+    /** 未命中的单 id 查询合并为 batch-query，并发加购同一盲盒只查询一次 */
+    private final BatchLoader<Integer, MagicBagDto> singleLoader;
+
+    public MagicBagCache(ProductClient productClient) {
+        this.productClient = productClient;
+        this.singleLoader = BatchLoader.of("magic-bag", this::fetch, BATCH_WINDOW, MAX_BATCH_SIZE);
+    }
+
+    /**
+     * 查询单个盲盒，不存在或查询失败返回 null（不缓存）
+     */
+    public MagicBagDto get(Integer magicBagId) {
+        try {
+            return localCache.get(magicBagId, singleLoader::get);
+        } catch (IllegalStateException e) {
+            log.error("Failed to fetch product information: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 批量查询，未命中的一次批量调用 product 服务；调用失败返回 null
+     */
+    public Map<Integer, MagicBagDto> getAll(Collection<Integer> magicBagIds) {
+        try {
+            return localCache.getAll(magicBagIds, this::loadAll);
+        } catch (IllegalStateException e) {
+            log.error("Failed to fetch product information: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<Integer, MagicBagDto> loadAll(Set<? extends Integer> magicBagIds) {
+        return fetch(List.copyOf(magicBagIds));
+    }
+
+    private Map<Integer, MagicBagDto> fetch(List<Integer> magicBagIds) {
+        Result<List<MagicBagDto>> result = productClient.getBatchMagicBags(magicBagIds);
+        if (!isResultSuccess(result) || result.getData() == null) {
+            throw new IllegalStateException("batch query magic bags failed");
+        }
+        return result.getData().stream()
+                .collect(Collectors.toMap(MagicBagDto::getId, Function.identity()));
+    }
+
+    private boolean isResultSuccess(Result<?> result) {
+        return result != null && result.getCode() == ResultStatus.SUCCESS.getCode();
+    }
+
+    @Override
+    public void destroy() {
+        singleLoader.close();
+    }
+}
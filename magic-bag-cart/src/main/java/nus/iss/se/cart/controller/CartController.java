@@ -4,9 +4,13 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.cart.dto.CartDeltaDto;
 import nus.iss.se.cart.dto.CartDto;
 import nus.iss.se.cart.dto.CartItemDto;
 import nus.iss.se.cart.service.ICartService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -43,16 +47,28 @@ public class CartController {
      * 获取用户的活跃购物车
      */
     @GetMapping("/{userId}")
-    @Operation(summary = "Get active cart for user", description = "Retrieve the currently active shopping cart for a user")
-    public CartDto getCart(@PathVariable Integer userId) {
+    @Operation(summary = "Get active cart for user", description = "Retrieve the currently active shopping cart for a user. " +
+            "Responds 304 when If-None-Match equals the current cart version")
+    public ResponseEntity<CartDto> getCart(
+            @PathVariable Integer userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         log.info("Getting cart for user: {}", userId);
         try {
+            // 客户端带了版本号时先只比较版本，未变化则不构造完整购物车
+            if (ifNoneMatch != null) {
+                Long version = cartService.getCartVersion(userId);
+                if (version != null && toETag(version).equals(ifNoneMatch)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(toETag(version)).build();
+                }
+            }
             CartDto cart = cartService.getActiveCart(userId);
             if (cart == null) {
                 log.warn("Cart not found for user: {}, creating new one", userId);
-                return cartService.createCart(userId);
+                return ResponseEntity.ok(cartService.createCart(userId));
             }
-            return cart;
+            return cart.getVersion() == null
+                    ? ResponseEntity.ok(cart)
+                    : ResponseEntity.ok().eTag(toETag(cart.getVersion())).body(cart);
         } catch (Exception e) {
             log.error("Error getting cart for user {}: {}", userId, e.getMessage(), e);
             throw e;
@@ -72,6 +88,19 @@ public class CartController {
         return cartService.addItemToCart(userId, magicbagId, quantity);
     }
     
+    /**
+     * 添加商品到购物车（增量返回）
+     */
+    @PostMapping("/{userId}/items/delta")
+    @Operation(summary = "Add item to cart (delta)", description = "Add a MagicBag item and return only the changed line, new total and cart version")
+    public CartDeltaDto addItemToCartDelta(
+            @PathVariable Integer userId,
+            @RequestParam Integer magicbagId,
+            @RequestParam int quantity) {
+
+        return cartService.addItemToCartDelta(userId, magicbagId, quantity);
+    }
+    
     /**
      * 更新购物车中商品的数量
      */
@@ -123,6 +152,34 @@ public class CartController {
         }
     }
     
+    /**
+     * 更新购物车中商品的数量（增量返回）
+     */
+    @PutMapping("/{userId}/items/{magicbagId}/delta")
+    @Operation(summary = "Update item quantity (delta)", description = "Update the quantity and return only the changed line, new total and cart version")
+    public CartDeltaDto updateItemQuantityDelta(
+            @PathVariable Integer userId,
+            @PathVariable Integer magicbagId,
+            @RequestParam int quantity) {
+
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        return cartService.updateItemQuantityDelta(userId, magicbagId, quantity);
+    }
+    
+    /**
+     * 从购物车中删除商品（增量返回）
+     */
+    @DeleteMapping("/{userId}/items/{magicbagId}/delta")
+    @Operation(summary = "Remove item from cart (delta)", description = "Remove a MagicBag item and return the new total and cart version")
+    public CartDeltaDto removeItemDelta(
+            @PathVariable Integer userId,
+            @PathVariable Integer magicbagId) {
+
+        return cartService.removeItemDelta(userId, magicbagId);
+    }
+    
     /**
      * 获取购物车中的所有商品
      */
@@ -203,4 +260,8 @@ public class CartController {
             throw e;
         }
     }
-}
\ No newline at end of file
+    
+    private static String toETag(Long version) {
+        return "\"" + version + "\"";
+    }
+}
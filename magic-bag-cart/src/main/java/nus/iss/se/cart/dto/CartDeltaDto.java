@@ -0,0 +1,20 @@
+package nus.iss.se.cart.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 购物车修改的增量结果：只返回被修改的那一行和重算后的总价
+ * 客户端版本号与 version 不连续时，再通过 GET /cart/{userId} 拉取完整购物车
+ */
+@Data
+@AllArgsConstructor
+public class CartDeltaDto {
+    private Integer cartId;
+    private Integer userId;
+    private Long version;
+    private Integer magicBagId;
+    private CartItemDto item;   // 修改后的行，已移除时为 null
+    private int itemCount;      // 购物车中的商品行数
+    private double total;
+}
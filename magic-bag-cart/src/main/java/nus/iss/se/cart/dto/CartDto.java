@@ -12,4 +12,5 @@ public class CartDto {
     private Integer userId;   
     private List<CartItemDto> items; 
     private double total;          
+    private Long version;  // 购物车版本号，每次修改 +1，GET 时作为 ETag
 }
@@ -15,6 +15,8 @@ public class Cart {
     @TableId
     private Integer cartId;
     private Integer userId;
+    /** 最近一次写回的 Redis 购物车版本号 */
+    private Long version;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private List<CartItem> cartItems = new ArrayList<>();
@@ -1,14 +1,35 @@
 package nus.iss.se.cart.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import nus.iss.se.cart.entity.CartItem;
 
+import java.util.List;
+
 /**
  * 购物车项 Mapper
  */
 @Mapper
 public interface CartItemMapper extends BaseMapper<CartItem> {
     // BaseMapper 提供了所有基础的 CRUD 方法
-    // 不需要手动定义方法
-}
\ No newline at end of file
+
+    /**
+     * 删除购物车的全部商品项
+     */
+    @Delete("DELETE FROM cart_items WHERE cart_id = #{cartId}")
+    int deleteByCartId(@Param("cartId") Integer cartId);
+
+    /**
+     * 多行 INSERT，一次往返写入购物车全部商品项
+     */
+    @Insert("<script>" +
+            "INSERT INTO cart_items (cart_id, magic_bag_id, quantity, added_at) VALUES " +
+            "<foreach collection='items' item='item' separator=','>" +
+            "(#{item.cartId}, #{item.magicBagId}, #{item.quantity}, #{item.addedAt})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("items") List<CartItem> items);
+}
@@ -4,6 +4,8 @@ import org.apache.ibatis.annotations.*;
 
 import nus.iss.se.cart.entity.Cart;
 
+import java.time.LocalDateTime;
+
 /**
  * 购物车 Mapper
  */
@@ -21,11 +23,12 @@ public interface CartMapper {
     /**
      * 根据用户ID查询购物车
      */
-    @Select("SELECT cart_id, user_id, created_at, updated_at " +
+    @Select("SELECT cart_id, user_id, version, created_at, updated_at " +
             "FROM carts WHERE user_id = #{userId} LIMIT 1")
     @Results(id = "CartResultMap", value = {
         @Result(property = "cartId", column = "cart_id", id = true),
         @Result(property = "userId", column = "user_id"),
+        @Result(property = "version", column = "version"),
         @Result(property = "createdAt", column = "created_at"),
         @Result(property = "updatedAt", column = "updated_at")
     })
@@ -36,11 +39,20 @@ public interface CartMapper {
      */
     @Update("UPDATE carts SET updated_at = #{updatedAt} WHERE cart_id = #{cartId}")
     int updateCart(Cart cart);
+
+    /**
+     * 写回时推进版本号，只有快照版本比已写回的版本新时才更新（同时锁住该购物车行）
+     * @return 0 表示已有更新的快照写回，本次快照应丢弃
+     */
+    @Update("UPDATE carts SET version = #{version}, updated_at = #{updatedAt} " +
+            "WHERE cart_id = #{cartId} AND version < #{version}")
+    int advanceVersion(@Param("cartId") Integer cartId, @Param("version") Long version,
+                       @Param("updatedAt") LocalDateTime updatedAt);
     
     /**
      * 根据ID查询购物车
      */
-    @Select("SELECT cart_id, user_id, created_at, updated_at " +
+    @Select("SELECT cart_id, user_id, version, created_at, updated_at " +
             "FROM carts WHERE cart_id = #{cartId}")
     @ResultMap("CartResultMap")  // 复用上面定义的 ResultMap
     Cart selectById(@Param("cartId") Integer cartId);
@@ -3,6 +3,7 @@ package nus.iss.se.cart.service;
 
 import java.util.List;
 
+import nus.iss.se.cart.dto.CartDeltaDto;
 import nus.iss.se.cart.dto.CartDto;
 import nus.iss.se.cart.dto.CartItemDto;
 
@@ -21,21 +22,41 @@ public interface ICartService {
      */
     CartDto getActiveCart(Integer userId);
     
+    /**
+     * 获取购物车版本号，用于 ETag 比较；购物车未加载时返回 null
+     */
+    Long getCartVersion(Integer userId);
+    
     /**
      * 添加商品到购物车
      */
     CartDto addItemToCart(Integer userId, Integer magicBagId, int quantity);
     
+    /**
+     * 添加商品到购物车，只返回变更的行和新总价
+     */
+    CartDeltaDto addItemToCartDelta(Integer userId, Integer magicBagId, int quantity);
+    
     /**
      * 更新购物车商品数量
      */
     CartDto updateItemQuantityInCart(Integer userId, Integer magicBagId, int newQuantity);
     
+    /**
+     * 更新购物车商品数量，只返回变更的行和新总价
+     */
+    CartDeltaDto updateItemQuantityDelta(Integer userId, Integer magicBagId, int newQuantity);
+    
     /**
      * 从购物车移除商品
      */
     CartDto removeItemFromCart(Integer userId, Integer magicBagId);
     
+    /**
+     * 从购物车移除商品，只返回新总价
+     */
+    CartDeltaDto removeItemDelta(Integer userId, Integer magicBagId);
+    
     /**
      * 获取购物车商品列表
      */
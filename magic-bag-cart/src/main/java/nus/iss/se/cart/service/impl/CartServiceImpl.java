@@ -1,12 +1,13 @@
 package nus.iss.se.cart.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nus.iss.se.common.Result;
 import nus.iss.se.common.constant.ResultStatus;
 import nus.iss.se.cart.api.ProductClient;
+import nus.iss.se.cart.cache.MagicBagCache;
+import nus.iss.se.cart.dto.CartDeltaDto;
 import nus.iss.se.cart.dto.CartDto;
 import nus.iss.se.cart.dto.CartItemDto;
 import nus.iss.se.cart.dto.MagicBagDto;
@@ -15,20 +16,20 @@ import nus.iss.se.cart.entity.CartItem;
 import nus.iss.se.cart.mapper.CartItemMapper;
 import nus.iss.se.cart.mapper.CartMapper;
 import nus.iss.se.cart.service.ICartService;
+import nus.iss.se.cart.store.CartStore;
+import nus.iss.se.cart.store.CartStore.CartSnapshot;
 import nus.iss.se.common.exception.BusinessException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
- * 购物车服务实现类 (修复版 - 统一使用 QueryWrapper)
+ * 购物车服务实现类
+ * 购物车内容常驻 Redis（见 CartStore），增删改只需一次 Redis 往返，MySQL 异步写回；
+ * 盲盒名称、价格走本地缓存（见 MagicBagCache），修改后重算总价一般不需要调用 product 服务
  */
 @Slf4j
 @Service
@@ -38,6 +39,8 @@ public class CartServiceImpl implements ICartService {
     private final CartMapper cartMapper;
     private final CartItemMapper cartItemMapper;
     private final ProductClient productClient;
+    private final CartStore cartStore;
+    private final MagicBagCache magicBagCache;
     
     @Override
     public CartDto createCart(Integer userId) {
@@ -46,281 +49,149 @@ public class CartServiceImpl implements ICartService {
         cart.setCreatedAt(LocalDateTime.now());
         cart.setUpdatedAt(LocalDateTime.now());
         cartMapper.insertCart(cart);
-        return convertToCartDto(cart);
+        return new CartDto(cart.getCartId(), userId, List.of(), 0.0, null);
     }
     
     @Override
     public CartDto getActiveCart(Integer userId) {
-        Cart cart = cartMapper.findByUserId(userId);
-        if (cart != null) {
-            // ✅ 修复：使用普通 QueryWrapper
-            LambdaQueryWrapper<CartItem> queryWrapper = new LambdaQueryWrapper<>();
-            queryWrapper.eq(CartItem::getCartId, cart.getCartId());
-            List<CartItem> items = cartItemMapper.selectList(queryWrapper);
-            cart.setCartItems(items);
-        }
-        return convertToCartDto(cart);
+        CartSnapshot snapshot = cartStore.get(userId);
+        return snapshot == null ? null : convertToCartDto(userId, snapshot);
+    }
+    
+    @Override
+    public Long getCartVersion(Integer userId) {
+        return cartStore.getVersion(userId);
     }
     
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public CartDto addItemToCart(Integer userId, Integer magicBagId, int quantity) {
+        return convertToCartDto(userId, doAddItem(userId, magicBagId, quantity));
+    }
+    
+    @Override
+    public CartDeltaDto addItemToCartDelta(Integer userId, Integer magicBagId, int quantity) {
+        return convertToDelta(userId, magicBagId, doAddItem(userId, magicBagId, quantity));
+    }
+    
+    @Override
+    public CartDto updateItemQuantityInCart(Integer userId, Integer magicBagId, int newQuantity) {
+        return convertToCartDto(userId, doUpdateItemQuantity(userId, magicBagId, newQuantity));
+    }
+    
+    @Override
+    public CartDeltaDto updateItemQuantityDelta(Integer userId, Integer magicBagId, int newQuantity) {
+        return convertToDelta(userId, magicBagId, doUpdateItemQuantity(userId, magicBagId, newQuantity));
+    }
+    
+    @Override
+    public CartDto removeItemFromCart(Integer userId, Integer magicBagId) {
+        return convertToCartDto(userId, doRemoveItem(userId, magicBagId));
+    }
+    
+    @Override
+    public CartDeltaDto removeItemDelta(Integer userId, Integer magicBagId) {
+        return convertToDelta(userId, magicBagId, doRemoveItem(userId, magicBagId));
+    }
+    
+    private CartSnapshot doAddItem(Integer userId, Integer magicBagId, int quantity) {
         log.info("Adding item to cart: userId={}, magicBagId={}, quantity={}", userId, magicBagId, quantity);
         
-        // 验证产品是否存在
-        Result<MagicBagDto> bagResult = productClient.getMagicBagById(magicBagId);
-        if (!isResultSuccess(bagResult) || bagResult.getData() == null) {
+        // 验证产品是否存在（本地缓存命中时不调用 product 服务）
+        if (magicBagCache.get(magicBagId) == null) {
             log.error("Product not found: {}", magicBagId);
             throw new BusinessException(ResultStatus.PRODUCT_NOT_FOUND,"detail: "+magicBagId);
         }
         
-        // 获取或创建购物车
-        Cart cart = cartMapper.findByUserId(userId);
-        if (cart == null) {
-            cart = new Cart();
-            cart.setUserId(userId);
-            cart.setCreatedAt(LocalDateTime.now());
-            cart.setUpdatedAt(LocalDateTime.now());
-            cartMapper.insertCart(cart);
-            log.info("Created new cart for user: {}, cartId={}", userId, cart.getCartId());
-        }
-        
-        // ✅ 修复：使用普通 QueryWrapper，明确指定数据库列名
-        LambdaQueryWrapper<CartItem> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(CartItem::getCartId, cart.getCartId())
-                .eq(CartItem::getMagicBagId, magicBagId);
-        CartItem existing = cartItemMapper.selectOne(queryWrapper);
-        
-        log.info("Existing cart item check: cartId={}, magicBagId={}, found={}", 
-                cart.getCartId(), magicBagId, existing != null);
-
-        if (existing != null) {
-            // 更新数量 - 使用 updateById
-            existing.setQuantity(existing.getQuantity() + quantity);
-            existing.setAddedAt(LocalDateTime.now());
-            int result = cartItemMapper.updateById(existing);
-            log.info("Updated cart item quantity: cartId={}, magicBagId={}, newQuantity={}, result={}", 
-                    cart.getCartId(), magicBagId, existing.getQuantity(), result);
-        } else {
-            // 添加新商品 - 使用 insert
-            CartItem item = new CartItem();
-            item.setCartId(cart.getCartId());
-            item.setMagicBagId(magicBagId);
-            item.setQuantity(quantity);
-            item.setAddedAt(LocalDateTime.now());
-            
-            int result = cartItemMapper.insert(item);
-            log.info("Added new item to cart: cartId={}, magicBagId={}, quantity={}, result={}, generatedId={}", 
-                    cart.getCartId(), magicBagId, quantity, result, item.getCartItemId());
-            
-            // 验证插入是否成功
-            if (result <= 0) {
-                log.error("Failed to insert cart item! Insert result: {}", result);
-                throw new RuntimeException("Failed to insert cart item");
-            }
-        }
-        
-        // 更新购物车时间
-        cart.setUpdatedAt(LocalDateTime.now());
-        cartMapper.updateCart(cart);
-        
-        // 重新加载购物车项
-        return getActiveCart(userId);
+        // 一次 Redis 往返完成累加，MySQL 由 CartStore 异步写回
+        CartSnapshot snapshot = cartStore.add(userId, magicBagId, quantity);
+        log.info("Updated cart item quantity: cartId={}, magicBagId={}, newQuantity={}",
+                snapshot.cartId(), magicBagId, snapshot.items().get(magicBagId));
+        return snapshot;
     }
     
-    @Override
-    @Transactional(rollbackFor = Exception.class)
-    public CartDto updateItemQuantityInCart(Integer userId, Integer magicBagId, int newQuantity) {
+    private CartSnapshot doUpdateItemQuantity(Integer userId, Integer magicBagId, int newQuantity) {
         if (newQuantity < 0) {
             log.error("Invalid quantity: {}", newQuantity);
             throw new IllegalArgumentException("Quantity cannot be less than zero.");
         }
         
-        Cart cart = cartMapper.findByUserId(userId);
-        if (cart == null) {
-            log.error("Cart not found for user: {}", userId);
-            throw new NoSuchElementException(ResultStatus.CART_NOT_FOUND.getMessage());
-        }
-
-        LambdaQueryWrapper<CartItem> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(CartItem::getCartId, cart.getCartId())
-                .eq(CartItem::getMagicBagId, magicBagId);
-        CartItem item = cartItemMapper.selectOne(queryWrapper);
-        
-        if (item == null) {
-            log.error("Cart item not found: cartId={}, magicBagId={}", cart.getCartId(), magicBagId);
-            throw new NoSuchElementException(ResultStatus.CART_ITEM_NOT_FOUND.getMessage());
-        }
-        
-        if (newQuantity == 0) {
-            // 数量为0，删除商品 - 使用 deleteById
-            cartItemMapper.deleteById(item.getCartItemId());
-            log.info("Removed cart item: cartItemId={}", item.getCartItemId());
-        } else {
-            // 更新数量 - 使用 updateById
-            item.setQuantity(newQuantity);
-            item.setAddedAt(LocalDateTime.now());
-            cartItemMapper.updateById(item);
-            log.info("Updated cart item quantity: cartItemId={}, newQuantity={}", 
-                    item.getCartItemId(), newQuantity);
-        }
-        
-        // 更新购物车时间
-        cart.setUpdatedAt(LocalDateTime.now());
-        cartMapper.updateCart(cart);
-        
-        return getActiveCart(userId);
+        // 数量为0时删除商品；购物车或商品不存在抛出 NoSuchElementException
+        CartSnapshot snapshot = cartStore.setQuantity(userId, magicBagId, newQuantity);
+        log.info("Updated cart item quantity: cartId={}, magicBagId={}, newQuantity={}",
+                snapshot.cartId(), magicBagId, newQuantity);
+        return snapshot;
     }
     
-    @Override
-    @Transactional(rollbackFor = Exception.class)
-    public CartDto removeItemFromCart(Integer userId, Integer magicBagId) {
-        Cart cart = cartMapper.findByUserId(userId);
-        if (cart == null) {
-            log.error("Cart not found for user: {}", userId);
-            throw new NoSuchElementException(ResultStatus.CART_NOT_FOUND.getMessage());
-        }
-        
-        QueryWrapper<CartItem> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("cart_id", cart.getCartId())
-                   .eq("magic_bag_id", magicBagId);
-        CartItem item = cartItemMapper.selectOne(queryWrapper);
-        
-        if (item != null) {
-            // 使用 deleteById 删除
-            cartItemMapper.deleteById(item.getCartItemId());
-            log.info("Removed item from cart: cartId={}, magicBagId={}", cart.getCartId(), magicBagId);
-        } else {
-            log.warn("Cart item not found when trying to remove: cartId={}, magicBagId={}", 
-                    cart.getCartId(), magicBagId);
-        }
-        
-        // 更新购物车时间
-        cart.setUpdatedAt(LocalDateTime.now());
-        cartMapper.updateCart(cart);
-        
-        return getActiveCart(userId);
+    private CartSnapshot doRemoveItem(Integer userId, Integer magicBagId) {
+        CartSnapshot snapshot = cartStore.remove(userId, magicBagId);
+        log.info("Removed item from cart: cartId={}, magicBagId={}", snapshot.cartId(), magicBagId);
+        return snapshot;
     }
     
     @Override
     public List<CartItemDto> getCartItems(Integer userId) {
-        Cart cart = cartMapper.findByUserId(userId);
-        if (cart == null) {
+        CartSnapshot snapshot = cartStore.get(userId);
+        if (snapshot == null) {
             log.info("No cart found for user: {}", userId);
             return List.of();
         }
-        
-        // 使用 QueryWrapper 查询购物车项
-        LambdaQueryWrapper<CartItem> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(CartItem::getCartId, cart.getCartId()).orderByDesc(CartItem::getAddedAt);
-        List<CartItem> items = cartItemMapper.selectList(queryWrapper);
-        
-        if (items.isEmpty()) {
+        if (snapshot.items().isEmpty()) {
             log.info("Cart is empty for user: {}", userId);
             return List.of();
         }
         
         // 批量查询产品信息（性能优化）
-        List<Integer> bagIds = items.stream()
-                .map(CartItem::getMagicBagId)
-                .distinct()
-                .toList();
-        
-        log.info("Fetching product info for {} items", bagIds.size());
-        Result<List<MagicBagDto>> result = productClient.getBatchMagicBags(bagIds);
-        
-        if (!isResultSuccess(result) || result.getData() == null) {
+        log.info("Fetching product info for {} items", snapshot.items().size());
+        Map<Integer, MagicBagDto> bagMap = magicBagCache.getAll(snapshot.items().keySet());
+        if (bagMap == null) {
             log.error("Failed to fetch product information from Product service");
             throw new RuntimeException("Failed to fetch product information");
         }
         
-        Map<Integer, MagicBagDto> bagMap = result.getData().stream()
-                .collect(Collectors.toMap(MagicBagDto::getId, Function.identity()));
-        
-        // 构建返回结果
-        List<CartItemDto> cartItemDtos = items.stream().map(item -> {
-            MagicBagDto bag = bagMap.get(item.getMagicBagId());
-            if (bag == null) {
-                log.warn("Product not found for cart item: magicBagId={}", item.getMagicBagId());
-                return null;
-            }
-            double subtotal = bag.getPrice().doubleValue() * item.getQuantity();
-            return new CartItemDto(
-                item.getCartItemId(),
-                item.getMagicBagId(),
-                bag.getTitle(),
-                bag.getPrice().doubleValue(),
-                item.getQuantity(),
-                subtotal
-            );
-        }).filter(Objects::nonNull).toList();
-        
+        List<CartItemDto> cartItemDtos = toItemDtos(snapshot, bagMap);
         log.info("Retrieved {} cart items for user: {}", cartItemDtos.size(), userId);
         return cartItemDtos;
     }
     
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public CartDto clearCart(Integer userId) {
-        Cart cart = cartMapper.findByUserId(userId);
-        if (cart != null) {
-            // 使用 QueryWrapper 删除所有购物车项
-            QueryWrapper<CartItem> queryWrapper = new QueryWrapper<>();
-            queryWrapper.eq("cart_id", cart.getCartId());
-            int deletedCount = cartItemMapper.delete(queryWrapper);
-            log.info("Cleared {} items from cart: cartId={}", deletedCount, cart.getCartId());
-            
-            cart.setUpdatedAt(LocalDateTime.now());
-            cartMapper.updateCart(cart);
-            cart.setCartItems(List.of());
-        } else {
+        // 结算时调用，清空结果同步写回 MySQL
+        CartSnapshot snapshot = cartStore.clear(userId);
+        if (snapshot == null) {
             log.warn("No cart found to clear for user: {}", userId);
+            return null;
         }
-        return convertToCartDto(cart);
+        log.info("Cleared cart: cartId={}", snapshot.cartId());
+        return new CartDto(snapshot.cartId(), userId, List.of(), 0.0, snapshot.version());
     }
     
     @Override
     public double getTotal(Integer userId) {
-        Cart cart = cartMapper.findByUserId(userId);
-        if (cart == null) {
+        CartSnapshot snapshot = cartStore.get(userId);
+        if (snapshot == null) {
             log.info("No cart found for user: {}", userId);
             return 0.0;
         }
-        
-        LambdaQueryWrapper<CartItem> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(CartItem::getCartId, cart.getCartId());
-        List<CartItem> items = cartItemMapper.selectList(queryWrapper);
-        
-        if (items.isEmpty()) {
+        if (snapshot.items().isEmpty()) {
             log.info("Cart is empty for user: {}", userId);
             return 0.0;
         }
         
         // 批量查询产品信息
-        List<Integer> bagIds = items.stream()
-                .map(CartItem::getMagicBagId)
-                .distinct()
-                .toList();
-        
-        Result<List<MagicBagDto>> result = productClient.getBatchMagicBags(bagIds);
-        
-        if (!isResultSuccess(result) || result.getData() == null) {
+        Map<Integer, MagicBagDto> bagMap = magicBagCache.getAll(snapshot.items().keySet());
+        if (bagMap == null) {
             log.error("Failed to fetch product information when calculating total");
             throw new RuntimeException("Failed to fetch product information");
         }
         
-        Map<Integer, MagicBagDto> bagMap = result.getData().stream()
-                .collect(Collectors.toMap(MagicBagDto::getId, Function.identity()));
-        
-        double total = items.stream()
-                .mapToDouble(item -> {
-                    MagicBagDto bag = bagMap.get(item.getMagicBagId());
+        double total = snapshot.items().entrySet().stream()
+                .mapToDouble(entry -> {
+                    MagicBagDto bag = bagMap.get(entry.getKey());
                     if (bag == null) {
-                        log.warn("Product not found when calculating total: magicBagId={}", 
-                                item.getMagicBagId());
+                        log.warn("Product not found when calculating total: magicBagId={}", entry.getKey());
                         return 0.0;
                     }
-                    return bag.getPrice().doubleValue() * item.getQuantity();
+                    return bag.getPrice().doubleValue() * entry.getValue();
                 })
                 .sum();
         
@@ -330,7 +201,7 @@ public class CartServiceImpl implements ICartService {
     
     @Override
     public List<CartItemDto> getCartItemsByMagicBagId(Integer magicBagId) {
-        // 使用 QueryWrapper 查询
+        // 跨用户查询走 MySQL，数据为 write-behind 写回的结果，可能有数秒延迟
         QueryWrapper<CartItem> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("magic_bag_id", magicBagId);
         List<CartItem> items = cartItemMapper.selectList(queryWrapper);
@@ -366,53 +237,77 @@ public class CartServiceImpl implements ICartService {
     }
     
     /**
-     * 转换 Cart 实体为 DTO
+     * 转换购物车快照为 DTO
      */
-    private CartDto convertToCartDto(Cart cart) {
-        if (cart == null) {
-            return null;
+    private CartDto convertToCartDto(Integer userId, CartSnapshot snapshot) {
+        if (snapshot.items().isEmpty()) {
+            return new CartDto(snapshot.cartId(), userId, List.of(), 0.0, snapshot.version());
         }
         
-        List<CartItem> cartItems = cart.getCartItems();
-        if (cartItems == null || cartItems.isEmpty()) {
-            return new CartDto(cart.getCartId(), cart.getUserId(), List.of(), 0.0);
+        // 批量查询产品信息
+        Map<Integer, MagicBagDto> bagMap = magicBagCache.getAll(snapshot.items().keySet());
+        if (bagMap == null) {
+            log.error("Failed to fetch product information for cart: {}", snapshot.cartId());
+            return new CartDto(snapshot.cartId(), userId, List.of(), 0.0, snapshot.version());
         }
         
-        // 批量查询产品信息
-        List<Integer> bagIds = cartItems.stream()
-                .map(CartItem::getMagicBagId)
-                .distinct()
-                .toList();
+        List<CartItemDto> items = toItemDtos(snapshot, bagMap);
+        double total = items.stream().mapToDouble(CartItemDto::getSubtotal).sum();
         
-        Result<List<MagicBagDto>> result = productClient.getBatchMagicBags(bagIds);
-        if (!isResultSuccess(result) || result.getData() == null) {
-            log.error("Failed to fetch product information for cart: {}", cart.getCartId());
-            return new CartDto(cart.getCartId(), cart.getUserId(), List.of(), 0.0);
+        return new CartDto(snapshot.cartId(), userId, items, total, snapshot.version());
+    }
+    
+    /**
+     * 转换为增量结果：只构造被修改的一行，总价用缓存的价格重算
+     */
+    private CartDeltaDto convertToDelta(Integer userId, Integer magicBagId, CartSnapshot snapshot) {
+        Map<Integer, MagicBagDto> bagMap = snapshot.items().isEmpty()
+                ? Map.of() : magicBagCache.getAll(snapshot.items().keySet());
+        if (bagMap == null) {
+            log.error("Failed to fetch product information for cart: {}", snapshot.cartId());
+            bagMap = Map.of();
         }
         
-        Map<Integer, MagicBagDto> bagMap = result.getData().stream()
-                .collect(Collectors.toMap(MagicBagDto::getId, Function.identity()));
-        
-        List<CartItemDto> items = cartItems.stream().map(item -> {
-            MagicBagDto bag = bagMap.get(item.getMagicBagId());
-            if (bag == null) {
-                log.warn("Product not found in cart: magicBagId={}", item.getMagicBagId());
-                return null;
+        CartItemDto changed = null;
+        double total = 0.0;
+        for (Map.Entry<Integer, Integer> entry : snapshot.items().entrySet()) {
+            CartItemDto item = toItemDto(entry.getKey(), entry.getValue(), bagMap.get(entry.getKey()));
+            if (item == null) {
+                continue;
             }
-            double subtotal = bag.getPrice().doubleValue() * item.getQuantity();
-            return new CartItemDto(
-                item.getCartItemId(),
-                item.getMagicBagId(),
-                bag.getTitle(),
-                bag.getPrice().doubleValue(),
-                item.getQuantity(),
-                subtotal
-            );
-        }).filter(Objects::nonNull).toList();
-        
-        double total = items.stream().mapToDouble(CartItemDto::getSubtotal).sum();
-        
-        return new CartDto(cart.getCartId(), cart.getUserId(), items, total);
+            total += item.getSubtotal();
+            if (entry.getKey().equals(magicBagId)) {
+                changed = item;
+            }
+        }
+        return new CartDeltaDto(snapshot.cartId(), userId, snapshot.version(), magicBagId,
+                changed, snapshot.items().size(), total);
+    }
+    
+    private List<CartItemDto> toItemDtos(CartSnapshot snapshot, Map<Integer, MagicBagDto> bagMap) {
+        return snapshot.items().entrySet().stream()
+                .map(entry -> toItemDto(entry.getKey(), entry.getValue(), bagMap.get(entry.getKey())))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+    
+    /**
+     * 购物车项没有独立 ID（Redis 中只有 magicBagId -> 数量），itemId 为 null
+     */
+    private CartItemDto toItemDto(Integer magicBagId, int quantity, MagicBagDto bag) {
+        if (bag == null) {
+            log.warn("Product not found in cart: magicBagId={}", magicBagId);
+            return null;
+        }
+        double subtotal = bag.getPrice().doubleValue() * quantity;
+        return new CartItemDto(
+            null,
+            magicBagId,
+            bag.getTitle(),
+            bag.getPrice().doubleValue(),
+            quantity,
+            subtotal
+        );
     }
     
     /**
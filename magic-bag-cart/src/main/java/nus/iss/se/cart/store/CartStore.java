@@ -0,0 +1,367 @@
+package nus.iss.se.cart.store;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.cart.entity.Cart;
+import nus.iss.se.cart.entity.CartItem;
+import nus.iss.se.cart.mapper.CartItemMapper;
+import nus.iss.se.cart.mapper.CartMapper;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.util.RedisUtil;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 常驻购物车
+ * 每个用户一个 hash cart:items:{userId}，field 为 magicBagId，value 为数量，
+ * 另有 cartId 字段记录 MySQL 中的购物车 ID、version 字段记录版本号（每次修改 +1，作为客户端 ETag）；
+ * hash 存在即表示已从 MySQL 加载，之后的增删改都是一次 Lua 脚本往返，并把 userId 记入 cart:dirty。
+ * 后台线程定期从 cart:dirty 弹出用户，把 hash 整体覆盖写回 MySQL（write-behind）；结算清空时同步写回。
+ * 写回以 carts.version 为条件，快照版本不比已写回的新时丢弃，定时写回和结算写回并发时旧快照不会覆盖新购物车。
+ * hash 常驻期间以 Redis 为准，MySQL 只在 hash 过期后重新加载时使用。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CartStore {
+    private final RedisUtil redisUtil;
+    private final CartMapper cartMapper;
+    private final CartItemMapper cartItemMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final String CART_ID_FIELD = "cartId";
+    private static final String VERSION_FIELD = "version";
+    private static final Duration CART_TTL = Duration.ofDays(7);
+    private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(5);
+    private static final int FLUSH_BATCH_SIZE = 200;
+
+    /** 未加载返回 nil；否则 HINCRBY 后返回整个 hash */
+    private static final RedisScript<List> ADD_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return false end
+            redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('HINCRBY', KEYS[1], 'version', 1)
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            redis.call('SADD', KEYS[2], ARGV[4])
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    /** 未加载返回 nil；商品不在购物车返回空列表；数量为 0 时删除该商品 */
+    private static final RedisScript<List> SET_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return false end
+            if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return {} end
+            if tonumber(ARGV[2]) == 0 then
+                redis.call('HDEL', KEYS[1], ARGV[1])
+            else
+                redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            end
+            redis.call('HINCRBY', KEYS[1], 'version', 1)
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            redis.call('SADD', KEYS[2], ARGV[4])
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    /** 未加载返回 nil；商品不存在时不报错 */
+    private static final RedisScript<List> REMOVE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return false end
+            if redis.call('HDEL', KEYS[1], ARGV[1]) == 1 then
+                redis.call('HINCRBY', KEYS[1], 'version', 1)
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('SADD', KEYS[2], ARGV[3])
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    /** 未加载返回 nil；只保留 cartId 和 version 字段。仍记入 cart:dirty，防止并发的 write-behind 用旧快照覆盖清空结果 */
+    private static final RedisScript<List> CLEAR_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then return false end
+            local cartId = redis.call('HGET', KEYS[1], ARGV[1])
+            local version = redis.call('HINCRBY', KEYS[1], 'version', 1)
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], ARGV[1], cartId, 'version', version)
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('SADD', KEYS[2], ARGV[3])
+            return {ARGV[1], cartId, 'version', tostring(version)}
+            """, List.class);
+
+    /** 仅在 hash 不存在时写入（并发加载时后到者不会覆盖已发生的修改），返回当前 hash */
+    private static final RedisScript<List> LOAD_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+                redis.call('EXPIRE', KEYS[1], ARGV[1])
+            end
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cart-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 购物车快照：MySQL 购物车 ID + 版本号 + magicBagId -> 数量（保持 hash 顺序）
+     */
+    public record CartSnapshot(Integer cartId, Long version, Map<Integer, Integer> items) {
+    }
+
+    @PostConstruct
+    public void init() {
+        long interval = FLUSH_INTERVAL.toMillis();
+        flushExecutor.scheduleWithFixedDelay(this::flushDirtyCarts, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        flushDirtyCarts();
+    }
+
+    /**
+     * 读取购物车，用户没有购物车返回 null
+     */
+    public CartSnapshot get(Integer userId) {
+        Map<String, String> hash = redisUtil.hashGetAll(getCacheKey(userId));
+        if (!hash.isEmpty()) {
+            return toSnapshot(hash);
+        }
+        return load(userId, false);
+    }
+
+    /**
+     * 只读取版本号，一次 HGET；hash 未加载时返回 null
+     */
+    public Long getVersion(Integer userId) {
+        String version = redisUtil.hashGet(getCacheKey(userId), VERSION_FIELD);
+        return version == null ? null : Long.valueOf(version);
+    }
+
+    /**
+     * 增加商品数量，购物车不存在时创建
+     */
+    public CartSnapshot add(Integer userId, Integer magicBagId, int quantity) {
+        Object[] args = {String.valueOf(magicBagId), String.valueOf(quantity), ttlSeconds(), String.valueOf(userId)};
+        List<String> result = execute(ADD_SCRIPT, userId, args);
+        if (result == null) {
+            load(userId, true);
+            result = execute(ADD_SCRIPT, userId, args);
+        }
+        return toSnapshot(result);
+    }
+
+    /**
+     * 设置商品数量，0 表示删除
+     * @throws NoSuchElementException 购物车或商品不存在
+     */
+    public CartSnapshot setQuantity(Integer userId, Integer magicBagId, int quantity) {
+        Object[] args = {String.valueOf(magicBagId), String.valueOf(quantity), ttlSeconds(), String.valueOf(userId)};
+        List<String> result = execute(SET_SCRIPT, userId, args);
+        if (result == null) {
+            requireLoaded(userId);
+            result = execute(SET_SCRIPT, userId, args);
+        }
+        if (result.isEmpty()) {
+            log.error("Cart item not found: userId={}, magicBagId={}", userId, magicBagId);
+            throw new NoSuchElementException(ResultStatus.CART_ITEM_NOT_FOUND.getMessage());
+        }
+        return toSnapshot(result);
+    }
+
+    /**
+     * 删除商品
+     * @throws NoSuchElementException 购物车不存在
+     */
+    public CartSnapshot remove(Integer userId, Integer magicBagId) {
+        Object[] args = {String.valueOf(magicBagId), ttlSeconds(), String.valueOf(userId)};
+        List<String> result = execute(REMOVE_SCRIPT, userId, args);
+        if (result == null) {
+            requireLoaded(userId);
+            result = execute(REMOVE_SCRIPT, userId, args);
+        }
+        return toSnapshot(result);
+    }
+
+    /**
+     * 结算后清空购物车，同步写回 MySQL，避免 hash 过期后从 MySQL 重新加载出已下单的商品
+     * @return 清空后的购物车，用户没有购物车返回 null
+     */
+    public CartSnapshot clear(Integer userId) {
+        Object[] args = {CART_ID_FIELD, ttlSeconds(), String.valueOf(userId)};
+        List<String> result = execute(CLEAR_SCRIPT, userId, args);
+        if (result == null) {
+            if (load(userId, false) == null) {
+                return null;
+            }
+            result = execute(CLEAR_SCRIPT, userId, args);
+        }
+        CartSnapshot snapshot = toSnapshot(result);
+        persist(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * 从 MySQL 加载到 Redis
+     * @param createIfAbsent 用户没有购物车时是否新建
+     * @return 加载后的购物车，不存在且不新建时返回 null
+     */
+    private CartSnapshot load(Integer userId, boolean createIfAbsent) {
+        Cart cart = cartMapper.findByUserId(userId);
+        if (cart == null) {
+            if (!createIfAbsent) {
+                return null;
+            }
+            cart = new Cart();
+            cart.setUserId(userId);
+            cartMapper.insertCart(cart);
+            log.info("Created new cart for user: {}, cartId={}", userId, cart.getCartId());
+        }
+
+        List<CartItem> items = cartItemMapper.selectList(new LambdaQueryWrapper<CartItem>()
+                .eq(CartItem::getCartId, cart.getCartId())
+                .orderByAsc(CartItem::getAddedAt));
+        List<Object> args = new ArrayList<>();
+        args.add(ttlSeconds());
+        args.add(CART_ID_FIELD);
+        args.add(String.valueOf(cart.getCartId()));
+        // 重新加载时以当前毫秒数为起点，保证大于过期前客户端持有的版本，也大于已写回的版本
+        long lastPersisted = cart.getVersion() == null ? 0 : cart.getVersion();
+        args.add(VERSION_FIELD);
+        args.add(String.valueOf(Math.max(System.currentTimeMillis(), lastPersisted + 1)));
+        for (CartItem item : items) {
+            args.add(String.valueOf(item.getMagicBagId()));
+            args.add(String.valueOf(item.getQuantity()));
+        }
+        log.debug("Loaded cart into redis: userId={}, cartId={}, items={}", userId, cart.getCartId(), items.size());
+        return toSnapshot(execute(LOAD_SCRIPT, userId, args.toArray()));
+    }
+
+    private void requireLoaded(Integer userId) {
+        if (load(userId, false) == null) {
+            log.error("Cart not found for user: {}", userId);
+            throw new NoSuchElementException(ResultStatus.CART_NOT_FOUND.getMessage());
+        }
+    }
+
+    /**
+     * write-behind：批量弹出待写回的用户，一次 pipeline 读取其 hash 后逐个覆盖写回
+     * 写回失败的用户重新放回 cart:dirty，下个周期重试
+     */
+    void flushDirtyCarts() {
+        try {
+            List<String> userIds;
+            while (!(userIds = redisUtil.popFromSet(RedisPrefix.CART_DIRTY.getCode(), FLUSH_BATCH_SIZE)).isEmpty()) {
+                List<Map<String, String>> hashes = redisUtil.multiHashGetAll(
+                        userIds.stream().map(userId -> getCacheKey(Integer.valueOf(userId))).toList());
+                for (int i = 0; i < userIds.size(); i++) {
+                    Map<String, String> hash = hashes.get(i);
+                    if (hash == null || hash.isEmpty()) {
+                        // hash 已过期，MySQL 中保留的是上一次写回的状态
+                        continue;
+                    }
+                    try {
+                        persist(toSnapshot(hash));
+                    } catch (Exception e) {
+                        log.warn("Write-behind cart failed: userId={}, error={}", userIds.get(i), e.getMessage());
+                        redisUtil.addToSet(RedisPrefix.CART_DIRTY.getCode(), userIds.get(i));
+                    }
+                }
+                log.debug("Write-behind flushed {} carts", userIds.size());
+                if (userIds.size() < FLUSH_BATCH_SIZE) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Write-behind cart flush failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 用快照整体覆盖 MySQL 中的购物车项，快照版本不比已写回的新时不做任何修改；
+     * 仍在购物车中的商品保留原来的加入时间
+     */
+    private void persist(CartSnapshot snapshot) {
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (cartMapper.advanceVersion(snapshot.cartId(), snapshot.version(), now) == 0) {
+                log.debug("Skip stale cart snapshot: cartId={}, version={}", snapshot.cartId(), snapshot.version());
+                return;
+            }
+            Map<Integer, LocalDateTime> addedAt = new HashMap<>();
+            for (CartItem existing : cartItemMapper.selectList(new LambdaQueryWrapper<CartItem>()
+                    .eq(CartItem::getCartId, snapshot.cartId()))) {
+                addedAt.put(existing.getMagicBagId(), existing.getAddedAt());
+            }
+            List<CartItem> items = snapshot.items().entrySet().stream().map(entry -> {
+                CartItem item = new CartItem();
+                item.setCartId(snapshot.cartId());
+                item.setMagicBagId(entry.getKey());
+                item.setQuantity(entry.getValue());
+                item.setAddedAt(addedAt.getOrDefault(entry.getKey(), now));
+                return item;
+            }).toList();
+
+            cartItemMapper.deleteByCartId(snapshot.cartId());
+            if (!items.isEmpty()) {
+                cartItemMapper.insertBatch(items);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> execute(RedisScript<List> script, Integer userId, Object... args) {
+        return (List<String>) redisUtil.execute(script,
+                List.of(getCacheKey(userId), RedisPrefix.CART_DIRTY.getCode()), args);
+    }
+
+    /**
+     * HGETALL 扁平结果 [field1, value1, field2, value2, ...] 转为快照
+     */
+    private static CartSnapshot toSnapshot(List<String> flat) {
+        Map<String, String> hash = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < flat.size(); i += 2) {
+            hash.put(flat.get(i), flat.get(i + 1));
+        }
+        return toSnapshot(hash);
+    }
+
+    private static CartSnapshot toSnapshot(Map<String, String> hash) {
+        Integer cartId = null;
+        Long version = null;
+        Map<Integer, Integer> items = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : hash.entrySet()) {
+            if (CART_ID_FIELD.equals(entry.getKey())) {
+                cartId = Integer.valueOf(entry.getValue());
+            } else if (VERSION_FIELD.equals(entry.getKey())) {
+                version = Long.valueOf(entry.getValue());
+            } else {
+                items.put(Integer.valueOf(entry.getKey()), Integer.valueOf(entry.getValue()));
+            }
+        }
+        return new CartSnapshot(cartId, version, items);
+    }
+
+    private static String ttlSeconds() {
+        return String.valueOf(CART_TTL.getSeconds());
+    }
+
+    static String getCacheKey(Integer userId) {
+        return RedisPrefix.CART_ITEMS.getCode() + userId;
+    }
+}
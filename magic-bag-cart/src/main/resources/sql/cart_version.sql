@@ -0,0 +1,3 @@
+-- 购物车 write-behind 版本号：写回时只接受比已写回版本更新的快照，防止旧快照覆盖新购物车
+ALTER TABLE `carts`
+    ADD COLUMN `version` BIGINT NOT NULL DEFAULT 0 COMMENT '最近一次写回的 Redis 购物车版本号' AFTER `user_id`;
@@ -1,21 +1,24 @@
 package nus.iss.se.cart;
 
 import nus.iss.se.cart.api.ProductClient;
+import nus.iss.se.cart.cache.MagicBagCache;
+import nus.iss.se.cart.dto.CartDeltaDto;
 import nus.iss.se.cart.dto.CartDto;
 import nus.iss.se.cart.dto.MagicBagDto;
 import nus.iss.se.cart.entity.Cart;
-import nus.iss.se.cart.entity.CartItem;
 import nus.iss.se.cart.mapper.CartItemMapper;
 import nus.iss.se.cart.mapper.CartMapper;
 import nus.iss.se.cart.service.impl.CartServiceImpl;
-import nus.iss.se.common.Result;
+import nus.iss.se.cart.store.CartStore;
+import nus.iss.se.cart.store.CartStore.CartSnapshot;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +35,12 @@ public class CartServiceImplTest {
     @Mock
     private ProductClient productClient;
 
+    @Mock
+    private CartStore cartStore;
+
+    @Mock
+    private MagicBagCache magicBagCache;
+
     @InjectMocks
     private CartServiceImpl cartService;
 
@@ -48,6 +57,10 @@ public class CartServiceImplTest {
         return dto;
     }
 
+    private CartSnapshot snapshot(Integer cartId, Map<Integer, Integer> items) {
+        return new CartSnapshot(cartId, 7L, new LinkedHashMap<>(items));
+    }
+
     /** -------------------------
      *  Test: createCart
      *  ------------------------- */
@@ -73,86 +86,75 @@ public class CartServiceImplTest {
     void testAddItemToCart_NewItem() {
         MagicBagDto bag = dummyBag();
 
-        when(productClient.getMagicBagById(1)).thenReturn(Result.success(bag));
-
-        Cart cart = new Cart();
-        cart.setCartId(10);
-        cart.setUserId(1);
-        when(cartMapper.findByUserId(1)).thenReturn(cart);
-
-        // 第一次查询返回 null（不存在）
-        when(cartItemMapper.selectOne(any())).thenReturn(null);
-
-        // Mock insert 返回成功
-        doAnswer(invocation -> {
-            CartItem item = invocation.getArgument(0);
-            item.setCartItemId(999); // 设置自动生成的ID
-            return 1; // 返回影响行数
-        }).when(cartItemMapper).insert(any(CartItem.class));
-
-        // Mock updateCart
-        when(cartMapper.updateCart(any(Cart.class))).thenReturn(1);
-
-        // Mock getActiveCart 返回的 selectList
-        CartItem savedItem = new CartItem();
-        savedItem.setCartItemId(999);
-        savedItem.setCartId(10);
-        savedItem.setMagicBagId(1);
-        savedItem.setQuantity(2);
-        savedItem.setAddedAt(LocalDateTime.now());
-        
-        when(cartItemMapper.selectList(any())).thenReturn(List.of(savedItem));
-        when(productClient.getBatchMagicBags(any())).thenReturn(Result.success(List.of(bag)));
+        when(magicBagCache.get(1)).thenReturn(bag);
+        when(cartStore.add(1, 1, 2)).thenReturn(snapshot(10, Map.of(1, 2)));
+        when(magicBagCache.getAll(any())).thenReturn(Map.of(1, bag));
 
         CartDto result = cartService.addItemToCart(1, 1, 2);
 
-        verify(cartItemMapper, times(1)).insert(any());
+        verify(cartStore, times(1)).add(1, 1, 2);
+        verifyNoInteractions(cartItemMapper);
         assertNotNull(result);
         assertEquals(10, result.getCartId());
         assertEquals(1, result.getItems().size());
         assertEquals(1, result.getItems().get(0).getMagicBagId());
         assertEquals(2, result.getItems().get(0).getQuantity());
+        assertEquals(20.0, result.getTotal());
+        assertEquals(7L, result.getVersion());
     }
 
     /** -------------------------
-     *  Test: addItemToCart (update qty)
+     *  Test: addItemToCartDelta —— 只返回变更行，总价包含其他行
      *  ------------------------- */
     @Test
-    void testAddItemToCart_UpdateExisting() {
+    void testAddItemToCartDelta() {
         MagicBagDto bag = dummyBag();
+        MagicBagDto other = new MagicBagDto();
+        other.setId(2);
+        other.setTitle("Other Bag");
+        other.setPrice(BigDecimal.valueOf(5.0));
+
+        when(magicBagCache.get(1)).thenReturn(bag);
+        when(cartStore.add(1, 1, 2)).thenReturn(snapshot(10, Map.of(1, 2, 2, 1)));
+        when(magicBagCache.getAll(any())).thenReturn(Map.of(1, bag, 2, other));
+
+        CartDeltaDto delta = cartService.addItemToCartDelta(1, 1, 2);
+
+        assertEquals(10, delta.getCartId());
+        assertEquals(7L, delta.getVersion());
+        assertEquals(1, delta.getItem().getMagicBagId());
+        assertEquals(2, delta.getItem().getQuantity());
+        assertEquals(2, delta.getItemCount());
+        assertEquals(25.0, delta.getTotal()); // 2 * 10 + 1 * 5
+        verifyNoInteractions(productClient);
+    }
 
-        when(productClient.getMagicBagById(1)).thenReturn(Result.success(bag));
-
-        Cart cart = new Cart();
-        cart.setCartId(10);
-        cart.setUserId(1);
-        when(cartMapper.findByUserId(1)).thenReturn(cart);
-
-        CartItem existing = new CartItem();
-        existing.setCartItemId(999);
-        existing.setCartId(10);
-        existing.setMagicBagId(1);
-        existing.setQuantity(3);
-
-        when(cartItemMapper.selectOne(any())).thenReturn(existing);
-        when(cartItemMapper.updateById(any())).thenReturn(1);
-        when(cartMapper.updateCart(any(Cart.class))).thenReturn(1);
-
-        // Mock getActiveCart 返回更新后的 item
-        CartItem updatedItem = new CartItem();
-        updatedItem.setCartItemId(999);
-        updatedItem.setCartId(10);
-        updatedItem.setMagicBagId(1);
-        updatedItem.setQuantity(5); // 3 + 2
-        
-        when(cartItemMapper.selectList(any())).thenReturn(List.of(updatedItem));
-        when(productClient.getBatchMagicBags(any())).thenReturn(Result.success(List.of(bag)));
+    /** -------------------------
+     *  Test: removeItemDelta —— 被移除的行为 null
+     *  ------------------------- */
+    @Test
+    void testRemoveItemDelta() {
+        when(cartStore.remove(1, 1)).thenReturn(snapshot(10, Map.of()));
 
-        CartDto result = cartService.addItemToCart(1, 1, 2);
+        CartDeltaDto delta = cartService.removeItemDelta(1, 1);
 
-        verify(cartItemMapper, times(1)).updateById(any());
-        assertNotNull(result);
-        assertEquals(5, result.getItems().get(0).getQuantity());
+        assertNull(delta.getItem());
+        assertEquals(0, delta.getItemCount());
+        assertEquals(0.0, delta.getTotal());
+        verify(magicBagCache, never()).getAll(any());
+    }
+
+    /** -------------------------
+     *  Test: addItemToCart (product not found)
+     *  ------------------------- */
+    @Test
+    void testAddItemToCart_ProductNotFound() {
+        when(magicBagCache.get(1)).thenReturn(null);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> cartService.addItemToCart(1, 1, 2));
+
+        assertEquals(ResultStatus.PRODUCT_NOT_FOUND, e.getErrInfo());
+        verifyNoInteractions(cartStore);
     }
 
     /** -------------------------
@@ -160,85 +162,70 @@ public class CartServiceImplTest {
      *  ------------------------- */
     @Test
     void testUpdateItemQuantity() {
-        Cart cart = new Cart();
-        cart.setCartId(10);
-        cart.setUserId(1);
-        when(cartMapper.findByUserId(1)).thenReturn(cart);
-
-        CartItem item = new CartItem();
-        item.setCartItemId(500);
-        item.setCartId(10);
-        item.setMagicBagId(1);
-        item.setQuantity(3);
-
-        when(cartItemMapper.selectOne(any())).thenReturn(item);
-        when(cartItemMapper.updateById(any())).thenReturn(1);
-        when(cartMapper.updateCart(any(Cart.class))).thenReturn(1);
-
-        // Mock getActiveCart 返回更新后的 item
-        CartItem updatedItem = new CartItem();
-        updatedItem.setCartItemId(500);
-        updatedItem.setCartId(10);
-        updatedItem.setMagicBagId(1);
-        updatedItem.setQuantity(10);
-        
-        when(cartItemMapper.selectList(any())).thenReturn(List.of(updatedItem));
-        when(productClient.getBatchMagicBags(any())).thenReturn(Result.success(List.of(dummyBag())));
+        when(cartStore.setQuantity(1, 1, 10)).thenReturn(snapshot(10, Map.of(1, 10)));
+        when(magicBagCache.getAll(any())).thenReturn(Map.of(1, dummyBag()));
 
         CartDto result = cartService.updateItemQuantityInCart(1, 1, 10);
 
-        verify(cartItemMapper, times(1)).updateById(any());
+        verify(cartStore, times(1)).setQuantity(1, 1, 10);
         assertNotNull(result);
         assertEquals(10, result.getItems().get(0).getQuantity());
     }
 
+    /** -------------------------
+     *  Test: update quantity (item not found)
+     *  ------------------------- */
+    @Test
+    void testUpdateItemQuantity_ItemNotFound() {
+        when(cartStore.setQuantity(1, 2, 10))
+                .thenThrow(new NoSuchElementException(ResultStatus.CART_ITEM_NOT_FOUND.getMessage()));
+
+        assertThrows(NoSuchElementException.class, () -> cartService.updateItemQuantityInCart(1, 2, 10));
+    }
+
+    /** -------------------------
+     *  Test: update quantity (negative)
+     *  ------------------------- */
+    @Test
+    void testUpdateItemQuantity_Negative() {
+        assertThrows(IllegalArgumentException.class, () -> cartService.updateItemQuantityInCart(1, 1, -1));
+        verifyNoInteractions(cartStore);
+    }
+
     /** -------------------------
      *  Test: remove item
      *  ------------------------- */
     @Test
     void testRemoveItem() {
-        Cart cart = new Cart();
-        cart.setCartId(10);
-        cart.setUserId(1);
-        when(cartMapper.findByUserId(1)).thenReturn(cart);
-
-        CartItem item = new CartItem();
-        item.setCartItemId(500);
-        item.setMagicBagId(1);
-        
-        when(cartItemMapper.selectOne(any())).thenReturn(item);
-        when(cartItemMapper.deleteById(500)).thenReturn(1);
-        when(cartMapper.updateCart(any(Cart.class))).thenReturn(1);
-
-        // Mock getActiveCart 返回空列表
-        when(cartItemMapper.selectList(any())).thenReturn(List.of());
-        when(productClient.getBatchMagicBags(any())).thenReturn(Result.success(List.of()));
+        when(cartStore.remove(1, 1)).thenReturn(snapshot(10, Map.of()));
 
         CartDto result = cartService.removeItemFromCart(1, 1);
 
-        verify(cartItemMapper, times(1)).deleteById(500);
+        verify(cartStore, times(1)).remove(1, 1);
+        verify(magicBagCache, never()).getAll(any());
         assertNotNull(result);
         assertTrue(result.getItems().isEmpty());
     }
 
     /** -------------------------
-     *  Test: getCartItems
+     *  Test: getActiveCart (no cart)
      *  ------------------------- */
     @Test
-    void testGetCartItems() {
-        Cart cart = new Cart();
-        cart.setCartId(10);
-        when(cartMapper.findByUserId(1)).thenReturn(cart);
+    void testGetActiveCart_NoCart() {
+        when(cartStore.get(1)).thenReturn(null);
 
-        CartItem item = new CartItem();
-        item.setCartItemId(1);
-        item.setMagicBagId(1);
-        item.setQuantity(2);
+        assertNull(cartService.getActiveCart(1));
+    }
 
-        when(cartItemMapper.selectList(any())).thenReturn(List.of(item));
+    /** -------------------------
+     *  Test: getCartItems
+     *  ------------------------- */
+    @Test
+    void testGetCartItems() {
+        when(cartStore.get(1)).thenReturn(snapshot(10, Map.of(1, 2)));
 
         MagicBagDto bag = dummyBag();
-        when(productClient.getBatchMagicBags(any())).thenReturn(Result.success(List.of(bag)));
+        when(magicBagCache.getAll(any())).thenReturn(Map.of(1, bag));
 
         var items = cartService.getCartItems(1);
 
@@ -251,22 +238,14 @@ public class CartServiceImplTest {
      *  ------------------------- */
     @Test
     void testClearCart() {
-        Cart cart = new Cart();
-        cart.setCartId(10);
-        cart.setUserId(1);
-        when(cartMapper.findByUserId(1)).thenReturn(cart);
-
-        when(cartItemMapper.delete(any())).thenReturn(3);
-        when(cartMapper.updateCart(any(Cart.class))).thenReturn(1);
-
-        // Mock getActiveCart - 不会被调用，clearCart 直接返回
-        cart.setCartItems(List.of());
+        when(cartStore.clear(1)).thenReturn(snapshot(10, Map.of()));
 
         CartDto dto = cartService.clearCart(1);
 
-        verify(cartItemMapper, times(1)).delete(any());
+        verify(cartStore, times(1)).clear(1);
         assertNotNull(dto);
         assertEquals(10, dto.getCartId());
+        assertTrue(dto.getItems().isEmpty());
     }
 
     /** -------------------------
@@ -274,21 +253,13 @@ public class CartServiceImplTest {
      *  ------------------------- */
     @Test
     void testGetTotal() {
-        Cart cart = new Cart();
-        cart.setCartId(10);
-        when(cartMapper.findByUserId(1)).thenReturn(cart);
-
-        CartItem item = new CartItem();
-        item.setMagicBagId(1);
-        item.setQuantity(3);
-
-        when(cartItemMapper.selectList(any())).thenReturn(List.of(item));
+        when(cartStore.get(1)).thenReturn(snapshot(10, Map.of(1, 3)));
 
         MagicBagDto bag = dummyBag();
-        when(productClient.getBatchMagicBags(any())).thenReturn(Result.success(List.of(bag)));
+        when(magicBagCache.getAll(any())).thenReturn(Map.of(1, bag));
 
         double total = cartService.getTotal(1);
 
         assertEquals(30.0, total); // 3 * 10
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,249 @@
+package nus.iss.se.cart.store;
+
+import nus.iss.se.cart.entity.Cart;
+import nus.iss.se.cart.entity.CartItem;
+import nus.iss.se.cart.mapper.CartItemMapper;
+import nus.iss.se.cart.mapper.CartMapper;
+import nus.iss.se.cart.store.CartStore.CartSnapshot;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.util.RedisUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CartStoreTest {
+
+    @Mock
+    private RedisUtil redisUtil;
+
+    @Mock
+    private CartMapper cartMapper;
+
+    @Mock
+    private CartItemMapper cartItemMapper;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private CartStore cartStore;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(cartMapper.advanceVersion(anyInt(), anyLong(), any())).thenReturn(1);
+    }
+
+    /** -------------------------
+     *  Test: add (hit) —— 一次脚本往返，不访问 MySQL
+     *  ------------------------- */
+    @Test
+    void testAdd_Hit() {
+        when(redisUtil.execute(any(), anyList(), any(Object[].class)))
+                .thenReturn(List.of("cartId", "10", "version", "4", "1", "5"));
+
+        CartSnapshot snapshot = cartStore.add(1, 1, 2);
+
+        assertEquals(10, snapshot.cartId());
+        assertEquals(4L, snapshot.version());
+        assertEquals(Map.of(1, 5), snapshot.items());
+        verify(redisUtil, times(1)).execute(any(), anyList(), any(Object[].class));
+        verifyNoInteractions(cartMapper, cartItemMapper);
+    }
+
+    /** -------------------------
+     *  Test: add (miss) —— 从 MySQL 加载后重试，没有购物车则新建
+     *  ------------------------- */
+    @Test
+    void testAdd_MissCreatesCart() {
+        when(redisUtil.execute(any(), anyList(), any(Object[].class)))
+                .thenReturn(null)
+                .thenReturn(List.of("cartId", "10"))
+                .thenReturn(List.of("cartId", "10", "1", "2"));
+        when(cartMapper.findByUserId(1)).thenReturn(null);
+        doAnswer(invocation -> {
+            Cart cart = invocation.getArgument(0);
+            cart.setCartId(10);
+            return 1;
+        }).when(cartMapper).insertCart(any(Cart.class));
+        when(cartItemMapper.selectList(any())).thenReturn(List.of());
+
+        CartSnapshot snapshot = cartStore.add(1, 1, 2);
+
+        verify(cartMapper, times(1)).insertCart(any(Cart.class));
+        assertEquals(10, snapshot.cartId());
+        assertEquals(Map.of(1, 2), snapshot.items());
+    }
+
+    /** -------------------------
+     *  Test: getVersion —— 一次 HGET
+     *  ------------------------- */
+    @Test
+    void testGetVersion() {
+        when(redisUtil.hashGet(CartStore.getCacheKey(1), "version")).thenReturn("42");
+        when(redisUtil.hashGet(CartStore.getCacheKey(2), "version")).thenReturn(null);
+
+        assertEquals(42L, cartStore.getVersion(1));
+        assertNull(cartStore.getVersion(2));
+        verifyNoInteractions(cartMapper);
+    }
+
+    /** -------------------------
+     *  Test: setQuantity (no cart)
+     *  ------------------------- */
+    @Test
+    void testSetQuantity_CartNotFound() {
+        when(redisUtil.execute(any(), anyList(), any(Object[].class))).thenReturn(null);
+        when(cartMapper.findByUserId(1)).thenReturn(null);
+
+        assertThrows(NoSuchElementException.class, () -> cartStore.setQuantity(1, 1, 3));
+        verify(cartMapper, never()).insertCart(any());
+    }
+
+    /** -------------------------
+     *  Test: setQuantity (item not found)
+     *  ------------------------- */
+    @Test
+    void testSetQuantity_ItemNotFound() {
+        when(redisUtil.execute(any(), anyList(), any(Object[].class))).thenReturn(List.of());
+
+        assertThrows(NoSuchElementException.class, () -> cartStore.setQuantity(1, 1, 3));
+    }
+
+    /** -------------------------
+     *  Test: clear —— 同步写回 MySQL
+     *  ------------------------- */
+    @Test
+    void testClear_PersistsSynchronously() {
+        when(redisUtil.execute(any(), anyList(), any(Object[].class))).thenReturn(List.of("cartId", "10", "version", "5"));
+
+        CartSnapshot snapshot = cartStore.clear(1);
+
+        assertTrue(snapshot.items().isEmpty());
+        verify(cartMapper, times(1)).advanceVersion(eq(10), eq(5L), any());
+        verify(cartItemMapper, times(1)).deleteByCartId(10);
+        verify(cartItemMapper, never()).insertBatch(any());
+    }
+
+    /** -------------------------
+     *  Test: write-behind flush
+     *  ------------------------- */
+    @Test
+    void testFlushDirtyCarts() {
+        when(redisUtil.popFromSet(RedisPrefix.CART_DIRTY.getCode(), 200)).thenReturn(List.of("1", "2"));
+        Map<String, String> cart1 = new LinkedHashMap<>();
+        cart1.put("cartId", "10");
+        cart1.put("version", "7");
+        cart1.put("1", "2");
+        cart1.put("3", "1");
+        // 用户 2 的 hash 已过期，跳过
+        when(redisUtil.multiHashGetAll(List.of(CartStore.getCacheKey(1), CartStore.getCacheKey(2))))
+                .thenReturn(List.of(cart1, Map.of()));
+
+        cartStore.flushDirtyCarts();
+
+        ArgumentCaptor<List<CartItem>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cartItemMapper, times(1)).deleteByCartId(10);
+        verify(cartItemMapper, times(1)).insertBatch(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertEquals(1, captor.getValue().get(0).getMagicBagId());
+        assertEquals(2, captor.getValue().get(0).getQuantity());
+        verify(redisUtil, never()).addToSet(anyString(), any(String[].class));
+    }
+
+    /** -------------------------
+     *  Test: write-behind flush failure —— 重新放回 cart:dirty
+     *  ------------------------- */
+    @Test
+    void testFlushDirtyCarts_RequeueOnFailure() {
+        when(redisUtil.popFromSet(RedisPrefix.CART_DIRTY.getCode(), 200)).thenReturn(List.of("1"));
+        when(redisUtil.multiHashGetAll(anyList())).thenReturn(List.of(Map.of("cartId", "10", "version", "3", "1", "2")));
+        when(cartItemMapper.deleteByCartId(10)).thenThrow(new RuntimeException("db down"));
+
+        cartStore.flushDirtyCarts();
+
+        verify(redisUtil, times(1)).addToSet(RedisPrefix.CART_DIRTY.getCode(), "1");
+    }
+
+    /** -------------------------
+     *  Test: write-behind flush (stale) —— 已写回更新的版本时丢弃旧快照
+     *  ------------------------- */
+    @Test
+    void testFlushDirtyCarts_SkipsStaleSnapshot() {
+        when(redisUtil.popFromSet(RedisPrefix.CART_DIRTY.getCode(), 200)).thenReturn(List.of("1"));
+        when(redisUtil.multiHashGetAll(anyList())).thenReturn(List.of(Map.of("cartId", "10", "version", "3", "1", "2")));
+        when(cartMapper.advanceVersion(eq(10), eq(3L), any())).thenReturn(0);
+
+        cartStore.flushDirtyCarts();
+
+        verify(cartItemMapper, never()).deleteByCartId(anyInt());
+        verify(cartItemMapper, never()).insertBatch(any());
+        verify(redisUtil, never()).addToSet(anyString(), any(String[].class));
+    }
+
+    /** -------------------------
+     *  Test: write-behind flush —— 已在购物车中的商品保留加入时间
+     *  ------------------------- */
+    @Test
+    void testFlushDirtyCarts_KeepsAddedAt() {
+        LocalDateTime addedAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        CartItem existing = new CartItem();
+        existing.setCartId(10);
+        existing.setMagicBagId(1);
+        existing.setQuantity(1);
+        existing.setAddedAt(addedAt);
+        when(cartItemMapper.selectList(any())).thenReturn(List.of(existing));
+        when(redisUtil.popFromSet(RedisPrefix.CART_DIRTY.getCode(), 200)).thenReturn(List.of("1"));
+        Map<String, String> cart1 = new LinkedHashMap<>();
+        cart1.put("cartId", "10");
+        cart1.put("version", "8");
+        cart1.put("1", "3");
+        cart1.put("2", "1");
+        when(redisUtil.multiHashGetAll(anyList())).thenReturn(List.of(cart1));
+
+        cartStore.flushDirtyCarts();
+
+        ArgumentCaptor<List<CartItem>> captor = ArgumentCaptor.forClass(List.class);
+        verify(cartItemMapper, times(1)).insertBatch(captor.capture());
+        assertEquals(addedAt, captor.getValue().get(0).getAddedAt());
+        assertEquals(3, captor.getValue().get(0).getQuantity());
+        assertTrue(captor.getValue().get(1).getAddedAt().isAfter(addedAt));
+    }
+
+    /** -------------------------
+     *  Test: load —— 版本号大于已写回的版本
+     *  ------------------------- */
+    @Test
+    void testLoad_VersionAboveLastPersisted() {
+        long persisted = System.currentTimeMillis() + 60_000;
+        Cart cart = new Cart();
+        cart.setCartId(10);
+        cart.setUserId(1);
+        cart.setVersion(persisted);
+        when(cartMapper.findByUserId(1)).thenReturn(cart);
+        when(redisUtil.hashGetAll(CartStore.getCacheKey(1))).thenReturn(Map.of());
+        when(redisUtil.execute(any(), anyList(), any(Object[].class)))
+                .thenReturn(List.of("cartId", "10", "version", String.valueOf(persisted + 1)));
+
+        cartStore.get(1);
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisUtil).execute(any(), anyList(), args.capture());
+        assertEquals(String.valueOf(persisted + 1), args.getValue()[4]);
+    }
+}
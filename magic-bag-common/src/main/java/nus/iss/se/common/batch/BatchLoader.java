@@ -0,0 +1,219 @@
+package nus.iss.se.common.batch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * 单 id 查询合并为批量查询
+ * 时间窗口内（或攒够 maxBatchSize 个 id）的 load 请求合并为一次 batchFunction 调用，结果按 id 分发给各调用方；
+ * 同一 id 已有请求在途时直接复用同一个 future，不会重复查询。
+ * batchFunction 返回的 Map 中缺少的 id 以 null 完成；batchFunction 对多个 id 抛异常时逐个 id 重新查询，
+ * 只有单独查询仍失败的 id 异常完成，不会因为其中一个 id 连累同批合并进来的其它调用方。
+ * 每个请求最多等待 timeout，超时后以 IllegalStateException 失败并移出在途表，之后的请求会重新查询。
+ * 用法：BatchLoader.of("product", ids -> ..., Duration.ofMillis(5), 100)，通常声明为 Spring Bean 并在销毁时 close。
+ */
+@Slf4j
+public class BatchLoader<K, V> implements AutoCloseable {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+    private final String name;
+    private final Function<List<K>, Map<K, V>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long timeoutNanos;
+
+    /** 在途请求：已提交但尚未返回的 id */
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+    /** 等待发出的 id 及其 future，按加入顺序 */
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final ScheduledExecutorService scheduler;
+    /** 批量调用是阻塞的远程请求，放到虚拟线程里执行，不占用调度线程 */
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+
+    private BatchLoader(String name, Function<List<K>, Map<K, V>> batchFunction, Duration window, int maxBatchSize,
+                        Duration timeout) {
+        this.name = name;
+        this.batchFunction = batchFunction;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutNanos = timeout.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "batch-loader-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param name          用于线程名和日志
+     * @param batchFunction 批量查询，返回 id -> 结果
+     * @param window        合并窗口，第一个 id 进入后最多等待这么久
+     * @param maxBatchSize  攒够这么多 id 立即发出，不再等待窗口
+     */
+    public static <K, V> BatchLoader<K, V> of(String name, Function<List<K>, Map<K, V>> batchFunction,
+                                              Duration window, int maxBatchSize) {
+        return of(name, batchFunction, window, maxBatchSize, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param timeout 单个请求从 load 开始最多等待多久
+     */
+    public static <K, V> BatchLoader<K, V> of(String name, Function<List<K>, Map<K, V>> batchFunction,
+                                              Duration window, int maxBatchSize, Duration timeout) {
+        return new BatchLoader<>(name, batchFunction, window, maxBatchSize, timeout);
+    }
+
+    /**
+     * 异步查询单个 id
+     */
+    public CompletableFuture<V> load(K key) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        // 超时或完成后移出在途表；只移除自己，不影响之后新建的请求
+        created.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS)
+                .whenComplete((value, e) -> inFlight.remove(key, created));
+
+        Map<K, CompletableFuture<V>> ready = null;
+        synchronized (lock) {
+            pending.put(key, created);
+            if (pending.size() >= maxBatchSize) {
+                ready = drainPending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (ready != null) {
+            dispatch(ready);
+        }
+        return created;
+    }
+
+    /**
+     * 同步查询单个 id，不存在返回 null；查询的异常原样抛出，超时抛 IllegalStateException
+     */
+    public V get(K key) {
+        return join(load(key));
+    }
+
+    /**
+     * 同步查询多个 id，结果只包含存在的 id
+     */
+    public Map<K, V> getAll(Collection<K> keys) {
+        Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+        keys.forEach(key -> futures.computeIfAbsent(key, this::load));
+        Map<K, V> result = new LinkedHashMap<>();
+        futures.forEach((key, future) -> {
+            V value = join(future);
+            if (value != null) {
+                result.put(key, value);
+            }
+        });
+        return result;
+    }
+
+    private void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (lock) {
+            scheduledFlush = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        dispatch(batch);
+    }
+
+    /**
+     * 需持有 lock
+     */
+    private Map<K, CompletableFuture<V>> drainPending() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        try {
+            dispatcher.execute(() -> fetch(batch));
+        } catch (RejectedExecutionException e) {
+            // 已 close，不再发出新的查询
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private void fetch(Map<K, CompletableFuture<V>> batch) {
+        Map<K, V> result;
+        try {
+            result = batchFunction.apply(new ArrayList<>(batch.keySet()));
+            log.debug("Batch loader {} fetched {} keys in one call", name, batch.size());
+        } catch (Throwable e) {
+            if (batch.size() == 1) {
+                batch.values().forEach(future -> future.completeExceptionally(e));
+                return;
+            }
+            // 无法区分是哪个 id 导致的失败，逐个重新查询，只让确实失败的 id 异常完成
+            log.warn("Batch loader {} failed for {} keys, retrying one by one: {}", name, batch.size(), e.getMessage());
+            batch.forEach((key, future) -> {
+                if (!future.isDone()) {
+                    dispatch(Map.of(key, future));
+                }
+            });
+            return;
+        }
+        batch.forEach((key, future) -> future.complete(result == null ? null : result.get(key)));
+    }
+
+    private V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new IllegalStateException("Batch loader " + name + " timed out", e.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        synchronized (lock) {
+            if (!pending.isEmpty()) {
+                dispatch(drainPending());
+            }
+        }
+        dispatcher.shutdown();
+    }
+}
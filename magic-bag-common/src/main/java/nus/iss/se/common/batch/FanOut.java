@@ -0,0 +1,52 @@
+package nus.iss.se.common.batch;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 互不依赖的远程查询并行扇出
+ * 每个调用在独立的虚拟线程中执行并有各自的超时；超时或异常时记录日志并以 fallback 完成，不影响其他调用，
+ * 调用方拿到的是部分结果而不是整体失败。总耗时为 max(各调用) 而不是 sum(各调用)。
+ */
+@Slf4j
+public final class FanOut {
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private FanOut() {
+    }
+
+    /**
+     * @param name     用于日志
+     * @param supplier 阻塞的查询
+     * @param timeout  本调用的超时
+     * @param fallback 超时或异常时的结果
+     */
+    public static <T> CompletableFuture<T> call(String name, Supplier<T> supplier, Duration timeout, T fallback) {
+        return CompletableFuture.supplyAsync(supplier, EXECUTOR)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        log.warn("{} timed out after {}ms, using fallback", name, timeout.toMillis());
+                    } else {
+                        log.warn("{} failed, using fallback: {}", name, cause.getMessage());
+                    }
+                    return fallback;
+                });
+    }
+
+    /**
+     * 等待全部完成；call 返回的 future 不会异常完成
+     */
+    public static void awaitAll(CompletableFuture<?>... futures) {
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -1,10 +1,15 @@
 package nus.iss.se.common.cache;
 
 import lombok.RequiredArgsConstructor;
+import nus.iss.se.common.constant.RedisChannel;
 import nus.iss.se.common.constant.RedisPrefix;
 import nus.iss.se.common.util.RedisUtil;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -15,6 +20,37 @@ import java.util.concurrent.TimeUnit;
 public class TokenCacheService {
     private final RedisUtil redisUtil;
 
+    /** 读取旧 token 后被并发登录抢先轮换时的重试次数 */
+    private static final int ROTATE_ATTEMPTS = 5;
+
+    /**
+     * 登录时的会话轮换，读取旧 token 之后一次往返完成：
+     * 删除旧 token，写入新的 token<->user 映射，写入用户上下文，并广播旧 token 撤销和用户缓存失效。
+     * 脚本访问的 key 全部通过 KEYS 传入：
+     * KEYS[1] auth:user:{username}，KEYS[2] user:info:{username}，KEYS[3] 新 token key，KEYS[4] 旧 token key（没有旧 token 时不传）
+     * ARGV[1] 读取到的旧 token（空串表示没有），ARGV[2] 新 token，ARGV[3] username，ARGV[4] token 过期秒数，
+     * ARGV[5] 用户上下文 JSON（空串表示不写），ARGV[6] 用户上下文过期秒数，
+     * ARGV[7] token 撤销频道，ARGV[8] 用户缓存失效频道
+     * 返回 1 成功；0 表示旧 token 已被并发登录替换，调用方重新读取后重试
+     */
+    private static final RedisScript<Long> ROTATE_SESSION_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1]) or ''
+            if current ~= ARGV[1] then
+                return 0
+            end
+            if #KEYS == 4 then
+                redis.call('DEL', KEYS[4])
+                redis.call('PUBLISH', ARGV[7], ARGV[1])
+            end
+            redis.call('SET', KEYS[3], ARGV[3], 'EX', ARGV[4])
+            redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[4])
+            if ARGV[5] ~= '' then
+                redis.call('SET', KEYS[2], ARGV[5], 'EX', ARGV[6])
+                redis.call('PUBLISH', ARGV[8], ARGV[3])
+            end
+            return 1
+            """, Long.class);
+
     private String getAuthUserKey(String username){
         return RedisPrefix.AUTH_USER.getCode() + username;
     }
@@ -27,10 +63,39 @@ public class TokenCacheService {
      * 存储 Token（登录时调用）
      */
     public void saveToken(String username, String token, int minutes) {
-        // 如果之前用户登陆过，先清空
-        revokeTokenByUsername(username);
-        redisUtil.set(getAuthTokenKey(token), username, minutes, TimeUnit.MINUTES);
-        redisUtil.set(getAuthUserKey(username), token, minutes, TimeUnit.MINUTES);
+        saveToken(username, token, minutes, null);
+    }
+
+    /**
+     * 存储 Token 并同时缓存用户上下文（登录时调用），之前登录的 token 被撤销；
+     * 原来需要 GET + 2*DEL + 3*SET 共六次往返，现在是 GET 旧 token + Lua 脚本两次往返
+     */
+    public void saveToken(String username, String token, int minutes, UserContext userContext) {
+        String userJson = userContext == null ? "" : redisUtil.toJson(userContext);
+        String authUserKey = getAuthUserKey(username);
+        for (int attempt = 0; attempt < ROTATE_ATTEMPTS; attempt++) {
+            String oldToken = redisUtil.get(authUserKey);
+            List<String> keys = new ArrayList<>(4);
+            keys.add(authUserKey);
+            keys.add(UserCacheService.getCacheKey(username));
+            keys.add(getAuthTokenKey(token));
+            if (oldToken != null && !oldToken.equals(token)) {
+                keys.add(getAuthTokenKey(oldToken));
+            }
+            Long rotated = redisUtil.execute(ROTATE_SESSION_SCRIPT, keys,
+                    oldToken == null ? "" : oldToken,
+                    token,
+                    username,
+                    String.valueOf(TimeUnit.MINUTES.toSeconds(minutes)),
+                    userJson,
+                    String.valueOf(UserCacheService.USER_CACHE_TTL.getSeconds()),
+                    RedisChannel.AUTH_TOKEN_REVOKED.getCode(),
+                    RedisChannel.USER_CACHE_INVALIDATED.getCode());
+            if (rotated != null && rotated == 1) {
+                return;
+            }
+        }
+        throw new IllegalStateException("Session rotation for " + username + " kept conflicting with concurrent logins");
     }
 
     /**
@@ -45,6 +110,7 @@ public class TokenCacheService {
      */
     public void revokeToken(String token) {
         redisUtil.delete(getAuthTokenKey(token));
+        publishRevoked(token);
     }
 
     public void revokeTokenByUsername(String username){
@@ -52,9 +118,17 @@ public class TokenCacheService {
         if (token != null){
             redisUtil.delete(getAuthTokenKey(token));
             redisUtil.delete(getAuthUserKey(username));
+            publishRevoked(token);
         }
     }
 
+    /**
+     * 通知网关清掉本地缓存的 token 状态，使登出立即生效
+     */
+    private void publishRevoked(String token) {
+        redisUtil.publish(RedisChannel.AUTH_TOKEN_REVOKED.getCode(), token);
+    }
+
     /**
      * 获取 Token 对应的用户名
      */
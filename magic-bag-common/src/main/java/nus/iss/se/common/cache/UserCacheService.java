@@ -1,30 +1,89 @@
 package nus.iss.se.common.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisChannel;
 import nus.iss.se.common.constant.RedisPrefix;
 import nus.iss.se.common.util.RedisUtil;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * 用户上下文缓存，所有服务的 UserContextInterceptor 每个请求都会调用
+ * L1：本实例 Caffeine，秒级过期，命中时不访问 Redis；
+ * L2：Redis user:info:{username}，2 小时过期，活跃用户滑动续期。
+ * 更新/删除时通过 redis pub/sub 通知所有实例清除 L1；续期在后台批量执行，不占用请求线程。
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class UserCacheService {
     private final RedisUtil redisUtil;
-    private static final Duration USER_CACHE_TTL = Duration.ofHours(2);
+    private final RedisMessageListenerContainer listenerContainer;
+    static final Duration USER_CACHE_TTL = Duration.ofHours(2);
     private static final Duration RENEW_THRESHOLD = Duration.ofMinutes(30);
+    private static final Duration LOCAL_CACHE_TTL = Duration.ofSeconds(10);
+    private static final long LOCAL_CACHE_MAX_SIZE = 10_000;
+    private static final Duration RENEW_FLUSH_INTERVAL = Duration.ofSeconds(10);
+
+    private final Cache<String, UserContext> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_CACHE_MAX_SIZE)
+            .expireAfterWrite(LOCAL_CACHE_TTL)
+            .build();
+
+    /** 本实例最近续期过的用户，RENEW_THRESHOLD 内不再重复续期 */
+    private final Cache<String, Boolean> recentlyRenewed = Caffeine.newBuilder()
+            .maximumSize(LOCAL_CACHE_MAX_SIZE * 10)
+            .expireAfterWrite(RENEW_THRESHOLD)
+            .build();
+
+    /** 等待批量续期的用户 */
+    private final Set<String> pendingRenewals = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "user-cache-renew");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> localCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisChannel.USER_CACHE_INVALIDATED.getCode()));
+        long interval = RENEW_FLUSH_INTERVAL.toMillis();
+        renewExecutor.scheduleWithFixedDelay(this::flushRenewals, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewExecutor.shutdown();
+        flushRenewals();
+    }
 
     public UserContext getCachedUser(String username) {
-        String key = getCacheKey(username);
-        UserContext cachedUserContext = redisUtil.getJson(key, UserContext.class);
+        UserContext cachedUserContext = localCache.get(username,
+                key -> redisUtil.getJson(getCacheKey(key), UserContext.class));
 
-        // 缓存命中后， 判断是否需要续期，当生命周期小于30min时自动续期
-        if (cachedUserContext != null && redisUtil.getExpire(key,TimeUnit.SECONDS) < RENEW_THRESHOLD.getSeconds()){
-            redisUtil.expire(key, USER_CACHE_TTL.getSeconds(), TimeUnit.SECONDS);
-            log.debug("Redis User cache renewed for: {}",username);
+        // 缓存命中后登记续期，由后台线程批量延长 Redis 过期时间
+        if (cachedUserContext != null && recentlyRenewed.getIfPresent(username) == null) {
+            recentlyRenewed.put(username, Boolean.TRUE);
+            pendingRenewals.add(username);
         }
         return cachedUserContext;
     }
@@ -36,6 +95,7 @@ public class UserCacheService {
     public void cacheUser(UserContext userContext) {
         // userInfo中password注解实现移除敏感信息，缓存
         redisUtil.setJson(getCacheKey(userContext.getUsername()), userContext,USER_CACHE_TTL.getSeconds(), TimeUnit.SECONDS);
+        publishInvalidation(userContext.getUsername());
     }
 
     /**
@@ -43,9 +103,38 @@ public class UserCacheService {
      * */
     public void deleteUserCache(String username) {
         redisUtil.delete(getCacheKey(username));
+        publishInvalidation(username);
+    }
+
+    /**
+     * 本实例立即清除，其他实例收到 pub/sub 消息后清除
+     */
+    private void publishInvalidation(String username) {
+        localCache.invalidate(username);
+        redisUtil.publish(RedisChannel.USER_CACHE_INVALIDATED.getCode(), username);
+    }
+
+    /**
+     * 批量续期：一次 pipeline 对所有待续期用户执行 EXPIRE，key 已被删除的不会重新创建
+     */
+    void flushRenewals() {
+        if (pendingRenewals.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (String username : pendingRenewals) {
+            pendingRenewals.remove(username);
+            keys.add(getCacheKey(username));
+        }
+        try {
+            redisUtil.expireAll(keys, USER_CACHE_TTL.getSeconds(), TimeUnit.SECONDS);
+            log.debug("Redis User cache renewed for {} users", keys.size());
+        } catch (Exception e) {
+            log.warn("Renew user cache failed: {}", e.getMessage());
+        }
     }
 
-    private String getCacheKey(String username) {
+    static String getCacheKey(String username) {
         return RedisPrefix.USER_INFO.getCode() + username;
     }
 }
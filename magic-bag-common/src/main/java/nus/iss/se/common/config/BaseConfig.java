@@ -5,6 +5,8 @@ import nus.iss.se.common.properties.RsaProperties;
 import nus.iss.se.common.util.RsaUtil;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
@@ -42,6 +44,16 @@ public class BaseConfig {
         }
     }
 
+    /**
+     * redis pub/sub 监听容器，用于接收缓存失效广播
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         // BCrypt算法自动处理盐值，安全性高
@@ -0,0 +1,17 @@
+package nus.iss.se.common.constant;
+
+import java.time.Duration;
+
+/**
+ * 订单支付时限，支付服务创建 Stripe 会话和订单服务超时取消共用
+ * 会话统一在 订单创建 + SESSION_DEADLINE 过期；订单在 订单创建 + CANCEL_AFTER 仍未支付时取消并释放库存，
+ * 两者之间留有余量（实例与 Stripe 的时钟偏差），订单被超时取消时不会还有可支付的会话。
+ * 商品服务预留的释放期限需长于 CANCEL_AFTER。
+ */
+public final class PaymentWindow {
+    public static final Duration SESSION_DEADLINE = Duration.ofMinutes(60);
+    public static final Duration CANCEL_AFTER = SESSION_DEADLINE.plus(Duration.ofMinutes(5));
+
+    private PaymentWindow() {
+    }
+}
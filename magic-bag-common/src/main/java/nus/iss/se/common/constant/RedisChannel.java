@@ -0,0 +1,18 @@
+package nus.iss.se.common.constant;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 统一管理 redis pub/sub 频道
+ * */
+@Getter
+@AllArgsConstructor
+public enum RedisChannel {
+    AUTH_TOKEN_REVOKED("auth:channel:token-revoked", "broadcast revoked token to gateway"),
+    USER_CACHE_INVALIDATED("user:channel:cache-invalidated", "broadcast changed username to evict local user cache"),
+    PRODUCT_CACHE_INVALIDATED("product:channel:cache-invalidated", "broadcast changed magic bag id to evict local cache and search index");
+
+    private final String code;
+    private final String description;
+}
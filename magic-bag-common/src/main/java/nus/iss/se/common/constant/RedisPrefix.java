@@ -12,7 +12,21 @@ public enum RedisPrefix {
     AUTH_TOKEN("auth:token:","cache user's token"),
     AUTH_USER("auth:user:","user-token mapping"),
     USER_INFO("user:info:", "cache user's info"),
-    MERCHANT_LOCATION("merchant:location:", "merchant location data"),
+    MERCHANT_LOCATION("merchant:location:", "merchant locations sharded by geohash cell"),
+    MERCHANT_LOCATION_CELLS("merchant:location-cells", "geo cell keys of merchant:location: that have been written"),
+    MERCHANT_LEADERBOARD("merchant:leaderboard", "approved merchants ranked by score"),
+    PRODUCT_INFO("product:info:", "cache magic bag detail"),
+    PRODUCT_STOCK("product:stock:", "available stock of magic bag"),
+    PRODUCT_STOCK_HOLD("product:stock-hold:", "units held by open reservations and stock epoch of magic bag"),
+    PRODUCT_MERCHANT_BAGS("product:merchant-bags:", "bagId -> json of a merchant's active magic bags"),
+    PRODUCT_MERCHANT_BAGS_VERSION("product:merchant-bags-version:", "change counter of a merchant's magic bags, guards index loads"),
+    PRODUCT_NEARBY("product:nearby:", "ranked nearby bag feed of a geohash cell"),
+    STOCK_RESERVATION("product:reservation:", "reserved stock lines of an order"),
+    STOCK_RESERVATION_DEADLINE("product:reservation-deadline", "reservation id -> release deadline (epoch seconds)"),
+    CART_ITEMS("cart:items:", "magicBagId -> quantity of user's cart"),
+    CART_DIRTY("cart:dirty", "users whose cart awaits write-behind to mysql"),
+    PAYMENT_CHECKOUT("payment:checkout:", "open stripe checkout session of an order"),
+    ORDER_STATS_RECONCILE_LOCK("order:stats:reconcile-lock", "instance running the current order stats reconciliation"),
 
     ACCOUNT_ACTIVATE_TOKEN("auth:activate:token:","activate user account");
 
@@ -85,7 +85,8 @@ public enum ResultStatus {
     /* 支付错误：80001-89999 */ 
     PAYMENT_FAILED(80001, "Payment Failed"),
     PAYMENT_VERIFICATION_FAILED(80002, "Payment Verification Failed"),
-    PAYMENT_SESSION_INVALID(80003, "Payment Session Invalid");
+    PAYMENT_SESSION_INVALID(80003, "Payment Session Invalid"),
+    PAYMENT_WINDOW_CLOSED(80004, "Payment Window Closed");
     // 状态码
     private final int code;
     // 提示信息
@@ -0,0 +1,152 @@
+package nus.iss.se.common.util;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Geohash 编码
+ * 经纬度按二分交替编码为 base32 字符串，前缀相同即在同一单元格内；精度 5 的单元格约 4.9km x 4.9km（赤道附近）。
+ */
+public final class GeoHash {
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final String BASE32_INDEX = new String(BASE32);
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private GeoHash() {
+    }
+
+    /**
+     * @param precision 字符数
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean lonBit = true;
+        int bits = 0;
+        int ch = 0;
+        while (hash.length() < precision) {
+            if (lonBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLon = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            lonBit = !lonBit;
+            if (++bits == 5) {
+                hash.append(BASE32[ch]);
+                bits = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * 单元格中心点，用于把同一单元格内的坐标归一到同一个位置
+     */
+    public static Center decodeCenter(String hash) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        boolean lonBit = true;
+        for (char c : hash.toCharArray()) {
+            int ch = BASE32_INDEX.indexOf(c);
+            if (ch < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + hash);
+            }
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean set = ((ch >> bit) & 1) == 1;
+                if (lonBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (set) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (set) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                lonBit = !lonBit;
+            }
+        }
+        return new Center((minLat + maxLat) / 2, (minLon + maxLon) / 2);
+    }
+
+    /**
+     * 覆盖以 (latitude, longitude) 为中心、radiusKm 为半径的圆的所有单元格
+     * 在圆的外接矩形内按单元格尺寸取样，每个与矩形相交的单元格至少取到一个点。
+     */
+    public static Set<String> coveringCells(double latitude, double longitude, double radiusKm, int precision) {
+        double latSpan = latSpan(precision);
+        double lonSpan = lonSpan(precision);
+
+        double latDelta = radiusKm / KM_PER_DEGREE_LAT;
+        double minLat = Math.max(-90, latitude - latDelta);
+        double maxLat = Math.min(90, latitude + latDelta);
+        // 高纬度时经度方向的跨度迅速变大，靠近极点直接覆盖整圈
+        double cosLat = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        double lonDelta = cosLat < 1e-6 ? 180 : Math.min(180, radiusKm / (KM_PER_DEGREE_LAT * cosLat));
+        double minLon = longitude - lonDelta;
+        double maxLon = longitude + lonDelta;
+
+        Set<String> cells = new LinkedHashSet<>();
+        for (double lat = minLat; ; lat += latSpan) {
+            double sampleLat = Math.min(lat, maxLat);
+            for (double lon = minLon; ; lon += lonSpan) {
+                double sampleLon = Math.min(lon, maxLon);
+                cells.add(encode(sampleLat, normalizeLongitude(sampleLon), precision));
+                if (sampleLon >= maxLon) {
+                    break;
+                }
+            }
+            if (sampleLat >= maxLat) {
+                break;
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * 单元格的纬度跨度（度）
+     */
+    public static double latSpan(int precision) {
+        int latBits = precision * 5 / 2;
+        return 180.0 / (1L << latBits);
+    }
+
+    /**
+     * 单元格的经度跨度（度），经度比纬度多分到一位或相等
+     */
+    public static double lonSpan(int precision) {
+        int lonBits = precision * 5 - precision * 5 / 2;
+        return 360.0 / (1L << lonBits);
+    }
+
+    public record Center(double latitude, double longitude) {
+    }
+
+    /**
+     * 跨越 ±180 经线时折回 [-180, 180)
+     */
+    private static double normalizeLongitude(double longitude) {
+        return ((longitude + 180) % 360 + 360) % 360 - 180;
+    }
+}
@@ -1,23 +1,126 @@
 package nus.iss.se.common.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import nus.iss.se.common.properties.JwtProperties;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
 
+@Slf4j
 @Component
-@RequiredArgsConstructor
 public class JwtUtil {
+    /** 已验签 token 缓存，条目在 token 过期或最多 5 分钟后失效 */
+    private static final long VERIFIED_CACHE_MAX_SIZE = 10_000;
+    private static final Duration VERIFIED_CACHE_MAX_TTL = Duration.ofMinutes(5);
+
     private final JwtProperties jwtProperties;
 
+    private final Cache<String, VerifiedToken> verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(VERIFIED_CACHE_MAX_SIZE)
+            .expireAfter(new Expiry<String, VerifiedToken>() {
+                @Override
+                public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                    long untilExpiry = Duration.between(Instant.now(), token.expiration()).toNanos();
+                    return Math.max(0, Math.min(untilExpiry, VERIFIED_CACHE_MAX_TTL.toNanos()));
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, token, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    private volatile SecretKey key;
+    private volatile JwtParser parser;
+
+    public JwtUtil(JwtProperties jwtProperties) {
+        this.jwtProperties = jwtProperties;
+        initKey();
+    }
+
+    /**
+     * 验签通过后的 token 信息，不可变
+     * @param subject 用户名
+     * @param role 角色
+     * @param expiration 过期时间
+     */
+    public record VerifiedToken(String subject, String role, Instant expiration) {
+        public boolean isExpired() {
+            return !expiration.isAfter(Instant.now());
+        }
+    }
+
+    /**
+     * 配置中心刷新 jwt 配置后重建密钥，之前验证过的 token 全部作废
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onRefresh() {
+        initKey();
+        verifiedTokens.invalidateAll();
+    }
+
+    private void initKey() {
+        this.key = Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+    }
+
     private SecretKey getKey() {
-        return Keys.hmacShaKeyFor(jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8));
+        return key;
+    }
+
+    /**
+     * 验证 token 并返回解析结果，只做一次验签；
+     * 最近验证过且未过期的 token 直接从缓存返回，不再计算 HMAC
+     * @return 签名错误、格式错误、已过期或 subject 为空时返回 empty
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        String cacheKey = hash(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(cacheKey);
+        if (cached != null && !cached.isExpired()) {
+            return Optional.of(cached);
+        }
+
+        try {
+            Claims claims = getClaims(token);
+            String subject = claims.getSubject();
+            if (subject == null || subject.isEmpty() || claims.getExpiration() == null) {
+                return Optional.empty();
+            }
+            VerifiedToken verified = new VerifiedToken(subject, claims.get("roles", String.class),
+                    claims.getExpiration().toInstant());
+            verifiedTokens.put(cacheKey, verified);
+            return Optional.of(verified);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Invalid jwt token: {}", e.getMessage());
+            return Optional.empty();
+        }
     }
 
     /**
@@ -40,23 +143,14 @@ public class JwtUtil {
      * 解析 Token 获取 Claims
      */
     public Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     /**
      * 校验 Token 是否有效
      */
     public boolean isTokenValid(String token) {
-        try {
-            final String subject = getClaims(token).getSubject();
-            return !subject.isEmpty() && !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
-        }
+        return verify(token).isPresent();
     }
 
     public String extractToken(String authorization){
@@ -66,16 +160,11 @@ public class JwtUtil {
         return null;
     }
 
-    /**
-     * 判断是否过期
-     */
-    private boolean isTokenExpired(String token) {
-        return getExpirationDate(token).before(new Date());
-    }
-
     // 获取过期时间
     public Date getExpirationDate(String token) {
-        return getClaims(token).getExpiration();
+        return verify(token)
+                .map(verified -> Date.from(verified.expiration()))
+                .orElseGet(() -> getClaims(token).getExpiration());
     }
 
     public int getDefaultExpirationMinutes(){
@@ -98,4 +187,14 @@ public class JwtUtil {
         return isTokenExpiringWithin(token, jwtProperties.getRenewThresholdMinutes());
     }
 
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // 每个 JRE 都必须提供 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
@@ -4,11 +4,28 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
 import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.GeoOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -25,11 +42,85 @@ public class RedisUtil {
         redisTemplate.opsForValue().set(key, value, timeout, unit);
     }
 
+    /**
+     * key 不存在时设置值 + 过期时间（SET NX PX），可用作带过期时间的互斥锁
+     * @return 是否设置成功
+     */
+    public boolean setIfAbsent(String key, String value, long timeout, TimeUnit unit) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout, unit));
+    }
+
     public void setGeo(String key, Point point, String name){
         GeoOperations<String, String> geoOps = redisTemplate.opsForGeo();
         geoOps.add(key, point, name);
     }
 
+    /**
+     * 批量重建多个 GEO key：每个 key 先写入临时 key 再 RENAME 覆盖，通过 pipeline 一次往返；
+     * 不在新数据中的旧成员随之消失，读取方不会看到写了一半的 key
+     * @param locationsByKey key -> (member -> 坐标)，成员不能为空
+     */
+    public void geoReplaceAll(Map<String, Map<String, Point>> locationsByKey) {
+        if (locationsByKey.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        String suffix = ":tmp:" + UUID.randomUUID();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            locationsByKey.forEach((key, locations) -> {
+                byte[] rawTmpKey = serializer.serialize(key + suffix);
+                Map<byte[], Point> members = new HashMap<>();
+                locations.forEach((member, point) -> members.put(serializer.serialize(member), point));
+                connection.geoCommands().geoAdd(rawTmpKey, members);
+                connection.keyCommands().rename(rawTmpKey, serializer.serialize(key));
+            });
+            return null;
+        });
+    }
+
+    /**
+     * 从 GEO key 中删除成员
+     */
+    public void geoRemove(String key, String... members) {
+        redisTemplate.opsForGeo().remove(key, (Object[]) members);
+    }
+
+    /**
+     * 对多个 GEO key 执行同一个半径查询，通过 pipeline 一次往返，结果顺序与 keys 一致
+     */
+    public List<GeoResults<RedisGeoCommands.GeoLocation<String>>> geoRadiusAll(List<String> keys, Circle within,
+                                                                            RedisGeoCommands.GeoRadiusCommandArgs args) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> connection.geoCommands().geoRadius(serializer.serialize(key), within, args));
+            return null;
+        });
+        return results.stream().map(result -> toStringGeoResults(result, serializer)).toList();
+    }
+
+    /**
+     * pipeline 返回的 GEO 结果成员名是原始字节，转换为字符串
+     */
+    @SuppressWarnings("unchecked")
+    private GeoResults<RedisGeoCommands.GeoLocation<String>> toStringGeoResults(Object result, RedisSerializer<String> serializer) {
+        if (!(result instanceof GeoResults<?> raw)) {
+            return new GeoResults<>(List.of());
+        }
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> content = ((GeoResults<RedisGeoCommands.GeoLocation<Object>>) raw)
+                .getContent().stream()
+                .map(geoResult -> {
+                    Object name = geoResult.getContent().getName();
+                    String member = name instanceof byte[] bytes ? serializer.deserialize(bytes) : String.valueOf(name);
+                    return new GeoResult<>(new RedisGeoCommands.GeoLocation<>(member, geoResult.getContent().getPoint()),
+                            geoResult.getDistance());
+                })
+                .toList();
+        return new GeoResults<>(content, raw.getAverageDistance());
+    }
+
     /**
      * 设置字符串值（永不过期）
      */
@@ -44,6 +135,202 @@ public class RedisUtil {
         return redisTemplate.opsForValue().get(key);
     }
 
+    /**
+     * 批量获取字符串值，一次 MGET，不存在的 key 对应位置为 null
+     */
+    public List<String> multiGet(Collection<String> keys) {
+        return redisTemplate.opsForValue().multiGet(keys);
+    }
+
+    /**
+     * 批量设置字符串值 + 过期时间，通过 pipeline 一次往返
+     */
+    public void multiSet(Map<String, String> values, long timeout, TimeUnit unit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> connection.stringCommands().set(
+                    serializer.serialize(key),
+                    serializer.serialize(value),
+                    Expiration.from(timeout, unit),
+                    RedisStringCommands.SetOption.upsert()));
+            return null;
+        });
+    }
+
+    /**
+     * 批量设置过期时间，通过 pipeline 一次往返；不存在的 key 不受影响
+     */
+    public void expireAll(Collection<String> keys, long timeout, TimeUnit unit) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        long seconds = unit.toSeconds(timeout);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> connection.keyCommands().expire(serializer.serialize(key), seconds));
+            return null;
+        });
+    }
+
+    /**
+     * 执行 Lua 脚本，脚本内的多条命令在一次往返中原子执行
+     */
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return redisTemplate.execute(script, keys, args);
+    }
+
+    /**
+     * 在一个 pipeline 中对多组 KEYS/ARGV 执行同一个 Lua 脚本，忽略返回值；
+     * pipeline 中无法在 NOSCRIPT 后重试 EVALSHA，因此发送脚本正文
+     * @param keys 每次执行的 KEYS
+     * @param args 每次执行的 ARGV，与 keys 一一对应
+     */
+    public void executeAll(RedisScript<?> script, List<List<String>> keys, List<List<String>> args) {
+        if (keys.size() != args.size()) {
+            throw new IllegalArgumentException("keys and args must have the same size");
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        byte[] rawScript = serializer.serialize(script.getScriptAsString());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                List<byte[]> keysAndArgs = new ArrayList<>();
+                keys.get(i).forEach(key -> keysAndArgs.add(serializer.serialize(key)));
+                args.get(i).forEach(arg -> keysAndArgs.add(serializer.serialize(arg)));
+                connection.scriptingCommands().eval(rawScript, ReturnType.INTEGER, keys.get(i).size(),
+                        keysAndArgs.toArray(byte[][]::new));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 获取 hash 中的单个字段
+     */
+    public String hashGet(String key, String field) {
+        return redisTemplate.<String, String>opsForHash().get(key, field);
+    }
+
+    /**
+     * 获取整个 hash，key 不存在返回空 Map
+     */
+    public Map<String, String> hashGetAll(String key) {
+        return redisTemplate.<String, String>opsForHash().entries(key);
+    }
+
+    /**
+     * 批量获取多个 hash，通过 pipeline 一次往返，结果顺序与 keys 一致
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, String>> multiHashGetAll(List<String> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> connection.hashCommands().hGetAll(serializer.serialize(key)));
+            return null;
+        });
+        return results.stream().map(result -> (Map<String, String>) result).toList();
+    }
+
+    /**
+     * 删除 hash 中的字段，key 不存在时不处理
+     */
+    public void hashDelete(String key, String... fields) {
+        redisTemplate.opsForHash().delete(key, (Object[]) fields);
+    }
+
+    /**
+     * 向 sorted set 添加或更新成员
+     */
+    public void zAdd(String key, String member, double score) {
+        redisTemplate.opsForZSet().add(key, member, score);
+    }
+
+    /**
+     * 从 sorted set 删除成员，key 不存在时不处理
+     */
+    public void zRemove(String key, String... members) {
+        redisTemplate.opsForZSet().remove(key, (Object[]) members);
+    }
+
+    /**
+     * 整体替换 sorted set：先 pipeline 写入临时 key，再 RENAME 原子切换，读取方不会看到写了一半的数据
+     */
+    public void zReplaceAll(String key, Map<String, Double> members) {
+        if (members.isEmpty()) {
+            redisTemplate.delete(key);
+            return;
+        }
+        String tmpKey = key + ":tmp:" + UUID.randomUUID();
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        byte[] rawTmpKey = serializer.serialize(tmpKey);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            members.forEach((member, score) -> connection.zSetCommands().zAdd(rawTmpKey, score, serializer.serialize(member)));
+            return null;
+        });
+        redisTemplate.rename(tmpKey, key);
+    }
+
+    /**
+     * 按分数从高到低取 score >= min 的一页成员，O(log n + offset + count)
+     */
+    public List<String> zReverseRangeByScore(String key, double min, long offset, long count) {
+        Set<String> members = redisTemplate.opsForZSet().reverseRangeByScore(key, min, Double.POSITIVE_INFINITY, offset, count);
+        return members == null ? List.of() : List.copyOf(members);
+    }
+
+    /**
+     * score 在 [min, max] 内的成员数，O(log n)
+     */
+    public long zCount(String key, double min, double max) {
+        Long count = redisTemplate.opsForZSet().count(key, min, max);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 向 set 添加成员
+     */
+    public void addToSet(String key, String... members) {
+        redisTemplate.opsForSet().add(key, members);
+    }
+
+    /**
+     * 从 set 删除成员
+     */
+    public void removeFromSet(String key, String... members) {
+        redisTemplate.opsForSet().remove(key, (Object[]) members);
+    }
+
+    /**
+     * set 的全部成员，set 不存在返回空集合
+     */
+    public Set<String> getSetMembers(String key) {
+        Set<String> members = redisTemplate.opsForSet().members(key);
+        return members == null ? Set.of() : members;
+    }
+
+    /**
+     * 从 set 中随机弹出最多 count 个成员，set 不存在返回空列表
+     */
+    public List<String> popFromSet(String key, long count) {
+        List<String> members = redisTemplate.opsForSet().pop(key, count);
+        return members == null ? List.of() : members;
+    }
+
+    /**
+     * 发布 pub/sub 消息
+     */
+    public void publish(String channel, String message) {
+        redisTemplate.convertAndSend(channel, message);
+    }
+
     /**
      * 判断 key 是否存在
      */
@@ -73,6 +360,15 @@ public class RedisUtil {
         redisTemplate.delete(key);
     }
 
+    /**
+     * 一条 DEL 删除多个 key
+     */
+    public void deleteAll(Collection<String> keys) {
+        if (!keys.isEmpty()) {
+            redisTemplate.delete(keys);
+        }
+    }
+
     /**
      * 自增（适用于计数器）
      */
@@ -87,6 +383,17 @@ public class RedisUtil {
         return redisTemplate.opsForValue().decrement(key);
     }
 
+    /**
+     * 序列化为 JSON，失败时抛出异常，调用方不会在缺少数据的情况下继续写入
+     */
+    public String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException("JSON serialization failed: " + value.getClass().getName(), e);
+        }
+    }
+
     public <T> void setJson(String key, T value, long timeout, TimeUnit unit) {
         try {
             String json = objectMapper.writeValueAsString(value);
@@ -0,0 +1,146 @@
+package nus.iss.se.common.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchLoaderTest {
+
+    /** 每次 batchFunction 调用收到的 id */
+    private final List<List<Integer>> calls = Collections.synchronizedList(new ArrayList<>());
+    private BatchLoader<Integer, String> loader;
+
+    @AfterEach
+    void close() {
+        if (loader != null) {
+            loader.close();
+        }
+    }
+
+    @Test
+    void testLoad_CoalescesConcurrentRequestsIntoOneCall() {
+        loader = BatchLoader.of("test", recording(this::names), Duration.ofMillis(50), 100);
+
+        CompletableFuture<String> first = loader.load(1);
+        CompletableFuture<String> second = loader.load(2);
+        CompletableFuture<String> duplicate = loader.load(1);
+
+        assertSame(first, duplicate);
+        assertEquals("bag-1", first.join());
+        assertEquals("bag-2", second.join());
+        assertEquals(List.of(List.of(1, 2)), calls);
+    }
+
+    @Test
+    void testLoad_MaxBatchSizeFlushesWithoutWaitingForWindow() {
+        loader = BatchLoader.of("test", recording(this::names), Duration.ofMinutes(1), 3);
+
+        Map<Integer, String> result = loader.getAll(List.of(1, 2, 3));
+
+        assertEquals(Map.of(1, "bag-1", 2, "bag-2", 3, "bag-3"), result);
+        assertEquals(List.of(List.of(1, 2, 3)), calls);
+    }
+
+    @Test
+    void testLoad_FlushesAfterWindow() {
+        loader = BatchLoader.of("test", recording(this::names), Duration.ofMillis(30), 100);
+
+        long start = System.nanoTime();
+        assertEquals("bag-7", loader.get(7));
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(List.of(List.of(7)), calls);
+    }
+
+    @Test
+    void testGet_MissingIdIsNull() {
+        loader = BatchLoader.of("test", recording(ids -> Map.of()), Duration.ofMillis(5), 100);
+
+        assertNull(loader.get(1));
+        assertTrue(loader.getAll(List.of(1, 2)).isEmpty());
+    }
+
+    @Test
+    void testLoad_BatchFailureOnlyFailsTheBrokenId() {
+        loader = BatchLoader.of("test", recording(ids -> {
+            if (ids.contains(2)) {
+                throw new IllegalArgumentException("bad id 2");
+            }
+            return names(ids);
+        }), Duration.ofMinutes(1), 3);
+
+        CompletableFuture<String> one = loader.load(1);
+        CompletableFuture<String> two = loader.load(2);
+        CompletableFuture<String> three = loader.load(3);
+
+        assertEquals("bag-1", one.join());
+        assertEquals("bag-3", three.join());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> two.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        // 一次批量调用 + 三次逐个重试
+        assertEquals(4, calls.size());
+    }
+
+    @Test
+    void testGet_SingleFailureIsRethrownAndNotCached() {
+        loader = BatchLoader.of("test", recording(ids -> {
+            if (calls.size() == 1) {
+                throw new IllegalStateException("downstream unavailable");
+            }
+            return names(ids);
+        }), Duration.ofMillis(5), 100);
+
+        assertThrows(IllegalStateException.class, () -> loader.get(1));
+        assertEquals("bag-1", loader.get(1));
+    }
+
+    @Test
+    void testGet_TimesOutAndNextRequestQueriesAgain() {
+        CountDownLatch release = new CountDownLatch(1);
+        loader = BatchLoader.of("test", recording(ids -> {
+            if (calls.size() == 1) {
+                await(release);
+            }
+            return names(ids);
+        }), Duration.ofMillis(5), 100, Duration.ofMillis(100));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> loader.get(1));
+        assertTrue(e.getMessage().contains("timed out"));
+
+        assertEquals("bag-1", loader.get(1));
+        assertEquals(2, calls.size());
+        release.countDown();
+    }
+
+    private Function<List<Integer>, Map<Integer, String>> recording(Function<List<Integer>, Map<Integer, String>> function) {
+        return ids -> {
+            calls.add(List.copyOf(ids));
+            return function.apply(ids);
+        };
+    }
+
+    private Map<Integer, String> names(List<Integer> ids) {
+        return ids.stream().collect(Collectors.toMap(Function.identity(), id -> "bag-" + id));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package nus.iss.se.common.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import nus.iss.se.common.util.RedisUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 会话轮换脚本在真实 Redis 上的行为，没有 Docker 时跳过
+ * 耗时对比受机器负载影响，只在 -Dbenchmark=true 时运行
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class TokenCacheServiceRedisTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenCacheServiceRedisTest.class);
+
+    private static final int TIMING_LOGINS = 2_000;
+    private static final int TIMING_USERS = 50;
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private RedisUtil redisUtil;
+    private TokenCacheService tokenCacheService;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setup() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        redisUtil = new RedisUtil(redisTemplate, objectMapper);
+        tokenCacheService = new TokenCacheService(redisUtil);
+    }
+
+    @Test
+    void testSaveToken_RotatesSession() throws Exception {
+        tokenCacheService.saveToken("alice", "t1", 30, user("alice"));
+        tokenCacheService.saveToken("alice", "t2", 30, user("alice"));
+
+        assertFalse(tokenCacheService.isTokenValid("t1"));
+        assertTrue(tokenCacheService.isTokenValid("t2"));
+        assertEquals("alice", tokenCacheService.getUsername("t2"));
+        assertEquals("t2", redisTemplate.opsForValue().get("auth:user:alice"));
+        UserContext cached = objectMapper.readValue(
+                redisTemplate.opsForValue().get(UserCacheService.getCacheKey("alice")), UserContext.class);
+        assertEquals("alice", cached.getUsername());
+        long ttl = redisTemplate.getExpire("auth:token:t2", TimeUnit.SECONDS);
+        assertTrue(ttl > 29 * 60 && ttl <= 30 * 60);
+    }
+
+    @Test
+    void testSaveToken_SameTokenTwiceKeepsIt() {
+        tokenCacheService.saveToken("alice", "t1", 30);
+        tokenCacheService.saveToken("alice", "t1", 30);
+
+        assertTrue(tokenCacheService.isTokenValid("t1"));
+        assertNull(redisTemplate.opsForValue().get(UserCacheService.getCacheKey("alice")));
+    }
+
+    @Test
+    void testSaveToken_RetriesWhenConcurrentLoginWonTheRace() {
+        tokenCacheService.saveToken("alice", "t1", 30);
+        // 第一次读取到的是已经被并发登录替换掉的旧值
+        RedisUtil staleReader = spy(redisUtil);
+        doReturn("t0").doCallRealMethod().when(staleReader).get("auth:user:alice");
+
+        new TokenCacheService(staleReader).saveToken("alice", "t2", 30);
+
+        verify(staleReader, times(2)).get("auth:user:alice");
+        assertFalse(tokenCacheService.isTokenValid("t1"));
+        assertTrue(tokenCacheService.isTokenValid("t2"));
+    }
+
+    /**
+     * 对比原来逐条命令的六次往返和 GET + 脚本两次往返的登录耗时
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void testSaveToken_FasterThanCommandByCommand() {
+        UserContext user = user("warmup");
+        for (int i = 0; i < 200; i++) {
+            tokenCacheService.saveToken("warmup", "w" + i, 30, user);
+            saveTokenCommandByCommand("warmup", "v" + i, user);
+        }
+
+        long scriptStart = System.nanoTime();
+        for (int i = 0; i < TIMING_LOGINS; i++) {
+            String username = "user" + (i % TIMING_USERS);
+            tokenCacheService.saveToken(username, "s" + i, 30, user(username));
+        }
+        long scriptNanos = System.nanoTime() - scriptStart;
+
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < TIMING_LOGINS; i++) {
+            String username = "legacy" + (i % TIMING_USERS);
+            saveTokenCommandByCommand(username, "l" + i, user(username));
+        }
+        long legacyNanos = System.nanoTime() - legacyStart;
+
+        log.info("session rotation: script {}us/login, command-by-command {}us/login",
+                String.format("%.1f", scriptNanos / 1000.0 / TIMING_LOGINS),
+                String.format("%.1f", legacyNanos / 1000.0 / TIMING_LOGINS));
+        assertTrue(scriptNanos < legacyNanos, "script " + scriptNanos + "ns, legacy " + legacyNanos + "ns");
+    }
+
+    /**
+     * 优化前的登录写法：GET + 2*DEL + 3*SET
+     */
+    private void saveTokenCommandByCommand(String username, String token, UserContext user) {
+        String old = redisTemplate.opsForValue().get("auth:user:" + username);
+        if (old != null) {
+            redisTemplate.delete("auth:token:" + old);
+            redisTemplate.delete("auth:user:" + username);
+        }
+        redisTemplate.opsForValue().set("auth:token:" + token, username, 30, TimeUnit.MINUTES);
+        redisTemplate.opsForValue().set("auth:user:" + username, token, 30, TimeUnit.MINUTES);
+        redisUtil.setJson(UserCacheService.getCacheKey(username), user,
+                UserCacheService.USER_CACHE_TTL.getSeconds(), TimeUnit.SECONDS);
+    }
+
+    private static UserContext user(String username) {
+        UserContext user = new UserContext();
+        user.setId(1);
+        user.setUsername(username);
+        user.setRole("user");
+        return user;
+    }
+}
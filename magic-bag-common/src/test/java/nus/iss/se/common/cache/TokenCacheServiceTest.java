@@ -0,0 +1,28 @@
+package nus.iss.se.common.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nus.iss.se.common.util.RedisUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenCacheServiceTest {
+
+    @Test
+    void testSaveToken_SerializationFailureAbortsLogin() throws JsonProcessingException {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ObjectMapper objectMapper = mock(ObjectMapper.class);
+        when(objectMapper.writeValueAsString(any())).thenThrow(new JsonProcessingException("boom") {});
+        TokenCacheService tokenCacheService = new TokenCacheService(new RedisUtil(redisTemplate, objectMapper));
+
+        assertThrows(IllegalStateException.class,
+                () -> tokenCacheService.saveToken("alice", "t1", 30, new UserContext()));
+
+        // 不会在缺少用户上下文的情况下写入 token
+        verifyNoInteractions(redisTemplate);
+    }
+}
@@ -0,0 +1,136 @@
+package nus.iss.se.common.cache;
+
+import nus.iss.se.common.constant.RedisChannel;
+import nus.iss.se.common.util.RedisUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserCacheServiceTest {
+
+    private static final String USERNAME = "alice";
+    private static final String KEY = UserCacheService.getCacheKey(USERNAME);
+
+    private RedisUtil redisUtil;
+    private RedisMessageListenerContainer listenerContainer;
+    private UserCacheService userCacheService;
+
+    @BeforeEach
+    void setup() {
+        redisUtil = mock(RedisUtil.class);
+        listenerContainer = mock(RedisMessageListenerContainer.class);
+        userCacheService = new UserCacheService(redisUtil, listenerContainer);
+        userCacheService.init();
+        when(redisUtil.getJson(KEY, UserContext.class)).thenReturn(user());
+    }
+
+    @AfterEach
+    void teardown() {
+        userCacheService.shutdown();
+    }
+
+    @Test
+    void testGetCachedUser_LocalHitSkipsRedis() {
+        assertEquals(USERNAME, userCacheService.getCachedUser(USERNAME).getUsername());
+        assertEquals(USERNAME, userCacheService.getCachedUser(USERNAME).getUsername());
+
+        verify(redisUtil, times(1)).getJson(KEY, UserContext.class);
+    }
+
+    @Test
+    void testCacheUser_WritesRedisAndBroadcastsInvalidation() {
+        userCacheService.getCachedUser(USERNAME);
+
+        userCacheService.cacheUser(user());
+
+        verify(redisUtil).setJson(eq(KEY), any(UserContext.class),
+                eq(UserCacheService.USER_CACHE_TTL.getSeconds()), eq(TimeUnit.SECONDS));
+        verify(redisUtil).publish(RedisChannel.USER_CACHE_INVALIDATED.getCode(), USERNAME);
+        // 本实例的 L1 立即清除
+        userCacheService.getCachedUser(USERNAME);
+        verify(redisUtil, times(2)).getJson(KEY, UserContext.class);
+    }
+
+    @Test
+    void testDeleteUserCache_DeletesRedisAndBroadcastsInvalidation() {
+        userCacheService.getCachedUser(USERNAME);
+
+        userCacheService.deleteUserCache(USERNAME);
+
+        verify(redisUtil).delete(KEY);
+        verify(redisUtil).publish(RedisChannel.USER_CACHE_INVALIDATED.getCode(), USERNAME);
+        userCacheService.getCachedUser(USERNAME);
+        verify(redisUtil, times(2)).getJson(KEY, UserContext.class);
+    }
+
+    @Test
+    void testInvalidationMessage_EvictsLocalCache() {
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listener.capture(), any(Topic.class));
+        userCacheService.getCachedUser(USERNAME);
+
+        listener.getValue().onMessage(new DefaultMessage(
+                RedisChannel.USER_CACHE_INVALIDATED.getCode().getBytes(StandardCharsets.UTF_8),
+                USERNAME.getBytes(StandardCharsets.UTF_8)), null);
+
+        userCacheService.getCachedUser(USERNAME);
+        verify(redisUtil, times(2)).getJson(KEY, UserContext.class);
+        verify(redisUtil, never()).publish(anyString(), anyString());
+    }
+
+    @Test
+    void testRenewal_BatchedAndAtMostOncePerThreshold() {
+        when(redisUtil.getJson(UserCacheService.getCacheKey("bob"), UserContext.class)).thenReturn(user());
+        for (int i = 0; i < 5; i++) {
+            userCacheService.getCachedUser(USERNAME);
+            userCacheService.getCachedUser("bob");
+        }
+
+        userCacheService.flushRenewals();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(redisUtil, times(1)).expireAll(keys.capture(),
+                eq(UserCacheService.USER_CACHE_TTL.getSeconds()), eq(TimeUnit.SECONDS));
+        assertEquals(2, keys.getValue().size());
+        assertTrue(keys.getValue().containsAll(List.of(KEY, UserCacheService.getCacheKey("bob"))));
+
+        // 30 分钟内再次访问不再续期
+        userCacheService.getCachedUser(USERNAME);
+        userCacheService.flushRenewals();
+        verify(redisUtil, times(1)).expireAll(anyCollection(), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    void testRenewal_MissingUserNotRenewedAndFailureSwallowed() {
+        userCacheService.getCachedUser("ghost");
+        userCacheService.flushRenewals();
+        verify(redisUtil, never()).expireAll(anyCollection(), anyLong(), any(TimeUnit.class));
+
+        userCacheService.getCachedUser(USERNAME);
+        doThrow(new IllegalStateException("redis down")).when(redisUtil)
+                .expireAll(anyCollection(), anyLong(), any(TimeUnit.class));
+        assertDoesNotThrow(() -> userCacheService.flushRenewals());
+    }
+
+    private static UserContext user() {
+        UserContext user = new UserContext();
+        user.setId(1);
+        user.setUsername(USERNAME);
+        user.setRole("user");
+        return user;
+    }
+}
@@ -0,0 +1,110 @@
+package nus.iss.se.common.util;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import nus.iss.se.common.properties.JwtProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "magic-bag-test-secret-0123456789-abcdefghij";
+    private static final String ROTATED_SECRET = "magic-bag-rotated-secret-9876543210-zyxwvuts";
+
+    private JwtProperties properties;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setup() {
+        properties = new JwtProperties();
+        properties.setSecret(SECRET);
+        properties.setExpireMinutes(60);
+        properties.setRenewThresholdMinutes(10);
+        jwtUtil = new JwtUtil(properties);
+    }
+
+    @Test
+    void testVerify_ValidTokenIsCachedWithClaims() {
+        String token = jwtUtil.generateAuthToken("alice", "user");
+
+        Optional<JwtUtil.VerifiedToken> first = jwtUtil.verify(token);
+        Optional<JwtUtil.VerifiedToken> second = jwtUtil.verify(token);
+
+        assertTrue(first.isPresent());
+        assertEquals("alice", first.get().subject());
+        assertEquals("user", first.get().role());
+        assertSame(first.get(), second.orElseThrow());
+    }
+
+    @Test
+    void testVerify_ExpiredTokenNotServedFromCache() throws InterruptedException {
+        // exp 以秒为单位，签发时至少还有 1ms 有效
+        String token = sign(SECRET, "alice", new Date(System.currentTimeMillis() + 1000));
+        JwtUtil.VerifiedToken verified = jwtUtil.verify(token).orElseThrow();
+
+        long wait = verified.expiration().toEpochMilli() - System.currentTimeMillis() + 100;
+        Thread.sleep(Math.max(wait, 0));
+
+        assertTrue(jwtUtil.verify(token).isEmpty());
+        assertFalse(jwtUtil.isTokenValid(token));
+    }
+
+    @Test
+    void testVerify_TamperedSignatureRejected() {
+        String token = jwtUtil.generateAuthToken("alice", "user");
+        assertTrue(jwtUtil.verify(token).isPresent());
+
+        int signatureStart = token.lastIndexOf('.') + 1;
+        char replaced = token.charAt(signatureStart) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, signatureStart) + replaced + token.substring(signatureStart + 1);
+
+        assertTrue(jwtUtil.verify(tampered).isEmpty());
+        assertTrue(jwtUtil.verify(sign(ROTATED_SECRET, "alice", new Date(System.currentTimeMillis() + 60_000))).isEmpty());
+    }
+
+    @Test
+    void testVerify_TamperedPayloadRejected() {
+        String token = jwtUtil.generateAuthToken("alice", "user");
+        String[] parts = token.split("\\.");
+        String forged = sign(SECRET, "mallory", new Date(System.currentTimeMillis() + 60_000)).split("\\.")[1];
+
+        assertTrue(jwtUtil.verify(parts[0] + "." + forged + "." + parts[2]).isEmpty());
+    }
+
+    @Test
+    void testOnRefresh_RebuildsKeyAndDropsCachedTokens() {
+        String oldToken = jwtUtil.generateAuthToken("alice", "user");
+        assertTrue(jwtUtil.verify(oldToken).isPresent());
+
+        properties.setSecret(ROTATED_SECRET);
+        jwtUtil.onRefresh();
+
+        assertTrue(jwtUtil.verify(oldToken).isEmpty());
+        String newToken = jwtUtil.generateAuthToken("alice", "user");
+        assertEquals("alice", jwtUtil.verify(newToken).orElseThrow().subject());
+        assertTrue(jwtUtil.verify(sign(ROTATED_SECRET, "bob", new Date(System.currentTimeMillis() + 60_000))).isPresent());
+    }
+
+    @Test
+    void testVerify_BlankOrMalformedToken() {
+        assertTrue(jwtUtil.verify(null).isEmpty());
+        assertTrue(jwtUtil.verify(" ").isEmpty());
+        assertTrue(jwtUtil.verify("not.a.jwt").isEmpty());
+    }
+
+    private static String sign(String secret, String subject, Date expiration) {
+        return Jwts.builder()
+                .setSubject(subject)
+                .claim("roles", "user")
+                .setIssuedAt(new Date())
+                .setExpiration(expiration)
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+}
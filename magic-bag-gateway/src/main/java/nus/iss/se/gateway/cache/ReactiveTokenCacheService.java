@@ -0,0 +1,101 @@
+package nus.iss.se.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisChannel;
+import nus.iss.se.common.constant.RedisPrefix;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 网关专用的 token 状态查询，基于 ReactiveStringRedisTemplate，不阻塞 Netty 事件循环线程。
+ * 查询结果在本地短暂缓存；auth 服务登出/重新登录时通过 redis pub/sub 推送被撤销的 token，
+ * 收到后立即清掉本地缓存，保证登出在一秒内生效。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReactiveTokenCacheService {
+    /** 有效 token 的本地缓存时间，撤销依赖 pub/sub 主动清除，这里只是兜底 */
+    private static final Duration VALID_TTL = Duration.ofSeconds(5);
+    /** 无效 token 只缓存很短时间，避免同一秒内重新签发的相同 token 被误判 */
+    private static final Duration INVALID_TTL = Duration.ofSeconds(1);
+    private static final long MAX_SIZE = 50_000;
+
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    private final Cache<String, Boolean> localCache = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfter(new Expiry<String, Boolean>() {
+                @Override
+                public long expireAfterCreate(String token, Boolean valid, long currentTime) {
+                    return (Boolean.TRUE.equals(valid) ? VALID_TTL : INVALID_TTL).toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String token, Boolean valid, long currentTime, long currentDuration) {
+                    return expireAfterCreate(token, valid, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String token, Boolean valid, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    /** 每收到一次撤销加一，查询期间发生过撤销的结果不写入本地缓存 */
+    private final AtomicLong revocationVersion = new AtomicLong();
+
+    private Disposable subscription;
+
+    @PostConstruct
+    public void subscribeRevocation() {
+        subscription = reactiveRedisTemplate.listenToChannel(RedisChannel.AUTH_TOKEN_REVOKED.getCode())
+                // (重新)订阅成功前可能漏掉了撤销消息，清空本地缓存
+                .doOnSubscribe(s -> localCache.invalidateAll())
+                .doOnNext(message -> {
+                    revocationVersion.incrementAndGet();
+                    localCache.invalidate(message.getMessage());
+                })
+                .doOnError(e -> log.warn("Token revocation subscription error: {}", e.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void unsubscribeRevocation() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * 检查 Token 是否有效（存在且未被撤销）
+     */
+    public Mono<Boolean> isTokenValid(String token) {
+        Boolean cached = localCache.getIfPresent(token);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        long version = revocationVersion.get();
+        return reactiveRedisTemplate.hasKey(RedisPrefix.AUTH_TOKEN.getCode() + token)
+                .defaultIfEmpty(false)
+                .doOnNext(valid -> {
+                    if (revocationVersion.get() == version) {
+                        localCache.put(token, valid);
+                    }
+                });
+    }
+}
@@ -1,11 +1,16 @@
 package nus.iss.se.gateway.config;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
-import java.util.ArrayList;
-import java.util.List;
+
+import java.util.*;
 
 /**
  * 网关白名单配置（支持Nacos动态刷新）
@@ -22,37 +27,150 @@ public class WhiteListConfig {
     private List<String> paths = new ArrayList<>();
 
     /**
-     * 判断路径是否在白名单中（支持通配符匹配）
+     * 由 paths 预编译的匹配器，配置绑定（setter）或配置中心刷新时整体替换
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Matcher matcher = Matcher.compile(paths);
+
+    public void setPaths(List<String> paths) {
+        this.paths = paths == null ? new ArrayList<>() : paths;
+        this.matcher = Matcher.compile(this.paths);
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onRefresh() {
+        this.matcher = Matcher.compile(paths);
+    }
+
+    /**
+     * 判断路径是否在白名单中，语义与 AntPathMatcher 一致（支持 /** 和单级 *）
      * @param path 请求路径
      * @return 是否在白名单中
      */
     public boolean isWhitelisted(String path) {
-        if (paths.isEmpty()) {
-            return false;
-        }
-        // 支持简单的通配符匹配，如 /api/public/** 匹配所有子路径
-        return paths.stream().anyMatch(pattern -> pathMatch(pattern, path));
+        return matcher.matches(path);
     }
 
     /**
-     * 路径匹配逻辑（支持**通配符）
+     * 预编译的白名单：
+     * 精确路径放在 HashSet；/** 前缀放在字符前缀树，只在路径段边界命中；
+     * 含单个 * 的模式按通配符逐字符匹配（* 匹配一级路径，不跨越 /），其中以 /** 结尾的在每个段边界尝试一次。
+     * ** 只支持出现在末尾。
+     * 编译后不再引用 paths，匹配过程不分配对象，耗时与路径长度成正比。
      */
-    private boolean pathMatch(String pattern, String path) {
-        // 精确匹配
-        if (pattern.equals(path)) {
-            return true;
+    static final class Matcher {
+        private final Set<String> exactPaths = new HashSet<>();
+        private final PrefixNode prefixRoot = new PrefixNode();
+        private final List<String> wildcardPatterns = new ArrayList<>();
+        /** 含 * 且以 /** 结尾的模式，去掉 /** 后保存 */
+        private final List<String> wildcardPrefixes = new ArrayList<>();
+        private boolean hasPrefix;
+
+        static Matcher compile(List<String> patterns) {
+            Matcher matcher = new Matcher();
+            for (String pattern : patterns) {
+                if (pattern == null || pattern.isEmpty()) {
+                    continue;
+                }
+                if (pattern.endsWith("/**")) {
+                    String prefix = pattern.substring(0, pattern.length() - 3);
+                    if (prefix.contains("*")) {
+                        matcher.wildcardPrefixes.add(prefix);
+                    } else {
+                        matcher.addPrefix(prefix);
+                    }
+                } else if (pattern.contains("*")) {
+                    matcher.wildcardPatterns.add(pattern);
+                } else {
+                    matcher.exactPaths.add(pattern);
+                }
+            }
+            return matcher;
         }
-        // 处理 **通配符（匹配所有子路径）
-        if (pattern.endsWith("/**")) {
-            String prefix = pattern.substring(0, pattern.length() - 3);
-            return path.startsWith(prefix);
+
+        boolean matches(String path) {
+            if (path == null) {
+                return false;
+            }
+            if (exactPaths.contains(path) || matchesPrefix(path)) {
+                return true;
+            }
+            for (String pattern : wildcardPatterns) {
+                if (matchesWildcard(pattern, path, path.length())) {
+                    return true;
+                }
+            }
+            for (String prefix : wildcardPrefixes) {
+                for (int end = 0; end <= path.length(); end++) {
+                    if ((end == path.length() || path.charAt(end) == '/') && matchesWildcard(prefix, path, end)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void addPrefix(String prefix) {
+            hasPrefix = true;
+            PrefixNode node = prefixRoot;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixNode());
+            }
+            node.terminal = true;
+        }
+
+        private boolean matchesPrefix(String path) {
+            if (!hasPrefix) {
+                return false;
+            }
+            PrefixNode node = prefixRoot;
+            for (int i = 0; ; i++) {
+                // /auth/login/** 匹配 /auth/login 和 /auth/login/...，不匹配 /auth/loginx
+                if (node.terminal && (i == path.length() || path.charAt(i) == '/')) {
+                    return true;
+                }
+                if (i == path.length()) {
+                    return false;
+                }
+                node = node.children.get(path.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
         }
-        // 处理 * 通配符（匹配一级路径）
-        if (pattern.contains("*")) {
-            String regex = pattern.replace("*", "[^/]*");
-            return path.matches(regex);
+
+        /**
+         * 通配符匹配 path 的前 end 个字符，* 匹配任意个非 / 字符；遇到不匹配时回溯到最近一个 *
+         */
+        private static boolean matchesWildcard(String pattern, String path, int end) {
+            int p = 0;
+            int s = 0;
+            int starP = -1;
+            int starS = -1;
+            while (s < end) {
+                if (p < pattern.length() && pattern.charAt(p) == '*') {
+                    starP = p++;
+                    starS = s;
+                } else if (p < pattern.length() && pattern.charAt(p) == path.charAt(s)) {
+                    p++;
+                    s++;
+                } else if (starP >= 0 && path.charAt(starS) != '/') {
+                    p = starP + 1;
+                    s = ++starS;
+                } else {
+                    return false;
+                }
+            }
+            while (p < pattern.length() && pattern.charAt(p) == '*') {
+                p++;
+            }
+            return p == pattern.length();
         }
-        return false;
     }
-}
 
+    private static final class PrefixNode {
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+        private boolean terminal;
+    }
+}
@@ -4,8 +4,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nus.iss.se.common.Result;
 import nus.iss.se.common.constant.ResultStatus;
-import nus.iss.se.common.cache.TokenCacheService;
 import nus.iss.se.common.util.JwtUtil;
+import nus.iss.se.gateway.cache.ReactiveTokenCacheService;
 import nus.iss.se.gateway.config.WhiteListConfig;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
@@ -19,6 +19,8 @@ import reactor.core.publisher.Mono;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.util.Optional;
+
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -27,7 +29,7 @@ public class JwtAuthFilter implements GlobalFilter, Ordered {
     private final JwtUtil jwtUtil;
     private final WhiteListConfig whiteListConfig;
     private final ObjectMapper objectMapper;
-    private final TokenCacheService tokenCacheService;
+    private final ReactiveTokenCacheService tokenCacheService;
 
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
@@ -37,36 +39,40 @@ public class JwtAuthFilter implements GlobalFilter, Ordered {
             return chain.filter(exchange);
         }
 
-        // 2.提取token
+        // 2.提取token（token 是凭证，日志中只记录路径和用户名）
         String authorization = exchange.getRequest().getHeaders().getFirst("Authorization");
-        log.info("Request authorization: {}",authorization);
         if (authorization == null || !authorization.startsWith("Bearer ")){
-            log.info("Invalid Token: {}",authorization);
+            log.info("Missing bearer token: path={}", path);
             return unauthorized(exchange,"Invalid Token");
         }
         String token = authorization.substring(7);
 
 
-        // 3.验证 Token 有效性
-        if (!isValidToken(token)) {
-            log.info("Token is invalid or has expired: {}",token);
+        // 3.验证 Token 有效性，验签只做一次
+        Optional<JwtUtil.VerifiedToken> verified = jwtUtil.verify(token);
+        if (verified.isEmpty()) {
+            log.info("Token is invalid or has expired: path={}", path);
             return unauthorized(exchange, "Token is invalid or has expired");
         }
 
-        // 4.添加用户信息到请求头
-        String username = jwtUtil.getClaims(token).getSubject();
-        exchange = exchange.mutate()
-                .request(r -> r.header("X-Username", username))
-                .build();
-
-        return chain.filter(exchange);
-    }
-
-    /**
-     * 验证jwt token是否过期和用户是否登出（如果用户登出了，remove redis中的token）
-     * */
-    private boolean isValidToken(String token) {
-        return jwtUtil.isTokenValid(token) && tokenCacheService.isTokenValid(token);
+        // 4.检查用户是否登出（登出时 redis 中的 token 被删除），响应式查询不阻塞事件循环
+        String username = verified.get().subject();
+        return tokenCacheService.isTokenValid(token)
+                .onErrorResume(e -> {
+                    log.error("Check token state failed: {}", e.getMessage());
+                    return Mono.just(false);
+                })
+                .flatMap(valid -> {
+                    if (!valid) {
+                        log.info("Token has been revoked: username={}", username);
+                        return unauthorized(exchange, "Token is invalid or has expired");
+                    }
+                    // 5.添加用户信息到请求头
+                    ServerWebExchange authorized = exchange.mutate()
+                            .request(r -> r.header("X-Username", username))
+                            .build();
+                    return chain.filter(authorized);
+                });
     }
 
     /**
@@ -0,0 +1,104 @@
+package nus.iss.se.gateway.cache;
+
+import nus.iss.se.common.constant.RedisChannel;
+import nus.iss.se.common.constant.RedisPrefix;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReactiveTokenCacheServiceTest {
+
+    private static final String TOKEN = "token-1";
+    private static final String KEY = RedisPrefix.AUTH_TOKEN.getCode() + TOKEN;
+
+    private ReactiveStringRedisTemplate redisTemplate;
+    private Sinks.Many<ReactiveSubscription.Message<String, String>> revocations;
+    private ReactiveTokenCacheService tokenCacheService;
+
+    @BeforeEach
+    void setup() {
+        redisTemplate = mock(ReactiveStringRedisTemplate.class);
+        revocations = Sinks.many().multicast().onBackpressureBuffer();
+        doReturn(revocations.asFlux()).when(redisTemplate).listenToChannel(anyString());
+        tokenCacheService = new ReactiveTokenCacheService(redisTemplate);
+        tokenCacheService.subscribeRevocation();
+    }
+
+    @AfterEach
+    void teardown() {
+        tokenCacheService.unsubscribeRevocation();
+    }
+
+    @Test
+    void testIsTokenValid_ValidResultCachedLocally() {
+        when(redisTemplate.hasKey(KEY)).thenReturn(Mono.just(true));
+
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN)).expectNext(true).verifyComplete();
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN)).expectNext(true).verifyComplete();
+
+        verify(redisTemplate, times(1)).hasKey(KEY);
+    }
+
+    @Test
+    void testIsTokenValid_RevokeThenCheck() {
+        when(redisTemplate.hasKey(KEY)).thenReturn(Mono.just(true), Mono.just(false));
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN)).expectNext(true).verifyComplete();
+
+        // auth 服务登出后删除 redis 中的 token 并广播
+        revocations.tryEmitNext(revoked(TOKEN));
+
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN)).expectNext(false).verifyComplete();
+        verify(redisTemplate, times(2)).hasKey(KEY);
+    }
+
+    @Test
+    void testIsTokenValid_RevocationDuringLookupNotCached() {
+        Sinks.One<Boolean> lookup = Sinks.one();
+        when(redisTemplate.hasKey(KEY)).thenReturn(lookup.asMono(), Mono.just(false));
+
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN))
+                .then(() -> {
+                    revocations.tryEmitNext(revoked(TOKEN));
+                    lookup.tryEmitValue(true);
+                })
+                .expectNext(true)
+                .verifyComplete();
+
+        // 查询期间发生过撤销，旧结果没有写入本地缓存
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN)).expectNext(false).verifyComplete();
+        verify(redisTemplate, times(2)).hasKey(KEY);
+    }
+
+    @Test
+    void testIsTokenValid_RedisErrorPropagatedAndNotCached() {
+        when(redisTemplate.hasKey(KEY)).thenReturn(
+                Mono.error(new RedisConnectionFailureException("connection refused")), Mono.just(true));
+
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN))
+                .expectError(RedisConnectionFailureException.class)
+                .verify();
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN)).expectNext(true).verifyComplete();
+
+        verify(redisTemplate, times(2)).hasKey(KEY);
+    }
+
+    @Test
+    void testIsTokenValid_MissingKeyIsInvalid() {
+        when(redisTemplate.hasKey(KEY)).thenReturn(Mono.empty());
+
+        StepVerifier.create(tokenCacheService.isTokenValid(TOKEN)).expectNext(false).verifyComplete();
+    }
+
+    private static ReactiveSubscription.Message<String, String> revoked(String token) {
+        return new ReactiveSubscription.ChannelMessage<>(RedisChannel.AUTH_TOKEN_REVOKED.getCode(), token);
+    }
+}
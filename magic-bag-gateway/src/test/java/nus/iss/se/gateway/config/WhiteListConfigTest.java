@@ -0,0 +1,104 @@
+package nus.iss.se.gateway.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WhiteListConfigTest {
+
+    private static final List<String> PATTERNS = List.of(
+            "/auth/login",
+            "/auth/register/**",
+            "/product/*",
+            "/product/*/detail",
+            "/public/**",
+            "/api/*/docs/**",
+            "/files/*.png");
+
+    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    private WhiteListConfig whiteListConfig;
+
+    @BeforeEach
+    void setup() {
+        whiteListConfig = new WhiteListConfig();
+        whiteListConfig.setPaths(new ArrayList<>(PATTERNS));
+    }
+
+    @ParameterizedTest(name = "{0} -> {1}")
+    @CsvSource({
+            // 精确路径与尾部斜杠
+            "/auth/login, true",
+            "/auth/login/, false",
+            "/auth/login/x, false",
+            // /** 前缀与看起来相似的路径
+            "/auth/register, true",
+            "/auth/register/, true",
+            "/auth/register/a/b, true",
+            "/auth/registerx, false",
+            "/public/x, true",
+            "/publicx, false",
+            // 单级 *
+            "/product/1, true",
+            "/product/, true",
+            "/product, false",
+            "/product/1/2, false",
+            "/product/1/detail, true",
+            "/product/1/detailx, false",
+            "/product/a/b/detail, false",
+            "/files/a.png, true",
+            "/files/a/b.png, false",
+            // * 与 /** 组合
+            "/api/v1/docs, true",
+            "/api/v1/docs/x, true",
+            "/api/v1/v2/docs, false",
+            "/api/v1/docsx, false",
+            "/other, false"
+    })
+    void testIsWhitelisted_AgreesWithAntPathMatcher(String path, boolean expected) {
+        boolean antMatched = PATTERNS.stream().anyMatch(pattern -> antPathMatcher.match(pattern, path));
+
+        assertEquals(expected, antMatched, "AntPathMatcher");
+        assertEquals(expected, whiteListConfig.isWhitelisted(path));
+    }
+
+    @Test
+    void testIsWhitelisted_RootWildcardMatchesEverything() {
+        whiteListConfig.setPaths(List.of("/**"));
+
+        assertTrue(whiteListConfig.isWhitelisted("/"));
+        assertTrue(whiteListConfig.isWhitelisted("/any/path"));
+        assertTrue(antPathMatcher.match("/**", "/any/path"));
+    }
+
+    @Test
+    void testLoginPrefixDoesNotMatchLookAlike() {
+        whiteListConfig.setPaths(List.of("/auth/login/**"));
+
+        for (String path : List.of("/auth/login", "/auth/login/", "/auth/login/sms", "/auth/loginx", "/auth/log")) {
+            assertEquals(antPathMatcher.match("/auth/login/**", path), whiteListConfig.isWhitelisted(path), path);
+        }
+        assertFalse(whiteListConfig.isWhitelisted("/auth/loginx"));
+    }
+
+    @Test
+    void testRecompileOnSetterAndRefreshOnly() {
+        assertFalse(whiteListConfig.isWhitelisted("/health"));
+
+        // 直接修改列表不会影响已编译的匹配器，刷新事件后才生效
+        whiteListConfig.getPaths().add("/health");
+        assertFalse(whiteListConfig.isWhitelisted("/health"));
+        whiteListConfig.onRefresh();
+        assertTrue(whiteListConfig.isWhitelisted("/health"));
+
+        whiteListConfig.setPaths(null);
+        assertFalse(whiteListConfig.isWhitelisted("/auth/login"));
+        assertFalse(whiteListConfig.isWhitelisted(null));
+    }
+}
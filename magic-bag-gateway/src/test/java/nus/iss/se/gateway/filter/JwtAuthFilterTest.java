@@ -0,0 +1,99 @@
+package nus.iss.se.gateway.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nus.iss.se.common.util.JwtUtil;
+import nus.iss.se.gateway.cache.ReactiveTokenCacheService;
+import nus.iss.se.gateway.config.WhiteListConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtAuthFilterTest {
+
+    private JwtUtil jwtUtil;
+    private ReactiveTokenCacheService tokenCacheService;
+    private GatewayFilterChain chain;
+    private JwtAuthFilter filter;
+
+    @BeforeEach
+    void setup() {
+        jwtUtil = mock(JwtUtil.class);
+        tokenCacheService = mock(ReactiveTokenCacheService.class);
+        WhiteListConfig whiteListConfig = mock(WhiteListConfig.class);
+        when(whiteListConfig.isWhitelisted(anyString())).thenReturn(false);
+        chain = mock(GatewayFilterChain.class);
+        when(chain.filter(any())).thenReturn(Mono.empty());
+        filter = new JwtAuthFilter(jwtUtil, whiteListConfig, new ObjectMapper(), tokenCacheService);
+        when(jwtUtil.verify("abc")).thenReturn(Optional.of(
+                new JwtUtil.VerifiedToken("alice", "user", Instant.now().plusSeconds(600))));
+    }
+
+    @Test
+    void testFilter_ValidTokenForwardsUsername() {
+        when(tokenCacheService.isTokenValid("abc")).thenReturn(Mono.just(true));
+        MockServerWebExchange exchange = exchange("Bearer abc");
+
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        ArgumentCaptor<ServerWebExchange> forwarded = ArgumentCaptor.forClass(ServerWebExchange.class);
+        verify(chain).filter(forwarded.capture());
+        assertEquals("alice", forwarded.getValue().getRequest().getHeaders().getFirst("X-Username"));
+    }
+
+    @Test
+    void testFilter_RevokedTokenRejected() {
+        when(tokenCacheService.isTokenValid("abc")).thenReturn(Mono.just(false));
+        MockServerWebExchange exchange = exchange("Bearer abc");
+
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        verify(chain, never()).filter(any());
+    }
+
+    @Test
+    void testFilter_RedisErrorFailsClosed() {
+        when(tokenCacheService.isTokenValid("abc"))
+                .thenReturn(Mono.error(new RedisConnectionFailureException("connection refused")));
+        MockServerWebExchange exchange = exchange("Bearer abc");
+
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        verify(chain, never()).filter(any());
+    }
+
+    @Test
+    void testFilter_MissingBearerRejectedWithoutLookup() {
+        MockServerWebExchange exchange = exchange(null);
+
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        verifyNoInteractions(tokenCacheService);
+    }
+
+    private static MockServerWebExchange exchange(String authorization) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/order/1");
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return MockServerWebExchange.from(request);
+    }
+}
@@ -0,0 +1,54 @@
+package nus.iss.se.kafka.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.DomainEventListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.util.List;
+
+/**
+ * 领域事件分发自动配置：存在 DomainEventHandler Bean 时为其 topic 注册批量监听容器
+ * 每个 topic 同时在途的处理器调用数由 magic-bag.kafka.dispatcher.max-in-flight-per-topic 控制（默认 16）。
+ */
+@AutoConfiguration(after = KafkaAutoConfiguration.class)
+@ConditionalOnBean(DomainEventHandler.class)
+public class KafkaEventDispatcherAutoConfiguration {
+
+    /**
+     * 独立的批量容器工厂，沿用 spring.kafka.listener.* 配置；不影响服务自己的 @KafkaListener
+     * 整批处理完成后才提交 offset
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> domainEventContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer, ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        return factory;
+    }
+
+    @Bean
+    public DomainEventListener domainEventListener(
+            List<DomainEventHandler<?>> handlers,
+            @Qualifier("domainEventContainerFactory") ConcurrentKafkaListenerContainerFactory<Object, Object> containerFactory,
+            ObjectMapper objectMapper,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${magic-bag.kafka.dispatcher.max-in-flight-per-topic:16}") int maxInFlightPerTopic) {
+        return new DomainEventListener(handlers, containerFactory, objectMapper,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new), maxInFlightPerTopic);
+    }
+}
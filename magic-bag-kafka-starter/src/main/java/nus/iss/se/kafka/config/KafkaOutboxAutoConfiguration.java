@@ -0,0 +1,69 @@
+package nus.iss.se.kafka.config;
+
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.outbox.EventOutbox;
+import nus.iss.se.kafka.outbox.JdbcEventOutbox;
+import nus.iss.se.kafka.outbox.OutboxRelay;
+import nus.iss.se.kafka.publisher.EventPublisher;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Kafka 发件箱自动配置
+ * 服务扫描了 KafkaEventPublisher 且有数据源时启用发件箱，publish 改为写 kafka_outbox 表；
+ * 没有数据源的服务（如 auth）仍直接发送。可用 magic-bag.kafka.outbox.enabled=false 关闭。
+ */
+@AutoConfiguration(after = {KafkaAutoConfiguration.class, JdbcTemplateAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class, TransactionAutoConfiguration.class})
+public class KafkaOutboxAutoConfiguration {
+
+    /**
+     * producer 批量参数，只补充配置中心没有设置的项
+     */
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer batchingProducerFactoryCustomizer() {
+        return factory -> {
+            Map<String, Object> defaults = new HashMap<>();
+            defaults.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+            defaults.put(ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024);
+            defaults.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+            defaults.keySet().removeAll(factory.getConfigurationProperties().keySet());
+            factory.updateConfigs(defaults);
+        };
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.jdbc.core.JdbcTemplate")
+    @ConditionalOnBean(value = EventPublisher.class, type = "org.springframework.jdbc.core.JdbcTemplate")
+    @ConditionalOnProperty(prefix = "magic-bag.kafka.outbox", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class JdbcOutboxConfiguration {
+
+        @Bean
+        public OutboxRelay outboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                       KafkaTemplate<String, EventEnvelope> kafkaTemplate) {
+            return new OutboxRelay(jdbcTemplate, new TransactionTemplate(transactionManager), kafkaTemplate);
+        }
+
+        @Bean
+        public EventOutbox eventOutbox(JdbcTemplate jdbcTemplate, OutboxRelay outboxRelay) {
+            return new JdbcEventOutbox(jdbcTemplate, outboxRelay);
+        }
+    }
+}
@@ -1,16 +1,17 @@
-//package nus.iss.se.kafka.listener;
-//
-//
-//import nus.iss.se.kafka.event.DomainEvent;
-//
-//public interface DomainEventHandler<T extends DomainEvent> {
-//    /**
-//     * 处理指定类型的事件
-//     */
-//    void handle(T event);
-//
-//    /**
-//     * 此处理器支持的事件类型
-//     */
-//    String topic();
-//}
+package nus.iss.se.kafka.listener;
+
+import nus.iss.se.kafka.event.EventEnvelope;
+
+/**
+ * 领域事件处理器，配合 @EventHandler 声明 topic
+ * 泛型参数即 EventEnvelope.data 的类型：同一条消息对同一类型只反序列化一次，多个处理器共享；String 时原样传入。
+ * 同一 topic 的消息会并发处理且可能重复投递，实现需幂等。
+ */
+public interface DomainEventHandler<T> {
+    /**
+     * 处理事件；抛出异常时该消息会重新投递（同一消息的其他处理器也可能再次收到）
+     * @param event    反序列化后的 data
+     * @param envelope 原始消息，可取 messageId / timestamp
+     */
+    void handle(T event, EventEnvelope envelope) throws Exception;
+}
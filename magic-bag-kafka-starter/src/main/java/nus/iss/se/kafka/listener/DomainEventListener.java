@@ -1,101 +1,114 @@
-//package nus.iss.se.kafka.listener;
-//
-//import jakarta.annotation.PostConstruct;
-//import jakarta.annotation.PreDestroy;
-//import lombok.RequiredArgsConstructor;
-//import lombok.extern.slf4j.Slf4j;
-//import nus.iss.se.kafka.event.DomainEvent;
-//import org.apache.commons.lang3.exception.ExceptionUtils;
-//import org.springframework.context.ApplicationContext;
-//import org.springframework.stereotype.Component;
-//
-//import java.util.HashMap;
-//import java.util.HashSet;
-//import java.util.Map;
-//import java.util.Set;
-//import java.util.concurrent.ExecutorService;
-//import java.util.concurrent.Executors;
-//
-//@Slf4j
-//@Component
-//@RequiredArgsConstructor
-//public class DomainEventListener {
-//    private final ApplicationContext applicationContext;
-//    private final Map<String , Set<DomainEventHandler<?>>> handlers = new HashMap<>();
-//
-//    // 创建虚拟线程池（每个任务一个虚拟线程）
-//    private final ExecutorService virtualThreadExecutor = Executors.newVirtualThreadPerTaskExecutor();
-//
-//    @PostConstruct
-//    public void init() {
-//        // 扫描所有标记了 @EventHandler 的 Spring Bean
-//        Map<String, Object> beansWithAnnotation =
-//                applicationContext.getBeansWithAnnotation(EventHandler.class);
-//
-//        beansWithAnnotation.forEach((beanName, bean) -> {
-//            if (!(bean instanceof DomainEventHandler)) {
-//                log.warn("{} is @EventHandler but the DomainEventHandler interface has not been implemented",beanName);
-//                return;
-//            }
-//
-//            EventHandler annotation = bean.getClass().getAnnotation(EventHandler.class);
-//            if (!annotation.enabled()) {
-//                // 跳过禁用的处理器
-//                return;
-//            }
-//            String topic = annotation.topic();
-//
-//            @SuppressWarnings("unchecked")
-//            DomainEventHandler<DomainEvent> handler = (DomainEventHandler<DomainEvent>) bean;
-//
-//            handlers.computeIfAbsent(topic, k -> new HashSet<>()).add(handler);
-//            log.info("Auto register kafka event handler: {} -> {}", topic, bean.getClass().getSimpleName());
-//        });
-//
-//        if (handlers.isEmpty()) {
-//            log.warn("未找到任何 @EventHandler 处理器");
-//        }
-//    }
-//
-//    public void consume(DomainEvent event) {
-//        if (event == null) {
-//            return;
-//        }
-//        virtualThreadExecutor.submit(() -> handleEventAsync(event));
-//    }
-//
-//    // 异步处理事件的具体逻辑
-//    private void handleEventAsync(DomainEvent event) {
-//        Set<DomainEventHandler<?>> eventHandlers = handlers.get(event.getTopic());
-//        if (eventHandlers != null && !eventHandlers.isEmpty()){
-//            eventHandlers.forEach(handler -> {
-//                try {
-//                    log.info("开始处理事件 [{}] {} -> {}", event.getMessageId(),
-//                            event.getClass().getSimpleName(),
-//                            event.getTopic());
-//
-//                    @SuppressWarnings("unchecked")
-//                    DomainEventHandler<DomainEvent> typed = (DomainEventHandler<DomainEvent>) handler;
-//                    typed.handle(event);
-//                } catch (Exception e) {
-//                    log.error("处理事件失败 [{}] {} -> {}: {}", event.getMessageId(),
-//                            event.getClass().getSimpleName(), event.getTopic(), ExceptionUtils.getStackTrace(e)); // 打印异常堆栈
-//                    // 重试或记录
-//                }
-//            });
-//        }else {
-//            log.info("无处理器匹配事件 [{}] {} -> {}", event.getMessageId(),
-//                    event.getClass().getSimpleName(),
-//                    event.getTopic());
-//        }
-//    }
-//
-//    @PreDestroy
-//    public void destroy() {
-//        virtualThreadExecutor.shutdown();
-//    }
-//
-//    public Set<String> getRegisteredTopics() {
-//        return handlers.keySet();
-//    }
-//}
+package nus.iss.se.kafka.listener;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 领域事件分发
+ * 启动时收集所有 @EventHandler 标记的 DomainEventHandler Bean，每个 topic 一个批量监听容器（使用默认 group），
+ * 消息按处理器的泛型类型反序列化后处理，同一 key（没有 key 时同一 partition）内按顺序，不同 key 之间在虚拟线程中并发，详见 TopicDispatcher。
+ */
+@Slf4j
+public class DomainEventListener implements SmartLifecycle {
+    private final ConcurrentKafkaListenerContainerFactory<Object, Object> containerFactory;
+    private final Map<String, TopicDispatcher> dispatchers = new LinkedHashMap<>();
+    private final List<ConcurrentMessageListenerContainer<Object, Object>> containers = new ArrayList<>();
+
+    // 创建虚拟线程池（每个任务一个虚拟线程）
+    private final ExecutorService virtualThreadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean running;
+
+    public DomainEventListener(List<DomainEventHandler<?>> handlers,
+                               ConcurrentKafkaListenerContainerFactory<Object, Object> containerFactory,
+                               ObjectMapper objectMapper, MeterRegistry meterRegistry, int maxInFlightPerTopic) {
+        this.containerFactory = containerFactory;
+
+        Map<String, Map<JavaType, List<DomainEventHandler<Object>>>> handlersByTopic = new LinkedHashMap<>();
+        handlers.forEach(handler -> {
+            Class<?> targetClass = AopUtils.getTargetClass(handler);
+            EventHandler annotation = AnnotationUtils.findAnnotation(targetClass, EventHandler.class);
+            if (annotation == null) {
+                log.warn("{} implements DomainEventHandler but is not annotated with @EventHandler", handlerName(handler));
+                return;
+            }
+            if (!annotation.enabled()) {
+                // 跳过禁用的处理器
+                return;
+            }
+
+            ResolvableType eventType = ResolvableType.forClass(targetClass).as(DomainEventHandler.class).getGeneric(0);
+            if (eventType.resolve() == null) {
+                throw new IllegalStateException("Cannot resolve event type of " + handlerName(handler)
+                        + ", declare it as DomainEventHandler<YourEvent>");
+            }
+            JavaType javaType = objectMapper.constructType(eventType.getType());
+
+            @SuppressWarnings("unchecked")
+            DomainEventHandler<Object> typed = (DomainEventHandler<Object>) handler;
+            handlersByTopic.computeIfAbsent(annotation.topic(), k -> new LinkedHashMap<>())
+                    .computeIfAbsent(javaType, k -> new ArrayList<>())
+                    .add(typed);
+            log.info("Auto register kafka event handler: {} -> {} ({})",
+                    annotation.topic(), handlerName(handler), eventType);
+        });
+
+        handlersByTopic.forEach((topic, byType) -> dispatchers.put(topic,
+                new TopicDispatcher(topic, byType, objectMapper, virtualThreadExecutor, maxInFlightPerTopic, meterRegistry)));
+    }
+
+    static String handlerName(DomainEventHandler<?> handler) {
+        return AopUtils.getTargetClass(handler).getSimpleName();
+    }
+
+    @Override
+    public void start() {
+        dispatchers.forEach((topic, dispatcher) -> {
+            ConcurrentMessageListenerContainer<Object, Object> container = containerFactory.createContainer(topic);
+            container.setBeanName("domain-event-" + topic);
+            container.setupMessageListener(dispatcher);
+            container.start();
+            containers.add(container);
+        });
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        // 容器停止时等待当前批次处理完（offset 随之提交），之后再关闭线程池
+        containers.forEach(ConcurrentMessageListenerContainer::stop);
+        containers.clear();
+        virtualThreadExecutor.shutdown();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return AbstractMessageListenerContainer.DEFAULT_PHASE;
+    }
+
+    public Set<String> getRegisteredTopics() {
+        return dispatchers.keySet();
+    }
+}
@@ -1,20 +1,23 @@
-//package nus.iss.se.kafka.listener;
-//
-//import java.lang.annotation.ElementType;
-//import java.lang.annotation.Retention;
-//import java.lang.annotation.RetentionPolicy;
-//import java.lang.annotation.Target;
-//
-//@Retention(RetentionPolicy.RUNTIME)
-//@Target(ElementType.TYPE)
-//public @interface EventHandler {
-//    /**
-//     * 该处理器监听的 topic
-//     */
-//    String topic();
-//
-//    /**
-//     * 是否启用（可用于灰度）
-//     */
-//    boolean enabled() default true;
-//}
+package nus.iss.se.kafka.listener;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记 DomainEventHandler Bean 监听的 topic，由 DomainEventListener 自动注册
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface EventHandler {
+    /**
+     * 该处理器监听的 topic
+     */
+    String topic();
+
+    /**
+     * 是否启用（可用于灰度）
+     */
+    boolean enabled() default true;
+}
@@ -0,0 +1,252 @@
+package nus.iss.se.kafka.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.kafka.event.EventEnvelope;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.BatchMessageListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 单个 topic 的批量分发
+ * 一次 poll 的消息按顺序键（有 key 时为 partition + key，否则为 partition）分组，
+ * 组内按 offset 顺序逐条处理，不同组在虚拟线程中并发；同时在途的处理器调用不超过 maxInFlight。
+ * 整批处理完才返回，由容器提交 offset，处理期间消费线程不再 poll，形成背压。
+ * 某条消息失败后同组后续消息不再处理；抛出 BatchListenerFailedException，批内第一条未成功的消息之前的 offset 被提交，
+ * 从它开始重新投递。它之后已经处理成功的消息（其它组）会被记住，重新投递时跳过，不会重复处理。
+ */
+@Slf4j
+class TopicDispatcher implements BatchMessageListener<Object, Object> {
+    private final String topic;
+    /** 按 data 类型分组，同一类型只反序列化一次 */
+    private final Map<JavaType, List<HandlerInvoker>> handlersByType;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    /** partition -> 失败位置之后已处理成功的 offset，重新投递时跳过 */
+    private final Map<Integer, NavigableSet<Long>> handledAhead = new ConcurrentHashMap<>();
+
+    TopicDispatcher(String topic, Map<JavaType, List<DomainEventHandler<Object>>> handlersByType, ObjectMapper objectMapper,
+                    ExecutorService executor, int maxInFlight, MeterRegistry meterRegistry) {
+        this.topic = topic;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.handlersByType = new LinkedHashMap<>();
+        handlersByType.forEach((type, handlers) -> this.handlersByType.put(type,
+                handlers.stream().map(handler -> new HandlerInvoker(handler, meterRegistry)).toList()));
+
+        Gauge.builder("kafka.event.in.flight", inFlight, permits -> maxInFlight - permits.availablePermits())
+                .description("Handler invocations currently running for the topic")
+                .tag("topic", topic)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onMessage(List<ConsumerRecord<Object, Object>> records) {
+        forgetCommitted(records);
+        Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            groups.computeIfAbsent(orderingKey(records.get(i)), k -> new ArrayList<>()).add(i);
+        }
+
+        boolean[] succeeded = new boolean[records.size()];
+        Throwable[] failures = new Throwable[records.size()];
+        List<CompletableFuture<Void>> groupFutures = new ArrayList<>(groups.size());
+        groups.values().forEach(indexes -> groupFutures.add(runInOrder(records, indexes, succeeded, failures)));
+        CompletableFuture.allOf(groupFutures.toArray(new CompletableFuture[0])).join();
+
+        int failedIndex = 0;
+        while (failedIndex < records.size() && succeeded[failedIndex]) {
+            failedIndex++;
+        }
+        if (failedIndex == records.size()) {
+            return;
+        }
+        for (int i = failedIndex + 1; i < records.size(); i++) {
+            if (succeeded[i]) {
+                ConsumerRecord<Object, Object> consumerRecord = records.get(i);
+                handledAhead.computeIfAbsent(consumerRecord.partition(), k -> new ConcurrentSkipListSet<>())
+                        .add(consumerRecord.offset());
+            }
+        }
+        // 组内保持批内顺序，第一条未成功的消息一定是自己失败的，不会是被同组前一条连带跳过的
+        throw new BatchListenerFailedException("Domain event handler failed on topic " + topic,
+                failures[failedIndex], failedIndex);
+    }
+
+    /**
+     * 同一 key 的消息一定在同一 partition；没有 key 的消息只能按 partition 保序
+     */
+    private static Object orderingKey(ConsumerRecord<Object, Object> consumerRecord) {
+        return consumerRecord.key() == null
+                ? consumerRecord.partition()
+                : List.of(consumerRecord.partition(), consumerRecord.key());
+    }
+
+    /**
+     * 一组消息在一个虚拟线程里按顺序处理，遇到失败即停止；返回的 future 总是正常完成
+     */
+    private CompletableFuture<Void> runInOrder(List<ConsumerRecord<Object, Object>> records, List<Integer> indexes,
+                                               boolean[] succeeded, Throwable[] failures) {
+        Runnable task = () -> {
+            for (int index : indexes) {
+                ConsumerRecord<Object, Object> consumerRecord = records.get(index);
+                if (!handledBefore(consumerRecord)) {
+                    try {
+                        dispatch(consumerRecord).join();
+                    } catch (CompletionException e) {
+                        failures[index] = e.getCause() == null ? e : e.getCause();
+                        return;
+                    }
+                }
+                succeeded[index] = true;
+            }
+        };
+        try {
+            return CompletableFuture.runAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            failures[indexes.get(0)] = e;
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private boolean handledBefore(ConsumerRecord<Object, Object> consumerRecord) {
+        NavigableSet<Long> offsets = handledAhead.get(consumerRecord.partition());
+        return offsets != null && offsets.remove(consumerRecord.offset());
+    }
+
+    /**
+     * 批内每个 partition 的起始 offset 之前都已提交，对应的记录不会再投递
+     */
+    private void forgetCommitted(List<ConsumerRecord<Object, Object>> records) {
+        if (handledAhead.isEmpty()) {
+            return;
+        }
+        Map<Integer, Long> firstOffsets = new HashMap<>();
+        records.forEach(consumerRecord -> firstOffsets.merge(consumerRecord.partition(), consumerRecord.offset(), Math::min));
+        firstOffsets.forEach((partition, offset) -> {
+            NavigableSet<Long> offsets = handledAhead.get(partition);
+            if (offsets != null) {
+                offsets.headSet(offset).clear();
+            }
+        });
+    }
+
+    private CompletableFuture<Void> dispatch(ConsumerRecord<Object, Object> consumerRecord) {
+        if (!(consumerRecord.value() instanceof EventEnvelope envelope)) {
+            log.warn("Ignore non-envelope record on {}: partition={}, offset={}",
+                    topic, consumerRecord.partition(), consumerRecord.offset());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        handlersByType.forEach((type, invokers) -> {
+            Object event;
+            try {
+                event = deserialize(envelope, type);
+            } catch (JsonProcessingException e) {
+                // 格式错误重试也不会成功，记录后跳过
+                log.warn("Ignore invalid {} event for type {}: messageId={}, error={}",
+                        topic, type, envelope.messageId(), e.getOriginalMessage());
+                return;
+            }
+            invokers.forEach(invoker -> futures.add(submit(invoker, event, envelope)));
+        });
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private Object deserialize(EventEnvelope envelope, JavaType type) throws JsonProcessingException {
+        if (type.getRawClass() == String.class) {
+            return envelope.data();
+        }
+        return envelope.data() == null ? null : objectMapper.readValue(envelope.data(), type);
+    }
+
+    private CompletableFuture<Void> submit(HandlerInvoker invoker, Object event, EventEnvelope envelope) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    invoker.invoke(event, envelope);
+                } finally {
+                    inFlight.release();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 单个处理器的调用和指标：kafka.event.handle（次数即吞吐、耗时，按 outcome 区分）、
+     * kafka.event.lag（从发布到开始处理的延迟）
+     */
+    private class HandlerInvoker {
+        private final DomainEventHandler<Object> handler;
+        private final String name;
+        private final Timer successTimer;
+        private final Timer failureTimer;
+        private final Timer lagTimer;
+
+        HandlerInvoker(DomainEventHandler<Object> handler, MeterRegistry meterRegistry) {
+            this.handler = handler;
+            this.name = DomainEventListener.handlerName(handler);
+            this.successTimer = handleTimer(meterRegistry, "success");
+            this.failureTimer = handleTimer(meterRegistry, "failure");
+            this.lagTimer = Timer.builder("kafka.event.lag")
+                    .description("Delay between event publish and handler start")
+                    .tag("topic", topic)
+                    .tag("handler", name)
+                    .register(meterRegistry);
+        }
+
+        private Timer handleTimer(MeterRegistry meterRegistry, String outcome) {
+            return Timer.builder("kafka.event.handle")
+                    .description("Domain event handler invocations")
+                    .tag("topic", topic)
+                    .tag("handler", name)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+
+        void invoke(Object event, EventEnvelope envelope) {
+            long start = System.nanoTime();
+            lagTimer.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - envelope.timestamp())));
+            try {
+                handler.handle(event, envelope);
+                successTimer.record(Duration.ofNanos(System.nanoTime() - start));
+            } catch (Exception e) {
+                failureTimer.record(Duration.ofNanos(System.nanoTime() - start));
+                log.error("Handle event failed [{}] {} -> {}: {}", envelope.messageId(), topic, name, e.getMessage(), e);
+                throw new CompletionException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package nus.iss.se.kafka.outbox;
+
+import nus.iss.se.kafka.event.EventEnvelope;
+
+import java.util.List;
+
+/**
+ * 事务发件箱
+ * 事件先写入本服务数据库，与业务数据一起提交或回滚，再由后台异步发送到 Kafka（至少一次）。
+ */
+public interface EventOutbox {
+    /**
+     * 写入待发送事件；有事务时加入当前事务，提交后才会被发送，回滚则一起丢弃
+     */
+    void save(List<EventEnvelope> events);
+}
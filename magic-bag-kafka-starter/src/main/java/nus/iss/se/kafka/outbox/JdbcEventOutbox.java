@@ -0,0 +1,48 @@
+package nus.iss.se.kafka.outbox;
+
+import lombok.RequiredArgsConstructor;
+import nus.iss.se.kafka.event.EventEnvelope;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * 基于 kafka_outbox 表的发件箱
+ * JdbcTemplate 与 MyBatis 共用同一个数据源和事务，写入自动加入调用方的 @Transactional。
+ */
+@RequiredArgsConstructor
+public class JdbcEventOutbox implements EventOutbox {
+    private static final String INSERT_SQL = """
+            INSERT INTO kafka_outbox (message_id, topic, data, event_timestamp, status, next_attempt_at, created_at)
+            VALUES (?, ?, ?, ?, 'pending', NOW(), NOW())""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OutboxRelay outboxRelay;
+
+    @Override
+    public void save(List<EventEnvelope> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.messageId());
+            ps.setString(2, event.topic());
+            ps.setString(3, event.data());
+            ps.setLong(4, event.timestamp());
+        });
+
+        // 提交后立即唤醒 relay，不必等下一次轮询；回滚时什么也不做
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    outboxRelay.wakeUp();
+                }
+            });
+        } else {
+            outboxRelay.wakeUp();
+        }
+    }
+}
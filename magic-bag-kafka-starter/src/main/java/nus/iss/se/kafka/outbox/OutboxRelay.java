@@ -0,0 +1,262 @@
+package nus.iss.se.kafka.outbox;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.kafka.event.EventEnvelope;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 发件箱中继
+ * 后台单线程按 id 顺序批量认领到期的 pending 行，全部交给 KafkaTemplate 后统一等待确认，
+ * 成功的一条 UPDATE 标记为 sent，失败的按指数退避推迟下次发送。
+ * 认领是一个短事务：FOR UPDATE SKIP LOCKED 锁行后把 next_attempt_at 推到租约结束再提交，
+ * 等待 Kafka 确认期间不持有行锁和数据库连接；租约内其它实例不会取到这些行，本实例宕机时租约到期后重新发送。
+ * 发送成功但标记前宕机的行会被再次发送，消费方需按 messageId 幂等。
+ * 启动时检查 kafka_outbox 表，不存在时执行 sql/kafka_outbox.sql 建表，建表失败则启动失败。
+ */
+@Slf4j
+public class OutboxRelay {
+    static final int BATCH_SIZE = 200;
+    private static final Duration POLL_INTERVAL = Duration.ofSeconds(1);
+    private static final Duration SEND_TIMEOUT = Duration.ofSeconds(10);
+    /** 认领租约，需明显长于 SEND_TIMEOUT */
+    static final Duration CLAIM_LEASE = Duration.ofSeconds(60);
+    private static final Duration CLEANUP_INTERVAL = Duration.ofHours(1);
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+    /** 失败达到该次数后按 error 级别记录，需人工关注 */
+    private static final int ALERT_ATTEMPTS = 5;
+
+    private static final String SELECT_PENDING_SQL = """
+            SELECT id, message_id, topic, data, event_timestamp, attempts FROM kafka_outbox
+            WHERE status = 'pending' AND next_attempt_at <= NOW()
+            ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED""";
+    private static final String CLAIM_SQL =
+            "UPDATE kafka_outbox SET next_attempt_at = DATE_ADD(NOW(), INTERVAL " + CLAIM_LEASE.toSeconds() + " SECOND) " +
+            "WHERE id IN (%s)";
+    private static final String MARK_SENT_SQL =
+            "UPDATE kafka_outbox SET status = 'sent', sent_at = NOW() WHERE id IN (%s)";
+    /** attempts 先 +1 再参与计算：2s, 4s, 8s ... 最长 5 分钟 */
+    private static final String MARK_RETRY_SQL = """
+            UPDATE kafka_outbox SET attempts = attempts + 1,
+                next_attempt_at = DATE_ADD(NOW(), INTERVAL LEAST(POW(2, LEAST(attempts, 9)), 300) SECOND)
+            WHERE id IN (%s)""";
+    private static final String TABLE_EXISTS_SQL = """
+            SELECT COUNT(*) FROM information_schema.tables
+            WHERE table_schema = DATABASE() AND table_name = 'kafka_outbox'""";
+    private static final String SCHEMA_SCRIPT = "sql/kafka_outbox.sql";
+    private static final String DELETE_SENT_SQL = """
+            DELETE FROM kafka_outbox WHERE status = 'sent' AND sent_at < DATE_SUB(NOW(), INTERVAL 7 DAY)
+            LIMIT ?""";
+
+    private static final RowMapper<OutboxRow> ROW_MAPPER = (rs, rowNum) -> new OutboxRow(
+            rs.getLong("id"),
+            rs.getString("message_id"),
+            rs.getString("topic"),
+            rs.getString("data"),
+            rs.getLong("event_timestamp"),
+            rs.getInt("attempts"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final KafkaTemplate<String, EventEnvelope> kafkaTemplate;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "kafka-outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** 已有一次唤醒排队时不再重复提交 */
+    private final AtomicBoolean wakeUpQueued = new AtomicBoolean();
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                       KafkaTemplate<String, EventEnvelope> kafkaTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        ensureTable();
+        executor.scheduleWithFixedDelay(this::relayPending,
+                POLL_INTERVAL.toMillis(), POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::cleanupSent,
+                CLEANUP_INTERVAL.toMillis(), CLEANUP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 没有 kafka_outbox 表时 publish 会在业务事务里失败，启动时建表或直接失败，而不是等到第一次下单
+     */
+    void ensureTable() {
+        Integer tables = jdbcTemplate.queryForObject(TABLE_EXISTS_SQL, Integer.class);
+        if (tables != null && tables > 0) {
+            return;
+        }
+        log.info("Table kafka_outbox not found, creating it from {}", SCHEMA_SCRIPT);
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource(SCHEMA_SCRIPT));
+                return null;
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException("Table kafka_outbox is missing and could not be created, run " + SCHEMA_SCRIPT
+                    + " or set magic-bag.kafka.outbox.enabled=false", e);
+        }
+    }
+
+    /**
+     * 有新事件提交，尽快发送而不是等下一次轮询
+     */
+    public void wakeUp() {
+        if (!wakeUpQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                wakeUpQueued.set(false);
+                relayPending();
+            });
+        } catch (RejectedExecutionException e) {
+            // 正在关闭，剩余的行由下次启动后的轮询发送
+            wakeUpQueued.set(false);
+        }
+    }
+
+    /**
+     * 连续发送直到没有积压或本批有失败（Kafka 不可用时不在这里空转，交给退避）
+     */
+    void relayPending() {
+        try {
+            while (!Thread.currentThread().isInterrupted() && relayBatch()) {
+                log.debug("Kafka outbox backlog remains, relaying next batch");
+            }
+        } catch (Exception e) {
+            log.error("Kafka outbox relay failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return 本批取满且全部发送成功，可能还有积压
+     */
+    boolean relayBatch() {
+        List<OutboxRow> rows = claim();
+        if (rows.isEmpty()) {
+            return false;
+        }
+
+        // 先全部交给 producer，再统一等待，同一批消息在 linger 窗口内合并为少量请求
+        List<CompletableFuture<?>> futures = new ArrayList<>(rows.size());
+        rows.forEach(row -> futures.add(send(row)));
+
+        List<Long> sentIds = new ArrayList<>(rows.size());
+        List<OutboxRow> failedRows = new ArrayList<>();
+        long deadline = System.nanoTime() + SEND_TIMEOUT.toNanos();
+        for (int i = 0; i < rows.size(); i++) {
+            OutboxRow row = rows.get(i);
+            if (await(futures.get(i), deadline, row)) {
+                sentIds.add(row.id());
+            } else {
+                failedRows.add(row);
+            }
+        }
+
+        updateByIds(MARK_SENT_SQL, sentIds);
+        updateByIds(MARK_RETRY_SQL, failedRows.stream().map(OutboxRow::id).toList());
+        failedRows.stream()
+                .filter(row -> row.attempts() + 1 >= ALERT_ATTEMPTS)
+                .forEach(row -> log.error("Kafka outbox event still not delivered after {} attempts: messageId={}, topic={}",
+                        row.attempts() + 1, row.messageId(), row.topic()));
+        log.debug("Kafka outbox relayed {} events, {} failed", sentIds.size(), failedRows.size());
+        return failedRows.isEmpty() && rows.size() == BATCH_SIZE;
+    }
+
+    /**
+     * 短事务内锁定一批到期的行并推迟到租约结束，提交后行锁和连接立即释放
+     */
+    List<OutboxRow> claim() {
+        List<OutboxRow> rows = transactionTemplate.execute(status -> {
+            List<OutboxRow> locked = jdbcTemplate.query(SELECT_PENDING_SQL, ROW_MAPPER, BATCH_SIZE);
+            updateByIds(CLAIM_SQL, locked.stream().map(OutboxRow::id).toList());
+            return locked;
+        });
+        return rows == null ? List.of() : rows;
+    }
+
+    private CompletableFuture<?> send(OutboxRow row) {
+        try {
+            return kafkaTemplate.send(row.topic(), row.toEnvelope());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private boolean await(CompletableFuture<?> future, long deadline, OutboxRow row) {
+        try {
+            future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.warn("Kafka outbox send failed: messageId={}, topic={}, error={}",
+                    row.messageId(), row.topic(), e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+            return false;
+        } catch (TimeoutException e) {
+            log.warn("Kafka outbox send timed out: messageId={}, topic={}", row.messageId(), row.topic());
+            return false;
+        }
+    }
+
+    private void updateByIds(String sqlTemplate, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update(sqlTemplate.formatted(placeholders), ids.toArray());
+    }
+
+    /**
+     * 已发送的行保留 7 天便于排查，之后分批删除
+     */
+    void cleanupSent() {
+        try {
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(DELETE_SENT_SQL, CLEANUP_BATCH_SIZE);
+            } while (deleted == CLEANUP_BATCH_SIZE && !Thread.currentThread().isInterrupted());
+        } catch (Exception e) {
+            log.error("Kafka outbox cleanup failed: {}", e.getMessage(), e);
+        }
+    }
+
+    record OutboxRow(long id, String messageId, String topic, String data, long timestamp, int attempts) {
+        EventEnvelope toEnvelope() {
+            return new EventEnvelope(messageId, timestamp, topic, data);
+        }
+    }
+}
@@ -2,9 +2,10 @@ package nus.iss.se.kafka.publisher;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nus.iss.se.kafka.event.DomainEvent;
 import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.outbox.EventOutbox;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
@@ -12,15 +13,37 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+/**
+ * 有发件箱时事件写入 kafka_outbox，随调用方事务提交后由 OutboxRelay 发送（至少一次）；
+ * 写入失败会抛出异常使调用方事务回滚。没有发件箱（无数据源的服务）时直接发送，失败只记录日志。
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class KafkaEventPublisher implements EventPublisher {
 
     private final KafkaTemplate<String, EventEnvelope> kafkaTemplate;
+    private final ObjectProvider<EventOutbox> eventOutbox;
 
     @Override
     public void publish(EventEnvelope event) {
+        publishAll(List.of(event));
+    }
+
+    @Override
+    public void publishAll(List<EventEnvelope> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        EventOutbox outbox = eventOutbox.getIfAvailable();
+        if (outbox != null) {
+            outbox.save(events);
+            return;
+        }
+        events.forEach(this::send);
+    }
+
+    private void send(EventEnvelope event) {
         try {
             // 发送消息，返回 CompletableFuture
             CompletableFuture<SendResult<String, EventEnvelope>> future = kafkaTemplate.send(event.topic(), event).toCompletableFuture();
@@ -33,13 +56,7 @@ public class KafkaEventPublisher implements EventPublisher {
                         return null;
                     });
         } catch (Exception e) {
-            // 可降级：写入数据库事件表，后续重试
             log.error("Kafka send exception: {}", ExceptionUtils.getStackTrace(e));
         }
     }
-
-    @Override
-    public void publishAll(List<EventEnvelope> events) {
-        events.forEach(this::publish);
-    }
 }
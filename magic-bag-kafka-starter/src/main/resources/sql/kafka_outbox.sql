@@ -0,0 +1,20 @@
+-- Kafka 事务发件箱
+-- 使用 EventPublisher 的服务（user / merchant / admin / product / payment / order）各自的库都需要这张表；
+-- 事件与业务数据在同一事务内写入，由 OutboxRelay 批量发送到 Kafka 后标记为 sent。
+-- OutboxRelay 启动时检查，表不存在时自动执行本脚本；数据库账号没有建表权限时需手动执行
+CREATE TABLE IF NOT EXISTS `kafka_outbox` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `message_id` VARCHAR(64) NOT NULL COMMENT 'EventEnvelope.messageId',
+    `topic` VARCHAR(255) NOT NULL COMMENT 'Kafka topic',
+    `data` MEDIUMTEXT COMMENT 'EventEnvelope.data',
+    `event_timestamp` BIGINT NOT NULL COMMENT 'EventEnvelope.timestamp (ms)',
+    `status` VARCHAR(20) NOT NULL DEFAULT 'pending' COMMENT 'pending / sent',
+    `attempts` INT NOT NULL DEFAULT 0 COMMENT '发送失败次数',
+    `next_attempt_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次可发送时间',
+    `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `sent_at` DATETIME DEFAULT NULL,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `kafka_outbox_message_UN` (`message_id`),
+    KEY `kafka_outbox_pending_IDX` (`status`, `next_attempt_at`, `id`),
+    KEY `kafka_outbox_sent_IDX` (`status`, `sent_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='Kafka 事务发件箱';
@@ -0,0 +1,142 @@
+package nus.iss.se.kafka.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nus.iss.se.kafka.event.EventEnvelope;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicDispatcherTest {
+
+    private static final String TOPIC = "order.stock.confirm";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    /** 处理器收到的 data，按处理顺序 */
+    private final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testOnMessage_DispatchesEnvelopesAndSkipsOthers() {
+        TopicDispatcher dispatcher = dispatcher(16, (event, envelope) -> handled.add(event));
+
+        dispatcher.onMessage(List.of(
+                record(0, 0, null, envelope("ORD-1")),
+                new ConsumerRecord<>(TOPIC, 0, 1, null, "not an envelope"),
+                record(0, 2, null, envelope("ORD-2"))));
+
+        assertEquals(List.of("ORD-1", "ORD-2"), handled);
+    }
+
+    @Test
+    void testOnMessage_SameKeyInOrderDifferentKeysConcurrently() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        TopicDispatcher dispatcher = dispatcher(16, (event, envelope) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            // 同一 key 中先到的消息处理得更慢，乱序时后一条会先完成
+            Thread.sleep(event.endsWith("-1") ? 50 : 5);
+            handled.add(event);
+            running.decrementAndGet();
+        });
+
+        dispatcher.onMessage(List.of(
+                record(0, 0, "a", envelope("a-1")),
+                record(0, 1, "b", envelope("b-1")),
+                record(0, 2, "a", envelope("a-2")),
+                record(1, 0, null, envelope("p1-1")),
+                record(0, 3, "b", envelope("b-2")),
+                record(1, 1, null, envelope("p1-2"))));
+
+        assertEquals(6, handled.size());
+        assertTrue(handled.indexOf("a-1") < handled.indexOf("a-2"));
+        assertTrue(handled.indexOf("b-1") < handled.indexOf("b-2"));
+        assertTrue(handled.indexOf("p1-1") < handled.indexOf("p1-2"));
+        assertTrue(maxRunning.get() > 1, "different keys should run concurrently");
+    }
+
+    @Test
+    void testOnMessage_InFlightBound() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        TopicDispatcher dispatcher = dispatcher(2, (event, envelope) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            handled.add(event);
+            running.decrementAndGet();
+        });
+
+        List<ConsumerRecord<Object, Object>> records = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            records.add(record(0, i, "key-" + i, envelope("ORD-" + i)));
+        }
+        dispatcher.onMessage(records);
+
+        assertEquals(8, handled.size());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void testOnMessage_FailureIndexAndNoReHandlingOnRedelivery() {
+        Set<String> failing = ConcurrentHashMap.newKeySet();
+        failing.add("b-1");
+        TopicDispatcher dispatcher = dispatcher(16, (event, envelope) -> {
+            if (failing.contains(event)) {
+                throw new IllegalStateException("cannot handle " + event);
+            }
+            handled.add(event);
+        });
+        List<ConsumerRecord<Object, Object>> records = List.of(
+                record(0, 0, "a", envelope("a-1")),
+                record(0, 1, "b", envelope("b-1")),
+                record(0, 2, "a", envelope("a-2")),
+                record(0, 3, "b", envelope("b-2")));
+
+        BatchListenerFailedException e = assertThrows(BatchListenerFailedException.class, () -> dispatcher.onMessage(records));
+
+        assertEquals(1, e.getIndex());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        // 同 key 的后续消息不处理，其它 key 不受影响
+        assertEquals(Set.of("a-1", "a-2"), Set.copyOf(handled));
+
+        // 容器提交 offset 0 后从失败消息开始重新投递
+        failing.clear();
+        handled.clear();
+        dispatcher.onMessage(records.subList(1, 4));
+
+        assertEquals(List.of("b-1", "b-2"), handled);
+    }
+
+    private TopicDispatcher dispatcher(int maxInFlight, DomainEventHandler<String> handler) {
+        @SuppressWarnings("unchecked")
+        DomainEventHandler<Object> typed = (DomainEventHandler<Object>) (DomainEventHandler<?>) handler;
+        return new TopicDispatcher(TOPIC, Map.of(objectMapper.constructType(String.class), List.of(typed)),
+                objectMapper, executor, maxInFlight, new SimpleMeterRegistry());
+    }
+
+    private static ConsumerRecord<Object, Object> record(int partition, long offset, String key, EventEnvelope envelope) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, key, envelope);
+    }
+
+    private static EventEnvelope envelope(String data) {
+        return new EventEnvelope("m-" + data, System.currentTimeMillis(), TOPIC, data);
+    }
+}
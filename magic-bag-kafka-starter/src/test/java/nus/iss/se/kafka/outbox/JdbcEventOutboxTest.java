@@ -0,0 +1,81 @@
+package nus.iss.se.kafka.outbox;
+
+import nus.iss.se.kafka.event.EventEnvelope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class JdbcEventOutboxTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private OutboxRelay outboxRelay;
+    private JdbcEventOutbox eventOutbox;
+
+    @BeforeEach
+    void setup() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        outboxRelay = mock(OutboxRelay.class);
+        eventOutbox = new JdbcEventOutbox(jdbcTemplate, outboxRelay);
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testSave_EmptyDoesNothing() {
+        eventOutbox.save(List.of());
+
+        verifyNoInteractions(jdbcTemplate, outboxRelay);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSave_WithoutTransactionWakesRelayImmediately() {
+        List<EventEnvelope> events = List.of(event("m-1"), event("m-2"));
+
+        eventOutbox.save(events);
+
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO kafka_outbox"), eq(events), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(outboxRelay).wakeUp();
+    }
+
+    @Test
+    void testSave_InTransactionWakesRelayOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        eventOutbox.save(List.of(event("m-1")));
+
+        verify(outboxRelay, never()).wakeUp();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(outboxRelay).wakeUp();
+    }
+
+    @Test
+    void testSave_RolledBackTransactionDoesNotWakeRelay() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        eventOutbox.save(List.of(event("m-1")));
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        verify(outboxRelay, never()).wakeUp();
+    }
+
+    private static EventEnvelope event(String messageId) {
+        return new EventEnvelope(messageId, 1_000L, "order.stock.release", "ORD-1");
+    }
+}
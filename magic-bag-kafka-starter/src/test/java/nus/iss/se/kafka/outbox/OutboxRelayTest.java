@@ -0,0 +1,152 @@
+package nus.iss.se.kafka.outbox;
+
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.outbox.OutboxRelay.OutboxRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.and;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private KafkaTemplate<String, EventEnvelope> kafkaTemplate;
+    private OutboxRelay outboxRelay;
+
+    /** 认领事务是否还没结束 */
+    private final AtomicBoolean inTransaction = new AtomicBoolean();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                return invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        });
+        outboxRelay = new OutboxRelay(jdbcTemplate, transactionTemplate, kafkaTemplate);
+    }
+
+    @AfterEach
+    void shutdown() {
+        outboxRelay.shutdown();
+    }
+
+    @Test
+    void testRelayBatch_ClaimsInShortTransactionAndSendsOutsideIt() {
+        givenPending(row(1, 0), row(2, 0));
+        when(kafkaTemplate.send(anyString(), any(EventEnvelope.class))).thenAnswer(invocation -> {
+            assertFalse(inTransaction.get(), "send must not run while the claim transaction holds row locks");
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertFalse(outboxRelay.relayBatch());
+
+        verify(jdbcTemplate).update(contains("INTERVAL " + OutboxRelay.CLAIM_LEASE.toSeconds() + " SECOND"), eq(1L), eq(2L));
+        verify(kafkaTemplate, times(2)).send(eq("order.stock.confirm"), any(EventEnvelope.class));
+        verify(jdbcTemplate).update(contains("status = 'sent'"), eq(1L), eq(2L));
+        verify(jdbcTemplate, never()).update(contains("attempts = attempts + 1"), any(Object[].class));
+    }
+
+    @Test
+    void testRelayBatch_FailedSendIsRescheduledWithBackoff() {
+        givenPending(row(1, 0), row(2, 4));
+        when(kafkaTemplate.send(anyString(), any(EventEnvelope.class)))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        assertFalse(outboxRelay.relayBatch());
+
+        verify(jdbcTemplate).update(contains("status = 'sent'"), eq(1L));
+        verify(jdbcTemplate).update(and(contains("attempts = attempts + 1"), contains("POW(2")), eq(2L));
+    }
+
+    @Test
+    void testRelayBatch_FullBatchReportsMoreBacklog() {
+        List<OutboxRow> rows = new ArrayList<>();
+        for (int i = 1; i <= OutboxRelay.BATCH_SIZE; i++) {
+            rows.add(row(i, 0));
+        }
+        givenPending(rows.toArray(OutboxRow[]::new));
+        when(kafkaTemplate.send(anyString(), any(EventEnvelope.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertTrue(outboxRelay.relayBatch());
+    }
+
+    @Test
+    void testRelayBatch_NothingDue() {
+        givenPending();
+
+        assertFalse(outboxRelay.relayBatch());
+
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void testWakeUp_RelaysWithoutWaitingForPoll() {
+        givenPending();
+
+        outboxRelay.wakeUp();
+
+        verify(jdbcTemplate, timeout(1000)).query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), eq(OutboxRelay.BATCH_SIZE));
+    }
+
+    @Test
+    void testEnsureTable_ExistingTableIsLeftAlone() {
+        when(jdbcTemplate.queryForObject(contains("information_schema.tables"), eq(Integer.class))).thenReturn(1);
+
+        outboxRelay.ensureTable();
+
+        verify(jdbcTemplate, never()).execute(any(ConnectionCallback.class));
+    }
+
+    @Test
+    void testEnsureTable_MissingTableIsCreated() {
+        when(jdbcTemplate.queryForObject(contains("information_schema.tables"), eq(Integer.class))).thenReturn(0);
+
+        outboxRelay.ensureTable();
+
+        verify(jdbcTemplate).execute(any(ConnectionCallback.class));
+    }
+
+    @Test
+    void testEnsureTable_CreateFailureFailsStartup() {
+        when(jdbcTemplate.queryForObject(contains("information_schema.tables"), eq(Integer.class))).thenReturn(0);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenThrow(new IllegalStateException("CREATE command denied"));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> outboxRelay.ensureTable());
+        assertTrue(e.getMessage().contains("kafka_outbox"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenPending(OutboxRow... rows) {
+        when(jdbcTemplate.query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), eq(OutboxRelay.BATCH_SIZE)))
+                .thenReturn(List.of(rows));
+    }
+
+    private static OutboxRow row(long id, int attempts) {
+        return new OutboxRow(id, "m-" + id, "order.stock.confirm", "ORD-" + id, 1_000L, attempts);
+    }
+}
@@ -5,6 +5,8 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nus.iss.se.common.Result;
@@ -12,10 +14,12 @@ import nus.iss.se.common.cache.UserContext;
 import nus.iss.se.common.constant.ResultStatus;
 import nus.iss.se.common.exception.BusinessException;
 import nus.iss.se.merchant.common.UserContextHolder;
+import nus.iss.se.merchant.constant.UserRole;
 import nus.iss.se.merchant.dto.MerchantDto;
 import nus.iss.se.merchant.dto.MerchantLocationDto;
 import nus.iss.se.merchant.dto.MerchantUpdateDto;
 import nus.iss.se.merchant.entity.Merchant;
+import nus.iss.se.merchant.geo.MerchantGeoIndex;
 import nus.iss.se.merchant.service.IMerchantService;
 import nus.iss.se.merchant.service.MerchantLocationService;
 import org.springframework.beans.BeanUtils;
@@ -50,6 +54,12 @@ public class MerchantController {
         return Result.success(merchant);
     }
 
+    @PostMapping("/batch-query")
+    @Operation(summary = "批量查询商家", description = "根据多个 ID 查询商家信息")
+    public Result<List<MerchantDto>> getBatchMerchants(@RequestBody List<Integer> ids) {
+        return Result.success(merchantService.getMerchantsByIds(ids));
+    }
+
     @GetMapping("user/{id}")
     @Operation(summary = "根据ID获取商家详情")
     public Result<MerchantDto> getMerchantByUserId(@PathVariable Integer id) {
@@ -91,11 +101,11 @@ public class MerchantController {
     }
 
     @GetMapping("/nearby")
-    @Operation(summary = "查询周边商家，根据距离排序", description = "根据经纬度查询周边商家")
+    @Operation(summary = "查询周边商家，根据距离排序", description = "根据经纬度查询周边商家，半径单位公里，范围 (0, 50]，超出时返回 400")
     public Result<List<MerchantLocationDto>> getNearby(
             @RequestParam double lat,
             @RequestParam double lon,
-            @RequestParam(defaultValue = "1") double radius) {
+            @RequestParam(defaultValue = "1") @Positive @DecimalMax("" + MerchantGeoIndex.MAX_RADIUS_KM) double radius) {
         
         List<MerchantLocationDto> nearbyMerchants = merchantLocationService.getNearbyMerchants(lon, lat, radius);
         return Result.success(nearbyMerchants);
@@ -121,6 +131,18 @@ public class MerchantController {
         IPage<MerchantDto> listByScore = merchantService.sortedMerchantsByScore(current, size, minScore);
         return Result.success(listByScore);
     }
+
+    @PutMapping("/{id}/score")
+    @Operation(summary = "更新商户评分", description = "仅管理员可用，同步更新评分排行榜")
+    public Result<Void> updateMerchantScore(@PathVariable Integer id, @RequestParam("score") Double score) {
+        UserContext currentUser = userContextHolder.getCurrentUser();
+        if (currentUser == null || !(UserRole.ADMIN.getCode().equals(currentUser.getRole())
+                || UserRole.SUPER_ADMIN.getCode().equals(currentUser.getRole()))) {
+            throw new BusinessException(ResultStatus.FAIL, "Only admins can update merchant score.");
+        }
+        merchantService.updateMerchantScore(id, score);
+        return Result.success();
+    }
 }
 
 
@@ -1,9 +1,13 @@
 package nus.iss.se.merchant.dto;
 
 import lombok.Data;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
+import java.math.BigDecimal;
+
 @Data
 public class MerchantUpdateDto {
     @NotBlank(message = "商家名称不能为空")
@@ -20,6 +24,15 @@ public class MerchantUpdateDto {
     @NotBlank(message = "详细地址不能为空")
     @Size(max = 255, message = "地址长度不能超过255个字符")
     private String address;
+
+    /** 店铺坐标，不传则保持不变 */
+    @DecimalMin(value = "-90", message = "纬度范围为 -90 ~ 90")
+    @DecimalMax(value = "90", message = "纬度范围为 -90 ~ 90")
+    private BigDecimal latitude;
+
+    @DecimalMin(value = "-180", message = "经度范围为 -180 ~ 180")
+    @DecimalMax(value = "180", message = "经度范围为 -180 ~ 180")
+    private BigDecimal longitude;
 }
 
 
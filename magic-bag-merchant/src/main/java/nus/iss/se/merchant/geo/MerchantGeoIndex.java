@@ -0,0 +1,162 @@
+package nus.iss.se.merchant.geo;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.common.util.GeoHash;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.merchant.dto.MerchantDto;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 商户位置索引
+ * 按 geohash 单元格分片为多个 GEO key（merchant:location:{cell}），成员为 "id:name"；
+ * 附近搜索只查询覆盖搜索圆的单元格，单个 key 的规模与商户总数无关。
+ * 写入过的单元格 key 记录在 merchant:location-cells 中，全量加载时据此删除已经没有商户的单元格。
+ * 只有已审核通过且有坐标的商户进入索引。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MerchantGeoIndex {
+    /** 单元格约 4.9km x 4.9km，1km 半径通常只覆盖 1~4 个单元格 */
+    static final int CELL_PRECISION = 5;
+    /** 50km 半径约覆盖 450 个单元格，仍在一个 pipeline 内 */
+    public static final double MAX_RADIUS_KM = 50;
+    /** 极地附近经度方向的单元格数会急剧增加，超过后拒绝查询 */
+    private static final int MAX_CELLS = 1024;
+
+    private static final String STATUS_APPROVED = "approved";
+
+    private final RedisUtil redisUtil;
+
+    /**
+     * 商户在索引中的位置
+     */
+    public record GeoEntry(String cell, String member, Point point) {
+        public String key() {
+            return cellKey(cell);
+        }
+    }
+
+    /**
+     * 商户对应的索引项，未审核通过或没有坐标时返回 null
+     */
+    public static GeoEntry entryOf(Integer id, String name, String status, BigDecimal latitude, BigDecimal longitude) {
+        if (id == null || !STATUS_APPROVED.equals(status) || latitude == null || longitude == null) {
+            return null;
+        }
+        double lat = latitude.doubleValue();
+        double lon = longitude.doubleValue();
+        return new GeoEntry(GeoHash.encode(lat, lon, CELL_PRECISION), id + ":" + (name == null ? "" : name), new Point(lon, lat));
+    }
+
+    public static GeoEntry entryOf(MerchantDto merchant) {
+        return entryOf(merchant.getId(), merchant.getName(), merchant.getStatus(), merchant.getLatitude(), merchant.getLongitude());
+    }
+
+    static String cellKey(String cell) {
+        return RedisPrefix.MERCHANT_LOCATION.getCode() + cell;
+    }
+
+    /**
+     * 全量重建：每个单元格写入临时 key 后 RENAME 覆盖（一个 pipeline），已不在数据库中的成员随之消失；
+     * 上次有商户而这次没有的单元格，以及分片之前的单 key 索引 merchant:location: 一并删除
+     * @return 写入的商户数
+     */
+    public int loadAll(List<MerchantDto> merchants) {
+        Map<String, Map<String, Point>> locationsByKey = new HashMap<>();
+        int count = 0;
+        for (MerchantDto merchant : merchants) {
+            GeoEntry entry = entryOf(merchant);
+            if (entry != null) {
+                locationsByKey.computeIfAbsent(entry.key(), k -> new HashMap<>()).put(entry.member(), entry.point());
+                count++;
+            }
+        }
+        Set<String> previousKeys = redisUtil.getSetMembers(RedisPrefix.MERCHANT_LOCATION_CELLS.getCode());
+        redisUtil.geoReplaceAll(locationsByKey);
+        if (!locationsByKey.isEmpty()) {
+            redisUtil.addToSet(RedisPrefix.MERCHANT_LOCATION_CELLS.getCode(), locationsByKey.keySet().toArray(String[]::new));
+        }
+
+        List<String> staleKeys = previousKeys.stream().filter(key -> !locationsByKey.containsKey(key)).toList();
+        List<String> deleted = new ArrayList<>(staleKeys);
+        deleted.add(RedisPrefix.MERCHANT_LOCATION.getCode());
+        redisUtil.deleteAll(deleted);
+        if (!staleKeys.isEmpty()) {
+            redisUtil.removeFromSet(RedisPrefix.MERCHANT_LOCATION_CELLS.getCode(), staleKeys.toArray(String[]::new));
+        }
+        log.info("Merchant geo index loaded {} merchants into {} cells, removed {} empty cells",
+                count, locationsByKey.size(), staleKeys.size());
+        return count;
+    }
+
+    /**
+     * 商户位置、名称或状态变化后更新索引；幂等，可重复调用
+     * @param previous 变化前的索引项，没有则为 null
+     * @param current  当前的索引项，不应出现在索引中则为 null
+     */
+    public void update(GeoEntry previous, GeoEntry current) {
+        if (previous != null && !sameSlot(previous, current)) {
+            redisUtil.geoRemove(previous.key(), previous.member());
+        }
+        if (current != null) {
+            redisUtil.setGeo(current.key(), current.point(), current.member());
+            redisUtil.addToSet(RedisPrefix.MERCHANT_LOCATION_CELLS.getCode(), current.key());
+        }
+    }
+
+    private boolean sameSlot(GeoEntry previous, GeoEntry current) {
+        return current != null && Objects.equals(previous.cell(), current.cell())
+                && Objects.equals(previous.member(), current.member());
+    }
+
+    /**
+     * 附近搜索，合并各单元格的结果后按距离升序
+     * @throws BusinessException 半径不在 (0, MAX_RADIUS_KM] 内时不截断，直接拒绝
+     */
+    public List<GeoResult<RedisGeoCommands.GeoLocation<String>>> search(double longitude, double latitude, double radiusKm) {
+        if (radiusKm <= 0 || radiusKm > MAX_RADIUS_KM) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID, "radius must be in (0, " + MAX_RADIUS_KM + "] km");
+        }
+        List<String> keys = GeoHash.coveringCells(latitude, longitude, radiusKm, CELL_PRECISION).stream()
+                .map(MerchantGeoIndex::cellKey)
+                .toList();
+        if (keys.size() > MAX_CELLS) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID, "search area covers too many cells");
+        }
+
+        Circle circle = new Circle(new Point(longitude, latitude), new Distance(radiusKm, Metrics.KILOMETERS));
+        RedisGeoCommands.GeoRadiusCommandArgs args = RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
+                .includeDistance()
+                .includeCoordinates()
+                .sortAscending();
+
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> merged = new ArrayList<>();
+        for (GeoResults<RedisGeoCommands.GeoLocation<String>> results : redisUtil.geoRadiusAll(keys, circle, args)) {
+            merged.addAll(results.getContent());
+        }
+        merged.sort(Comparator.comparingDouble(result -> result.getDistance().getValue()));
+        log.debug("Merchant geo search queried {} cells, found {}", keys.size(), merged.size());
+        return merged;
+    }
+}
@@ -3,4 +3,5 @@ package nus.iss.se.merchant.kafka;
 public interface EventTopicType {
     String MERCHANT_REGISTERED = "merchant.registered";
     String MERCHANT_PROCESSED = "merchant.processed";
+    String MERCHANT_LOCATION_CHANGED = "merchant.location.changed";
 }
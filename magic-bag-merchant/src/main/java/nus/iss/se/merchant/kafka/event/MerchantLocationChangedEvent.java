@@ -0,0 +1,20 @@
+package nus.iss.se.merchant.kafka.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 商户审核通过或资料（名称、坐标）变更，需要更新位置索引
+ * 只携带变更前的索引位置，当前位置由处理方从数据库读取，消息乱序或重复时结果一致。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MerchantLocationChangedEvent {
+    private Integer merchantId;
+    /** 变更前所在的 geohash 单元格，变更前不在索引中则为 null */
+    private String previousCell;
+    /** 变更前的索引成员 */
+    private String previousMember;
+}
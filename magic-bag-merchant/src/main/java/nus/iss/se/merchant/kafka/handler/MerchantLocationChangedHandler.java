@@ -0,0 +1,25 @@
+package nus.iss.se.merchant.kafka.handler;
+
+import lombok.RequiredArgsConstructor;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.EventHandler;
+import nus.iss.se.merchant.kafka.EventTopicType;
+import nus.iss.se.merchant.kafka.event.MerchantLocationChangedEvent;
+import nus.iss.se.merchant.service.MerchantLocationService;
+import org.springframework.stereotype.Component;
+
+/**
+ * 商户位置索引增量更新
+ */
+@Component
+@RequiredArgsConstructor
+@EventHandler(topic = EventTopicType.MERCHANT_LOCATION_CHANGED)
+public class MerchantLocationChangedHandler implements DomainEventHandler<MerchantLocationChangedEvent> {
+    private final MerchantLocationService merchantLocationService;
+
+    @Override
+    public void handle(MerchantLocationChangedEvent event, EventEnvelope envelope) {
+        merchantLocationService.refreshMerchant(event);
+    }
+}
@@ -0,0 +1,29 @@
+package nus.iss.se.merchant.kafka.handler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.EventHandler;
+import nus.iss.se.merchant.kafka.EventTopicType;
+import nus.iss.se.merchant.kafka.event.MerchantProcessedEvent;
+import nus.iss.se.merchant.service.IMerchantService;
+import org.springframework.stereotype.Component;
+
+/**
+ * 商家注册审核结果
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EventHandler(topic = EventTopicType.MERCHANT_PROCESSED)
+public class MerchantProcessedHandler implements DomainEventHandler<MerchantProcessedEvent> {
+    private final IMerchantService merchantService;
+
+    @Override
+    public void handle(MerchantProcessedEvent processedEvent, EventEnvelope envelope) {
+        log.info("handling event - {}, details: {}", EventTopicType.MERCHANT_PROCESSED, envelope);
+        merchantService.handleRegisterResult(processedEvent);
+        log.info("handle event - {}, success: {}", EventTopicType.MERCHANT_PROCESSED, processedEvent);
+    }
+}
@@ -0,0 +1,104 @@
+package nus.iss.se.merchant.leaderboard;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.merchant.dto.MerchantDto;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 商户评分排行榜
+ * Redis sorted set merchant:leaderboard，成员为商户 id，分数为评分；只有已审核通过且有评分的商户进入排行榜。
+ * 分页为 ZREVRANGEBYSCORE ... LIMIT，总数为 ZCOUNT，都不扫描商户表。
+ * 另有一个分数为 -Double.MAX_VALUE 的占位成员标记已加载，任何 minScore 都不会取到它。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MerchantLeaderboard {
+    private static final String KEY = RedisPrefix.MERCHANT_LEADERBOARD.getCode();
+    private static final String LOADED_MEMBER = "_";
+    private static final double LOADED_SCORE = -Double.MAX_VALUE;
+    private static final String STATUS_APPROVED = "approved";
+
+    private final RedisUtil redisUtil;
+
+    /**
+     * 一页商户 id（按评分从高到低）和满足条件的总数
+     */
+    public record LeaderboardPage(List<Integer> merchantIds, long total) {
+    }
+
+    /**
+     * 用全部商户整体重建排行榜
+     */
+    public int rebuild(List<MerchantDto> merchants) {
+        Map<String, Double> members = new HashMap<>();
+        members.put(LOADED_MEMBER, LOADED_SCORE);
+        for (MerchantDto merchant : merchants) {
+            if (ranked(merchant.getId(), merchant.getStatus(), merchant.getScore())) {
+                members.put(String.valueOf(merchant.getId()), merchant.getScore());
+            }
+        }
+        redisUtil.zReplaceAll(KEY, members);
+        return members.size() - 1;
+    }
+
+    public boolean isLoaded() {
+        return redisUtil.hasKey(KEY);
+    }
+
+    /**
+     * 审核结果或评分变化后调用：进入、更新或移出排行榜；有事务时在提交后执行
+     * 排行榜未加载时不写，避免留下只有部分商户的排行榜，下次读取时整体重建
+     */
+    public void update(Integer merchantId, String status, Double score) {
+        if (merchantId == null) {
+            return;
+        }
+        Runnable action = () -> {
+            if (!isLoaded()) {
+                return;
+            }
+            if (ranked(merchantId, status, score)) {
+                redisUtil.zAdd(KEY, String.valueOf(merchantId), score);
+            } else {
+                redisUtil.zRemove(KEY, String.valueOf(merchantId));
+            }
+            log.debug("Merchant {} leaderboard updated: status={}, score={}", merchantId, status, score);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * @param current 页码，从 1 开始
+     */
+    public LeaderboardPage page(double minScore, long current, long size) {
+        List<Integer> ids = redisUtil.zReverseRangeByScore(KEY, minScore, (current - 1) * size, size).stream()
+                .filter(member -> !LOADED_MEMBER.equals(member))
+                .map(Integer::valueOf)
+                .toList();
+        long total = redisUtil.zCount(KEY, minScore, Double.POSITIVE_INFINITY);
+        return new LeaderboardPage(ids, total);
+    }
+
+    private static boolean ranked(Integer merchantId, String status, Double score) {
+        return merchantId != null && STATUS_APPROVED.equals(status) && score != null;
+    }
+}
@@ -15,6 +15,8 @@ public interface IMerchantService extends IService<Merchant> {
 
     MerchantDto getMerchantById(Integer id);
 
+    List<MerchantDto> getMerchantsByIds(List<Integer> ids);
+
     Integer getMerchantIdByUserId(Integer userId);
     
     MerchantDto findByUserId(Integer userId);
@@ -25,6 +27,11 @@ public interface IMerchantService extends IService<Merchant> {
 
     void updateMerchantProfile(MerchantUpdateDto merchantDto, Integer currentUserId);
 
+    /**
+     * 更新商户评分，同步维护评分排行榜
+     */
+    void updateMerchantScore(Integer merchantId, Double score);
+
     IPage<MerchantDto> sortedMerchantsByScore(Integer current, Integer size, Integer minScore);
 }
 
@@ -3,14 +3,13 @@ package nus.iss.se.merchant.service;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import nus.iss.se.common.constant.RedisPrefix;
 import nus.iss.se.merchant.dto.MerchantDto;
 import nus.iss.se.merchant.dto.MerchantLocationDto;
-import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.merchant.geo.MerchantGeoIndex;
+import nus.iss.se.merchant.geo.MerchantGeoIndex.GeoEntry;
+import nus.iss.se.merchant.kafka.event.MerchantLocationChangedEvent;
 import org.springframework.data.geo.*;
 import org.springframework.data.redis.connection.RedisGeoCommands;
-import org.springframework.data.redis.core.GeoOperations;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -19,22 +18,36 @@ import java.util.*;
 
 /**
  * 商户地理位置服务
+ * 启动时一次性批量写入位置索引，之后由 merchant.location.changed 事件增量维护
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MerchantLocationService {
-    private final RedisUtil redisUtil;
     private final IMerchantService merchantService;
-    private final StringRedisTemplate redisTemplate;
+    private final MerchantGeoIndex merchantGeoIndex;
 
     @PostConstruct
     public void init() {
         List<MerchantDto> merchants = merchantService.getAllMerchants();
-        merchants.stream()
-                .filter(item -> item.getLongitude() != null && item.getLatitude() != null)
-                .forEach(item -> redisUtil.setGeo(RedisPrefix.MERCHANT_LOCATION.getCode(),new Point(item.getLongitude().doubleValue(),item.getLatitude().doubleValue()),item.getName()));
-        log.info("Merchant location data initialized with {} stores", merchants.size());
+        int indexed = merchantGeoIndex.loadAll(merchants);
+        log.info("Merchant location data initialized with {} stores", indexed);
+    }
+
+    /**
+     * 按数据库中的当前状态更新某个商户的索引
+     */
+    public void refreshMerchant(MerchantLocationChangedEvent event) {
+        if (event == null || event.getMerchantId() == null) {
+            return;
+        }
+        MerchantDto merchant = merchantService.getMerchantById(event.getMerchantId());
+        GeoEntry current = merchant == null ? null : MerchantGeoIndex.entryOf(merchant);
+        GeoEntry previous = event.getPreviousCell() == null ? null
+                : new GeoEntry(event.getPreviousCell(), event.getPreviousMember(), null);
+        merchantGeoIndex.update(previous, current);
+        log.debug("Merchant {} geo index refreshed: {} -> {}", event.getMerchantId(),
+                previous == null ? null : previous.cell(), current == null ? null : current.cell());
     }
 
     /**
@@ -46,39 +59,26 @@ public class MerchantLocationService {
      * @return 按距离升序排列的店铺列表
      */
     public List<MerchantLocationDto> getNearbyMerchants(double userLon, double userLat, double radius) {
-        GeoOperations<String, String> geoOps = redisTemplate.opsForGeo();
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> results = merchantGeoIndex.search(userLon, userLat, radius);
 
-        Circle circle = new Circle(userLon, userLat, Metrics.KILOMETERS.getMultiplier() * radius);
+        List<MerchantLocationDto> ans = results.stream().map(geoLocation -> {
+            String name = geoLocation.getContent().getName(); // 格式: "S001:朝阳店"
+            Distance distance = geoLocation.getDistance();    // 距离
+            Point coord = geoLocation.getContent().getPoint(); // 坐标
 
-        RedisGeoCommands.GeoRadiusCommandArgs args = RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
-                .includeDistance()  // 包含距离
-                .includeCoordinates() // 包含坐标
-                .sortAscending()  // 按距离升序排序
-                ;
+            String[] parts = name.split(":", 2);
+            String id = parts[0];
+            String storeName = parts.length > 1 ? parts[1] : "";
 
-        GeoResults<RedisGeoCommands.GeoLocation<String>> results = geoOps.radius(RedisPrefix.MERCHANT_LOCATION.getCode(), circle, args);
-
-        List<MerchantLocationDto> ans = new ArrayList<>();
-        if (results != null){
-            ans = results.getContent().stream().map(geoLocation -> {
-                String name = geoLocation.getContent().getName(); // 格式: "S001:朝阳店"
-                Distance distance = geoLocation.getDistance();    // 距离
-                Point coord = geoLocation.getContent().getPoint(); // 坐标
-
-                String[] parts = name.split(":", 2);
-                String id = parts[0];
-                String storeName = parts.length > 1 ? parts[1] : "";
-
-                MerchantLocationDto dto = new MerchantLocationDto();
-                dto.setId(id);
-                dto.setName(storeName);
-                dto.setLatitude(BigDecimal.valueOf(coord.getY())); // Redis 返回的是 lat/lon，但 Point 是 x=lon, y=lat
-                dto.setLongitude(BigDecimal.valueOf(coord.getX()));
-                dto.setUnit(distance.getMetric().getAbbreviation());
-                dto.setDistance(BigDecimal.valueOf(distance.getValue()).setScale(2, RoundingMode.HALF_UP).doubleValue());
-                return dto;
-            }).toList();
-        }
+            MerchantLocationDto dto = new MerchantLocationDto();
+            dto.setId(id);
+            dto.setName(storeName);
+            dto.setLatitude(BigDecimal.valueOf(coord.getY())); // Redis 返回的是 lat/lon，但 Point 是 x=lon, y=lat
+            dto.setLongitude(BigDecimal.valueOf(coord.getX()));
+            dto.setUnit(distance.getMetric().getAbbreviation());
+            dto.setDistance(BigDecimal.valueOf(distance.getValue()).setScale(2, RoundingMode.HALF_UP).doubleValue());
+            return dto;
+        }).toList();
 
         log.info("Found {} nearby merchants within {} km radius", ans.size(), radius);
         return ans;
@@ -22,17 +22,28 @@ import nus.iss.se.merchant.dto.MerchantDto;
 import nus.iss.se.merchant.dto.MerchantUpdateDto;
 import nus.iss.se.merchant.dto.UpdateRoleQo;
 import nus.iss.se.merchant.entity.Merchant;
+import nus.iss.se.merchant.geo.MerchantGeoIndex;
+import nus.iss.se.merchant.geo.MerchantGeoIndex.GeoEntry;
 import nus.iss.se.merchant.kafka.EventTopicType;
+import nus.iss.se.merchant.kafka.event.MerchantLocationChangedEvent;
 import nus.iss.se.merchant.kafka.event.MerchantProcessedEvent;
 import nus.iss.se.merchant.kafka.event.MerchantRegisterEvent;
+import nus.iss.se.merchant.leaderboard.MerchantLeaderboard;
+import nus.iss.se.merchant.leaderboard.MerchantLeaderboard.LeaderboardPage;
 import nus.iss.se.merchant.mapper.MerchantMapper;
 import nus.iss.se.merchant.service.IMerchantService;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.BeanUtils;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -42,6 +53,20 @@ public class MerchantServiceImpl extends ServiceImpl<MerchantMapper, Merchant> i
     private   final KafkaEventPublisher eventPublisher;
     private final UserContextHolder userContextHolder;
     private final UserClient userClient;
+    private final MerchantLeaderboard merchantLeaderboard;
+
+    /**
+     * 启动时用数据库整体重建排行榜，修正上次运行中可能遗漏的增量更新；Redis 不可用时不影响启动，查询时回退数据库
+     */
+    @PostConstruct
+    public void initLeaderboard() {
+        try {
+            int ranked = merchantLeaderboard.rebuild(getAllMerchants());
+            log.info("Merchant leaderboard initialized with {} merchants", ranked);
+        } catch (DataAccessException e) {
+            log.warn("Failed to initialize merchant leaderboard: {}", e.getMessage());
+        }
+    }
 
     @Override
     public List<MerchantDto> getAllMerchants() {
@@ -60,6 +85,15 @@ public class MerchantServiceImpl extends ServiceImpl<MerchantMapper, Merchant> i
         return convertToDto(merchant);
     }
 
+    @Override
+    public List<MerchantDto> getMerchantsByIds(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) return List.of();
+
+        return baseMapper.selectBatchIds(ids).stream()
+                .map(this::convertToDto)
+                .toList();
+    }
+
     @Override
     public Integer getMerchantIdByUserId(Integer userId) {
         Merchant merchant = baseMapper.selectById(userId);
@@ -132,6 +166,8 @@ public class MerchantServiceImpl extends ServiceImpl<MerchantMapper, Merchant> i
                 merchant.setUpdatedAt(new Date());
                 merchant.setApprovedAt(new Date());
                 updateById(merchant);
+                publishLocationChanged(merchant.getId(), null);
+                merchantLeaderboard.update(merchant.getId(), merchant.getStatus(), merchant.getScore());
 
                 // 3. 更新用户角色为 MERCHANT
                 Result<Void> result = userClient.updateUserRole(event.getUserId(), new UpdateRoleQo(UserRole.CUSTOMER.getCode(), UserRole.MERCHANT.getCode()));
@@ -146,6 +182,7 @@ public class MerchantServiceImpl extends ServiceImpl<MerchantMapper, Merchant> i
                 merchant.setStatus("rejected");
                 merchant.setUpdatedAt(new Date());
                 updateById(merchant);
+                merchantLeaderboard.update(merchant.getId(), merchant.getStatus(), merchant.getScore());
 
                 log.info("商家注册申请已拒绝，用户ID: {}, 商家ID: {}", event.getUserId(), merchant.getId());
             } else {
@@ -170,20 +207,93 @@ public class MerchantServiceImpl extends ServiceImpl<MerchantMapper, Merchant> i
             throw new BusinessException(ResultStatus.MERCHANT_NOT_FOUND, "商户不存在");
         }
 
+        GeoEntry previous = geoEntryOf(merchant);
         merchant.setName(merchantDto.getName());
         merchant.setPhone(merchantDto.getPhone());
         merchant.setBusinessLicense(merchantDto.getBusinessLicense());
         merchant.setAddress(merchantDto.getAddress());
+        if (merchantDto.getLatitude() != null && merchantDto.getLongitude() != null) {
+            merchant.setLatitude(merchantDto.getLatitude());
+            merchant.setLongitude(merchantDto.getLongitude());
+        }
         merchant.setUpdatedAt(new Date());
 
         int result = baseMapper.updateById(merchant);
         if (result <= 0) {
             throw new BusinessException(ResultStatus.FAIL, "更新商户信息失败");
         }
+
+        if (!Objects.equals(previous, geoEntryOf(merchant))) {
+            publishLocationChanged(merchant.getId(), previous);
+        }
+    }
+
+    private GeoEntry geoEntryOf(Merchant merchant) {
+        return MerchantGeoIndex.entryOf(merchant.getId(), merchant.getName(), merchant.getStatus(),
+                merchant.getLatitude(), merchant.getLongitude());
+    }
+
+    /**
+     * 位置索引由事件增量更新，与商户数据在同一事务内写入发件箱
+     */
+    private void publishLocationChanged(Integer merchantId, GeoEntry previous) {
+        MerchantLocationChangedEvent event = new MerchantLocationChangedEvent(merchantId,
+                previous == null ? null : previous.cell(), previous == null ? null : previous.member());
+        try {
+            String data = objectMapper.writeValueAsString(event);
+            eventPublisher.publish(EventEnvelope.of(data, EventTopicType.MERCHANT_LOCATION_CHANGED));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void updateMerchantScore(Integer merchantId, Double score) {
+        Merchant merchant = baseMapper.selectById(merchantId);
+        if (merchant == null) {
+            throw new BusinessException(ResultStatus.MERCHANT_NOT_FOUND, "id: " + merchantId);
+        }
+        merchant.setScore(score);
+        merchant.setUpdatedAt(new Date());
+        if (baseMapper.updateById(merchant) <= 0) {
+            throw new BusinessException(ResultStatus.FAIL, "更新商户评分失败");
+        }
+        merchantLeaderboard.update(merchant.getId(), merchant.getStatus(), merchant.getScore());
     }
 
+    /**
+     * 从 Redis 排行榜分页，只按 id 回表查当前页的商户；排行榜不可用时回退到数据库排序
+     */
     @Override
     public IPage<MerchantDto> sortedMerchantsByScore(Integer current, Integer size, Integer minScore) {
+        LeaderboardPage page;
+        try {
+            if (!merchantLeaderboard.isLoaded()) {
+                merchantLeaderboard.rebuild(getAllMerchants());
+            }
+            page = merchantLeaderboard.page(minScore.doubleValue(), current, size);
+        } catch (DataAccessException e) {
+            log.warn("Merchant leaderboard unavailable, fallback to database: {}", e.getMessage());
+            return sortedMerchantsByScoreFromDb(current, size, minScore);
+        }
+
+        IPage<MerchantDto> dtoPage = new Page<>(current, size, page.total());
+        if (page.merchantIds().isEmpty()) {
+            dtoPage.setRecords(List.of());
+            return dtoPage;
+        }
+        Map<Integer, Merchant> merchants = baseMapper.selectBatchIds(page.merchantIds()).stream()
+                .collect(Collectors.toMap(Merchant::getId, Function.identity()));
+        dtoPage.setRecords(page.merchantIds().stream()
+                .map(merchants::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToDto)
+                .toList());
+        return dtoPage;
+    }
+
+    private IPage<MerchantDto> sortedMerchantsByScoreFromDb(Integer current, Integer size, Integer minScore) {
         Page<Merchant> page = new Page<>(current, size);
         IPage<Merchant> merchantPage = baseMapper.findMerchantsByScore(page, minScore.doubleValue());
 
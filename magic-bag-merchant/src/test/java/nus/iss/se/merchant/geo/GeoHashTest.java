@@ -0,0 +1,65 @@
+package nus.iss.se.merchant.geo;
+
+import nus.iss.se.common.util.GeoHash;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoHashTest {
+
+    @Test
+    void testEncode() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("w21zd", GeoHash.encode(1.3521, 103.8198, 5));
+    }
+
+    @Test
+    void testDecodeCenter() {
+        GeoHash.Center center = GeoHash.decodeCenter("u4pruydqqvj");
+        assertEquals(57.64911, center.latitude(), 1e-5);
+        assertEquals(10.40744, center.longitude(), 1e-5);
+
+        String cell = GeoHash.encode(1.3521, 103.8198, 7);
+        GeoHash.Center cellCenter = GeoHash.decodeCenter(cell);
+        assertEquals(cell, GeoHash.encode(cellCenter.latitude(), cellCenter.longitude(), 7));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.decodeCenter("w21a"));
+    }
+
+    @Test
+    void testCoveringCells_ContainsCenterCell() {
+        Set<String> cells = GeoHash.coveringCells(1.3521, 103.8198, 1, 5);
+
+        assertTrue(cells.contains(GeoHash.encode(1.3521, 103.8198, 5)));
+        assertTrue(cells.size() <= 4);
+    }
+
+    @Test
+    void testCoveringCells_CrossesCellBoundary() {
+        // 单元格边界附近，1km 的圆跨到东侧相邻单元格
+        double lonSpan = GeoHash.lonSpan(5);
+        double boundaryLon = Math.ceil(103.8198 / lonSpan) * lonSpan;
+        double lat = 1.3521;
+
+        Set<String> cells = GeoHash.coveringCells(lat, boundaryLon - 0.001, 1, 5);
+
+        assertTrue(cells.contains(GeoHash.encode(lat, boundaryLon - 0.001, 5)));
+        assertTrue(cells.contains(GeoHash.encode(lat, boundaryLon + 0.001, 5)));
+    }
+
+    @Test
+    void testCoveringCells_EveryPointInRadiusIsCovered() {
+        double lat = 1.30;
+        double lon = 103.85;
+        double radiusKm = 8;
+        Set<String> cells = GeoHash.coveringCells(lat, lon, radiusKm, 5);
+
+        for (int i = 0; i < 360; i += 15) {
+            double angle = Math.toRadians(i);
+            double pointLat = lat + radiusKm / 111.32 * Math.sin(angle) * 0.99;
+            double pointLon = lon + radiusKm / (111.32 * Math.cos(Math.toRadians(lat))) * Math.cos(angle) * 0.99;
+            assertTrue(cells.contains(GeoHash.encode(pointLat, pointLon, 5)), "angle " + i);
+        }
+    }
+}
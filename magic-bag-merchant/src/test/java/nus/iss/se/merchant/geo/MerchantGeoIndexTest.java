@@ -0,0 +1,149 @@
+package nus.iss.se.merchant.geo;
+
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.common.util.GeoHash;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.merchant.dto.MerchantDto;
+import nus.iss.se.merchant.geo.MerchantGeoIndex.GeoEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.geo.*;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MerchantGeoIndexTest {
+
+    @Mock
+    private RedisUtil redisUtil;
+
+    @InjectMocks
+    private MerchantGeoIndex merchantGeoIndex;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private MerchantDto merchant(int id, String status, double lat, double lon) {
+        MerchantDto dto = new MerchantDto();
+        dto.setId(id);
+        dto.setName("商家" + id);
+        dto.setStatus(status);
+        dto.setLatitude(BigDecimal.valueOf(lat));
+        dto.setLongitude(BigDecimal.valueOf(lon));
+        return dto;
+    }
+
+    /** -------------------------
+     *  Test: loadAll —— 按单元格分组后一次批量重建
+     *  ------------------------- */
+    @Test
+    void testLoadAll_GroupsByCell() {
+        MerchantDto near1 = merchant(1, "approved", 1.3521, 103.8198);
+        MerchantDto near2 = merchant(2, "approved", 1.3522, 103.8199);
+        MerchantDto far = merchant(3, "approved", 1.4400, 103.7000);
+        MerchantDto pending = merchant(4, "pending", 1.3521, 103.8198);
+        MerchantDto noLocation = new MerchantDto();
+        noLocation.setId(5);
+        noLocation.setStatus("approved");
+
+        int count = merchantGeoIndex.loadAll(List.of(near1, near2, far, pending, noLocation));
+
+        ArgumentCaptor<Map<String, Map<String, Point>>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(redisUtil, times(1)).geoReplaceAll(captor.capture());
+        assertEquals(3, count);
+        assertEquals(2, captor.getValue().size());
+        String nearKey = MerchantGeoIndex.entryOf(near1).key();
+        assertEquals(Map.of("1:商家1", new Point(103.8198, 1.3521), "2:商家2", new Point(103.8199, 1.3522)),
+                captor.getValue().get(nearKey));
+        verify(redisUtil).addToSet(eq(RedisPrefix.MERCHANT_LOCATION_CELLS.getCode()), any(String[].class));
+    }
+
+    /** -------------------------
+     *  Test: loadAll —— 已没有商户的单元格和分片前的单 key 索引被删除
+     *  ------------------------- */
+    @Test
+    void testLoadAll_DeletesStaleCellsAndLegacyKey() {
+        MerchantDto merchant = merchant(1, "approved", 1.3521, 103.8198);
+        String liveKey = MerchantGeoIndex.entryOf(merchant).key();
+        String staleKey = MerchantGeoIndex.entryOf(merchant(2, "approved", 1.4400, 103.7000)).key();
+        when(redisUtil.getSetMembers(RedisPrefix.MERCHANT_LOCATION_CELLS.getCode())).thenReturn(Set.of(liveKey, staleKey));
+
+        merchantGeoIndex.loadAll(List.of(merchant));
+
+        verify(redisUtil).deleteAll(List.of(staleKey, RedisPrefix.MERCHANT_LOCATION.getCode()));
+        verify(redisUtil).removeFromSet(RedisPrefix.MERCHANT_LOCATION_CELLS.getCode(), staleKey);
+    }
+
+    /** -------------------------
+     *  Test: update —— 搬到其他单元格时先删旧成员
+     *  ------------------------- */
+    @Test
+    void testUpdate_MovedToAnotherCell() {
+        GeoEntry previous = MerchantGeoIndex.entryOf(merchant(1, "approved", 1.3521, 103.8198));
+        GeoEntry current = MerchantGeoIndex.entryOf(merchant(1, "approved", 1.4400, 103.7000));
+
+        merchantGeoIndex.update(previous, current);
+
+        verify(redisUtil, times(1)).geoRemove(previous.key(), "1:商家1");
+        verify(redisUtil, times(1)).setGeo(current.key(), current.point(), "1:商家1");
+        verify(redisUtil, times(1)).addToSet(RedisPrefix.MERCHANT_LOCATION_CELLS.getCode(), current.key());
+    }
+
+    /** -------------------------
+     *  Test: update —— 同一单元格内移动只需覆盖坐标
+     *  ------------------------- */
+    @Test
+    void testUpdate_SameCell() {
+        GeoEntry previous = MerchantGeoIndex.entryOf(merchant(1, "approved", 1.3521, 103.8198));
+        GeoEntry current = MerchantGeoIndex.entryOf(merchant(1, "approved", 1.3522, 103.8199));
+
+        merchantGeoIndex.update(previous, current);
+
+        verify(redisUtil, never()).geoRemove(anyString(), any(String[].class));
+        verify(redisUtil, times(1)).setGeo(current.key(), current.point(), "1:商家1");
+    }
+
+    /** -------------------------
+     *  Test: search —— 只查询覆盖单元格，合并后按距离排序
+     *  ------------------------- */
+    @Test
+    void testSearch_MergesCellsByDistance() {
+        GeoResult<RedisGeoCommands.GeoLocation<String>> far = new GeoResult<>(
+                new RedisGeoCommands.GeoLocation<>("2:远", new Point(103.82, 1.36)), new Distance(0.9, Metrics.KILOMETERS));
+        GeoResult<RedisGeoCommands.GeoLocation<String>> near = new GeoResult<>(
+                new RedisGeoCommands.GeoLocation<>("1:近", new Point(103.82, 1.35)), new Distance(0.1, Metrics.KILOMETERS));
+        when(redisUtil.geoRadiusAll(anyList(), any(Circle.class), any()))
+                .thenReturn(List.of(new GeoResults<>(List.of(far)), new GeoResults<>(List.of(near))));
+
+        // 单元格边界上，1km 的圆覆盖东西两个单元格
+        double boundaryLon = Math.ceil(103.8198 / GeoHash.lonSpan(5)) * GeoHash.lonSpan(5);
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> results = merchantGeoIndex.search(boundaryLon, 1.3521, 1);
+
+        ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        verify(redisUtil).geoRadiusAll(keysCaptor.capture(), any(Circle.class), any());
+        assertEquals(2, keysCaptor.getValue().size());
+        assertEquals(2, results.size());
+        assertEquals("1:近", results.get(0).getContent().getName());
+        assertEquals("2:远", results.get(1).getContent().getName());
+    }
+
+    @Test
+    void testSearch_RadiusTooLarge() {
+        assertThrows(BusinessException.class, () -> merchantGeoIndex.search(103.8198, 1.3521, 100));
+        verifyNoInteractions(redisUtil);
+    }
+}
@@ -0,0 +1,90 @@
+package nus.iss.se.merchant.leaderboard;
+
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.merchant.dto.MerchantDto;
+import nus.iss.se.merchant.leaderboard.MerchantLeaderboard.LeaderboardPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MerchantLeaderboardTest {
+
+    @Mock
+    private RedisUtil redisUtil;
+
+    @InjectMocks
+    private MerchantLeaderboard merchantLeaderboard;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private MerchantDto merchant(int id, String status, Double score) {
+        MerchantDto dto = new MerchantDto();
+        dto.setId(id);
+        dto.setStatus(status);
+        dto.setScore(score);
+        return dto;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRebuild_OnlyApprovedWithScore() {
+        int ranked = merchantLeaderboard.rebuild(List.of(
+                merchant(1, "approved", 4.5),
+                merchant(2, "pending", 4.9),
+                merchant(3, "approved", null)));
+
+        ArgumentCaptor<Map<String, Double>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(redisUtil).zReplaceAll(eq("merchant:leaderboard"), captor.capture());
+        assertEquals(1, ranked);
+        assertEquals(4.5, captor.getValue().get("1"));
+        assertFalse(captor.getValue().containsKey("2"));
+        assertFalse(captor.getValue().containsKey("3"));
+        // 占位成员标记排行榜已加载
+        assertEquals(2, captor.getValue().size());
+    }
+
+    @Test
+    void testPage_SkipsPlaceholderAndCounts() {
+        // 占位成员混在结果中时也要去掉，否则 Integer.valueOf("_") 会抛异常
+        when(redisUtil.zReverseRangeByScore("merchant:leaderboard", 3.0, 10, 10)).thenReturn(List.of("7", "_", "2"));
+        when(redisUtil.zCount("merchant:leaderboard", 3.0, Double.POSITIVE_INFINITY)).thenReturn(12L);
+
+        LeaderboardPage page = merchantLeaderboard.page(3.0, 2, 10);
+
+        assertEquals(List.of(7, 2), page.merchantIds());
+        assertEquals(12, page.total());
+    }
+
+    @Test
+    void testUpdate_AddsOrRemoves() {
+        when(redisUtil.hasKey("merchant:leaderboard")).thenReturn(true);
+
+        merchantLeaderboard.update(1, "approved", 4.2);
+        merchantLeaderboard.update(2, "rejected", 4.2);
+
+        verify(redisUtil).zAdd("merchant:leaderboard", "1", 4.2);
+        verify(redisUtil).zRemove("merchant:leaderboard", "2");
+    }
+
+    @Test
+    void testUpdate_SkippedWhenNotLoaded() {
+        when(redisUtil.hasKey("merchant:leaderboard")).thenReturn(false);
+
+        merchantLeaderboard.update(1, "approved", 4.2);
+
+        verify(redisUtil, never()).zAdd(anyString(), anyString(), anyDouble());
+    }
+}
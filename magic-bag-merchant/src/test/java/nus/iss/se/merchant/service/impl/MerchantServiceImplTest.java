@@ -18,9 +18,15 @@ import nus.iss.se.merchant.common.UserContextHolder;
 import nus.iss.se.merchant.dto.MerchantDto;
 import nus.iss.se.merchant.dto.MerchantUpdateDto;
 import nus.iss.se.merchant.entity.Merchant;
+import nus.iss.se.merchant.leaderboard.MerchantLeaderboard;
+import nus.iss.se.merchant.leaderboard.MerchantLeaderboard.LeaderboardPage;
 import nus.iss.se.merchant.mapper.MerchantMapper;
+import org.springframework.dao.QueryTimeoutException;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 
 import java.lang.reflect.Field;
+import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 
@@ -41,6 +47,9 @@ class MerchantServiceImplTest {
     @Mock
     private UserContextHolder userContextHolder;
 
+    @Mock
+    private MerchantLeaderboard merchantLeaderboard;
+
     @BeforeEach
     void setup() throws Exception {
         MockitoAnnotations.openMocks(this);
@@ -165,5 +174,117 @@ class MerchantServiceImplTest {
         verify(merchantMapper, times(1)).insert(any(Merchant.class));
         verify(eventPublisher, times(1)).publish(any(EventEnvelope.class));
     }
-}
 
+    @Test
+    void testUpdateMerchantProfile_LocationChangedPublishesEvent() {
+        Merchant merchant = new Merchant();
+        merchant.setId(1);
+        merchant.setName("测试商家");
+        merchant.setStatus("approved");
+        merchant.setLatitude(BigDecimal.valueOf(1.3521));
+        merchant.setLongitude(BigDecimal.valueOf(103.8198));
+        when(merchantMapper.selectById(1)).thenReturn(merchant);
+        when(merchantMapper.updateById(any(Merchant.class))).thenReturn(1);
+
+        MerchantUpdateDto dto = new MerchantUpdateDto();
+        dto.setName("测试商家");
+        dto.setLatitude(BigDecimal.valueOf(1.4400));
+        dto.setLongitude(BigDecimal.valueOf(103.7000));
+
+        merchantService.updateMerchantProfile(dto, 1);
+
+        assertEquals(BigDecimal.valueOf(1.4400), merchant.getLatitude());
+        verify(eventPublisher, times(1)).publish(argThat(event -> "merchant.location.changed".equals(event.topic())));
+    }
+
+    @Test
+    void testUpdateMerchantProfile_LocationUnchangedNoEvent() {
+        Merchant merchant = new Merchant();
+        merchant.setId(1);
+        merchant.setName("测试商家");
+        merchant.setStatus("approved");
+        merchant.setLatitude(BigDecimal.valueOf(1.3521));
+        merchant.setLongitude(BigDecimal.valueOf(103.8198));
+        when(merchantMapper.selectById(1)).thenReturn(merchant);
+        when(merchantMapper.updateById(any(Merchant.class))).thenReturn(1);
+
+        MerchantUpdateDto dto = new MerchantUpdateDto();
+        dto.setName("测试商家");
+        dto.setPhone("81234567");
+
+        merchantService.updateMerchantProfile(dto, 1);
+
+        verify(eventPublisher, never()).publish(any());
+    }
+
+    @Test
+    void testSortedMerchantsByScore_FromLeaderboard() {
+        when(merchantLeaderboard.isLoaded()).thenReturn(true);
+        when(merchantLeaderboard.page(4.0, 2, 2)).thenReturn(new LeaderboardPage(List.of(3, 1), 5));
+        when(merchantMapper.selectBatchIds(List.of(3, 1))).thenReturn(List.of(merchant(1, 4.2), merchant(3, 4.8)));
+
+        IPage<MerchantDto> page = merchantService.sortedMerchantsByScore(2, 2, 4);
+
+        assertEquals(5, page.getTotal());
+        assertEquals(List.of(3, 1), page.getRecords().stream().map(MerchantDto::getId).toList());
+        verify(merchantMapper, never()).findMerchantsByScore(any(), any());
+    }
+
+    @Test
+    void testSortedMerchantsByScore_RebuildsWhenNotLoaded() {
+        when(merchantLeaderboard.isLoaded()).thenReturn(false);
+        when(merchantMapper.findAllApprovedMerchants()).thenReturn(List.of(merchant(1, 4.2)));
+        when(merchantLeaderboard.page(0.0, 1, 10)).thenReturn(new LeaderboardPage(List.of(), 0));
+
+        IPage<MerchantDto> page = merchantService.sortedMerchantsByScore(1, 10, 0);
+
+        assertTrue(page.getRecords().isEmpty());
+        verify(merchantLeaderboard, times(1)).rebuild(argThat(list -> list.size() == 1));
+        verify(merchantMapper, never()).selectBatchIds(any());
+    }
+
+    @Test
+    void testSortedMerchantsByScore_FallbackToDatabase() {
+        when(merchantLeaderboard.isLoaded()).thenThrow(new QueryTimeoutException("redis down"));
+        Page<Merchant> dbPage = new Page<>(1, 10, 1);
+        dbPage.setRecords(List.of(merchant(1, 4.2)));
+        when(merchantMapper.findMerchantsByScore(any(), eq(0.0))).thenReturn(dbPage);
+
+        IPage<MerchantDto> page = merchantService.sortedMerchantsByScore(1, 10, 0);
+
+        assertEquals(1, page.getTotal());
+        assertEquals(1, page.getRecords().get(0).getId());
+    }
+
+    @Test
+    void testUpdateMerchantScore_UpdatesLeaderboard() {
+        Merchant merchant = merchant(1, 3.0);
+        when(merchantMapper.selectById(1)).thenReturn(merchant);
+        when(merchantMapper.updateById(any(Merchant.class))).thenReturn(1);
+
+        merchantService.updateMerchantScore(1, 4.5);
+
+        assertEquals(4.5, merchant.getScore());
+        verify(merchantLeaderboard, times(1)).update(1, "approved", 4.5);
+    }
+
+    @Test
+    void testUpdateMerchantScore_NotFound() {
+        when(merchantMapper.selectById(99)).thenReturn(null);
+
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> merchantService.updateMerchantScore(99, 4.5));
+
+        assertEquals(ResultStatus.MERCHANT_NOT_FOUND, exception.getErrInfo());
+        verify(merchantLeaderboard, never()).update(any(), any(), any());
+    }
+
+    private static Merchant merchant(Integer id, Double score) {
+        Merchant merchant = new Merchant();
+        merchant.setId(id);
+        merchant.setName("商家" + id);
+        merchant.setStatus("approved");
+        merchant.setScore(score);
+        return merchant;
+    }
+}
@@ -8,7 +8,7 @@ import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.kafka.annotation.EnableKafka;
 
 @EnableKafka
-@SpringBootApplication(scanBasePackages = {"nus.iss.se.order", "nus.iss.se.common"})
+@SpringBootApplication(scanBasePackages = {"nus.iss.se.order", "nus.iss.se.common", "nus.iss.se.kafka"})
 @EnableFeignClients(basePackages = "nus.iss.se.order.api")
 @EnableDiscoveryClient
 @EnableConfigurationProperties
@@ -0,0 +1,73 @@
+package nus.iss.se.order.api;
+
+import nus.iss.se.common.Result;
+import nus.iss.se.common.batch.BatchLoader;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.order.dto.MagicBagDto;
+import nus.iss.se.order.dto.MerchantDto;
+import nus.iss.se.order.dto.UserDto;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 盲盒 / 商户 / 用户的单 id 查询
+ * 并发请求中的单 id 查询在几毫秒窗口内合并为一次 batch-query，相同 id 的在途查询只发一次；
+ * 返回值与对应 Feign 接口一致（不存在时返回对应的 NOT_FOUND），调用方可直接替换。
+ */
+@Component
+public class LookupClient implements DisposableBean {
+    private static final Duration BATCH_WINDOW = Duration.ofMillis(5);
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final BatchLoader<Integer, MagicBagDto> magicBagLoader;
+    private final BatchLoader<Integer, MerchantDto> merchantLoader;
+    private final BatchLoader<Integer, UserDto> userLoader;
+
+    public LookupClient(ProductClient productClient, MerchantClient merchantClient, UserClient userClient) {
+        this.magicBagLoader = BatchLoader.of("magic-bag",
+                ids -> toMap(productClient.getBatchMagicBags(ids), MagicBagDto::getId), BATCH_WINDOW, MAX_BATCH_SIZE);
+        this.merchantLoader = BatchLoader.of("merchant",
+                ids -> toMap(merchantClient.getBatchMerchants(ids), MerchantDto::getId), BATCH_WINDOW, MAX_BATCH_SIZE);
+        this.userLoader = BatchLoader.of("user",
+                ids -> toMap(userClient.getBatchUsers(ids), UserDto::getId), BATCH_WINDOW, MAX_BATCH_SIZE);
+    }
+
+    public Result<MagicBagDto> getMagicBagById(Integer id) {
+        return toResult(magicBagLoader.get(id), ResultStatus.PRODUCT_NOT_FOUND);
+    }
+
+    public Result<MerchantDto> getMerchantById(Integer id) {
+        return toResult(merchantLoader.get(id), ResultStatus.MERCHANT_NOT_FOUND);
+    }
+
+    public Result<UserDto> getUserById(Integer id) {
+        return toResult(userLoader.get(id), ResultStatus.USER_NOT_FOUND);
+    }
+
+    private static <T> Map<Integer, T> toMap(Result<List<T>> result, Function<T, Integer> idGetter) {
+        if (result == null || result.getCode() != ResultStatus.SUCCESS.getCode() || result.getData() == null) {
+            throw new BusinessException(ResultStatus.SERVICE_ERROR,
+                    "batch query failed: " + (result == null ? null : result.getMessage()));
+        }
+        return result.getData().stream()
+                .collect(Collectors.toMap(idGetter, Function.identity(), (first, second) -> first));
+    }
+
+    private static <T> Result<T> toResult(T data, ResultStatus notFound) {
+        return data == null ? Result.error(notFound) : Result.success(data);
+    }
+
+    @Override
+    public void destroy() {
+        magicBagLoader.close();
+        merchantLoader.close();
+        userLoader.close();
+    }
+}
@@ -5,6 +5,10 @@ import nus.iss.se.order.dto.MerchantDto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
 
 /**
  * Merchant服务Feign客户端
@@ -21,6 +25,14 @@ public interface MerchantClient {
     @GetMapping("/merchant/{id}")
     Result<MerchantDto> getMerchantById(@PathVariable("id") Integer id);
 
+    /**
+     * 根据多个商户ID批量获取商户信息
+     * @param ids 商户ID列表
+     * @return 商户信息列表
+     */
+    @PostMapping("/merchant/batch-query")
+    Result<List<MerchantDto>> getBatchMerchants(@RequestBody List<Integer> ids);
+
     @GetMapping("/merchant/user/{id}")
     Result<MerchantDto> getMerchantByUserId(@PathVariable("id") Integer id);
 }
\ No newline at end of file
@@ -2,9 +2,12 @@ package nus.iss.se.order.api;
 
 import nus.iss.se.common.Result;
 import nus.iss.se.order.dto.MagicBagDto;
+import nus.iss.se.order.dto.StockReservationDto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * Product 服务的 Feign 客户端
  */
@@ -18,4 +21,28 @@ public interface ProductClient {
      */
     @GetMapping("/product/{id}")
     Result<MagicBagDto> getMagicBagById(@PathVariable("id") Integer id);
+
+    /**
+     * 批量查询盲盒（对应 POST /product/batch-query）
+     */
+    @PostMapping("/product/batch-query")
+    Result<List<MagicBagDto>> getBatchMagicBags(@RequestBody List<Integer> ids);
+
+    /**
+     * 批量预留库存，任一商品不足则全部失败
+     */
+    @PostMapping("/product/stock/reserve")
+    Result<Void> reserveStock(@RequestBody StockReservationDto reservation);
+
+    /**
+     * 确认预留（订单已支付）
+     */
+    @PostMapping("/product/stock/{reservationId}/confirm")
+    Result<Void> confirmStock(@PathVariable("reservationId") String reservationId);
+
+    /**
+     * 释放预留（订单已取消）
+     */
+    @PostMapping("/product/stock/{reservationId}/release")
+    Result<Void> releaseStock(@PathVariable("reservationId") String reservationId);
 }
\ No newline at end of file
@@ -5,6 +5,10 @@ import nus.iss.se.order.dto.UserDto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
 
 /**
  * User 服务的 Feign 客户端
@@ -19,4 +23,10 @@ public interface UserClient {
      */
     @GetMapping("/user/profile/id/{id}")
     Result<UserDto> getUserById(@PathVariable("id") Integer id);
+
+    /**
+     * 批量获取用户信息
+     */
+    @PostMapping("/user/profile/batch-query")
+    Result<List<UserDto>> getBatchUsers(@RequestBody List<Integer> ids);
 }
\ No newline at end of file
@@ -51,6 +51,20 @@ public class OrderController {
         return Result.success(orders);
     }
 
+    /**
+     * 获取订单列表（游标分页）- 带 cursor 参数时使用，第一页传空字符串
+     */
+    @GetMapping(params = "cursor")
+    @Operation(summary = "获取订单列表（游标分页）", description = "按创建时间倒序，使用上一页返回的 nextCursor 获取下一页；withTotal=true 时返回近似总数")
+    public Result<OrderCursorPage> getOrdersByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "10") int pageSize,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+
+        UserContext currentUser = userContextHolder.getCurrentUser();
+        return Result.success(orderService.getOrdersByCursor(currentUser, cursor, pageSize, withTotal));
+    }
+
     /**
      * 获取订单详情 - 根据角色验证权限
      */
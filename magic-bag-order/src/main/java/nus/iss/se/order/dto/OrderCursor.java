@@ -0,0 +1,44 @@
+package nus.iss.se.order.dto;
+
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 订单列表游标：上一页最后一条的 (created_at, id)
+ * 对客户端是不透明的字符串，内部为 base64url("创建时间毫秒:订单ID")
+ */
+public record OrderCursor(long createdAt, int id) {
+
+    public static OrderCursor of(OrderDto last) {
+        return new OrderCursor(last.getCreatedAt().getTime(), last.getId());
+    }
+
+    public Date createdAtDate() {
+        return new Date(createdAt);
+    }
+
+    public String encode() {
+        String raw = createdAt + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，空字符串表示第一页，返回 null
+     */
+    public static OrderCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new OrderCursor(Long.parseLong(raw.substring(0, separator)), Integer.parseInt(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID, "cursor: " + token);
+        }
+    }
+}
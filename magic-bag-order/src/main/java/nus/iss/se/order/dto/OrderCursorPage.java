@@ -0,0 +1,21 @@
+package nus.iss.se.order.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ */
+@Data
+public class OrderCursorPage {
+    private List<OrderDto> records;
+    private Integer size;
+
+    // 下一页游标，没有更多数据时为 null
+    private String nextCursor;
+    private boolean hasMore;
+
+    // 近似总数，仅在请求 withTotal=true 时返回
+    private Long approximateTotal;
+}
@@ -0,0 +1,18 @@
+package nus.iss.se.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * payment-service 发布的 order.paid 事件内容
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPaidEvent {
+    private Integer orderId;
+    private String orderNo;
+    private String sessionId;
+    private Long amountTotal;   // 分
+}
@@ -0,0 +1,26 @@
+package nus.iss.se.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 库存预留请求（对应 Product 服务 POST /product/stock/reserve）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationDto {
+    private String reservationId;
+    private List<StockLine> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StockLine {
+        private Integer magicBagId;
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,20 @@
+package nus.iss.se.order.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * order_stats 表的一行，主键 (scope_type, scope_id)
+ */
+@Data
+public class OrderStats {
+    private String scopeType;
+    private Integer scopeId;
+    private Long totalOrders;
+    private BigDecimal totalAmount;
+    private Long pendingOrders;
+    private Long paidOrders;
+    private Long completedOrders;
+    private Long cancelledOrders;
+}
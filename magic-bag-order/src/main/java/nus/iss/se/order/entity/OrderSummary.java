@@ -0,0 +1,34 @@
+package nus.iss.se.order.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 订单列表读模型（反范式）
+ * 每个订单按涉及的商家各一行，商家列表/统计直接按 (merchant_id, created_at) 扫描；
+ * bag_title/merchant_name 为订单第一个商品的信息，同一订单的各行相同，primaryMerchant 标记第一个商品所属商家那一行
+ */
+@Data
+@TableName("order_summary")
+public class OrderSummary {
+    @TableId(type = IdType.AUTO)
+    private Integer id;
+    private Integer orderId;
+    private Integer merchantId;
+    private Integer userId;
+    private String orderType;
+    private String status;
+    private BigDecimal totalPrice;
+    private String bagTitle;
+    private String merchantName;
+    private Integer itemCount;
+    @TableField("is_primary")
+    private Boolean primaryMerchant;
+    private Date createdAt;
+}
@@ -0,0 +1,8 @@
+package nus.iss.se.order.kafka;
+
+public interface EventTopicType {
+    String ORDER_PAID = "order.paid";
+    String ORDER_STOCK_CONFIRM = "order.stock.confirm";
+    String ORDER_STOCK_RELEASE = "order.stock.release";
+    String ORDER_REFUND_REQUIRED = "order.refund.required";
+}
@@ -0,0 +1,33 @@
+package nus.iss.se.order.kafka.handler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.EventHandler;
+import nus.iss.se.order.dto.OrderPaidEvent;
+import nus.iss.se.order.kafka.EventTopicType;
+import nus.iss.se.order.service.IOrderService;
+import org.springframework.stereotype.Component;
+
+/**
+ * 支付成功：webhook 和 /verify 兜底都可能发布，消息也可能重复投递，markOrderPaid 幂等
+ * 订单已取消时 markOrderPaid 发布退款事件，重复投递导致的重复退款请求由支付服务去重
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EventHandler(topic = EventTopicType.ORDER_PAID)
+public class OrderPaidHandler implements DomainEventHandler<OrderPaidEvent> {
+    private final IOrderService orderService;
+
+    @Override
+    public void handle(OrderPaidEvent event, EventEnvelope envelope) {
+        log.debug("handling event - {}, details: {}", EventTopicType.ORDER_PAID, envelope);
+        if (event == null || event.getOrderId() == null) {
+            log.warn("Ignore invalid order.paid event: {}", envelope);
+            return;
+        }
+        orderService.markOrderPaid(event.getOrderId(), event.getSessionId());
+    }
+}
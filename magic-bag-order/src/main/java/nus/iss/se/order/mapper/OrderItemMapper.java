@@ -2,6 +2,7 @@ package nus.iss.se.order.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import nus.iss.se.order.entity.OrderItem;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -12,5 +13,15 @@ import java.util.List;
 public interface OrderItemMapper extends BaseMapper<OrderItem> {
     @Select("SELECT * FROM order_items WHERE order_id = #{orderId}")
     List<OrderItem> findByOrderId(@Param("orderId") Integer orderId);
-}
 
+    /**
+     * 多行 INSERT，一次往返写入订单全部明细
+     */
+    @Insert("<script>" +
+            "INSERT INTO order_items (order_id, magic_bag_id, quantity, unit_price, subtotal, created_at) VALUES " +
+            "<foreach collection='items' item='item' separator=','>" +
+            "(#{item.orderId}, #{item.magicBagId}, #{item.quantity}, #{item.unitPrice}, #{item.subtotal}, #{item.createdAt})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("items") List<OrderItem> items);
+}
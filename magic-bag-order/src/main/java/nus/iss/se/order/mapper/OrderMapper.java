@@ -4,153 +4,113 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import nus.iss.se.order.dto.OrderDto;
-import nus.iss.se.order.dto.OrderStatsDto;
 import nus.iss.se.order.entity.Order;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Date;
+import java.util.List;
+
 /**
  * 订单 Mapper
  * 继承 BaseMapper 自动获得基础 CRUD 方法
  */
 @Mapper
 public interface OrderMapper extends BaseMapper<Order> {
-    
+
     /**
-     * 查询所有订单（分页）
+     * 订单列表公用的查询列，商品标题和商家名称取自 order_summary 读模型
      */
-    @Select("SELECT o.id, o.order_no, o.user_id, o.bag_id, o.quantity, " +
+    String LIST_COLUMNS = "SELECT o.id, o.order_no, o.user_id, o.bag_id, o.quantity, " +
             "o.total_price, o.status, o.pickup_code, o.pickup_start_time, " +
             "o.pickup_end_time, o.created_at, o.paid_at, o.completed_at, o.cancelled_at, o.order_type, " +
-            "u.nickname as user_name, " +
-            "CASE " +
-            "    WHEN o.order_type = 'cart' THEN " +
-            "        (SELECT mb.title FROM order_items oi " +
-            "         JOIN magic_bags mb ON oi.magic_bag_id = mb.id " +
-            "         WHERE oi.order_id = o.id LIMIT 1) " +
-            "    ELSE mb.title " +
-            "END as bag_title, " +
-            "CASE " +
-            "    WHEN o.order_type = 'cart' THEN " +
-            "        (SELECT m.name FROM order_items oi " +
-            "         JOIN magic_bags mb ON oi.magic_bag_id = mb.id " +
-            "         JOIN merchants m ON mb.merchant_id = m.id " +
-            "         WHERE oi.order_id = o.id LIMIT 1) " +
-            "    ELSE m.name " +
-            "END as merchant_name " +
-            "FROM orders o " +
+            "u.nickname as user_name, s.bag_title, s.merchant_name ";
+
+    /**
+     * 按订单查询：每个订单只关联第一个商品所属商家的那一行读模型
+     */
+    String ORDER_FROM = "FROM orders o " +
+            "LEFT JOIN users u ON o.user_id = u.id " +
+            "LEFT JOIN order_summary s ON s.order_id = o.id AND s.is_primary = 1 ";
+
+    /**
+     * 按商家查询：直接扫描 order_summary 的 (merchant_id, created_at) 索引
+     */
+    String MERCHANT_FROM = "FROM order_summary s " +
+            "JOIN orders o ON o.id = s.order_id " +
             "LEFT JOIN users u ON o.user_id = u.id " +
-            "LEFT JOIN magic_bags mb ON o.bag_id = mb.id " +
-            "LEFT JOIN merchants m ON mb.merchant_id = m.id " +
-            "ORDER BY o.created_at DESC")
+            "WHERE s.merchant_id = #{merchantId} ";
+
+    /**
+     * 游标条件：只取排在上一页最后一条 (created_at, id) 之后的数据，依赖 (created_at, id) 索引，不需要 OFFSET
+     */
+    String CURSOR_CONDITION = "<if test='cursorCreatedAt != null'>" +
+            " AND (o.created_at &lt; #{cursorCreatedAt} " +
+            "      OR (o.created_at = #{cursorCreatedAt} AND o.id &lt; #{cursorId})) " +
+            "</if>";
+
+    String MERCHANT_CURSOR_CONDITION = "<if test='cursorCreatedAt != null'>" +
+            " AND (s.created_at &lt; #{cursorCreatedAt} " +
+            "      OR (s.created_at = #{cursorCreatedAt} AND s.order_id &lt; #{cursorId})) " +
+            "</if>";
+
+    String CURSOR_ORDER = " ORDER BY o.created_at DESC, o.id DESC LIMIT #{limit}";
+
+    String MERCHANT_CURSOR_ORDER = " ORDER BY s.created_at DESC, s.order_id DESC LIMIT #{limit}";
+
+    /**
+     * 查询所有订单（分页）
+     */
+    @Select(LIST_COLUMNS + ORDER_FROM + "ORDER BY o.created_at DESC")
     IPage<OrderDto> findAllOrders(Page<OrderDto> page);
     
     /**
      * 根据商家ID查询订单（分页）
      * 支持单件商品订单和多件商品订单
      */
-    @Select("SELECT o.id, o.order_no, o.user_id, o.bag_id, o.quantity, " +
-            "o.total_price, o.status, o.pickup_code, o.created_at, o.order_type, " +
-            "u.nickname as user_name, " +
-            "CASE " +
-            "    WHEN o.order_type = 'cart' THEN " +
-            "        (SELECT mb.title FROM order_items oi " +
-            "         JOIN magic_bags mb ON oi.magic_bag_id = mb.id " +
-            "         WHERE oi.order_id = o.id LIMIT 1) " +
-            "    ELSE mb.title " +
-            "END as bag_title, " +
-            "CASE " +
-            "    WHEN o.order_type = 'cart' THEN " +
-            "        (SELECT m.name FROM order_items oi " +
-            "         JOIN magic_bags mb ON oi.magic_bag_id = mb.id " +
-            "         JOIN merchants m ON mb.merchant_id = m.id " +
-            "         WHERE oi.order_id = o.id LIMIT 1) " +
-            "    ELSE m.name " +
-            "END as merchant_name " +
-            "FROM orders o " +
-            "LEFT JOIN users u ON o.user_id = u.id " +
-            "LEFT JOIN magic_bags mb ON o.bag_id = mb.id " +
-            "LEFT JOIN merchants m ON mb.merchant_id = m.id " +
-            "WHERE (o.order_type = 'single' AND mb.merchant_id = #{merchantId}) " +
-            "   OR (o.order_type = 'cart' AND EXISTS " +
-            "       (SELECT 1 FROM order_items oi2 " +
-            "        JOIN magic_bags mb2 ON oi2.magic_bag_id = mb2.id " +
-            "        WHERE oi2.order_id = o.id AND mb2.merchant_id = #{merchantId})) " +
-            "ORDER BY o.created_at DESC")
+    @Select(LIST_COLUMNS + MERCHANT_FROM + "ORDER BY s.created_at DESC")
     IPage<OrderDto> findByMerchantId(Page<OrderDto> page, @Param("merchantId") Integer merchantId);
     
     /**
      * 根据用户ID查询订单（分页）
      */
-    @Select("SELECT o.id, o.order_no, o.user_id, o.bag_id, o.quantity, " +
-            "o.total_price, o.status, o.pickup_code, o.created_at, o.order_type, " +
-            "u.nickname as user_name, " +
-            "CASE " +
-            "    WHEN o.order_type = 'cart' THEN " +
-            "        (SELECT mb.title FROM order_items oi " +
-            "         JOIN magic_bags mb ON oi.magic_bag_id = mb.id " +
-            "         WHERE oi.order_id = o.id LIMIT 1) " +
-            "    ELSE mb.title " +
-            "END as bag_title, " +
-            "CASE " +
-            "    WHEN o.order_type = 'cart' THEN " +
-            "        (SELECT m.name FROM order_items oi " +
-            "         JOIN magic_bags mb ON oi.magic_bag_id = mb.id " +
-            "         JOIN merchants m ON mb.merchant_id = m.id " +
-            "         WHERE oi.order_id = o.id LIMIT 1) " +
-            "    ELSE m.name " +
-            "END as merchant_name " +
-            "FROM orders o " +
-            "LEFT JOIN users u ON o.user_id = u.id " +
-            "LEFT JOIN magic_bags mb ON o.bag_id = mb.id " +
-            "LEFT JOIN merchants m ON mb.merchant_id = m.id " +
-            "WHERE o.user_id = #{userId} " +
-            "ORDER BY o.created_at DESC")
+    @Select(LIST_COLUMNS + ORDER_FROM + "WHERE o.user_id = #{userId} ORDER BY o.created_at DESC")
     IPage<OrderDto> findByUserId(Page<OrderDto> page, @Param("userId") Integer userId);
-    
+
     /**
-     * 查询所有订单统计
+     * 查询所有订单（游标分页）
      */
-    @Select("SELECT " +
-            "COUNT(*) as totalOrders, " +
-            "SUM(CASE WHEN status = 'pending' THEN 1 ELSE 0 END) as pendingOrders, " +
-            "SUM(CASE WHEN status = 'paid' THEN 1 ELSE 0 END) as paidOrders, " +
-            "SUM(CASE WHEN status = 'completed' THEN 1 ELSE 0 END) as completedOrders, " +
-            "SUM(CASE WHEN status = 'cancelled' THEN 1 ELSE 0 END) as cancelledOrders, " +
-            "COALESCE(SUM(total_price), 0) as totalRevenue " +
-            "FROM orders")
-    OrderStatsDto findAllOrderStats();
-    
+    @Select("<script>" + LIST_COLUMNS + ORDER_FROM + "WHERE 1 = 1 " + CURSOR_CONDITION + CURSOR_ORDER + "</script>")
+    List<OrderDto> findAllOrdersByCursor(@Param("cursorCreatedAt") Date cursorCreatedAt,
+                                         @Param("cursorId") Integer cursorId,
+                                         @Param("limit") int limit);
+
     /**
-     * 根据商家ID查询订单统计
-     * 支持单件商品订单和多件商品订单
+     * 根据商家ID查询订单（游标分页）
      */
-    @Select("SELECT " +
-            "COUNT(*) as totalOrders, " +
-            "SUM(CASE WHEN o.status = 'pending' THEN 1 ELSE 0 END) as pendingOrders, " +
-            "SUM(CASE WHEN o.status = 'paid' THEN 1 ELSE 0 END) as paidOrders, " +
-            "SUM(CASE WHEN o.status = 'completed' THEN 1 ELSE 0 END) as completedOrders, " +
-            "SUM(CASE WHEN o.status = 'cancelled' THEN 1 ELSE 0 END) as cancelledOrders, " +
-            "COALESCE(SUM(o.total_price), 0) as totalRevenue " +
-            "FROM orders o " +
-            "WHERE (o.order_type = 'single' AND EXISTS " +
-            "       (SELECT 1 FROM magic_bags mb WHERE mb.id = o.bag_id AND mb.merchant_id = #{merchantId})) " +
-            "   OR (o.order_type = 'cart' AND EXISTS " +
-            "       (SELECT 1 FROM order_items oi " +
-            "        JOIN magic_bags mb ON oi.magic_bag_id = mb.id " +
-            "        WHERE oi.order_id = o.id AND mb.merchant_id = #{merchantId}))")
-    OrderStatsDto findOrderStatsByMerchantId(@Param("merchantId") Integer merchantId);
-    
+    @Select("<script>" + LIST_COLUMNS + MERCHANT_FROM + MERCHANT_CURSOR_CONDITION + MERCHANT_CURSOR_ORDER + "</script>")
+    List<OrderDto> findByMerchantIdByCursor(@Param("merchantId") Integer merchantId,
+                                            @Param("cursorCreatedAt") Date cursorCreatedAt,
+                                            @Param("cursorId") Integer cursorId,
+                                            @Param("limit") int limit);
+
+    /**
+     * 根据用户ID查询订单（游标分页）
+     */
+    @Select("<script>" + LIST_COLUMNS + ORDER_FROM + "WHERE o.user_id = #{userId} " + CURSOR_CONDITION + CURSOR_ORDER + "</script>")
+    List<OrderDto> findByUserIdByCursor(@Param("userId") Integer userId,
+                                        @Param("cursorCreatedAt") Date cursorCreatedAt,
+                                        @Param("cursorId") Integer cursorId,
+                                        @Param("limit") int limit);
+
+    /**
+     * 加行锁读取订单，支付确认、取消和超时取消串行执行，避免互相覆盖状态
+     */
+    @Select("SELECT * FROM orders WHERE id = #{id} FOR UPDATE")
+    Order selectByIdForUpdate(@Param("id") Integer id);
+
     /**
-     * 根据用户ID查询订单统计
+     * 超过支付期限仍未支付的订单ID，依赖 (status, created_at) 索引
      */
-    @Select("SELECT " +
-            "COUNT(*) as totalOrders, " +
-            "SUM(CASE WHEN status = 'pending' THEN 1 ELSE 0 END) as pendingOrders, " +
-            "SUM(CASE WHEN status = 'paid' THEN 1 ELSE 0 END) as paidOrders, " +
-            "SUM(CASE WHEN status = 'completed' THEN 1 ELSE 0 END) as completedOrders, " +
-            "SUM(CASE WHEN status = 'cancelled' THEN 1 ELSE 0 END) as cancelledOrders, " +
-            "COALESCE(SUM(total_price), 0) as totalRevenue " +
-            "FROM orders " +
-            "WHERE user_id = #{userId}")
-    OrderStatsDto findOrderStatsByUserId(@Param("userId") Integer userId);
-}
\ No newline at end of file
+    @Select("SELECT id FROM orders WHERE status = 'pending' AND created_at < #{cutoff} ORDER BY created_at LIMIT #{limit}")
+    List<Integer> findExpiredPendingIds(@Param("cutoff") Date cutoff, @Param("limit") int limit);
+}
@@ -0,0 +1,101 @@
+package nus.iss.se.order.mapper;
+
+import nus.iss.se.order.dto.OrderStatsDto;
+import nus.iss.se.order.entity.OrderStats;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 订单统计物化表 Mapper
+ * 每个范围一行，主键 (scope_type, scope_id)，global 的 scope_id 为 0
+ */
+@Mapper
+public interface OrderStatsMapper {
+
+    String STATS_COLUMNS = "total_orders, pending_orders, paid_orders, completed_orders, cancelled_orders, total_amount";
+
+    String STATS_UPSERT = "ON DUPLICATE KEY UPDATE " +
+            "total_orders = total_orders + VALUES(total_orders), " +
+            "pending_orders = pending_orders + VALUES(pending_orders), " +
+            "paid_orders = paid_orders + VALUES(paid_orders), " +
+            "completed_orders = completed_orders + VALUES(completed_orders), " +
+            "cancelled_orders = cancelled_orders + VALUES(cancelled_orders), " +
+            "total_amount = total_amount + VALUES(total_amount)";
+
+    String STATS_OVERWRITE = "ON DUPLICATE KEY UPDATE " +
+            "total_orders = VALUES(total_orders), " +
+            "pending_orders = VALUES(pending_orders), " +
+            "paid_orders = VALUES(paid_orders), " +
+            "completed_orders = VALUES(completed_orders), " +
+            "cancelled_orders = VALUES(cancelled_orders), " +
+            "total_amount = VALUES(total_amount)";
+
+    String DELTA_VALUES = "#{delta.totalOrders}, #{delta.pendingOrders}, #{delta.paidOrders}, " +
+            "#{delta.completedOrders}, #{delta.cancelledOrders}, #{delta.totalAmount}";
+
+    String AGGREGATE_COLUMNS = "COUNT(*) AS totalOrders, " +
+            "COALESCE(SUM(status = 'pending'), 0) AS pendingOrders, " +
+            "COALESCE(SUM(status = 'paid'), 0) AS paidOrders, " +
+            "COALESCE(SUM(status = 'completed'), 0) AS completedOrders, " +
+            "COALESCE(SUM(status = 'cancelled'), 0) AS cancelledOrders, " +
+            "COALESCE(SUM(total_price), 0) AS totalAmount ";
+
+    @Select("SELECT " +
+            "total_orders as totalOrders, " +
+            "pending_orders as pendingOrders, " +
+            "paid_orders as paidOrders, " +
+            "completed_orders as completedOrders, " +
+            "cancelled_orders as cancelledOrders, " +
+            "total_amount as totalAmount " +
+            "FROM order_stats " +
+            "WHERE scope_type = #{scopeType} AND scope_id = #{scopeId}")
+    OrderStatsDto findByScope(@Param("scopeType") String scopeType, @Param("scopeId") Integer scopeId);
+
+    /**
+     * 一条多行 upsert 把同一增量累加到 global、下单用户和订单涉及的每个商家
+     */
+    @Insert("<script>" +
+            "INSERT INTO order_stats (scope_type, scope_id, " + STATS_COLUMNS + ") VALUES " +
+            "('global', 0, " + DELTA_VALUES + "), " +
+            "('user', #{userId}, " + DELTA_VALUES + ")" +
+            "<foreach collection='merchantIds' item='merchantId'>" +
+            ", ('merchant', #{merchantId}, " + DELTA_VALUES + ")" +
+            "</foreach> " +
+            STATS_UPSERT +
+            "</script>")
+    int applyDelta(@Param("userId") Integer userId,
+                   @Param("merchantIds") Collection<Integer> merchantIds,
+                   @Param("delta") OrderStatsDto delta);
+
+    /**
+     * 以下为对账：先用普通 SELECT（快照读，不对 orders / order_summary 加锁）重新聚合，再覆盖物化值
+     */
+    @Select("SELECT 'global' AS scopeType, 0 AS scopeId, " + AGGREGATE_COLUMNS + "FROM orders")
+    OrderStats aggregateGlobal();
+
+    @Select("SELECT 'user' AS scopeType, user_id AS scopeId, " + AGGREGATE_COLUMNS +
+            "FROM orders GROUP BY user_id")
+    List<OrderStats> aggregateUsers();
+
+    @Select("SELECT 'merchant' AS scopeType, merchant_id AS scopeId, " + AGGREGATE_COLUMNS +
+            "FROM order_summary GROUP BY merchant_id")
+    List<OrderStats> aggregateMerchants();
+
+    /**
+     * 多行 upsert 覆盖物化值
+     */
+    @Insert("<script>" +
+            "INSERT INTO order_stats (scope_type, scope_id, " + STATS_COLUMNS + ") VALUES " +
+            "<foreach collection='rows' item='row' separator=','>" +
+            "(#{row.scopeType}, #{row.scopeId}, #{row.totalOrders}, #{row.pendingOrders}, #{row.paidOrders}, " +
+            "#{row.completedOrders}, #{row.cancelledOrders}, #{row.totalAmount})" +
+            "</foreach> " +
+            STATS_OVERWRITE +
+            "</script>")
+    int overwrite(@Param("rows") List<OrderStats> rows);
+}
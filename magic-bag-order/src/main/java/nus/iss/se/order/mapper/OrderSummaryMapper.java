@@ -0,0 +1,33 @@
+package nus.iss.se.order.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import nus.iss.se.order.entity.OrderSummary;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+@Mapper
+public interface OrderSummaryMapper extends BaseMapper<OrderSummary> {
+    @Update("UPDATE order_summary SET status = #{status} WHERE order_id = #{orderId}")
+    int updateStatus(@Param("orderId") Integer orderId, @Param("status") String status);
+
+    @Select("SELECT merchant_id FROM order_summary WHERE order_id = #{orderId}")
+    List<Integer> findMerchantIdsByOrderId(@Param("orderId") Integer orderId);
+
+    /**
+     * 多行 INSERT，一次往返写入订单涉及的全部商家行
+     */
+    @Insert("<script>" +
+            "INSERT INTO order_summary (order_id, merchant_id, user_id, order_type, status, total_price, " +
+            "bag_title, merchant_name, item_count, is_primary, created_at) VALUES " +
+            "<foreach collection='summaries' item='s' separator=','>" +
+            "(#{s.orderId}, #{s.merchantId}, #{s.userId}, #{s.orderType}, #{s.status}, #{s.totalPrice}, " +
+            "#{s.bagTitle}, #{s.merchantName}, #{s.itemCount}, #{s.primaryMerchant}, #{s.createdAt})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("summaries") List<OrderSummary> summaries);
+}
@@ -17,6 +17,16 @@ public interface IOrderService {
      */
     IPage<OrderDto> getOrders(UserContext currentUser, OrderQueryDto queryDto);
 
+    /**
+     * 获取订单列表（游标分页，按创建时间倒序），深翻页与第一页开销相同
+     * @param currentUser 当前用户信息
+     * @param cursor 上一页返回的游标，空表示第一页
+     * @param pageSize 每页数量
+     * @param withTotal 是否返回近似总数
+     * @return 订单游标分页数据
+     */
+    OrderCursorPage getOrdersByCursor(UserContext currentUser, String cursor, int pageSize, boolean withTotal);
+
     /**
      * 获取订单详情
      * @param orderId 订单ID
@@ -63,4 +73,18 @@ public interface IOrderService {
     OrderDto createOrderFromCart(Integer userId);
     
     void updateOrderStatusInternal(Integer orderId, String newStatus);
+
+    /**
+     * 支付成功（消费 order.paid 事件），重复调用无副作用
+     * 订单已取消时不恢复订单，发布 order.refund.required 由支付服务退款
+     * @param orderId 订单ID
+     * @param sessionId 完成支付的 Stripe Checkout Session
+     */
+    void markOrderPaid(Integer orderId, String sessionId);
+
+    /**
+     * 超过支付期限仍未支付时取消订单并释放库存预留，订单已支付或已取消时不处理
+     * @param orderId 订单ID
+     */
+    void cancelExpiredOrder(Integer orderId);
 }
\ No newline at end of file
@@ -3,37 +3,54 @@ package nus.iss.se.order.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nus.iss.se.common.Result;
+import nus.iss.se.common.constant.RedisPrefix;
 import nus.iss.se.common.constant.ResultStatus;
 import nus.iss.se.common.cache.UserContext;
+import nus.iss.se.common.batch.FanOut;
 import nus.iss.se.order.api.CartClient;
+import nus.iss.se.order.api.LookupClient;
 import nus.iss.se.order.api.MerchantClient;
 import nus.iss.se.order.api.ProductClient;
 import nus.iss.se.order.api.UserClient;
 import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.publisher.EventPublisher;
 import nus.iss.se.order.constant.OrderStatus;
 import nus.iss.se.order.constant.UserRole;
 import nus.iss.se.order.dto.*;
 import nus.iss.se.order.dto.MerchantDto;
 import nus.iss.se.order.entity.Order;
 import nus.iss.se.order.entity.OrderItem;
+import nus.iss.se.order.entity.OrderSummary;
 import nus.iss.se.order.entity.OrderVerification;
+import nus.iss.se.order.kafka.EventTopicType;
 import nus.iss.se.order.mapper.OrderMapper;
 import nus.iss.se.order.mapper.OrderItemMapper;
+import nus.iss.se.order.mapper.OrderSummaryMapper;
 import nus.iss.se.order.mapper.OrderVerificationMapper;
 import nus.iss.se.order.service.IOrderService;
+import nus.iss.se.order.stats.OrderStatsStore;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -47,13 +64,30 @@ public class OrderServiceImpl implements IOrderService {
     private final OrderMapper orderMapper;
     private final OrderVerificationMapper orderVerificationMapper;
     private final OrderItemMapper orderItemMapper;
+    private final OrderSummaryMapper orderSummaryMapper;
     private final ProductClient productClient;
     private final UserClient userClient;
     private final MerchantClient merchantClient;
     private final CartClient cartClient;
+    private final LookupClient lookupClient;
+    private final OrderStatsStore orderStatsStore;
+    private final EventPublisher eventPublisher;
+    private final RedisUtil redisUtil;
 
     private final SecureRandom random = new SecureRandom();
 
+    /** 游标分页每页上限 */
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
+    /** 订单详情中每个远程查询的超时，超时后该部分为空 */
+    private static final Duration DETAIL_LOOKUP_TIMEOUT = Duration.ofSeconds(2);
+
+    /** 近似订单总数，按查询范围缓存，避免每次翻页都对重查询做 COUNT */
+    private final Cache<String, Long> approximateTotals = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
     @Override
     public IPage<OrderDto> getOrders(UserContext currentUser, OrderQueryDto queryDto) {
         String userRole = currentUser.getRole();
@@ -84,43 +118,180 @@ public class OrderServiceImpl implements IOrderService {
                 throw new BusinessException(ResultStatus.ACCESS_DENIED);
         }
 
-        // 对查询结果进行处理，填充 OrderItems 和其他信息
+        // 对查询结果进行处理，批量填充 OrderItems 和其他信息
         if (orderPage != null && orderPage.getRecords() != null) {
-            orderPage.getRecords().forEach(orderDto -> {
-                if ("cart".equalsIgnoreCase(orderDto.getOrderType())) {
-                    List<OrderItem> items = orderItemMapper.findByOrderId(orderDto.getId());
-                    orderDto.setOrderItems(items.stream()
-                            .map(this::convertToOrderItemDto)
-                            .toList());
+            enrichOrders(orderPage.getRecords());
+        }
+
+        return orderPage;
+    }
+    
+    @Override
+    public OrderCursorPage getOrdersByCursor(UserContext currentUser, String cursor, int pageSize, boolean withTotal) {
+        OrderCursor after = OrderCursor.decode(cursor);
+        Date cursorCreatedAt = after == null ? null : after.createdAtDate();
+        Integer cursorId = after == null ? null : after.id();
+        int size = Math.min(Math.max(pageSize, 1), MAX_CURSOR_PAGE_SIZE);
+        // 多查一条用来判断是否还有下一页
+        int limit = size + 1;
+
+        UserRole role = UserRole.getByCode(currentUser.getRole())
+                .orElseThrow(() -> new BusinessException(ResultStatus.ACCESS_DENIED));
+
+        List<OrderDto> records;
+        String totalKey;
+        Supplier<Long> totalLoader;
+        switch (role) {
+            case SUPER_ADMIN, ADMIN:
+                records = orderMapper.findAllOrdersByCursor(cursorCreatedAt, cursorId, limit);
+                totalKey = "all";
+                totalLoader = () -> totalOrders(orderStatsStore.getGlobal());
+                break;
+            case MERCHANT:
+                Integer merchantUserId = currentUser.getId();
+                MerchantDto merchant = merchantClient.getMerchantByUserId(merchantUserId).getData();
+                if (merchant == null) {
+                    throw new BusinessException(ResultStatus.USER_NOT_FOUND, "Merchant user context not found:"+merchantUserId);
+                }
+                Integer merchantId = merchant.getId();
+                records = orderMapper.findByMerchantIdByCursor(merchantId, cursorCreatedAt, cursorId, limit);
+                totalKey = "merchant:" + merchantId;
+                totalLoader = () -> totalOrders(orderStatsStore.getByMerchant(merchantId));
+                break;
+            case USER, CUSTOMER:
+                Integer userId = currentUser.getId();
+                records = orderMapper.findByUserIdByCursor(userId, cursorCreatedAt, cursorId, limit);
+                totalKey = "user:" + userId;
+                totalLoader = () -> totalOrders(orderStatsStore.getByUser(userId));
+                break;
+            default:
+                throw new BusinessException(ResultStatus.ACCESS_DENIED);
+        }
+
+        OrderCursorPage result = new OrderCursorPage();
+        boolean hasMore = records.size() > size;
+        List<OrderDto> pageRecords = hasMore ? new ArrayList<>(records.subList(0, size)) : records;
+        enrichOrders(pageRecords);
+
+        result.setRecords(pageRecords);
+        result.setSize(size);
+        result.setHasMore(hasMore);
+        if (hasMore) {
+            result.setNextCursor(OrderCursor.of(pageRecords.getLast()).encode());
+        }
+        if (withTotal) {
+            result.setApproximateTotal(approximateTotals.get(totalKey, key -> totalLoader.get()));
+        }
+        return result;
+    }
+
+    private Long totalOrders(OrderStatsDto stats) {
+        return stats == null || stats.getTotalOrders() == null ? 0L : stats.getTotalOrders();
+    }
+
+    /**
+     * 批量填充订单列表的关联信息
+     * 先收集整页涉及的订单、商品、商家、用户ID，每个下游服务只调用一次批量接口，
+     * 订单明细也只用一条 IN 查询加载，避免按行逐个远程调用
+     */
+    private void enrichOrders(List<OrderDto> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        // 1. 一次性加载所有购物车订单的明细
+        List<Integer> cartOrderIds = orders.stream()
+                .filter(orderDto -> "cart".equalsIgnoreCase(orderDto.getOrderType()))
+                .map(OrderDto::getId)
+                .toList();
+        Map<Integer, List<OrderItem>> itemsByOrderId = cartOrderIds.isEmpty()
+                ? Collections.emptyMap()
+                : orderItemMapper.selectList(new LambdaQueryWrapper<OrderItem>()
+                        .in(OrderItem::getOrderId, cartOrderIds))
+                .stream()
+                .collect(Collectors.groupingBy(OrderItem::getOrderId));
+
+        // 2. 批量查询商品，再根据商品批量查询商家
+        Set<Integer> bagIds = new HashSet<>();
+        orders.stream().map(OrderDto::getBagId).filter(Objects::nonNull).forEach(bagIds::add);
+        itemsByOrderId.values().forEach(items -> items.stream()
+                .map(OrderItem::getMagicBagId)
+                .filter(Objects::nonNull)
+                .forEach(bagIds::add));
+        Map<Integer, MagicBagDto> bags = batchFetch(bagIds, productClient::getBatchMagicBags, MagicBagDto::getId);
+
+        Set<Integer> merchantIds = bags.values().stream()
+                .map(MagicBagDto::getMerchantId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Integer, MerchantDto> merchants = batchFetch(merchantIds, merchantClient::getBatchMerchants, MerchantDto::getId);
+
+        // 3. 批量查询下单用户
+        Set<Integer> userIds = orders.stream()
+                .map(OrderDto::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Integer, UserDto> users = batchFetch(userIds, userClient::getBatchUsers, UserDto::getId);
+
+        // 4. 在内存中组装
+        orders.forEach(orderDto -> {
+            if ("cart".equalsIgnoreCase(orderDto.getOrderType())) {
+                orderDto.setOrderItems(itemsByOrderId.getOrDefault(orderDto.getId(), List.of()).stream()
+                        .map(item -> toOrderItemDto(item, bags.get(item.getMagicBagId())))
+                        .toList());
+            }
+
+            MagicBagDto bag = null;
+            if (orderDto.getBagId() != null) {
+                bag = bags.get(orderDto.getBagId());
+                if (bag != null) {
+                    orderDto.setBagTitle(bag.getTitle());
                 }
-                if (orderDto.getBagId() != null) {
-                    MagicBagDto bag = productClient.getMagicBagById(orderDto.getBagId()).getData();
+            } else if ("cart".equalsIgnoreCase(orderDto.getOrderType()) && !CollectionUtils.isEmpty(orderDto.getOrderItems())) {
+                OrderItemDto firstItemDto = orderDto.getOrderItems().getFirst();
+                if (firstItemDto != null && firstItemDto.getMagicBagId() != null) {
+                    bag = bags.get(firstItemDto.getMagicBagId());
                     if (bag != null) {
-                        orderDto.setBagTitle(bag.getTitle());
-                        MerchantDto m = merchantClient.getMerchantById(bag.getMerchantId()).getData();
-                        if (m != null) {
-                            orderDto.setMerchantName(m.getName());
-                        }
-                    }
-                } else if ("cart".equalsIgnoreCase(orderDto.getOrderType()) && !CollectionUtils.isEmpty(orderDto.getOrderItems())){
-                    OrderItemDto firstItemDto = orderDto.getOrderItems().getFirst();
-                    if (firstItemDto != null && firstItemDto.getMagicBagId() != null) {
-                        MagicBagDto bag = productClient.getMagicBagById(firstItemDto.getMagicBagId()).getData();
-                        if (bag != null) {
-                            orderDto.setBagTitle("Multiple Items");
-                            MerchantDto m = merchantClient.getMerchantById(bag.getMerchantId()).getData();
-                            if (m != null) {
-                                orderDto.setMerchantName(m.getName());
-                            }
-                        }
+                        orderDto.setBagTitle("Multiple Items");
                     }
                 }
-                UserDto user = userClient.getUserById(orderDto.getUserId()).getData();
-                orderDto.setUserName(user != null &&user.getNickname() != null ? user.getNickname() : user.getUsername());
-            });
-        }
+            }
+            if (bag != null) {
+                MerchantDto m = merchants.get(bag.getMerchantId());
+                if (m != null) {
+                    orderDto.setMerchantName(m.getName());
+                }
+            }
 
-        return orderPage;
+            UserDto user = users.get(orderDto.getUserId());
+            if (user != null) {
+                orderDto.setUserName(user.getNickname() != null ? user.getNickname() : user.getUsername());
+            }
+        });
+    }
+
+    /**
+     * 调用下游批量接口并按ID建立索引，失败时降级为空结果（保留 SQL 关联出的字段）
+     */
+    private <T> Map<Integer, T> batchFetch(Collection<Integer> ids,
+                                           Function<List<Integer>, Result<List<T>>> loader,
+                                           Function<T, Integer> idGetter) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            Result<List<T>> result = loader.apply(new ArrayList<>(ids));
+            if (!isResultSuccess(result) || result.getData() == null) {
+                log.warn("Batch lookup returned no data for ids: {}", ids);
+                return Collections.emptyMap();
+            }
+            return result.getData().stream()
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toMap(idGetter, Function.identity(), (a, b) -> a));
+        } catch (Exception e) {
+            log.warn("Batch lookup failed for ids {}: {}", ids, e.getMessage());
+            return Collections.emptyMap();
+        }
     }
     
     @Override
@@ -148,7 +319,7 @@ public class OrderServiceImpl implements IOrderService {
                     boolean hasPermission = orderItems.stream()
                         .anyMatch(item -> {
                             try {
-                                Result<MagicBagDto> bagResult = productClient.getMagicBagById(item.getMagicBagId());
+                                Result<MagicBagDto> bagResult = lookupClient.getMagicBagById(item.getMagicBagId());
                                 return isResultSuccess(bagResult) && 
                                        bagResult.getData() != null &&
                                        bagResult.getData().getMerchantId().equals(currentUser.getId());
@@ -166,7 +337,7 @@ public class OrderServiceImpl implements IOrderService {
                 } else {
                     // 单件商品订单：使用原有逻辑
                     if (order.getBagId() != null) {
-                        Result<MagicBagDto> bagResult = productClient.getMagicBagById(order.getBagId());
+                        Result<MagicBagDto> bagResult = lookupClient.getMagicBagById(order.getBagId());
                         if (!isResultSuccess(bagResult) || bagResult.getData() == null) {
                             log.error("Product not found when verifying merchant access: bagId={}", order.getBagId());
                             throw new BusinessException(ResultStatus.PRODUCT_NOT_FOUND);
@@ -212,7 +383,7 @@ public class OrderServiceImpl implements IOrderService {
         // 权限验证
         if (UserRole.MERCHANT.getCode().equals(userRole)) {
             if (order.getBagId() != null) {
-                Result<MagicBagDto> bagResult = productClient.getMagicBagById(order.getBagId());
+                Result<MagicBagDto> bagResult = lookupClient.getMagicBagById(order.getBagId());
                 if (!isResultSuccess(bagResult) || bagResult.getData() == null) {
                     log.error("Product not found when updating order: bagId={}", order.getBagId());
                     throw new BusinessException(ResultStatus.PRODUCT_NOT_FOUND);
@@ -251,6 +422,44 @@ public class OrderServiceImpl implements IOrderService {
         doUpdateOrderStatus(order, newStatus);
     }
     
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void markOrderPaid(Integer orderId, String sessionId) {
+        Order order = orderMapper.selectByIdForUpdate(orderId);
+        if (order == null) {
+            log.warn("Payment confirmed for unknown order: {}", orderId);
+            return;
+        }
+        String status = order.getStatus();
+        if (OrderStatus.PAID.getCode().equals(status) || OrderStatus.COMPLETED.getCode().equals(status)) {
+            log.info("Order {} already '{}', duplicate payment confirmation ignored", orderId, status);
+            return;
+        }
+        if (OrderStatus.CANCELLED.getCode().equals(status)) {
+            // 库存已归还，不恢复订单；退款事件随本事务写入发件箱，由支付服务退款
+            if (sessionId == null || sessionId.isBlank()) {
+                log.error("Payment confirmed for cancelled order {} without session, refund manually", orderId);
+                return;
+            }
+            log.warn("Payment confirmed for cancelled order {}, requesting refund of session {}", orderId, sessionId);
+            eventPublisher.publish(EventEnvelope.of(sessionId, EventTopicType.ORDER_REFUND_REQUIRED));
+            return;
+        }
+        doUpdateOrderStatus(order, OrderStatus.PAID.getCode());
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void cancelExpiredOrder(Integer orderId) {
+        Order order = orderMapper.selectByIdForUpdate(orderId);
+        // 加锁后再检查，期间已支付或已取消的订单不处理
+        if (order == null || !"pending".equals(order.getStatus())) {
+            return;
+        }
+        log.info("Order {} not paid in time, cancelling", orderId);
+        doUpdateOrderStatus(order, OrderStatus.CANCELLED.getCode());
+    }
+    
     /**
      * 实际执行状态更新的方法
      */
@@ -282,12 +491,22 @@ public class OrderServiceImpl implements IOrderService {
         
         int rows = orderMapper.updateById(order);
         if (rows > 0) {
+            orderSummaryMapper.updateStatus(order.getId(), newStatus);
+            orderStatsStore.recordTransition(order, oldStatus, newStatus);
             log.info("Order status updated successfully: orderId={}, oldStatus={}, newStatus={}", 
                     order.getId(), oldStatus, newStatus);
         } else {
             log.error("Failed to update order status: orderId={}", order.getId());
             throw new BusinessException(ResultStatus.SERVICE_ERROR);
         }
+
+        // 支付后确认库存预留，取消后释放；事件随本事务写入发件箱，提交后才会发送
+        if (orderStatus == OrderStatus.PAID) {
+            publishStockEvent(EventTopicType.ORDER_STOCK_CONFIRM, order.getOrderNo());
+        } else if (orderStatus == OrderStatus.CANCELLED) {
+            publishStockEvent(EventTopicType.ORDER_STOCK_RELEASE, order.getOrderNo());
+            evictCheckoutSession(order.getId());
+        }
     }
     
     @Override
@@ -296,7 +515,7 @@ public class OrderServiceImpl implements IOrderService {
         log.info("Cancelling order: orderId={}, userId={}, role={}", 
                 orderId, currentUser.getId(), currentUser.getRole());
         
-        Order order = orderMapper.selectById(orderId);
+        Order order = orderMapper.selectByIdForUpdate(orderId);
         if (order == null) {
             throw new BusinessException(ResultStatus.ORDER_NOT_FOUND, "id: "+orderId);
         }
@@ -335,11 +554,17 @@ public class OrderServiceImpl implements IOrderService {
         
         int rows = orderMapper.updateById(order);
         if (rows > 0) {
+            orderSummaryMapper.updateStatus(orderId, order.getStatus());
+            orderStatsStore.recordTransition(order, oldStatus, order.getStatus());
             log.info("Order cancelled successfully: orderId={}, oldStatus={}", orderId, oldStatus);
         } else {
             log.error("Failed to cancel order: orderId={}", orderId);
             throw new BusinessException(ResultStatus.SERVICE_ERROR);
         }
+
+        // 归还库存，事件随本事务提交；已支付订单的预留已确认，由商品服务按确认记录加回
+        publishStockEvent(EventTopicType.ORDER_STOCK_RELEASE, order.getOrderNo());
+        evictCheckoutSession(orderId);
     }
     
     @Override
@@ -361,7 +586,7 @@ public class OrderServiceImpl implements IOrderService {
         
         // 验证商家权限
         if (order.getBagId() != null) {
-            Result<MagicBagDto> bagResult = productClient.getMagicBagById(order.getBagId());
+            Result<MagicBagDto> bagResult = lookupClient.getMagicBagById(order.getBagId());
             if (!isResultSuccess(bagResult) || bagResult.getData() == null) {
                 log.error("Product not found when verifying order: bagId={}", order.getBagId());
                 throw new BusinessException(ResultStatus.PRODUCT_NOT_FOUND);
@@ -394,12 +619,15 @@ public class OrderServiceImpl implements IOrderService {
         log.info("Verification record created: orderId={}, verificationId={}", orderId, verification.getId());
         
         // 更新订单状态为已完成
+        String oldStatus = order.getStatus();
         order.setStatus("completed");
         order.setCompletedAt(new Date());
         order.setUpdatedAt(new Date());
         
         int orderRows = orderMapper.updateById(order);
         if (orderRows > 0) {
+            orderSummaryMapper.updateStatus(orderId, order.getStatus());
+            orderStatsStore.recordTransition(order, oldStatus, order.getStatus());
             log.info("Order verified and completed: orderId={}, merchantId={}", orderId, currentUser.getId());
         } else {
             log.error("Failed to update order status after verification: orderId={}", orderId);
@@ -419,15 +647,15 @@ public class OrderServiceImpl implements IOrderService {
 
         switch (role) {
             case SUPER_ADMIN, ADMIN:
-                stats = orderMapper.findAllOrderStats();
+                stats = orderStatsStore.getGlobal();
                 log.info("Admin fetched all order stats");
                 break;
             case MERCHANT:
-                stats = orderMapper.findOrderStatsByMerchantId(currentUser.getId());
+                stats = orderStatsStore.getByMerchant(currentUser.getId());
                 log.info("Merchant {} fetched order stats", currentUser.getId());
                 break;
             case USER:
-                stats = orderMapper.findOrderStatsByUserId(currentUser.getId());
+                stats = orderStatsStore.getByUser(currentUser.getId());
                 log.info("User {} fetched order stats", currentUser.getId());
                 break;
             default:
@@ -440,6 +668,7 @@ public class OrderServiceImpl implements IOrderService {
     
     /**
      * 构建订单详情响应
+     * 用户、盲盒（及其商家）、核销记录三路互不依赖，并行查询；任一路超时或失败只缺少对应部分
      */
     private OrderDetailResponse buildOrderDetailResponse(Order order) {
         log.debug("Building order detail response for order: {}", order.getId());
@@ -451,126 +680,108 @@ public class OrderServiceImpl implements IOrderService {
         BeanUtils.copyProperties(order, orderDto);
         response.setOrder(orderDto);
         
-        // 查询用户信息（通过 User 服务）
-        if (order.getUserId() != null) {
-            try {
-                Result<UserDto> userResult = userClient.getUserById(order.getUserId());
-                if (isResultSuccess(userResult) && userResult.getData() != null) {
-                    OrderDetailResponse.UserInfo userInfo = new OrderDetailResponse.UserInfo();
-                    UserDto user = userResult.getData();
-                    userInfo.setId(user.getId());
-                    userInfo.setNickname(user.getNickname());
-                    userInfo.setPhone(user.getPhone());
-                    response.setUser(userInfo);
-                    log.debug("User info added to order detail: userId={}", user.getId());
-                } else {
-                    log.warn("Failed to get user info for order {}: userId={}", 
-                            order.getId(), order.getUserId());
-                }
-            } catch (Exception e) {
-                log.error("Error fetching user info for order {}: {}", order.getId(), e.getMessage());
-            }
+        Integer orderId = order.getId();
+        CompletableFuture<OrderDetailResponse.UserInfo> userFuture = FanOut.call("User lookup for order " + orderId,
+                () -> fetchDetailUser(order), DETAIL_LOOKUP_TIMEOUT, null);
+        CompletableFuture<MagicBagDto> bagFuture = FanOut.call("Magic bag lookup for order " + orderId,
+                () -> fetchDetailBag(order), DETAIL_LOOKUP_TIMEOUT, null);
+        // 商家依赖盲盒的 merchantId，盲盒返回后再查
+        CompletableFuture<OrderDetailResponse.MerchantInfo> merchantFuture = bagFuture.thenCompose(bag ->
+                FanOut.call("Merchant lookup for order " + orderId,
+                        () -> fetchDetailMerchant(orderId, bag), DETAIL_LOOKUP_TIMEOUT, null));
+        CompletableFuture<List<OrderVerificationDto>> verificationsFuture = FanOut.call(
+                "Verification lookup for order " + orderId,
+                () -> orderVerificationMapper.findByOrderId(orderId).stream()
+                        .map(this::convertToVerificationDto)
+                        .toList(),
+                DETAIL_LOOKUP_TIMEOUT, List.of());
+        
+        FanOut.awaitAll(userFuture, merchantFuture, verificationsFuture);
+        
+        response.setUser(userFuture.join());
+        MagicBagDto bag = bagFuture.join();
+        if (bag != null) {
+            OrderDetailResponse.MagicBagInfo bagInfo = new OrderDetailResponse.MagicBagInfo();
+            bagInfo.setId(bag.getId());
+            bagInfo.setTitle(bag.getTitle());
+            bagInfo.setDescription(bag.getDescription());
+            bagInfo.setCategory(bag.getCategory());
+            bagInfo.setImageUrl(bag.getImageUrl());
+            response.setMagicBag(bagInfo);
         }
+        response.setMerchant(merchantFuture.join());
+        response.setVerifications(verificationsFuture.join());
+        log.debug("Added {} verification records to order detail", response.getVerifications().size());
         
-        // 查询魔法袋信息（通过 Product 服务）
+        log.info("Order detail response built successfully: orderId={}", orderId);
+        return response;
+    }
+    
+    /**
+     * 查询用户信息（通过 User 服务），不存在返回 null
+     */
+    private OrderDetailResponse.UserInfo fetchDetailUser(Order order) {
+        if (order.getUserId() == null) {
+            return null;
+        }
+        Result<UserDto> userResult = lookupClient.getUserById(order.getUserId());
+        if (!isResultSuccess(userResult) || userResult.getData() == null) {
+            log.warn("Failed to get user info for order {}: userId={}", order.getId(), order.getUserId());
+            return null;
+        }
+        UserDto user = userResult.getData();
+        OrderDetailResponse.UserInfo userInfo = new OrderDetailResponse.UserInfo();
+        userInfo.setId(user.getId());
+        userInfo.setNickname(user.getNickname());
+        userInfo.setPhone(user.getPhone());
+        log.debug("User info added to order detail: userId={}", user.getId());
+        return userInfo;
+    }
+    
+    /**
+     * 查询魔法袋信息（通过 Product 服务）：多件商品订单取第一件商品，单件商品订单取 bagId；不存在返回 null
+     */
+    private MagicBagDto fetchDetailBag(Order order) {
+        Integer bagId;
         if ("cart".equals(order.getOrderType())) {
-            // 多件商品订单：通过 order_items 获取主要商品信息
             List<OrderItem> orderItems = orderItemMapper.findByOrderId(order.getId());
-            if (!orderItems.isEmpty()) {
-                OrderItem firstItem = orderItems.get(0);
-                try {
-                    Result<MagicBagDto> bagResult = productClient.getMagicBagById(firstItem.getMagicBagId());
-                    if (isResultSuccess(bagResult) && bagResult.getData() != null) {
-                        MagicBagDto bag = bagResult.getData();
-                        OrderDetailResponse.MagicBagInfo bagInfo = new OrderDetailResponse.MagicBagInfo();
-                        bagInfo.setId(bag.getId());
-                        bagInfo.setTitle(bag.getTitle());
-                        bagInfo.setDescription(bag.getDescription());
-                        bagInfo.setCategory(bag.getCategory());
-                        bagInfo.setImageUrl(bag.getImageUrl());
-                        response.setMagicBag(bagInfo);
-                        log.debug("Magic bag info added to cart order detail: bagId={}", bag.getId());
-                        
-                        // 查询商家信息（通过 Merchant 服务）
-                        if (bag.getMerchantId() != null) {
-                            Result<MerchantDto> merchantResult = merchantClient.getMerchantById(bag.getMerchantId());
-                            if (isResultSuccess(merchantResult) && merchantResult.getData() != null) {
-                                MerchantDto merchant = merchantResult.getData();
-                                OrderDetailResponse.MerchantInfo merchantInfo = new OrderDetailResponse.MerchantInfo();
-                                merchantInfo.setId(merchant.getId());
-                                merchantInfo.setName(merchant.getName());
-                                merchantInfo.setPhone(merchant.getPhone());
-                                merchantInfo.setAddress(merchant.getAddress());
-                                response.setMerchant(merchantInfo);
-                                log.debug("Merchant info added to cart order detail: merchantId={}", merchant.getId());
-                            } else {
-                                log.warn("Failed to get merchant info for cart order {}: merchantId={}",
-                                        order.getId(), bag.getMerchantId());
-                            }
-                        }
-                    } else {
-                        log.warn("Failed to get magic bag info for cart order {}: bagId={}", 
-                                order.getId(), firstItem.getMagicBagId());
-                    }
-                } catch (Exception e) {
-                    log.error("Error fetching magic bag info for cart order {}: {}", order.getId(), e.getMessage());
-                }
-            }
+            bagId = orderItems.isEmpty() ? null : orderItems.get(0).getMagicBagId();
         } else {
-            // 单件商品订单：使用原有逻辑
-            if (order.getBagId() != null) {
-                try {
-                    Result<MagicBagDto> bagResult = productClient.getMagicBagById(order.getBagId());
-                    if (isResultSuccess(bagResult) && bagResult.getData() != null) {
-                        MagicBagDto bag = bagResult.getData();
-                        OrderDetailResponse.MagicBagInfo bagInfo = new OrderDetailResponse.MagicBagInfo();
-                        bagInfo.setId(bag.getId());
-                        bagInfo.setTitle(bag.getTitle());
-                        bagInfo.setDescription(bag.getDescription());
-                        bagInfo.setCategory(bag.getCategory());
-                        bagInfo.setImageUrl(bag.getImageUrl());
-                        response.setMagicBag(bagInfo);
-                        log.debug("Magic bag info added to order detail: bagId={}", bag.getId());
-                        
-                        // 查询商家信息（通过 Merchant 服务）
-                        if (bag.getMerchantId() != null) {
-                            Result<MerchantDto> merchantResult = merchantClient.getMerchantById(bag.getMerchantId());
-                            if (isResultSuccess(merchantResult) && merchantResult.getData() != null) {
-                                MerchantDto merchant = merchantResult.getData();
-                                OrderDetailResponse.MerchantInfo merchantInfo = new OrderDetailResponse.MerchantInfo();
-                                merchantInfo.setId(merchant.getId());
-                                merchantInfo.setName(merchant.getName());
-                                merchantInfo.setPhone(merchant.getPhone());
-                                merchantInfo.setAddress(merchant.getAddress());
-                                response.setMerchant(merchantInfo);
-                                log.debug("Merchant info added to order detail: merchantId={}", merchant.getId());
-                            }
-                        }
-                    } else {
-                        log.warn("Failed to get magic bag info for order {}: bagId={}", 
-                                order.getId(), order.getBagId());
-                    }
-                } catch (Exception e) {
-                    log.error("Error fetching magic bag info for order {}: {}", order.getId(), e.getMessage());
-                }
-            }
+            bagId = order.getBagId();
         }
-        
-        // 查询核销记录
-        try {
-            List<OrderVerification> verifications = orderVerificationMapper.findByOrderId(order.getId());
-            List<OrderVerificationDto> verificationDtos = verifications.stream()
-                    .map(this::convertToVerificationDto)
-                    .toList();
-            response.setVerifications(verificationDtos);
-            log.debug("Added {} verification records to order detail", verificationDtos.size());
-        } catch (Exception e) {
-            log.error("Error fetching verification records for order {}: {}", order.getId(), e.getMessage());
-            response.setVerifications(List.of());
+        if (bagId == null) {
+            return null;
         }
-        
-        log.info("Order detail response built successfully: orderId={}", order.getId());
-        return response;
+        Result<MagicBagDto> bagResult = lookupClient.getMagicBagById(bagId);
+        if (!isResultSuccess(bagResult) || bagResult.getData() == null) {
+            log.warn("Failed to get magic bag info for order {}: bagId={}", order.getId(), bagId);
+            return null;
+        }
+        log.debug("Magic bag info added to order detail: bagId={}", bagId);
+        return bagResult.getData();
+    }
+    
+    /**
+     * 查询盲盒所属商家信息（通过 Merchant 服务），不存在返回 null
+     */
+    private OrderDetailResponse.MerchantInfo fetchDetailMerchant(Integer orderId, MagicBagDto bag) {
+        if (bag == null || bag.getMerchantId() == null) {
+            return null;
+        }
+        Integer merchantId = bag.getMerchantId();
+        Result<MerchantDto> merchantResult = lookupClient.getMerchantById(merchantId);
+        if (!isResultSuccess(merchantResult) || merchantResult.getData() == null) {
+            log.warn("Failed to get merchant info for order {}: merchantId={}", orderId, merchantId);
+            return null;
+        }
+        MerchantDto merchant = merchantResult.getData();
+        OrderDetailResponse.MerchantInfo merchantInfo = new OrderDetailResponse.MerchantInfo();
+        merchantInfo.setId(merchant.getId());
+        merchantInfo.setName(merchant.getName());
+        merchantInfo.setPhone(merchant.getPhone());
+        merchantInfo.setAddress(merchant.getAddress());
+        log.debug("Merchant info added to order detail: merchantId={}", merchant.getId());
+        return merchantInfo;
     }
     
     /**
@@ -610,9 +821,41 @@ public class OrderServiceImpl implements IOrderService {
                 .map(item -> BigDecimal.valueOf(item.getSubtotal()))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
         
-        // 3. 创建主订单
+        // 3. 一次请求预留所有商品行的库存，以订单号作为预留ID
+        String orderNo = generateOrderNo();
+        reserveStock(orderNo, cart.getItems());
+
+        // 4. 创建主订单和订单明细，失败时归还预留的库存
+        Order order;
+        try {
+            order = createCartOrder(userId, orderNo, cart, totalPrice);
+        } catch (RuntimeException e) {
+            releaseStock(orderNo);
+            throw e;
+        }
+        
+        // 5. 通过 CartClient 清空购物车
+        try {
+            Result<Void> clearResult = cartClient.clearCart(userId);
+            if (!isResultSuccess(clearResult)) {
+                log.warn("Failed to clear cart for user: {}", userId);
+            } else {
+                log.info("Cart cleared successfully for user: {}", userId);
+            }
+        } catch (Exception e) {
+            log.error("Error clearing cart for user {}: {}", userId, e.getMessage());
+        }
+        
+        // 6. 返回订单信息
+        return convertToOrderDto(order);
+    }
+
+    /**
+     * 写入购物车订单主表和明细
+     */
+    private Order createCartOrder(Integer userId, String orderNo, CartDto cart, BigDecimal totalPrice) {
         Order order = new Order();
-        order.setOrderNo(generateOrderNo());
+        order.setOrderNo(orderNo);
         order.setUserId(userId);
         order.setOrderType("cart");
         order.setTotalPrice(totalPrice);
@@ -621,63 +864,159 @@ public class OrderServiceImpl implements IOrderService {
         order.setCreatedAt(new Date());
         order.setUpdatedAt(new Date());
         
+        // 一次批量查询订单涉及的全部商品，用于自提时间和订单读模型
+        Set<Integer> bagIds = cart.getItems().stream()
+                .map(CartItemDto::getMagicBagId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Integer, MagicBagDto> bags = batchFetch(bagIds, productClient::getBatchMagicBags, MagicBagDto::getId);
+        if (bags.isEmpty()) {
+            // 读模型需要商品所属商家，拿不到时不能创建订单，否则商家看不到该订单
+            throw new BusinessException(ResultStatus.SERVICE_ERROR, "magic bag lookup failed: " + bagIds);
+        }
+
         // 设置 bag_id 和自提时间（使用第一个商品的信息）
-        if (!cart.getItems().isEmpty()) {
-            CartItemDto firstItem = cart.getItems().getFirst();
-            order.setBagId(firstItem.getMagicBagId());
-            log.info("Set bag_id for cart order: {}", firstItem.getMagicBagId());
-            
-            try {
-                Result<MagicBagDto> bagResult = productClient.getMagicBagById(firstItem.getMagicBagId());
-                if (isResultSuccess(bagResult) && bagResult.getData() != null) {
-                    // 转换LocalTime为Date（使用当前日期）
-                    java.time.LocalDate today = java.time.LocalDate.now();
-                    order.setPickupStartTime(java.sql.Date.valueOf(today));
-                    order.setPickupEndTime(java.sql.Date.valueOf(today));
-                }
-            } catch (Exception e) {
-                log.warn("Failed to get magic bag info for pickup time: {}", e.getMessage());
-            }
+        CartItemDto firstItem = cart.getItems().getFirst();
+        order.setBagId(firstItem.getMagicBagId());
+        log.info("Set bag_id for cart order: {}", firstItem.getMagicBagId());
+        if (bags.containsKey(firstItem.getMagicBagId())) {
+            // 转换LocalTime为Date（使用当前日期）
+            java.time.LocalDate today = java.time.LocalDate.now();
+            order.setPickupStartTime(java.sql.Date.valueOf(today));
+            order.setPickupEndTime(java.sql.Date.valueOf(today));
         }
         
         orderMapper.insert(order);
         log.info("Main order created: orderId={}, orderNo={}", order.getId(), order.getOrderNo());
         
-        // 4. 创建订单明细
-        for (CartItemDto item : cart.getItems()) {
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrderId(order.getId());
-            orderItem.setMagicBagId(item.getMagicBagId());
-            orderItem.setQuantity(item.getQuantity());
-            orderItem.setUnitPrice(BigDecimal.valueOf(item.getPrice()));
-            orderItem.setSubtotal(BigDecimal.valueOf(item.getSubtotal()));
-            orderItem.setCreatedAt(LocalDateTime.now());
-            orderItemMapper.insert(orderItem);
-        }
-        
+        // 创建订单明细，一条多行 INSERT 写入
+        LocalDateTime now = LocalDateTime.now();
+        List<OrderItem> orderItems = cart.getItems().stream()
+                .map(item -> {
+                    OrderItem orderItem = new OrderItem();
+                    orderItem.setOrderId(order.getId());
+                    orderItem.setMagicBagId(item.getMagicBagId());
+                    orderItem.setQuantity(item.getQuantity());
+                    orderItem.setUnitPrice(BigDecimal.valueOf(item.getPrice()));
+                    orderItem.setSubtotal(BigDecimal.valueOf(item.getSubtotal()));
+                    orderItem.setCreatedAt(now);
+                    return orderItem;
+                })
+                .toList();
+        orderItemMapper.insertBatch(orderItems);
+
         log.info("Created {} order items for order: {}", cart.getItems().size(), order.getId());
-        
-        // 5. 通过 CartClient 清空购物车
+
+        Set<Integer> merchantIds = saveOrderSummary(order, cart.getItems(), bags);
+        orderStatsStore.recordCreated(order, merchantIds);
+        return order;
+    }
+
+    /**
+     * 写入订单列表读模型：订单涉及的每个商家一行，标题和商家名称取第一个商品
+     * @return 订单涉及的商家ID
+     */
+    private Set<Integer> saveOrderSummary(Order order, List<CartItemDto> items, Map<Integer, MagicBagDto> bags) {
+        MagicBagDto firstBag = bags.get(items.getFirst().getMagicBagId());
+        Integer primaryMerchantId = firstBag == null ? null : firstBag.getMerchantId();
+
+        Set<Integer> merchantIds = items.stream()
+                .map(item -> bags.get(item.getMagicBagId()))
+                .filter(Objects::nonNull)
+                .map(MagicBagDto::getMerchantId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        MerchantDto primaryMerchant = primaryMerchantId == null ? null
+                : batchFetch(List.of(primaryMerchantId), merchantClient::getBatchMerchants, MerchantDto::getId)
+                        .get(primaryMerchantId);
+
+        List<OrderSummary> summaries = new ArrayList<>(merchantIds.size());
+        for (Integer merchantId : merchantIds) {
+            OrderSummary summary = new OrderSummary();
+            summary.setOrderId(order.getId());
+            summary.setMerchantId(merchantId);
+            summary.setUserId(order.getUserId());
+            summary.setOrderType(order.getOrderType());
+            summary.setStatus(order.getStatus());
+            summary.setTotalPrice(order.getTotalPrice());
+            summary.setBagTitle(firstBag == null ? null : firstBag.getTitle());
+            summary.setMerchantName(primaryMerchant == null ? null : primaryMerchant.getName());
+            summary.setItemCount(items.size());
+            summary.setPrimaryMerchant(merchantId.equals(primaryMerchantId));
+            summary.setCreatedAt(order.getCreatedAt());
+            summaries.add(summary);
+        }
+        if (!summaries.isEmpty()) {
+            orderSummaryMapper.insertBatch(summaries);
+        }
+        return merchantIds;
+    }
+
+    /**
+     * 预留购物车中全部商品的库存，库存不足时直接拒绝下单
+     */
+    private void reserveStock(String orderNo, List<CartItemDto> items) {
+        List<StockReservationDto.StockLine> lines = items.stream()
+                .map(item -> new StockReservationDto.StockLine(item.getMagicBagId(), item.getQuantity()))
+                .toList();
+        Result<Void> result = productClient.reserveStock(new StockReservationDto(orderNo, lines));
+        if (!isResultSuccess(result)) {
+            log.warn("Stock reservation failed for order {}: {}", orderNo, result != null ? result.getMessage() : null);
+            throw new BusinessException(ResultStatus.PRODUCT_OUT_OF_STOCK, result != null ? result.getMessage() : null);
+        }
+    }
+
+    /**
+     * 通知商品服务确认或释放库存预留（订单号即预留ID）
+     * 写入发件箱，与订单状态在同一事务内提交或回滚，商品服务的处理幂等
+     */
+    private void publishStockEvent(String topic, String orderNo) {
+        eventPublisher.publish(EventEnvelope.of(orderNo, topic));
+    }
+
+    /**
+     * 订单取消后删除支付服务缓存的 Checkout Session，提交后执行，回滚时订单仍可支付
+     * 删除失败只记录日志，支付服务创建会话前会再检查订单状态
+     */
+    private void evictCheckoutSession(Integer orderId) {
+        Runnable evict = () -> {
+            try {
+                redisUtil.delete(RedisPrefix.PAYMENT_CHECKOUT.getCode() + orderId);
+            } catch (Exception e) {
+                log.warn("Failed to evict checkout session for order {}: {}", orderId, e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+
+    /**
+     * 下单失败时同步释放库存预留，接口幂等，失败只记录日志（到期后由商品服务释放）
+     */
+    private void releaseStock(String orderNo) {
         try {
-            Result<Void> clearResult = cartClient.clearCart(userId);
-            if (!isResultSuccess(clearResult)) {
-                log.warn("Failed to clear cart for user: {}", userId);
-            } else {
-                log.info("Cart cleared successfully for user: {}", userId);
+            Result<Void> result = productClient.releaseStock(orderNo);
+            if (!isResultSuccess(result)) {
+                log.error("Failed to release stock reservation for order {}", orderNo);
             }
         } catch (Exception e) {
-            log.error("Error clearing cart for user {}: {}", userId, e.getMessage());
+            log.error("Error releasing stock reservation for order {}: {}", orderNo, e.getMessage());
         }
-        
-        // 6. 返回订单信息
-        return convertToOrderDto(order);
     }
     
     /**
      * 生成订单号
+     * 订单号同时作为库存预留ID，追加随机位避免同一毫秒内重复
      */
     private String generateOrderNo() {
-        return "ORD" + System.currentTimeMillis();
+        return "ORD" + System.currentTimeMillis() + String.format("%03d", random.nextInt(1000));
     }
     
     /**
@@ -706,14 +1045,14 @@ public class OrderServiceImpl implements IOrderService {
             if (!orderItems.isEmpty()) {
                 OrderItem firstItem = orderItems.get(0);
                 try {
-                    Result<MagicBagDto> bagResult = productClient.getMagicBagById(firstItem.getMagicBagId());
+                    Result<MagicBagDto> bagResult = lookupClient.getMagicBagById(firstItem.getMagicBagId());
                     if (isResultSuccess(bagResult) && bagResult.getData() != null) {
                         MagicBagDto bag = bagResult.getData();
                         dto.setBagTitle(bag.getTitle());
                         
                         // 获取商户名称
                         if (bag.getMerchantId() != null) {
-                            Result<MerchantDto> merchantResult = merchantClient.getMerchantById(bag.getMerchantId());
+                            Result<MerchantDto> merchantResult = lookupClient.getMerchantById(bag.getMerchantId());
                             if (isResultSuccess(merchantResult) && merchantResult.getData() != null) {
                                 dto.setMerchantName(merchantResult.getData().getName());
                             }
@@ -735,22 +1074,31 @@ public class OrderServiceImpl implements IOrderService {
      * 转换订单明细实体为DTO
      */
     private OrderItemDto convertToOrderItemDto(OrderItem orderItem) {
-        OrderItemDto dto = new OrderItemDto();
-        BeanUtils.copyProperties(orderItem, dto);
-        
         // 查询商品信息
+        MagicBagDto magicBag = null;
         try {
-            Result<MagicBagDto> bagResult = productClient.getMagicBagById(orderItem.getMagicBagId());
-            if (isResultSuccess(bagResult) && bagResult.getData() != null) {
-                MagicBagDto magicBag = bagResult.getData();
-                dto.setMagicBagTitle(magicBag.getTitle());
-                dto.setMagicBagImageUrl(magicBag.getImageUrl());
-                dto.setMagicBagCategory(magicBag.getCategory());
+            Result<MagicBagDto> bagResult = lookupClient.getMagicBagById(orderItem.getMagicBagId());
+            if (isResultSuccess(bagResult)) {
+                magicBag = bagResult.getData();
             }
         } catch (Exception e) {
             log.warn("Failed to get magic bag info for order item: {}", e.getMessage());
         }
         
+        return toOrderItemDto(orderItem, magicBag);
+    }
+
+    /**
+     * 使用已查询到的商品信息转换订单明细
+     */
+    private OrderItemDto toOrderItemDto(OrderItem orderItem, MagicBagDto magicBag) {
+        OrderItemDto dto = new OrderItemDto();
+        BeanUtils.copyProperties(orderItem, dto);
+        if (magicBag != null) {
+            dto.setMagicBagTitle(magicBag.getTitle());
+            dto.setMagicBagImageUrl(magicBag.getImageUrl());
+            dto.setMagicBagCategory(magicBag.getCategory());
+        }
         return dto;
     }
 }
\ No newline at end of file
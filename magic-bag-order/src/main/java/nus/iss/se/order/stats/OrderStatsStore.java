@@ -0,0 +1,188 @@
+package nus.iss.se.order.stats;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.order.dto.OrderStatsDto;
+import nus.iss.se.order.entity.Order;
+import nus.iss.se.order.entity.OrderStats;
+import nus.iss.se.order.mapper.OrderStatsMapper;
+import nus.iss.se.order.mapper.OrderSummaryMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单统计物化值
+ * order_stats 表按 global / merchant / user 各一行，下单和状态变更时由调用方在同一事务内累加增量，
+ * 读取只按主键查一行，不再对 orders 做 COUNT/SUM 聚合。
+ * 增量在事务提交前（beforeCommit）才写入，作为事务的最后一条语句，所有订单事务共享的 global 行的行锁只持有到提交。
+ * 后台线程定期从 orders / order_summary 重新聚合并覆盖，修正漏记或并发导致的偏差；
+ * 多实例时通过 Redis 锁保证每个周期只有一个实例执行。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderStatsStore {
+    private final OrderStatsMapper orderStatsMapper;
+    private final OrderSummaryMapper orderSummaryMapper;
+    private final RedisUtil redisUtil;
+
+    public static final String SCOPE_GLOBAL = "global";
+    public static final String SCOPE_MERCHANT = "merchant";
+    public static final String SCOPE_USER = "user";
+
+    private static final Duration RECONCILE_INITIAL_DELAY = Duration.ofMinutes(1);
+    private static final Duration RECONCILE_INTERVAL = Duration.ofMinutes(30);
+    /** 锁不主动释放，持有略短于一个周期，同一周期内其它实例直接跳过 */
+    private static final Duration RECONCILE_LOCK_TTL = RECONCILE_INTERVAL.minusMinutes(1);
+    private static final int OVERWRITE_BATCH_SIZE = 500;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final ScheduledExecutorService reconcileExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-stats-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        reconcileExecutor.scheduleWithFixedDelay(this::reconcile,
+                RECONCILE_INITIAL_DELAY.toMillis(), RECONCILE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconcileExecutor.shutdownNow();
+    }
+
+    public OrderStatsDto getGlobal() {
+        return get(SCOPE_GLOBAL, 0);
+    }
+
+    public OrderStatsDto getByMerchant(Integer merchantId) {
+        return get(SCOPE_MERCHANT, merchantId);
+    }
+
+    public OrderStatsDto getByUser(Integer userId) {
+        return get(SCOPE_USER, userId);
+    }
+
+    /**
+     * 新订单：总数、金额和初始状态各 +1，需在写入订单的事务内调用
+     * @param merchantIds 订单涉及的商家（与 order_summary 一致）
+     */
+    public void recordCreated(Order order, Collection<Integer> merchantIds) {
+        OrderStatsDto delta = emptyStats();
+        delta.setTotalOrders(1L);
+        delta.setTotalAmount(order.getTotalPrice() == null ? BigDecimal.ZERO : order.getTotalPrice());
+        addStatus(delta, order.getStatus(), 1);
+        applyBeforeCommit(order.getUserId(), merchantIds, delta);
+    }
+
+    /**
+     * 状态变更：旧状态 -1、新状态 +1，需在更新订单的事务内调用
+     */
+    public void recordTransition(Order order, String oldStatus, String newStatus) {
+        if (Objects.equals(oldStatus, newStatus)) {
+            return;
+        }
+        OrderStatsDto delta = emptyStats();
+        addStatus(delta, oldStatus, -1);
+        addStatus(delta, newStatus, 1);
+        List<Integer> merchantIds = orderSummaryMapper.findMerchantIdsByOrderId(order.getId());
+        applyBeforeCommit(order.getUserId(), merchantIds, delta);
+    }
+
+    /**
+     * 在事务提交前累加增量；没有事务时直接写入
+     */
+    private void applyBeforeCommit(Integer userId, Collection<Integer> merchantIds, OrderStatsDto delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            orderStatsMapper.applyDelta(userId, merchantIds, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                orderStatsMapper.applyDelta(userId, merchantIds, delta);
+            }
+        });
+    }
+
+    /**
+     * 从源表重新聚合并覆盖物化值。聚合是不加锁的普通 SELECT，覆盖按批单独提交；
+     * 本周期已有其它实例在执行时跳过，失败只记录日志，等待下一轮
+     */
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        try {
+            if (!redisUtil.setIfAbsent(RedisPrefix.ORDER_STATS_RECONCILE_LOCK.getCode(), instanceId,
+                    RECONCILE_LOCK_TTL.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.debug("Order stats reconciliation is running on another instance, skipped");
+                return;
+            }
+            overwrite(List.of(orderStatsMapper.aggregateGlobal()));
+            int users = overwrite(orderStatsMapper.aggregateUsers());
+            int merchants = overwrite(orderStatsMapper.aggregateMerchants());
+            log.info("Order stats reconciled in {}ms: userRows={}, merchantRows={}",
+                    System.currentTimeMillis() - start, users, merchants);
+        } catch (Exception e) {
+            log.error("Order stats reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return 覆盖的范围数
+     */
+    private int overwrite(List<OrderStats> rows) {
+        for (int from = 0; from < rows.size(); from += OVERWRITE_BATCH_SIZE) {
+            orderStatsMapper.overwrite(rows.subList(from, Math.min(from + OVERWRITE_BATCH_SIZE, rows.size())));
+        }
+        return rows.size();
+    }
+
+    private OrderStatsDto get(String scopeType, Integer scopeId) {
+        OrderStatsDto stats = orderStatsMapper.findByScope(scopeType, scopeId);
+        // 还没有订单的范围没有对应行
+        return stats == null ? emptyStats() : stats;
+    }
+
+    private static OrderStatsDto emptyStats() {
+        OrderStatsDto stats = new OrderStatsDto();
+        stats.setTotalOrders(0L);
+        stats.setTotalAmount(BigDecimal.ZERO);
+        stats.setPendingOrders(0L);
+        stats.setPaidOrders(0L);
+        stats.setCompletedOrders(0L);
+        stats.setCancelledOrders(0L);
+        return stats;
+    }
+
+    private static void addStatus(OrderStatsDto delta, String status, long amount) {
+        if (status == null) {
+            return;
+        }
+        switch (status.toLowerCase()) {
+            case "pending" -> delta.setPendingOrders(delta.getPendingOrders() + amount);
+            case "paid" -> delta.setPaidOrders(delta.getPaidOrders() + amount);
+            case "completed" -> delta.setCompletedOrders(delta.getCompletedOrders() + amount);
+            case "cancelled" -> delta.setCancelledOrders(delta.getCancelledOrders() + amount);
+            default -> log.debug("Status '{}' is not tracked in order stats", status);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package nus.iss.se.order.timeout;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.PaymentWindow;
+import nus.iss.se.order.mapper.OrderMapper;
+import nus.iss.se.order.service.IOrderService;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付超时取消
+ * 后台线程定期取消创建超过支付期限仍未支付的订单，取消时通过发件箱通知商品服务释放库存预留。
+ * 支付期限晚于支付服务 Stripe 会话的最晚过期时间（见 PaymentWindow），取消时订单已不可能再被支付；
+ * 支付期限短于商品服务预留的释放期限，预留总是先由订单取消释放；多实例同时执行时由订单行锁保证只取消一次。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentTimeoutCanceller {
+    private final OrderMapper orderMapper;
+    private final IOrderService orderService;
+
+    static final Duration PAYMENT_TIMEOUT = PaymentWindow.CANCEL_AFTER;
+    private static final Duration SCAN_INTERVAL = Duration.ofMinutes(1);
+    private static final int BATCH_SIZE = 200;
+
+    private final ScheduledExecutorService timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-payment-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        timeoutExecutor.scheduleWithFixedDelay(this::cancelExpired,
+                SCAN_INTERVAL.toMillis(), SCAN_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutExecutor.shutdownNow();
+    }
+
+    /**
+     * 每个订单单独一个事务，单个失败只记录日志，下一轮重试
+     */
+    public void cancelExpired() {
+        try {
+            Date cutoff = new Date(System.currentTimeMillis() - PAYMENT_TIMEOUT.toMillis());
+            List<Integer> orderIds = orderMapper.findExpiredPendingIds(cutoff, BATCH_SIZE);
+            for (Integer orderId : orderIds) {
+                try {
+                    orderService.cancelExpiredOrder(orderId);
+                } catch (Exception e) {
+                    log.error("Failed to cancel expired order {}: {}", orderId, e.getMessage(), e);
+                }
+            }
+            if (!orderIds.isEmpty()) {
+                log.info("Payment timeout: {} expired orders processed", orderIds.size());
+            }
+        } catch (Exception e) {
+            log.error("Payment timeout scan failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- 订单列表游标分页所需索引
+-- 按 (created_at, id) 倒序翻页，WHERE 条件中的 user_id 放在前面
+ALTER TABLE `orders`
+ADD KEY `orders_created_at_id_IDX` (`created_at`, `id`),
+ADD KEY `orders_user_id_created_at_id_IDX` (`user_id`, `created_at`, `id`);
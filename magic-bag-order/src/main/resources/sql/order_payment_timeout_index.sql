@@ -0,0 +1,4 @@
+-- 支付超时取消所需索引
+-- 按状态查找创建时间早于支付期限的 pending 订单
+ALTER TABLE `orders`
+ADD KEY `orders_status_created_at_IDX` (`status`, `created_at`);
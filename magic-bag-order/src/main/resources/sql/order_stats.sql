@@ -0,0 +1,37 @@
+-- 1. 创建订单统计物化表
+--    按范围（global / merchant / user）各一行，下单和状态变更时在同一事务内增量更新，/order/stats 只按主键读一行
+CREATE TABLE `order_stats` (
+    `scope_type` ENUM('global','merchant','user') NOT NULL COMMENT '统计范围',
+    `scope_id` BIGINT NOT NULL COMMENT '商家ID / 用户ID，global 为 0',
+    `total_orders` BIGINT NOT NULL DEFAULT 0 COMMENT '订单总数',
+    `pending_orders` BIGINT NOT NULL DEFAULT 0 COMMENT '待支付订单数',
+    `paid_orders` BIGINT NOT NULL DEFAULT 0 COMMENT '已支付订单数',
+    `completed_orders` BIGINT NOT NULL DEFAULT 0 COMMENT '已完成订单数',
+    `cancelled_orders` BIGINT NOT NULL DEFAULT 0 COMMENT '已取消订单数',
+    `total_amount` DECIMAL(14,2) NOT NULL DEFAULT 0 COMMENT '订单总金额',
+    `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`scope_type`, `scope_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='订单统计物化表';
+
+-- 2. 回填全局统计
+INSERT INTO `order_stats` (`scope_type`, `scope_id`, `total_orders`, `pending_orders`, `paid_orders`,
+                           `completed_orders`, `cancelled_orders`, `total_amount`)
+SELECT 'global', 0, COUNT(*), COALESCE(SUM(status = 'pending'), 0), COALESCE(SUM(status = 'paid'), 0),
+       COALESCE(SUM(status = 'completed'), 0), COALESCE(SUM(status = 'cancelled'), 0), COALESCE(SUM(total_price), 0)
+FROM `orders`;
+
+-- 3. 回填用户统计
+INSERT INTO `order_stats` (`scope_type`, `scope_id`, `total_orders`, `pending_orders`, `paid_orders`,
+                           `completed_orders`, `cancelled_orders`, `total_amount`)
+SELECT 'user', user_id, COUNT(*), SUM(status = 'pending'), SUM(status = 'paid'),
+       SUM(status = 'completed'), SUM(status = 'cancelled'), SUM(total_price)
+FROM `orders`
+GROUP BY user_id;
+
+-- 4. 回填商家统计，与订单列表读模型一致：订单涉及的每个商家各计一次
+INSERT INTO `order_stats` (`scope_type`, `scope_id`, `total_orders`, `pending_orders`, `paid_orders`,
+                           `completed_orders`, `cancelled_orders`, `total_amount`)
+SELECT 'merchant', merchant_id, COUNT(*), SUM(status = 'pending'), SUM(status = 'paid'),
+       SUM(status = 'completed'), SUM(status = 'cancelled'), SUM(total_price)
+FROM `order_summary`
+GROUP BY merchant_id;
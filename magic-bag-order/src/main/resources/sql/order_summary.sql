@@ -0,0 +1,52 @@
+-- 1. 创建订单列表读模型表
+--    每个订单按涉及的商家各一行，订单列表和商家统计不再需要关联 order_items/magic_bags 的相关子查询
+CREATE TABLE `order_summary` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    `order_id` BIGINT NOT NULL COMMENT '订单ID',
+    `merchant_id` BIGINT NOT NULL COMMENT '商家ID',
+    `user_id` BIGINT NOT NULL COMMENT '下单用户ID',
+    `order_type` ENUM('single','cart') NOT NULL DEFAULT 'single' COMMENT '订单类型',
+    `status` VARCHAR(20) NOT NULL COMMENT '订单状态，与 orders.status 同步',
+    `total_price` DECIMAL(10,2) NOT NULL COMMENT '订单总价',
+    `bag_title` VARCHAR(255) DEFAULT NULL COMMENT '第一个商品标题',
+    `merchant_name` VARCHAR(255) DEFAULT NULL COMMENT '第一个商品所属商家名称',
+    `item_count` INT NOT NULL DEFAULT 1 COMMENT '商品行数',
+    `is_primary` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否第一个商品所属商家的行',
+    `created_at` DATETIME NOT NULL COMMENT '下单时间，与 orders.created_at 相同',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `order_summary_order_merchant_UN` (`order_id`, `merchant_id`),
+    KEY `order_summary_merchant_created_IDX` (`merchant_id`, `created_at`, `order_id`),
+    CONSTRAINT `fk_order_summary_order` FOREIGN KEY (`order_id`) REFERENCES `orders` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='订单列表读模型';
+
+-- 2. 回填单商品订单
+INSERT INTO `order_summary` (`order_id`, `merchant_id`, `user_id`, `order_type`, `status`, `total_price`,
+                             `bag_title`, `merchant_name`, `item_count`, `is_primary`, `created_at`)
+SELECT o.id, mb.merchant_id, o.user_id, o.order_type, o.status, o.total_price,
+       mb.title, m.name, 1, 1, o.created_at
+FROM `orders` o
+JOIN `magic_bags` mb ON o.bag_id = mb.id
+LEFT JOIN `merchants` m ON mb.merchant_id = m.id
+WHERE o.order_type = 'single';
+
+-- 3. 回填购物车订单，每个订单按商家分组
+INSERT INTO `order_summary` (`order_id`, `merchant_id`, `user_id`, `order_type`, `status`, `total_price`,
+                             `bag_title`, `merchant_name`, `item_count`, `is_primary`, `created_at`)
+SELECT o.id, mb.merchant_id, o.user_id, o.order_type, o.status, o.total_price,
+       (SELECT mb1.title FROM order_items oi1
+        JOIN magic_bags mb1 ON oi1.magic_bag_id = mb1.id
+        WHERE oi1.order_id = o.id ORDER BY oi1.id LIMIT 1),
+       (SELECT m1.name FROM order_items oi1
+        JOIN magic_bags mb1 ON oi1.magic_bag_id = mb1.id
+        JOIN merchants m1 ON mb1.merchant_id = m1.id
+        WHERE oi1.order_id = o.id ORDER BY oi1.id LIMIT 1),
+       (SELECT COUNT(*) FROM order_items oi1 WHERE oi1.order_id = o.id),
+       mb.merchant_id = (SELECT mb1.merchant_id FROM order_items oi1
+                         JOIN magic_bags mb1 ON oi1.magic_bag_id = mb1.id
+                         WHERE oi1.order_id = o.id ORDER BY oi1.id LIMIT 1),
+       o.created_at
+FROM `orders` o
+JOIN `order_items` oi ON oi.order_id = o.id
+JOIN `magic_bags` mb ON oi.magic_bag_id = mb.id
+WHERE o.order_type = 'cart'
+GROUP BY o.id, mb.merchant_id;
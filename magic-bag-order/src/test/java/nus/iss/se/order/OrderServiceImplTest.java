@@ -4,9 +4,14 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import nus.iss.se.common.Result;
 import nus.iss.se.common.cache.UserContext;
+import nus.iss.se.common.constant.RedisPrefix;
 import nus.iss.se.common.constant.ResultStatus;
 import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.publisher.EventPublisher;
 import nus.iss.se.order.api.CartClient;
+import nus.iss.se.order.api.LookupClient;
 import nus.iss.se.order.api.MerchantClient;
 import nus.iss.se.order.api.ProductClient;
 import nus.iss.se.order.api.UserClient;
@@ -16,8 +21,10 @@ import nus.iss.se.order.entity.OrderItem;
 import nus.iss.se.order.entity.OrderVerification;
 import nus.iss.se.order.mapper.OrderItemMapper;
 import nus.iss.se.order.mapper.OrderMapper;
+import nus.iss.se.order.mapper.OrderSummaryMapper;
 import nus.iss.se.order.mapper.OrderVerificationMapper;
 import nus.iss.se.order.service.impl.OrderServiceImpl;
+import nus.iss.se.order.stats.OrderStatsStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -40,6 +47,9 @@ public class OrderServiceImplTest {
     @Mock
     private OrderVerificationMapper orderVerificationMapper;
 
+    @Mock
+    private OrderSummaryMapper orderSummaryMapper;
+
     @Mock
     private ProductClient productClient;
 
@@ -52,6 +62,18 @@ public class OrderServiceImplTest {
     @Mock
     private CartClient cartClient;
 
+    @Mock
+    private LookupClient lookupClient;
+
+    @Mock
+    private OrderStatsStore orderStatsStore;
+
+    @Mock
+    private EventPublisher eventPublisher;
+
+    @Mock
+    private RedisUtil redisUtil;
+
     @InjectMocks
     private OrderServiceImpl orderService;
 
@@ -133,6 +155,10 @@ public class OrderServiceImplTest {
         return dto;
     }
 
+    private static EventEnvelope stockEvent(String topic, String orderNo) {
+        return argThat(event -> topic.equals(event.topic()) && orderNo.equals(event.data()));
+    }
+
     private CartDto dummyCart() {
         // CartItemDto(itemId, magicBagId, bagName, price, quantity, subtotal)
         CartItemDto item = new CartItemDto(1, 1, "Test Bag", 25.0, 2, 50.0);
@@ -157,13 +183,62 @@ public class OrderServiceImplTest {
         page.setRecords(List.of(orderDto));
 
         when(orderMapper.findAllOrders(any(Page.class))).thenReturn(page);
-        when(userClient.getUserById(3)).thenReturn(Result.success(dummyUser()));
+        when(userClient.getBatchUsers(anyList())).thenReturn(Result.success(List.of(dummyUser())));
 
         IPage<OrderDto> result = orderService.getOrders(admin, query);
 
         assertNotNull(result);
         assertEquals(1, result.getRecords().size());
+        assertEquals("Test User", result.getRecords().getFirst().getUserName());
         verify(orderMapper, times(1)).findAllOrders(any(Page.class));
+        verify(lookupClient, never()).getUserById(anyInt());
+    }
+
+    /** -------------------------
+     *  Test: getOrders (batched enrichment)
+     *  ------------------------- */
+    @Test
+    void testGetOrders_BatchEnrichment() {
+        OrderQueryDto query = new OrderQueryDto();
+        query.setPageNum(1);
+        query.setPageSize(10);
+
+        OrderDto single = new OrderDto();
+        single.setId(1);
+        single.setUserId(3);
+        single.setBagId(1);
+        single.setOrderType("single");
+        OrderDto cart = new OrderDto();
+        cart.setId(2);
+        cart.setUserId(3);
+        cart.setOrderType("cart");
+
+        Page<OrderDto> page = new Page<>(1, 10);
+        page.setRecords(List.of(single, cart));
+
+        OrderItem cartItem = dummyOrderItem();
+        cartItem.setOrderId(2);
+
+        when(orderMapper.findAllOrders(any(Page.class))).thenReturn(page);
+        when(orderItemMapper.selectList(any())).thenReturn(List.of(cartItem));
+        when(productClient.getBatchMagicBags(anyList())).thenReturn(Result.success(List.of(dummyBag())));
+        when(merchantClient.getBatchMerchants(anyList())).thenReturn(Result.success(List.of(dummyMerchant())));
+        when(userClient.getBatchUsers(anyList())).thenReturn(Result.success(List.of(dummyUser())));
+
+        IPage<OrderDto> result = orderService.getOrders(adminContext(), query);
+
+        assertEquals("Test Bag", result.getRecords().get(0).getBagTitle());
+        assertEquals("Test Merchant", result.getRecords().get(0).getMerchantName());
+        assertEquals(1, result.getRecords().get(1).getOrderItems().size());
+        assertEquals("Test Bag", result.getRecords().get(1).getOrderItems().getFirst().getMagicBagTitle());
+        assertEquals("Multiple Items", result.getRecords().get(1).getBagTitle());
+
+        verify(orderItemMapper, times(1)).selectList(any());
+        verify(productClient, times(1)).getBatchMagicBags(anyList());
+        verify(merchantClient, times(1)).getBatchMerchants(anyList());
+        verify(userClient, times(1)).getBatchUsers(anyList());
+        verify(lookupClient, never()).getMagicBagById(anyInt());
+        verify(lookupClient, never()).getMerchantById(anyInt());
     }
 
     /** -------------------------
@@ -183,7 +258,7 @@ public class OrderServiceImplTest {
         page.setRecords(List.of(orderDto));
 
         when(orderMapper.findByUserId(any(Page.class), eq(3))).thenReturn(page);
-        when(userClient.getUserById(3)).thenReturn(Result.success(dummyUser()));
+        when(userClient.getBatchUsers(anyList())).thenReturn(Result.success(List.of(dummyUser())));
 
         IPage<OrderDto> result = orderService.getOrders(user, query);
 
@@ -192,6 +267,72 @@ public class OrderServiceImplTest {
         verify(orderMapper, times(1)).findByUserId(any(Page.class), eq(3));
     }
 
+    /** -------------------------
+     *  Test: getOrdersByCursor (first page, has more)
+     *  ------------------------- */
+    @Test
+    void testGetOrdersByCursor_FirstPage() {
+        OrderDto newer = new OrderDto();
+        newer.setId(5);
+        newer.setUserId(3);
+        newer.setCreatedAt(new Date(2_000L));
+        OrderDto older = new OrderDto();
+        older.setId(4);
+        older.setUserId(3);
+        older.setCreatedAt(new Date(1_000L));
+
+        // pageSize=1，多查一条判断是否有下一页
+        when(orderMapper.findByUserIdByCursor(3, null, null, 2)).thenReturn(new ArrayList<>(List.of(newer, older)));
+        when(userClient.getBatchUsers(anyList())).thenReturn(Result.success(List.of(dummyUser())));
+
+        OrderCursorPage result = orderService.getOrdersByCursor(userContext(), "", 1, false);
+
+        assertEquals(1, result.getRecords().size());
+        assertEquals(5, result.getRecords().getFirst().getId());
+        assertTrue(result.isHasMore());
+        assertEquals(new OrderCursor(2_000L, 5), OrderCursor.decode(result.getNextCursor()));
+        assertNull(result.getApproximateTotal());
+        verify(orderStatsStore, never()).getByUser(anyInt());
+    }
+
+    /** -------------------------
+     *  Test: getOrdersByCursor (next page, last page, with total)
+     *  ------------------------- */
+    @Test
+    void testGetOrdersByCursor_NextPageWithTotal() {
+        OrderDto older = new OrderDto();
+        older.setId(4);
+        older.setUserId(3);
+        older.setCreatedAt(new Date(1_000L));
+        OrderStatsDto stats = new OrderStatsDto();
+        stats.setTotalOrders(2L);
+
+        String cursor = new OrderCursor(2_000L, 5).encode();
+        when(orderMapper.findByUserIdByCursor(3, new Date(2_000L), 5, 11)).thenReturn(new ArrayList<>(List.of(older)));
+        when(orderStatsStore.getByUser(3)).thenReturn(stats);
+        when(userClient.getBatchUsers(anyList())).thenReturn(Result.success(List.of(dummyUser())));
+
+        OrderCursorPage result = orderService.getOrdersByCursor(userContext(), cursor, 10, true);
+        orderService.getOrdersByCursor(userContext(), cursor, 10, true);
+
+        assertEquals(1, result.getRecords().size());
+        assertFalse(result.isHasMore());
+        assertNull(result.getNextCursor());
+        assertEquals(2L, result.getApproximateTotal());
+        // 近似总数被缓存，第二次翻页不再计数
+        verify(orderStatsStore, times(1)).getByUser(3);
+    }
+
+    /** -------------------------
+     *  Test: getOrdersByCursor (invalid cursor)
+     *  ------------------------- */
+    @Test
+    void testGetOrdersByCursor_InvalidCursor() {
+        BusinessException e = assertThrows(BusinessException.class, () ->
+                orderService.getOrdersByCursor(userContext(), "not-a-cursor", 10, false));
+        assertEquals(ResultStatus.PARAM_IS_INVALID, e.getErrInfo());
+    }
+
     /** -------------------------
      *  Test: getOrderDetail (success)
      *  ------------------------- */
@@ -201,9 +342,9 @@ public class OrderServiceImplTest {
         UserContext user = userContext();
 
         when(orderMapper.selectById(1)).thenReturn(order);
-        when(userClient.getUserById(3)).thenReturn(Result.success(dummyUser()));
-        when(productClient.getMagicBagById(1)).thenReturn(Result.success(dummyBag()));
-        when(merchantClient.getMerchantById(2)).thenReturn(Result.success(dummyMerchant()));
+        when(lookupClient.getUserById(3)).thenReturn(Result.success(dummyUser()));
+        when(lookupClient.getMagicBagById(1)).thenReturn(Result.success(dummyBag()));
+        when(lookupClient.getMerchantById(2)).thenReturn(Result.success(dummyMerchant()));
         when(orderVerificationMapper.findByOrderId(1)).thenReturn(new ArrayList<>());
 
         OrderDetailResponse result = orderService.getOrderDetail(1, user);
@@ -211,9 +352,35 @@ public class OrderServiceImplTest {
         assertNotNull(result);
         assertNotNull(result.getOrder());
         assertEquals(1, result.getOrder().getId());
+        assertNotNull(result.getUser());
+        assertNotNull(result.getMagicBag());
+        assertNotNull(result.getMerchant());
+        assertTrue(result.getVerifications().isEmpty());
         verify(orderMapper, times(1)).selectById(1);
     }
 
+    /** -------------------------
+     *  Test: getOrderDetail —— 某一路查询失败时返回部分结果
+     *  ------------------------- */
+    @Test
+    void testGetOrderDetail_PartialResultOnLookupFailure() {
+        Order order = dummyOrder();
+
+        when(orderMapper.selectById(1)).thenReturn(order);
+        when(lookupClient.getUserById(3)).thenThrow(new RuntimeException("user service down"));
+        when(lookupClient.getMagicBagById(1)).thenReturn(Result.success(dummyBag()));
+        when(lookupClient.getMerchantById(2)).thenReturn(Result.success(dummyMerchant()));
+        when(orderVerificationMapper.findByOrderId(1)).thenThrow(new RuntimeException("db timeout"));
+
+        OrderDetailResponse result = orderService.getOrderDetail(1, userContext());
+
+        assertNull(result.getUser());
+        assertNotNull(result.getMagicBag());
+        assertEquals(1, result.getMagicBag().getId());
+        assertNotNull(result.getMerchant());
+        assertTrue(result.getVerifications().isEmpty());
+    }
+
     /** -------------------------
      *  Test: getOrderDetail (not found)
      *  ------------------------- */
@@ -257,6 +424,8 @@ public class OrderServiceImplTest {
         orderService.updateOrderStatus(1, statusDto, adminContext());
 
         verify(orderMapper, times(1)).updateById(any(Order.class));
+        verify(orderSummaryMapper, times(1)).updateStatus(1, "paid");
+        verify(orderStatsStore, times(1)).recordTransition(order, "pending", "paid");
     }
 
     /** -------------------------
@@ -272,6 +441,92 @@ public class OrderServiceImplTest {
         orderService.updateOrderStatusInternal(1, "paid");
 
         verify(orderMapper, times(1)).updateById(any(Order.class));
+        verify(eventPublisher, times(1)).publish(stockEvent("order.stock.confirm", order.getOrderNo()));
+        verify(productClient, never()).confirmStock(anyString());
+    }
+
+    /** -------------------------
+     *  Test: markOrderPaid —— 消费 order.paid
+     *  ------------------------- */
+    @Test
+    void testMarkOrderPaid() {
+        Order order = dummyOrder();
+
+        when(orderMapper.selectByIdForUpdate(1)).thenReturn(order);
+        when(orderMapper.updateById(any(Order.class))).thenReturn(1);
+
+        orderService.markOrderPaid(1, "cs_test_1");
+
+        verify(orderMapper, times(1)).updateById(argThat(o -> "paid".equals(o.getStatus())));
+        verify(eventPublisher, times(1)).publish(stockEvent("order.stock.confirm", order.getOrderNo()));
+    }
+
+    /** -------------------------
+     *  Test: markOrderPaid (duplicate event)
+     *  ------------------------- */
+    @Test
+    void testMarkOrderPaid_AlreadyPaid() {
+        Order order = dummyOrder();
+        order.setStatus("paid");
+
+        when(orderMapper.selectByIdForUpdate(1)).thenReturn(order);
+
+        orderService.markOrderPaid(1, "cs_test_1");
+
+        verify(orderMapper, never()).updateById(any(Order.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    /** -------------------------
+     *  Test: markOrderPaid (cancelled) —— 订单保持取消，发布退款事件
+     *  ------------------------- */
+    @Test
+    void testMarkOrderPaid_CancelledRequestsRefund() {
+        Order order = dummyOrder();
+        order.setStatus("cancelled");
+
+        when(orderMapper.selectByIdForUpdate(1)).thenReturn(order);
+
+        orderService.markOrderPaid(1, "cs_test_1");
+
+        verify(orderMapper, never()).updateById(any(Order.class));
+        verify(eventPublisher, times(1)).publish(argThat(event ->
+                "order.refund.required".equals(event.topic()) && "cs_test_1".equals(event.data())));
+        verifyNoInteractions(orderStatsStore);
+    }
+
+    /** -------------------------
+     *  Test: cancelExpiredOrder —— 支付超时取消
+     *  ------------------------- */
+    @Test
+    void testCancelExpiredOrder() {
+        Order order = dummyOrder();
+
+        when(orderMapper.selectByIdForUpdate(1)).thenReturn(order);
+        when(orderMapper.updateById(any(Order.class))).thenReturn(1);
+
+        orderService.cancelExpiredOrder(1);
+
+        verify(orderMapper, times(1)).updateById(argThat(o -> "cancelled".equals(o.getStatus())));
+        verify(orderStatsStore, times(1)).recordTransition(order, "pending", "cancelled");
+        verify(eventPublisher, times(1)).publish(stockEvent("order.stock.release", order.getOrderNo()));
+        verify(redisUtil, times(1)).delete(RedisPrefix.PAYMENT_CHECKOUT.getCode() + 1);
+    }
+
+    /** -------------------------
+     *  Test: cancelExpiredOrder (paid before the lock was taken)
+     *  ------------------------- */
+    @Test
+    void testCancelExpiredOrder_AlreadyPaid() {
+        Order order = dummyOrder();
+        order.setStatus("paid");
+
+        when(orderMapper.selectByIdForUpdate(1)).thenReturn(order);
+
+        orderService.cancelExpiredOrder(1);
+
+        verify(orderMapper, never()).updateById(any(Order.class));
+        verifyNoInteractions(eventPublisher);
     }
 
     /** -------------------------
@@ -281,7 +536,7 @@ public class OrderServiceImplTest {
     void testCancelOrder_ByUser() {
         Order order = dummyOrder();
 
-        when(orderMapper.selectById(1)).thenReturn(order);
+        when(orderMapper.selectByIdForUpdate(1)).thenReturn(order);
         when(orderMapper.updateById(any(Order.class))).thenReturn(1);
 
         orderService.cancelOrder(1, userContext());
@@ -289,6 +544,10 @@ public class OrderServiceImplTest {
         verify(orderMapper, times(1)).updateById(argThat(o -> 
             "cancelled".equals(o.getStatus())
         ));
+        verify(orderStatsStore, times(1)).recordTransition(order, "pending", "cancelled");
+        verify(eventPublisher, times(1)).publish(stockEvent("order.stock.release", order.getOrderNo()));
+        verify(redisUtil, times(1)).delete(RedisPrefix.PAYMENT_CHECKOUT.getCode() + 1);
+        verify(productClient, never()).releaseStock(anyString());
     }
 
     /** -------------------------
@@ -299,11 +558,12 @@ public class OrderServiceImplTest {
         Order order = dummyOrder();
         order.setStatus("cancelled");
 
-        when(orderMapper.selectById(1)).thenReturn(order);
+        when(orderMapper.selectByIdForUpdate(1)).thenReturn(order);
 
         assertThrows(BusinessException.class, () -> 
             orderService.cancelOrder(1, userContext())
         );
+        verifyNoInteractions(orderStatsStore);
     }
 
     /** -------------------------
@@ -318,7 +578,7 @@ public class OrderServiceImplTest {
         verificationDto.setLocation("Store A");
 
         when(orderMapper.selectById(1)).thenReturn(order);
-        when(productClient.getMagicBagById(1)).thenReturn(Result.success(dummyBag()));
+        when(lookupClient.getMagicBagById(1)).thenReturn(Result.success(dummyBag()));
         when(orderVerificationMapper.insert(any(OrderVerification.class))).thenReturn(1);
         when(orderMapper.updateById(any(Order.class))).thenReturn(1);
 
@@ -328,6 +588,7 @@ public class OrderServiceImplTest {
         verify(orderMapper, times(1)).updateById(argThat(o -> 
             "completed".equals(o.getStatus())
         ));
+        verify(orderStatsStore, times(1)).recordTransition(order, "paid", "completed");
     }
 
     /** -------------------------
@@ -343,14 +604,14 @@ public class OrderServiceImplTest {
         stats.setCompletedOrders(30L);
         stats.setCancelledOrders(10L);
 
-        when(orderMapper.findAllOrderStats()).thenReturn(stats);
+        when(orderStatsStore.getGlobal()).thenReturn(stats);
 
         OrderStatsDto result = orderService.getOrderStats(adminContext());
 
         assertNotNull(result);
         assertEquals(100L, result.getTotalOrders());
         assertEquals(BigDecimal.valueOf(5000.0), result.getTotalAmount());
-        verify(orderMapper, times(1)).findAllOrderStats();
+        verify(orderStatsStore, times(1)).getGlobal();
     }
 
     /** -------------------------
@@ -361,8 +622,9 @@ public class OrderServiceImplTest {
         CartDto cart = dummyCart();
 
         when(cartClient.getActiveCart(3)).thenReturn(Result.success(cart));
-        when(productClient.getMagicBagById(1)).thenReturn(Result.success(dummyBag()));
-        when(merchantClient.getMerchantById(2)).thenReturn(Result.success(dummyMerchant()));
+        when(productClient.reserveStock(any(StockReservationDto.class))).thenReturn(Result.success());
+        when(productClient.getBatchMagicBags(anyList())).thenReturn(Result.success(List.of(dummyBag())));
+        when(merchantClient.getBatchMerchants(anyList())).thenReturn(Result.success(List.of(dummyMerchant())));
         
         doAnswer(invocation -> {
             Order o = invocation.getArgument(0);
@@ -370,7 +632,7 @@ public class OrderServiceImplTest {
             return 1;
         }).when(orderMapper).insert(any(Order.class));
         
-        when(orderItemMapper.insert(any(OrderItem.class))).thenReturn(1);
+        when(orderItemMapper.insertBatch(anyList())).thenReturn(1);
         when(cartClient.clearCart(3)).thenReturn(Result.success(null));
 
         OrderDto result = orderService.createOrderFromCart(3);
@@ -379,8 +641,68 @@ public class OrderServiceImplTest {
         assertEquals(1, result.getId());
         assertEquals("cart", result.getOrderType());
         verify(orderMapper, times(1)).insert(any(Order.class));
-        verify(orderItemMapper, times(1)).insert(any(OrderItem.class));
+        verify(orderItemMapper, times(1)).insertBatch(argThat(items -> items.size() == 1));
+        verify(orderItemMapper, never()).insert(any(OrderItem.class));
         verify(cartClient, times(1)).clearCart(3);
+        verify(productClient, times(1)).reserveStock(argThat(r ->
+            r.getItems().size() == 1 && r.getItems().getFirst().getQuantity() == 2
+        ));
+        verify(productClient, never()).releaseStock(anyString());
+        verify(orderSummaryMapper, times(1)).insertBatch(argThat(summaries -> summaries.size() == 1));
+        verify(orderSummaryMapper).insertBatch(argThat(summaries -> summaries.stream().allMatch(summary ->
+            summary.getOrderId() == 1
+                && summary.getMerchantId() == 2
+                && "Test Bag".equals(summary.getBagTitle())
+                && "Test Merchant".equals(summary.getMerchantName())
+                && summary.getPrimaryMerchant()
+        )));
+        verify(orderStatsStore, times(1)).recordCreated(argThat(o -> o.getId() == 1), eq(Set.of(2)));
+    }
+
+    /** -------------------------
+     *  Test: createOrderFromCart (product lookup fails, no order without read model)
+     *  ------------------------- */
+    @Test
+    void testCreateOrderFromCart_BagLookupFailed() {
+        when(cartClient.getActiveCart(3)).thenReturn(Result.success(dummyCart()));
+        when(productClient.reserveStock(any(StockReservationDto.class))).thenReturn(Result.success());
+        when(productClient.getBatchMagicBags(anyList())).thenThrow(new RuntimeException("product down"));
+
+        BusinessException e = assertThrows(BusinessException.class, () -> orderService.createOrderFromCart(3));
+        assertEquals(ResultStatus.SERVICE_ERROR, e.getErrInfo());
+        verify(orderMapper, never()).insert(any(Order.class));
+        verify(productClient, times(1)).releaseStock(anyString());
+    }
+
+    /** -------------------------
+     *  Test: createOrderFromCart (out of stock)
+     *  ------------------------- */
+    @Test
+    void testCreateOrderFromCart_OutOfStock() {
+        when(cartClient.getActiveCart(3)).thenReturn(Result.success(dummyCart()));
+        when(productClient.reserveStock(any(StockReservationDto.class)))
+            .thenReturn(Result.error(ResultStatus.PRODUCT_OUT_OF_STOCK, "id: 1"));
+
+        BusinessException e = assertThrows(BusinessException.class, () ->
+            orderService.createOrderFromCart(3)
+        );
+        assertEquals(ResultStatus.PRODUCT_OUT_OF_STOCK, e.getErrInfo());
+        verify(orderMapper, never()).insert(any(Order.class));
+        verify(cartClient, never()).clearCart(anyInt());
+    }
+
+    /** -------------------------
+     *  Test: createOrderFromCart (insert fails, reservation released)
+     *  ------------------------- */
+    @Test
+    void testCreateOrderFromCart_InsertFailedReleasesStock() {
+        when(cartClient.getActiveCart(3)).thenReturn(Result.success(dummyCart()));
+        when(productClient.reserveStock(any(StockReservationDto.class))).thenReturn(Result.success());
+        when(productClient.getBatchMagicBags(anyList())).thenReturn(Result.success(List.of(dummyBag())));
+        when(orderMapper.insert(any(Order.class))).thenThrow(new RuntimeException("db down"));
+
+        assertThrows(RuntimeException.class, () -> orderService.createOrderFromCart(3));
+        verify(productClient, times(1)).releaseStock(anyString());
     }
 
     /** -------------------------
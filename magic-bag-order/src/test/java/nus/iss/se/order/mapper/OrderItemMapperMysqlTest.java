@@ -0,0 +1,120 @@
+package nus.iss.se.order.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import nus.iss.se.order.entity.OrderItem;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 多行 INSERT 在真实 MySQL 上的正确性，没有 Docker 时跳过
+ * 同时记录与逐行 INSERT 的耗时对比（只输出日志，不作为断言，避免受机器负载影响）
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class OrderItemMapperMysqlTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderItemMapperMysqlTest.class);
+
+    private static final int ORDERS = 200;
+    private static final int WARMUP_ORDERS = 20;
+
+    @Container
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    private static PooledDataSource dataSource;
+    private static SqlSessionFactory sqlSessionFactory;
+
+    @BeforeAll
+    static void connect() {
+        dataSource = new PooledDataSource(MYSQL.getDriverClassName(), MYSQL.getJdbcUrl(),
+                MYSQL.getUsername(), MYSQL.getPassword());
+        MybatisConfiguration configuration = new MybatisConfiguration(
+                new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(OrderItemMapper.class);
+        sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS order_items");
+            statement.execute("""
+                    CREATE TABLE order_items (
+                        id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+                        order_id BIGINT NOT NULL,
+                        magic_bag_id BIGINT NOT NULL,
+                        quantity INT NOT NULL,
+                        unit_price DECIMAL(8,2) NOT NULL,
+                        subtotal DECIMAL(8,2) NOT NULL,
+                        created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                        KEY order_items_order_id_IDX (order_id)
+                    )""");
+        }
+    }
+
+    @ParameterizedTest(name = "{0} items per order")
+    @ValueSource(ints = {1, 10, 50})
+    void testInsertBatch_InsertsEveryItem(int itemsPerOrder) {
+        List<OrderItem> items = OrderItemMapperTest.items(itemsPerOrder);
+        // 预热连接池和语句解析
+        insertOrders(items, true, WARMUP_ORDERS);
+        insertOrders(items, false, WARMUP_ORDERS);
+
+        long batchNanos = insertOrders(items, true, ORDERS);
+        long rowNanos = insertOrders(items, false, ORDERS);
+
+        log.info("order items ({} per order): multi-row {}ms/order, row-by-row {}ms/order",
+                itemsPerOrder, String.format("%.2f", batchNanos / 1e6 / ORDERS), String.format("%.2f", rowNanos / 1e6 / ORDERS));
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            List<OrderItem> stored = session.getMapper(OrderItemMapper.class).findByOrderId(1).stream()
+                    .sorted(Comparator.comparing(OrderItem::getId))
+                    .toList();
+            int orders = (ORDERS + WARMUP_ORDERS) * 2;
+            assertEquals(orders * itemsPerOrder, stored.size());
+            // 多行插入的第一个订单，顺序和内容与传入的一致
+            assertEquals(IntStream.rangeClosed(1, itemsPerOrder).boxed().toList(),
+                    stored.subList(0, itemsPerOrder).stream().map(OrderItem::getMagicBagId).toList());
+        }
+    }
+
+    /**
+     * 每个订单一个事务，和下单时的写法一致
+     */
+    private static long insertOrders(List<OrderItem> items, boolean multiRow, int orders) {
+        long start = System.nanoTime();
+        for (int i = 0; i < orders; i++) {
+            try (SqlSession session = sqlSessionFactory.openSession()) {
+                OrderItemMapper mapper = session.getMapper(OrderItemMapper.class);
+                if (multiRow) {
+                    assertEquals(items.size(), mapper.insertBatch(items));
+                } else {
+                    for (OrderItem item : items) {
+                        mapper.insertBatch(List.of(item));
+                    }
+                }
+                session.commit();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,70 @@
+package nus.iss.se.order.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import nus.iss.se.order.entity.OrderItem;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 校验 insertBatch 生成的是一条多行 INSERT，不需要数据库
+ */
+class OrderItemMapperTest {
+
+    private static MappedStatement insertBatch;
+
+    @BeforeAll
+    static void parseMapper() {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.addMapper(OrderItemMapper.class);
+        insertBatch = configuration.getMappedStatement(OrderItemMapper.class.getName() + ".insertBatch");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 50})
+    void testInsertBatch_OneStatementWithOneRowPerItem(int size) {
+        List<OrderItem> items = items(size);
+
+        BoundSql boundSql = insertBatch.getBoundSql(Map.of("items", items));
+
+        String sql = boundSql.getSql().replaceAll("\\s+", " ").trim();
+        assertTrue(sql.startsWith("INSERT INTO order_items (order_id, magic_bag_id, quantity, unit_price, subtotal, created_at) VALUES"), sql);
+        assertEquals(1, count(sql, "INSERT"));
+        assertEquals(size, count(sql, "\\(\\?, \\?, \\?, \\?, \\?, \\?\\)"));
+        assertEquals(size * 6, boundSql.getParameterMappings().size());
+        OrderItem last = items.get(size - 1);
+        Object lastBagId = boundSql.getAdditionalParameter(boundSql.getParameterMappings().get(size * 6 - 5).getProperty());
+        assertEquals(last.getMagicBagId(), lastBagId);
+    }
+
+    static List<OrderItem> items(int size) {
+        List<OrderItem> items = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            OrderItem item = new OrderItem();
+            item.setOrderId(1);
+            item.setMagicBagId(i);
+            item.setQuantity(1);
+            item.setUnitPrice(new BigDecimal("5.00"));
+            item.setSubtotal(new BigDecimal("5.00"));
+            item.setCreatedAt(LocalDateTime.now());
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static int count(String text, String regex) {
+        return (int) Pattern.compile(regex).matcher(text).results().count();
+    }
+}
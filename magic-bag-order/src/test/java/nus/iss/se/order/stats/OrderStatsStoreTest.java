@@ -0,0 +1,188 @@
+package nus.iss.se.order.stats;
+
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.order.dto.OrderStatsDto;
+import nus.iss.se.order.entity.Order;
+import nus.iss.se.order.entity.OrderStats;
+import nus.iss.se.order.mapper.OrderStatsMapper;
+import nus.iss.se.order.mapper.OrderSummaryMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class OrderStatsStoreTest {
+
+    @Mock
+    private OrderStatsMapper orderStatsMapper;
+
+    @Mock
+    private OrderSummaryMapper orderSummaryMapper;
+
+    @Mock
+    private RedisUtil redisUtil;
+
+    @InjectMocks
+    private OrderStatsStore orderStatsStore;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private Order dummyOrder(String status) {
+        Order order = new Order();
+        order.setId(1);
+        order.setUserId(3);
+        order.setStatus(status);
+        order.setTotalPrice(BigDecimal.valueOf(20.0));
+        return order;
+    }
+
+    /** -------------------------
+     *  Test: get —— 按主键读一行，没有行时返回全 0
+     *  ------------------------- */
+    @Test
+    void testGet_MissingScopeReturnsZeros() {
+        OrderStatsDto stats = new OrderStatsDto();
+        stats.setTotalOrders(7L);
+        when(orderStatsMapper.findByScope(OrderStatsStore.SCOPE_GLOBAL, 0)).thenReturn(stats);
+        when(orderStatsMapper.findByScope(OrderStatsStore.SCOPE_USER, 3)).thenReturn(null);
+
+        assertEquals(7L, orderStatsStore.getGlobal().getTotalOrders());
+        OrderStatsDto empty = orderStatsStore.getByUser(3);
+        assertEquals(0L, empty.getTotalOrders());
+        assertEquals(0L, empty.getPendingOrders());
+        assertEquals(BigDecimal.ZERO, empty.getTotalAmount());
+    }
+
+    /** -------------------------
+     *  Test: recordCreated —— 总数、金额、初始状态 +1
+     *  ------------------------- */
+    @Test
+    void testRecordCreated() {
+        orderStatsStore.recordCreated(dummyOrder("pending"), List.of(2, 5));
+
+        ArgumentCaptor<OrderStatsDto> captor = ArgumentCaptor.forClass(OrderStatsDto.class);
+        verify(orderStatsMapper, times(1)).applyDelta(eq(3), eq(List.of(2, 5)), captor.capture());
+        OrderStatsDto delta = captor.getValue();
+        assertEquals(1L, delta.getTotalOrders());
+        assertEquals(1L, delta.getPendingOrders());
+        assertEquals(0L, delta.getPaidOrders());
+        assertEquals(BigDecimal.valueOf(20.0), delta.getTotalAmount());
+    }
+
+    /** -------------------------
+     *  Test: recordTransition —— 旧状态 -1、新状态 +1，总数和金额不变
+     *  ------------------------- */
+    @Test
+    void testRecordTransition() {
+        when(orderSummaryMapper.findMerchantIdsByOrderId(1)).thenReturn(List.of(2));
+
+        orderStatsStore.recordTransition(dummyOrder("paid"), "pending", "paid");
+
+        ArgumentCaptor<OrderStatsDto> captor = ArgumentCaptor.forClass(OrderStatsDto.class);
+        verify(orderStatsMapper, times(1)).applyDelta(eq(3), eq(List.of(2)), captor.capture());
+        OrderStatsDto delta = captor.getValue();
+        assertEquals(0L, delta.getTotalOrders());
+        assertEquals(-1L, delta.getPendingOrders());
+        assertEquals(1L, delta.getPaidOrders());
+        assertEquals(BigDecimal.ZERO, delta.getTotalAmount());
+    }
+
+    /** -------------------------
+     *  Test: recordTransition (same status) —— 不写库
+     *  ------------------------- */
+    @Test
+    void testRecordTransition_SameStatus() {
+        orderStatsStore.recordTransition(dummyOrder("paid"), "paid", "paid");
+
+        verifyNoInteractions(orderStatsMapper, orderSummaryMapper);
+    }
+
+    /** -------------------------
+     *  Test: 事务内 —— 增量在提交前才写入
+     *  ------------------------- */
+    @Test
+    void testRecordCreated_InTransactionAppliedBeforeCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderStatsStore.recordCreated(dummyOrder("pending"), List.of(2));
+            verifyNoInteractions(orderStatsMapper);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.beforeCommit(false));
+
+            verify(orderStatsMapper, times(1)).applyDelta(eq(3), eq(List.of(2)), any(OrderStatsDto.class));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /** -------------------------
+     *  Test: reconcile —— 先聚合再分批覆盖
+     *  ------------------------- */
+    @Test
+    void testReconcile_AggregatesThenOverwrites() {
+        when(redisUtil.setIfAbsent(eq(RedisPrefix.ORDER_STATS_RECONCILE_LOCK.getCode()), anyString(), anyLong(), any()))
+                .thenReturn(true);
+        OrderStats global = stats(OrderStatsStore.SCOPE_GLOBAL, 0);
+        List<OrderStats> users = new ArrayList<>();
+        for (int i = 1; i <= 501; i++) {
+            users.add(stats(OrderStatsStore.SCOPE_USER, i));
+        }
+        when(orderStatsMapper.aggregateGlobal()).thenReturn(global);
+        when(orderStatsMapper.aggregateUsers()).thenReturn(users);
+        when(orderStatsMapper.aggregateMerchants()).thenReturn(List.of());
+
+        orderStatsStore.reconcile();
+
+        verify(orderStatsMapper, times(1)).overwrite(List.of(global));
+        verify(orderStatsMapper, times(1)).overwrite(users.subList(0, 500));
+        verify(orderStatsMapper, times(1)).overwrite(users.subList(500, 501));
+        verify(orderStatsMapper, times(3)).overwrite(anyList());
+    }
+
+    /** -------------------------
+     *  Test: reconcile —— 其它实例持有锁时跳过
+     *  ------------------------- */
+    @Test
+    void testReconcile_SkippedWhenAnotherInstanceHoldsLock() {
+        when(redisUtil.setIfAbsent(anyString(), anyString(), anyLong(), any())).thenReturn(false);
+
+        orderStatsStore.reconcile();
+
+        verifyNoInteractions(orderStatsMapper);
+    }
+
+    /** -------------------------
+     *  Test: reconcile —— 失败只记录日志
+     *  ------------------------- */
+    @Test
+    void testReconcile_FailureIsSwallowed() {
+        when(redisUtil.setIfAbsent(anyString(), anyString(), anyLong(), any())).thenReturn(true);
+        when(orderStatsMapper.aggregateGlobal()).thenReturn(stats(OrderStatsStore.SCOPE_GLOBAL, 0));
+        when(orderStatsMapper.aggregateUsers()).thenThrow(new RuntimeException("db down"));
+
+        assertDoesNotThrow(() -> orderStatsStore.reconcile());
+        verify(orderStatsMapper, times(1)).overwrite(anyList());
+        verify(orderStatsMapper, never()).aggregateMerchants();
+    }
+
+    private static OrderStats stats(String scopeType, Integer scopeId) {
+        OrderStats stats = new OrderStats();
+        stats.setScopeType(scopeType);
+        stats.setScopeId(scopeId);
+        stats.setTotalOrders(1L);
+        stats.setTotalAmount(BigDecimal.ONE);
+        return stats;
+    }
+}
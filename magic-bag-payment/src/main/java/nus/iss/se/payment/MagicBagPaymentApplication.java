@@ -8,7 +8,7 @@ import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.kafka.annotation.EnableKafka;
 
 @EnableKafka
-@SpringBootApplication(scanBasePackages = {"nus.iss.se.payment", "nus.iss.se.common"})
+@SpringBootApplication(scanBasePackages = {"nus.iss.se.payment", "nus.iss.se.common", "nus.iss.se.kafka"})
 @EnableFeignClients(basePackages = "nus.iss.se.payment.api")
 @EnableDiscoveryClient
 @EnableConfigurationProperties
@@ -0,0 +1,52 @@
+package nus.iss.se.payment.api;
+
+import nus.iss.se.common.Result;
+import nus.iss.se.common.batch.BatchLoader;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.payment.dto.MagicBagDto;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 盲盒单 id 查询
+ * 并发请求中的单 id 查询在几毫秒窗口内合并为一次 batch-query，相同 id 的在途查询只发一次；
+ * 返回值与 ProductClient.getMagicBagById 一致（不存在时返回 PRODUCT_NOT_FOUND）。
+ */
+@Component
+public class LookupClient implements DisposableBean {
+    private static final Duration BATCH_WINDOW = Duration.ofMillis(5);
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private final BatchLoader<Integer, MagicBagDto> magicBagLoader;
+
+    public LookupClient(ProductClient productClient) {
+        this.magicBagLoader = BatchLoader.of("magic-bag",
+                ids -> toMap(productClient.getBatchMagicBags(ids)), BATCH_WINDOW, MAX_BATCH_SIZE);
+    }
+
+    public Result<MagicBagDto> getMagicBagById(Integer id) {
+        MagicBagDto bag = magicBagLoader.get(id);
+        return bag == null ? Result.error(ResultStatus.PRODUCT_NOT_FOUND) : Result.success(bag);
+    }
+
+    private static Map<Integer, MagicBagDto> toMap(Result<List<MagicBagDto>> result) {
+        if (result == null || result.getCode() != ResultStatus.SUCCESS.getCode() || result.getData() == null) {
+            throw new BusinessException(ResultStatus.SERVICE_ERROR,
+                    "batch query failed: " + (result == null ? null : result.getMessage()));
+        }
+        return result.getData().stream()
+                .collect(Collectors.toMap(MagicBagDto::getId, Function.identity(), (first, second) -> first));
+    }
+
+    @Override
+    public void destroy() {
+        magicBagLoader.close();
+    }
+}
@@ -0,0 +1,68 @@
+package nus.iss.se.payment.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.util.RedisUtil;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单当前有效的 Stripe Checkout Session
+ * payment:checkout:{orderId} 保存会话ID、支付链接和创建时的金额，过期时间略早于会话本身的过期时间；
+ * 金额不一致（订单被改价）视为未命中。Redis 不可用时降级为直接创建会话。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CheckoutSessionCache {
+    private final RedisUtil redisUtil;
+
+    /** 会话过期前这么久就不再复用，留给用户完成支付 */
+    private static final Duration EXPIRY_MARGIN = Duration.ofMinutes(5);
+
+    public record CachedSession(long amountInCents, String sessionId, String url) {
+    }
+
+    /**
+     * 金额一致且未过期的会话，否则返回 null
+     */
+    public CachedSession get(Integer orderId, long amountInCents) {
+        try {
+            CachedSession cached = redisUtil.getJson(getCacheKey(orderId), CachedSession.class);
+            return cached != null && cached.amountInCents() == amountInCents ? cached : null;
+        } catch (Exception e) {
+            log.warn("Failed to read checkout session cache for order {}: {}", orderId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param expiresAt 会话过期时间（epoch 秒）
+     */
+    public void put(Integer orderId, CachedSession session, long expiresAt) {
+        long ttlSeconds = expiresAt - System.currentTimeMillis() / 1000 - EXPIRY_MARGIN.toSeconds();
+        if (ttlSeconds <= 0) {
+            return;
+        }
+        try {
+            redisUtil.setJson(getCacheKey(orderId), session, ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("Failed to cache checkout session for order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    public void evict(Integer orderId) {
+        try {
+            redisUtil.delete(getCacheKey(orderId));
+        } catch (Exception e) {
+            log.warn("Failed to evict checkout session cache for order {}: {}", orderId, e.getMessage());
+        }
+    }
+
+    public static String getCacheKey(Integer orderId) {
+        return RedisPrefix.PAYMENT_CHECKOUT.getCode() + orderId;
+    }
+}
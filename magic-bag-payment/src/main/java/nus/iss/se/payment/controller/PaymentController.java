@@ -1,5 +1,6 @@
 package nus.iss.se.payment.controller;
 
+import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -98,6 +99,27 @@ public class PaymentController {
         }
     }
     
+    /**
+     * Stripe webhook
+     * 签名无效返回 400；处理失败返回 500，由 Stripe 重试投递
+     */
+    @PostMapping("/webhook")
+    @Operation(summary = "Stripe webhook endpoint")
+    public ResponseEntity<String> handleWebhook(
+            @RequestBody String payload,
+            @RequestHeader(name = "Stripe-Signature", required = false) String signature) {
+        try {
+            paymentService.handleWebhook(payload, signature);
+            return ResponseEntity.ok("received");
+        } catch (SignatureVerificationException e) {
+            log.warn("Invalid stripe webhook signature: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("invalid signature");
+        } catch (Exception e) {
+            log.error("Error handling stripe webhook: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("error");
+        }
+    }
+    
     /**
      * 支付成功回调页面
      * 注意：这个只是展示用，真正的状态更新在 /verify 接口
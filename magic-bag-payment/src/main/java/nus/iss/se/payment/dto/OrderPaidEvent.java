@@ -0,0 +1,18 @@
+package nus.iss.se.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * order.paid 事件内容，由 order-service 消费后把订单更新为已支付
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OrderPaidEvent {
+    private Integer orderId;
+    private String orderNo;
+    private String sessionId;
+    private Long amountTotal;   // 分
+}
@@ -0,0 +1,27 @@
+package nus.iss.se.payment.entity;
+
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * Stripe webhook 收件箱：每个 Stripe 事件一行，event_id 为主键，用于去重
+ */
+@Data
+@TableName("payment_webhook_inbox")
+public class PaymentWebhookEvent {
+    public static final String STATUS_RECEIVED = "received";
+    public static final String STATUS_PUBLISHED = "published";
+    public static final String STATUS_IGNORED = "ignored";
+
+    @TableId
+    private String eventId;
+    private String eventType;
+    private String sessionId;
+    private Integer orderId;
+    private String status;
+    private Date receivedAt;
+    private Date processedAt;
+}
@@ -0,0 +1,6 @@
+package nus.iss.se.payment.kafka;
+
+public interface EventTopicType {
+    String ORDER_PAID = "order.paid";
+    String ORDER_REFUND_REQUIRED = "order.refund.required";
+}
@@ -0,0 +1,32 @@
+package nus.iss.se.payment.kafka.handler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.EventHandler;
+import nus.iss.se.payment.kafka.EventTopicType;
+import nus.iss.se.payment.service.IPaymentService;
+import org.springframework.stereotype.Component;
+
+/**
+ * 已取消的订单收到支付：按 Checkout Session 全额退款；消息可能重复投递，refundCancelledOrder 幂等
+ * Stripe 调用失败（含熔断、超时）时抛出异常，由 Kafka 重新投递
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EventHandler(topic = EventTopicType.ORDER_REFUND_REQUIRED)
+public class OrderRefundRequiredHandler implements DomainEventHandler<String> {
+    private final IPaymentService paymentService;
+
+    @Override
+    public void handle(String sessionId, EventEnvelope envelope) throws Exception {
+        log.debug("handling event - {}, details: {}", EventTopicType.ORDER_REFUND_REQUIRED, envelope);
+        if (sessionId == null || sessionId.isBlank()) {
+            log.warn("Ignore invalid order.refund.required event: {}", envelope);
+            return;
+        }
+        paymentService.refundCancelledOrder(sessionId);
+    }
+}
@@ -0,0 +1,29 @@
+package nus.iss.se.payment.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import nus.iss.se.payment.entity.PaymentWebhookEvent;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface PaymentWebhookEventMapper extends BaseMapper<PaymentWebhookEvent> {
+
+    /**
+     * 事件已存在时不插入，返回 0 表示 Stripe 重复投递
+     */
+    @Insert("INSERT IGNORE INTO payment_webhook_inbox (event_id, event_type, session_id, order_id, status, received_at) " +
+            "VALUES (#{e.eventId}, #{e.eventType}, #{e.sessionId}, #{e.orderId}, #{e.status}, #{e.receivedAt})")
+    int insertIgnore(@Param("e") PaymentWebhookEvent event);
+
+    @Update("UPDATE payment_webhook_inbox SET status = #{status}, processed_at = NOW() WHERE event_id = #{eventId}")
+    int updateStatus(@Param("eventId") String eventId, @Param("status") String status);
+
+    /**
+     * 订单是否已收到支付成功的 webhook
+     */
+    @Select("SELECT COUNT(*) > 0 FROM payment_webhook_inbox WHERE order_id = #{orderId} AND status = 'published'")
+    boolean existsPublishedByOrderId(@Param("orderId") Integer orderId);
+}
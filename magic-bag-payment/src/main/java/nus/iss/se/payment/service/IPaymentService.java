@@ -1,5 +1,6 @@
 package nus.iss.se.payment.service;
 
+import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
 
 import nus.iss.se.payment.dto.OrderDto;
@@ -20,4 +21,16 @@ public interface IPaymentService {
      */
     PaymentResponseDto verifyAndUpdatePayment(Integer orderId, String sessionId);
 
+    /**
+     * 处理 Stripe webhook：校验签名、按事件ID去重，支付成功时发布 order.paid 事件
+     * @throws SignatureVerificationException 签名无效
+     */
+    void handleWebhook(String payload, String signature) throws SignatureVerificationException;
+
+    /**
+     * 已取消订单收到支付时全额退款（消费 order.refund.required 事件），重复调用只退一次
+     * @throws StripeException Stripe 调用失败，由 Kafka 重新投递
+     */
+    void refundCancelledOrder(String sessionId) throws StripeException;
+
 }
\ No newline at end of file
@@ -1,59 +1,86 @@
 package nus.iss.se.payment.service.impl;
 
-import com.stripe.Stripe;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.exception.EventDataObjectDeserializationException;
+import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.Refund;
+import com.stripe.model.EventDataObjectDeserializer;
+import com.stripe.model.StripeObject;
 import com.stripe.model.checkout.Session;
 import com.stripe.param.checkout.SessionCreateParams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nus.iss.se.common.Result;
+import nus.iss.se.common.constant.PaymentWindow;
 import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.publisher.EventPublisher;
 import nus.iss.se.payment.api.OrderClient;
-import nus.iss.se.payment.api.ProductClient;
+import nus.iss.se.payment.api.LookupClient;
+import nus.iss.se.payment.cache.CheckoutSessionCache;
+import nus.iss.se.payment.cache.CheckoutSessionCache.CachedSession;
 import nus.iss.se.payment.dto.*;
+import nus.iss.se.payment.entity.PaymentWebhookEvent;
+import nus.iss.se.payment.kafka.EventTopicType;
+import nus.iss.se.payment.mapper.PaymentWebhookEventMapper;
 import nus.iss.se.payment.service.IPaymentService;
+import nus.iss.se.payment.stripe.StripeCallGuard;
+import nus.iss.se.payment.stripe.StripeGateway;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
 
 /**
  * 支付服务实现类
  * 职责：处理支付逻辑，与 Stripe 交互
- * 订单状态更新通过 OrderClient (Feign) 调用 order-service
+ * 支付成功由 Stripe webhook 确认，发布 order.paid 事件由 order-service 异步更新订单；
+ * /verify 只在 webhook 尚未到达时作为兜底；订单已取消时 order-service 发布 order.refund.required，在这里全额退款
+ * Stripe 调用经 StripeCallGuard 隔离（超时、并发上限、熔断）；同一订单同一金额的有效会话缓存在 Redis，
+ * 重复点击支付直接返回已有链接，缓存失效时也用幂等 key 保证 Stripe 侧不重复创建。
+ * 会话在 订单创建 + PaymentWindow.SESSION_DEADLINE 过期，早于订单服务的超时取消，已取消的订单不会再被支付。
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentServiceImpl implements IPaymentService {
     
-    private final ProductClient productClient;
+    private final LookupClient lookupClient;
     private final OrderClient orderClient;  // ✅ 通过 Feign 调用 order-service
-    
-    @Value("${stripe.api.key}")
-    private String stripeApiKey;
+    private final CheckoutSessionCache checkoutSessionCache;
+    private final StripeCallGuard stripeCallGuard;
+    private final StripeGateway stripeGateway;
+    private final PaymentWebhookEventMapper paymentWebhookEventMapper;
+    private final EventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
     
     @Value("${app.pay-url}")
     private String payUrl;
-    
-    private boolean stripeInitialized = false;
-    
+
     /**
-     * 初始化 Stripe
+     * Stripe 要求 expires_at 距创建至少 30 分钟，另留 1 分钟给时钟偏差和请求耗时；
+     * 会话过期时间固定为 订单创建 + SESSION_DEADLINE，因此只能在订单创建后 SESSION_DEADLINE - SESSION_MIN_LIFETIME 内发起支付
      */
-    private void initStripe() {
-        if (!stripeInitialized) {
-            Stripe.apiKey = stripeApiKey;
-            stripeInitialized = true;
-            log.info("Stripe API initialized");
-        }
-    }
+    private static final Duration SESSION_MIN_LIFETIME = Duration.ofMinutes(31);
+
+    /** Stripe 对已全额退款的支付再次退款时返回的错误码 */
+    private static final String ALREADY_REFUNDED = "charge_already_refunded";
+
+    /** 表示 Checkout Session 支付完成的 webhook 事件；异步支付方式在 async_payment_succeeded 时才到账 */
+    private static final Set<String> PAID_EVENT_TYPES =
+            Set.of("checkout.session.completed", "checkout.session.async_payment_succeeded");
     
     @Override
     public PaymentResponseDto createCheckoutSession(Integer orderId) throws StripeException {
-        initStripe();
-        
         PaymentResponseDto response = new PaymentResponseDto();
         
         // 通过 Feign 从 order-service 获取订单信息
@@ -74,11 +101,12 @@ public class PaymentServiceImpl implements IPaymentService {
             return response;
         }
         
-        // 检查订单状态
-        if ("paid".equals(order.getStatus())) {
-            log.warn("Order already paid: {}", orderId);
+        // 检查订单状态，只有待支付订单可以发起支付（已取消订单不能再创建或复用会话）
+        if (!"pending".equals(order.getStatus())) {
+            log.warn("Order {} is '{}', checkout rejected", orderId, order.getStatus());
+            checkoutSessionCache.evict(orderId);
             response.setSuccess(false);
-            response.setMessage(ResultStatus.ORDER_ALREADY_PAID.getMessage());
+            response.setMessage(checkoutRejection(order.getStatus()).getMessage());
             return response;
         }
         
@@ -91,8 +119,26 @@ public class PaymentServiceImpl implements IPaymentService {
             return response;
         }
         
+        // 会话不能活过订单的超时取消
+        Long expiresAt = sessionExpiresAt(order);
+        if (expiresAt == null) {
+            log.warn("Payment window closed: orderId={}, createdAt={}", orderId, order.getCreatedAt());
+            response.setSuccess(false);
+            response.setMessage(ResultStatus.PAYMENT_WINDOW_CLOSED.getMessage());
+            return response;
+        }
+
         // 转换为分（Stripe 要求）
         long amountInCents = totalPrice.multiply(BigDecimal.valueOf(100)).longValue();
+        // 已有同金额的有效会话时直接返回，不再查询商品和调用 Stripe
+        CachedSession cached = checkoutSessionCache.get(orderId, amountInCents);
+        if (cached != null) {
+            log.info("Reusing checkout session for order {}: sessionId={}", orderId, cached.sessionId());
+            response.setSuccess(true);
+            response.setCheckoutUrl(cached.url());
+            response.setMessage("Checkout session created successfully");
+            return response;
+        }
         log.info("Creating checkout session for order {}: amount={} SGD ({} cents)", 
                 orderId, totalPrice, amountInCents);
         
@@ -100,7 +146,7 @@ public class PaymentServiceImpl implements IPaymentService {
         String bagTitle = "Magic Bag";
         if (order.getBagId() != null) {
             try {
-                Result<MagicBagDto> bagResult = productClient.getMagicBagById(order.getBagId());
+                Result<MagicBagDto> bagResult = lookupClient.getMagicBagById(order.getBagId());
                 if (isResultSuccess(bagResult) && bagResult.getData() != null) {
                     bagTitle = bagResult.getData().getTitle();
                     log.info("Product title retrieved: {}", bagTitle);
@@ -112,9 +158,13 @@ public class PaymentServiceImpl implements IPaymentService {
             }
         }
         
+        // 过期时间只取决于订单，同一订单同一金额的重复请求参数相同，可以共用幂等 key
+        String idempotencyKey = "checkout-" + orderId + "-" + amountInCents;
+        
         // 创建 Stripe Checkout Session
         try {
             SessionCreateParams.Builder paramsBuilder = SessionCreateParams.builder()
+                    .setExpiresAt(expiresAt)
                     .setMode(SessionCreateParams.Mode.PAYMENT)
                     .setSuccessUrl(payUrl + "/payment/success?orderId=" + orderId + "&session_id={CHECKOUT_SESSION_ID}")
                     .setCancelUrl(payUrl + "/payment/cancel?orderId=" + orderId)
@@ -158,9 +208,12 @@ public class PaymentServiceImpl implements IPaymentService {
             
             SessionCreateParams params = paramsBuilder.build();
             
-            Session session = Session.create(params);
+            Session session = stripeCallGuard.call("checkout.create", idempotencyKey,
+                    () -> stripeGateway.createCheckoutSession(params, idempotencyKey));
             
             if (session != null && session.getUrl() != null) {
+                checkoutSessionCache.put(orderId,
+                        new CachedSession(amountInCents, session.getId(), session.getUrl()), expiresAt);
                 response.setSuccess(true);
                 response.setCheckoutUrl(session.getUrl());
                 response.setMessage("Checkout session created successfully");
@@ -175,16 +228,18 @@ public class PaymentServiceImpl implements IPaymentService {
             log.error("Stripe error when creating checkout session for order {}: {}", 
                     orderId, e.getMessage(), e);
             throw e;
+        } catch (BusinessException e) {
+            // 超时、并发上限或熔断：快速失败，用户稍后重试
+            log.warn("Stripe unavailable when creating checkout session for order {}: {}", orderId, e.getMessage());
+            response.setSuccess(false);
+            response.setMessage(ResultStatus.PAYMENT_FAILED.getMessage() + ": " + e.getMessage());
         }
         
         return response;
     }
     
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public PaymentResponseDto verifyAndUpdatePayment(Integer orderId, String sessionId) {
-        initStripe();
-        
         PaymentResponseDto response = new PaymentResponseDto();
         
         try {
@@ -215,9 +270,18 @@ public class PaymentServiceImpl implements IPaymentService {
                 return response;
             }
             
-            // 从 Stripe 服务器验证支付状态
+            // webhook 已确认支付，订单更新在途，不必再访问 Stripe
+            if (paymentWebhookEventMapper.existsPublishedByOrderId(orderId)) {
+                log.info("Payment already confirmed by webhook: {}", orderId);
+                response.setSuccess(true);
+                response.setMessage("Payment verified, order status is being updated");
+                return response;
+            }
+            
+            // webhook 尚未到达，从 Stripe 服务器验证支付状态
             log.info("Verifying payment with Stripe: orderId={}, sessionId={}", orderId, sessionId);
-            Session session = Session.retrieve(sessionId);
+            Session session = stripeCallGuard.call("checkout.retrieve", null,
+                    () -> stripeGateway.retrieveSession(sessionId));
             
             // 验证 metadata 中的 orderId 是否匹配
             String metadataOrderId = session.getMetadata().get("orderId");
@@ -236,24 +300,11 @@ public class PaymentServiceImpl implements IPaymentService {
                     orderId, sessionStatus, paymentStatus);
             
             if ("complete".equals(sessionStatus) && "paid".equals(paymentStatus)) {
-                // 支付成功，通过 Feign 调用 order-service 更新订单状态
-                try {
-                    Result<Void> updateResult = orderClient.updateOrderStatus(orderId, "paid");
-                    
-                    if (isResultSuccess(updateResult)) {
-                        response.setSuccess(true);
-                        response.setMessage("Payment verified and order updated successfully");
-                        log.info("Order {} payment verified and status updated to 'paid'", orderId);
-                    } else {
-                        response.setSuccess(false);
-                        response.setMessage("Failed to update order status");
-                        log.error("Failed to update order status for orderId: {}", orderId);
-                    }
-                } catch (Exception e) {
-                    log.error("Error updating order status through Feign: orderId={}, error={}", orderId, e.getMessage(), e);
-                    response.setSuccess(false);
-                    response.setMessage("Failed to update order status: " + e.getMessage());
-                }
+                // 支付成功，与 webhook 相同走 order.paid 事件，order-service 消费时幂等
+                publishOrderPaid(orderId, session);
+                response.setSuccess(true);
+                response.setMessage("Payment verified, order status is being updated");
+                log.info("Order {} payment verified, order.paid published", orderId);
             } else {
                 // 支付未完成
                 response.setSuccess(false);
@@ -278,6 +329,131 @@ public class PaymentServiceImpl implements IPaymentService {
         return response;
     }
     
+    @Override
+    @Transactional
+    public void handleWebhook(String payload, String signature) throws SignatureVerificationException {
+        Event event = stripeGateway.constructWebhookEvent(payload, signature);
+        Session session = PAID_EVENT_TYPES.contains(event.getType()) ? toSession(event) : null;
+
+        PaymentWebhookEvent inbox = new PaymentWebhookEvent();
+        inbox.setEventId(event.getId());
+        inbox.setEventType(event.getType());
+        inbox.setStatus(PaymentWebhookEvent.STATUS_RECEIVED);
+        inbox.setReceivedAt(new Date());
+        if (session != null) {
+            inbox.setSessionId(session.getId());
+            inbox.setOrderId(parseOrderId(session));
+        }
+
+        // Stripe 重复投递：已处理完的直接确认；上次停在 received 的重新处理
+        // 收件箱、order.paid 发件箱行和状态在同一事务内提交，失败时整体回滚，由 Stripe 重新投递
+        if (paymentWebhookEventMapper.insertIgnore(inbox) == 0) {
+            PaymentWebhookEvent existing = paymentWebhookEventMapper.selectById(event.getId());
+            if (existing != null && !PaymentWebhookEvent.STATUS_RECEIVED.equals(existing.getStatus())) {
+                log.info("Duplicate stripe webhook ignored: eventId={}, type={}", event.getId(), event.getType());
+                return;
+            }
+        }
+
+        if (session == null || inbox.getOrderId() == null || !"paid".equals(session.getPaymentStatus())) {
+            log.info("Stripe webhook not a completed payment, ignored: eventId={}, type={}", event.getId(), event.getType());
+            paymentWebhookEventMapper.updateStatus(event.getId(), PaymentWebhookEvent.STATUS_IGNORED);
+            return;
+        }
+
+        publishOrderPaid(inbox.getOrderId(), session);
+        paymentWebhookEventMapper.updateStatus(event.getId(), PaymentWebhookEvent.STATUS_PUBLISHED);
+        log.info("Payment confirmed by webhook: eventId={}, orderId={}, sessionId={}",
+                event.getId(), inbox.getOrderId(), session.getId());
+    }
+
+    /**
+     * 非待支付订单拒绝创建会话时返回的状态
+     */
+    private ResultStatus checkoutRejection(String status) {
+        if ("paid".equals(status) || "completed".equals(status)) {
+            return ResultStatus.ORDER_ALREADY_PAID;
+        }
+        if ("cancelled".equals(status)) {
+            return ResultStatus.ORDER_ALREADY_CANCELLED;
+        }
+        return ResultStatus.PAYMENT_FAILED;
+    }
+
+    /**
+     * @return 会话过期时间（epoch 秒）= 订单创建 + SESSION_DEADLINE；剩余时间不足 Stripe 的最短有效期时返回 null
+     */
+    private Long sessionExpiresAt(OrderDto order) {
+        if (order.getCreatedAt() == null) {
+            return null;
+        }
+        long deadline = order.getCreatedAt().toInstant().plus(PaymentWindow.SESSION_DEADLINE).getEpochSecond();
+        long earliest = System.currentTimeMillis() / 1000 + SESSION_MIN_LIFETIME.toSeconds();
+        return deadline < earliest ? null : deadline;
+    }
+
+    private void publishOrderPaid(Integer orderId, Session session) {
+        String orderNo = session.getMetadata() == null ? null : session.getMetadata().get("orderNo");
+        OrderPaidEvent paidEvent = new OrderPaidEvent(orderId, orderNo, session.getId(), session.getAmountTotal());
+        try {
+            eventPublisher.publish(EventEnvelope.of(objectMapper.writeValueAsString(paidEvent), EventTopicType.ORDER_PAID));
+        } catch (JsonProcessingException e) {
+            throw new BusinessException(ResultStatus.SERVICE_ERROR, "serialize order.paid event failed");
+        }
+        checkoutSessionCache.evict(orderId);
+    }
+
+    @Override
+    public void refundCancelledOrder(String sessionId) throws StripeException {
+        Session session = stripeCallGuard.call("checkout.retrieve", null,
+                () -> stripeGateway.retrieveSession(sessionId));
+        if (session == null || session.getPaymentIntent() == null) {
+            log.error("Refund requested for session {} without payment intent, refund manually", sessionId);
+            return;
+        }
+        String paymentIntentId = session.getPaymentIntent();
+        // 幂等 key 按会话固定，重复投递的事件不会产生第二笔退款
+        String idempotencyKey = "refund-" + sessionId;
+        try {
+            Refund refund = stripeCallGuard.call("refund.create", idempotencyKey,
+                    () -> stripeGateway.createRefund(paymentIntentId, idempotencyKey));
+            log.info("Refunded cancelled order: orderId={}, sessionId={}, refundId={}, status={}",
+                    parseOrderId(session), sessionId, refund.getId(), refund.getStatus());
+        } catch (StripeException e) {
+            // 幂等 key 过期后的重复投递
+            if (ALREADY_REFUNDED.equals(e.getCode())) {
+                log.info("Session {} already refunded", sessionId);
+                return;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 取出事件中的 Checkout Session；webhook 的 API 版本与 SDK 不一致时退回到宽松反序列化
+     */
+    private Session toSession(Event event) {
+        EventDataObjectDeserializer deserializer = event.getDataObjectDeserializer();
+        Optional<StripeObject> object = deserializer.getObject();
+        try {
+            StripeObject stripeObject = object.isPresent() ? object.get() : deserializer.deserializeUnsafe();
+            return stripeObject instanceof Session session ? session : null;
+        } catch (EventDataObjectDeserializationException e) {
+            log.error("Failed to deserialize stripe event {}: {}", event.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private Integer parseOrderId(Session session) {
+        String orderId = session.getMetadata() == null ? null : session.getMetadata().get("orderId");
+        try {
+            return orderId == null ? null : Integer.valueOf(orderId);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid orderId in session metadata: sessionId={}, orderId={}", session.getId(), orderId);
+            return null;
+        }
+    }
+    
     /**
      * 判断 Result 是否成功的辅助方法
      */
@@ -0,0 +1,73 @@
+package nus.iss.se.payment.stripe;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连续失败计数熔断器
+ * 连续失败达到阈值后打开，openDuration 内所有调用直接拒绝；之后放行一个探测调用，
+ * 探测成功则关闭，失败则重新打开。
+ */
+@Slf4j
+public class CircuitBreaker {
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private volatile boolean open;
+    private volatile long openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * 是否允许本次调用；返回 true 后必须调用 onSuccess 或 onFailure
+     */
+    public boolean tryAcquire() {
+        if (!open) {
+            return true;
+        }
+        if (System.nanoTime() - openedAt < openNanos) {
+            return false;
+        }
+        // 半开：只放行一个探测调用
+        return probing.compareAndSet(false, true);
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        if (open) {
+            open = false;
+            log.info("Circuit breaker {} closed", name);
+        }
+        probing.set(false);
+    }
+
+    public void onFailure() {
+        if (probing.getAndSet(false)) {
+            trip();
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && !open) {
+            trip();
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    private void trip() {
+        openedAt = System.nanoTime();
+        open = true;
+        log.warn("Circuit breaker {} opened after {} consecutive failures", name, consecutiveFailures.get());
+    }
+}
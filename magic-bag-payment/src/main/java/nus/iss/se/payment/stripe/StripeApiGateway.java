@@ -0,0 +1,72 @@
+package nus.iss.se.payment.stripe;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.Refund;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.Webhook;
+import com.stripe.param.RefundCreateParams;
+import com.stripe.param.checkout.SessionCreateParams;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 基于 stripe-java 的实现
+ * API key 和超时通过 RequestOptions 按请求传入，不修改全局的 Stripe.apiKey
+ */
+@Component
+public class StripeApiGateway implements StripeGateway {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(3);
+    /** 略短于 StripeCallGuard 的超时，调用方放弃后底层连接也会很快释放 */
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(8);
+
+    @Value("${stripe.api.key}")
+    private String stripeApiKey;
+
+    @Value("${stripe.webhook.secret:}")
+    private String webhookSecret;
+
+    @Override
+    public Session createCheckoutSession(SessionCreateParams params, String idempotencyKey) throws StripeException {
+        RequestOptions options = baseOptions()
+                .setIdempotencyKey(idempotencyKey)
+                .build();
+        return Session.create(params, options);
+    }
+
+    @Override
+    public Session retrieveSession(String sessionId) throws StripeException {
+        return Session.retrieve(sessionId, baseOptions().build());
+    }
+
+    @Override
+    public Refund createRefund(String paymentIntentId, String idempotencyKey) throws StripeException {
+        RefundCreateParams params = RefundCreateParams.builder()
+                .setPaymentIntent(paymentIntentId)
+                .build();
+        RequestOptions options = baseOptions()
+                .setIdempotencyKey(idempotencyKey)
+                .build();
+        return Refund.create(params, options);
+    }
+
+    @Override
+    public Event constructWebhookEvent(String payload, String signature) throws SignatureVerificationException {
+        if (StringUtils.isBlank(webhookSecret)) {
+            throw new SignatureVerificationException("Webhook secret is not configured", signature);
+        }
+        return Webhook.constructEvent(payload, signature, webhookSecret);
+    }
+
+    private RequestOptions.RequestOptionsBuilder baseOptions() {
+        return RequestOptions.builder()
+                .setApiKey(stripeApiKey)
+                .setConnectTimeout((int) CONNECT_TIMEOUT.toMillis())
+                .setReadTimeout((int) READ_TIMEOUT.toMillis());
+    }
+}
@@ -0,0 +1,162 @@
+package nus.iss.se.payment.stripe;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Stripe 调用隔离
+ * 每个调用在虚拟线程中执行，调用方最多等待 timeout；同时在途的调用数有上限（舱壁），
+ * 超出上限或熔断器打开时立即失败，Stripe 变慢或不可用时不会堆积阻塞的 Tomcat 线程。
+ * 带 key 的调用在途时，相同 key 的后续请求复用同一个 future（重复点击只调用一次 Stripe）。
+ * 限流、熔断和超时抛 BusinessException，Stripe 自身的错误原样抛出 StripeException。
+ */
+@Slf4j
+@Component
+public class StripeCallGuard {
+    private static final int MAX_CONCURRENT_CALLS = 32;
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(10);
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    @FunctionalInterface
+    public interface StripeCall<T> {
+        T call() throws StripeException;
+    }
+
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    public StripeCallGuard() {
+        this(MAX_CONCURRENT_CALLS, CALL_TIMEOUT, FAILURE_THRESHOLD, OPEN_DURATION);
+    }
+
+    public StripeCallGuard(int maxConcurrentCalls, Duration timeout, int failureThreshold, Duration openDuration) {
+        this.permits = new Semaphore(maxConcurrentCalls);
+        this.timeout = timeout;
+        this.circuitBreaker = new CircuitBreaker("stripe", failureThreshold, openDuration);
+    }
+
+    /**
+     * @param operation 用于日志
+     * @param key       去重 key，null 表示不去重
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T call(String operation, String key, StripeCall<T> call) throws StripeException {
+        if (key == null) {
+            return await(operation, submit(operation, call));
+        }
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            log.info("Stripe {} already in flight for key {}, waiting for it", operation, key);
+            return await(operation, existing);
+        }
+        try {
+            submit(operation, call).whenComplete((value, error) -> {
+                inFlight.remove(key, created);
+                if (error != null) {
+                    created.completeExceptionally(error);
+                } else {
+                    created.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+        return await(operation, created);
+    }
+
+    public boolean isCircuitOpen() {
+        return circuitBreaker.isOpen();
+    }
+
+    private <T> CompletableFuture<T> submit(String operation, StripeCall<T> call) {
+        if (!permits.tryAcquire()) {
+            throw new BusinessException(ResultStatus.SERVICE_UNAVAILABLE, "too many concurrent stripe calls");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            permits.release();
+            throw new BusinessException(ResultStatus.SERVICE_UNAVAILABLE, "stripe circuit open, " + operation + " rejected");
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                T value = call.call();
+                circuitBreaker.onSuccess();
+                future.complete(value);
+            } catch (Throwable e) {
+                if (isStripeUnavailable(e)) {
+                    circuitBreaker.onFailure();
+                } else {
+                    circuitBreaker.onSuccess();
+                }
+                future.completeExceptionally(e);
+            } finally {
+                permits.release();
+            }
+        });
+        return future;
+    }
+
+    private <T> T await(String operation, CompletableFuture<T> future) throws StripeException {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 调用方不再等待；底层调用继续占用舱壁，直到 Stripe 读超时后以连接错误计入熔断
+            log.warn("Stripe {} timed out after {}ms", operation, timeout.toMillis());
+            throw new BusinessException(ResultStatus.SERVICE_TIMEOUT, "stripe " + operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ResultStatus.SERVICE_ERROR, "interrupted while calling stripe");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BusinessException(ResultStatus.SERVICE_ERROR, cause.getMessage());
+        }
+    }
+
+    /**
+     * 网络错误和 5xx 计入熔断；参数错误、卡被拒等是请求本身的问题，不计入
+     */
+    private boolean isStripeUnavailable(Throwable e) {
+        if (e instanceof ApiConnectionException) {
+            return true;
+        }
+        if (e instanceof StripeException stripeException) {
+            Integer status = stripeException.getStatusCode();
+            return status == null || status >= 500;
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
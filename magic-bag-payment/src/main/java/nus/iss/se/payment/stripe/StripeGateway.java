@@ -0,0 +1,32 @@
+package nus.iss.se.payment.stripe;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.Refund;
+import com.stripe.model.checkout.Session;
+import com.stripe.param.checkout.SessionCreateParams;
+
+/**
+ * 对 Stripe 的远程调用
+ * 业务代码只通过这个接口访问 Stripe，测试中可以替换为本地桩实现
+ */
+public interface StripeGateway {
+
+    /**
+     * 创建 Checkout Session，相同 idempotencyKey 的重复请求由 Stripe 返回同一个会话
+     */
+    Session createCheckoutSession(SessionCreateParams params, String idempotencyKey) throws StripeException;
+
+    Session retrieveSession(String sessionId) throws StripeException;
+
+    /**
+     * 全额退还 PaymentIntent，相同 idempotencyKey 的重复请求由 Stripe 返回同一笔退款
+     */
+    Refund createRefund(String paymentIntentId, String idempotencyKey) throws StripeException;
+
+    /**
+     * 校验 Stripe-Signature 并解析 webhook 事件（本地计算，不访问 Stripe）
+     */
+    Event constructWebhookEvent(String payload, String signature) throws SignatureVerificationException;
+}
@@ -0,0 +1,13 @@
+-- Stripe webhook 收件箱
+-- Stripe 至少投递一次，同一事件可能重复到达；以 Stripe 事件ID为主键去重
+CREATE TABLE `payment_webhook_inbox` (
+    `event_id` VARCHAR(255) NOT NULL COMMENT 'Stripe 事件ID (evt_...)',
+    `event_type` VARCHAR(100) NOT NULL COMMENT 'Stripe 事件类型',
+    `session_id` VARCHAR(255) DEFAULT NULL COMMENT 'Checkout Session ID',
+    `order_id` BIGINT DEFAULT NULL COMMENT '订单ID，取自会话 metadata',
+    `status` VARCHAR(20) NOT NULL COMMENT 'received / published / ignored',
+    `received_at` DATETIME NOT NULL COMMENT '收到时间',
+    `processed_at` DATETIME DEFAULT NULL COMMENT '处理完成时间',
+    PRIMARY KEY (`event_id`),
+    KEY `payment_webhook_inbox_order_IDX` (`order_id`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='Stripe webhook 收件箱';
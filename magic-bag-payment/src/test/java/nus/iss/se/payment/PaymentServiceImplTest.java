@@ -1,21 +1,35 @@
 package nus.iss.se.payment;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.publisher.EventPublisher;
 import nus.iss.se.common.Result;
+import nus.iss.se.common.constant.PaymentWindow;
 import nus.iss.se.common.constant.ResultStatus;
 import nus.iss.se.payment.api.OrderClient;
-import nus.iss.se.payment.api.ProductClient;
+import nus.iss.se.payment.api.LookupClient;
+import nus.iss.se.payment.cache.CheckoutSessionCache;
+import nus.iss.se.payment.cache.CheckoutSessionCache.CachedSession;
 import nus.iss.se.payment.dto.MagicBagDto;
 import nus.iss.se.payment.dto.OrderDto;
 import nus.iss.se.payment.dto.OrderItemDto;
 import nus.iss.se.payment.dto.PaymentResponseDto;
+import nus.iss.se.payment.entity.PaymentWebhookEvent;
+import nus.iss.se.payment.kafka.EventTopicType;
+import nus.iss.se.payment.mapper.PaymentWebhookEventMapper;
 import nus.iss.se.payment.service.impl.PaymentServiceImpl;
+import nus.iss.se.payment.stripe.StripeCallGuard;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -24,18 +38,35 @@ import static org.mockito.Mockito.*;
 public class PaymentServiceImplTest {
 
     @Mock
-    private ProductClient productClient;
+    private LookupClient lookupClient;
 
     @Mock
     private OrderClient orderClient;
 
+    @Mock
+    private CheckoutSessionCache checkoutSessionCache;
+
+    @Spy
+    private StripeCallGuard stripeCallGuard = new StripeCallGuard(4, Duration.ofSeconds(1), 2, Duration.ofMinutes(1));
+
+    @Spy
+    private StubStripeGateway stripeGateway = new StubStripeGateway();
+
+    @Mock
+    private PaymentWebhookEventMapper paymentWebhookEventMapper;
+
+    @Mock
+    private EventPublisher eventPublisher;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
     @InjectMocks
     private PaymentServiceImpl paymentService;
 
     @BeforeEach
     void setup() {
         MockitoAnnotations.openMocks(this);
-        ReflectionTestUtils.setField(paymentService, "stripeApiKey", "sk_test_mock_key");
         ReflectionTestUtils.setField(paymentService, "payUrl", "http://localhost:3000");
     }
 
@@ -49,6 +80,7 @@ public class PaymentServiceImplTest {
         order.setTotalPrice(BigDecimal.valueOf(50.00));
         order.setQuantity(2);
         order.setStatus("pending");
+        order.setCreatedAt(new Date());
         return order;
     }
 
@@ -61,6 +93,7 @@ public class PaymentServiceImplTest {
         order.setTotalPrice(BigDecimal.valueOf(100.00));
         order.setQuantity(3);
         order.setStatus("pending");
+        order.setCreatedAt(new Date());
 
         OrderItemDto item1 = new OrderItemDto();
         item1.setMagicBagId(1);
@@ -117,6 +150,30 @@ public class PaymentServiceImplTest {
         verify(orderClient, times(1)).getOrderById(1);
     }
 
+    /** -------------------------
+     *  Test: createCheckoutSession (not pending) —— 已取消/已完成订单不调用 Stripe，也不复用缓存的会话
+     *  ------------------------- */
+    @Test
+    void testCreateCheckoutSession_OrderNotPending() throws StripeException {
+        OrderDto cancelled = dummySingleOrder();
+        cancelled.setStatus("cancelled");
+        OrderDto completed = dummySingleOrder();
+        completed.setStatus("completed");
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(cancelled));
+        when(orderClient.getOrderById(2)).thenReturn(Result.success(completed));
+
+        PaymentResponseDto cancelledResult = paymentService.createCheckoutSession(1);
+        PaymentResponseDto completedResult = paymentService.createCheckoutSession(2);
+
+        assertFalse(cancelledResult.isSuccess());
+        assertEquals(ResultStatus.ORDER_ALREADY_CANCELLED.getMessage(), cancelledResult.getMessage());
+        assertFalse(completedResult.isSuccess());
+        assertEquals(ResultStatus.ORDER_ALREADY_PAID.getMessage(), completedResult.getMessage());
+        assertEquals(0, stripeGateway.getCreateCalls());
+        verify(checkoutSessionCache, never()).get(anyInt(), anyLong());
+        verify(checkoutSessionCache, times(1)).evict(1);
+    }
+
     /** -------------------------
      *  Test: createCheckoutSession (invalid amount - zero)
      *  ------------------------- */
@@ -181,6 +238,270 @@ public class PaymentServiceImplTest {
         assertEquals(ResultStatus.ORDER_INVALID_AMOUNT.getMessage(), result.getMessage());
     }
 
+    /** -------------------------
+     *  Test: createCheckoutSession (success) —— 幂等 key 创建并写入缓存
+     *  ------------------------- */
+    @Test
+    void testCreateCheckoutSession_Success() throws StripeException {
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(dummySingleOrder()));
+        when(lookupClient.getMagicBagById(1)).thenReturn(Result.success(dummyBag()));
+
+        PaymentResponseDto result = paymentService.createCheckoutSession(1);
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.getCheckoutUrl().startsWith("https://checkout.stripe.test/"));
+        assertEquals(1, stripeGateway.getCreateCalls());
+        assertEquals("1", stripeGateway.getLastParams().getMetadata().get("orderId"));
+        assertNotNull(stripeGateway.getLastParams().getExpiresAt());
+        verify(checkoutSessionCache, times(1)).put(eq(1),
+                argThat(cached -> cached.amountInCents() == 5000 && result.getCheckoutUrl().equals(cached.url())),
+                anyLong());
+    }
+
+    /** -------------------------
+     *  Test: createCheckoutSession (window boundary) —— 最晚发起的会话也在订单超时取消之前过期
+     *  ------------------------- */
+    @Test
+    void testCreateCheckoutSession_LatestSessionExpiresBeforeCancel() throws StripeException {
+        OrderDto order = dummySingleOrder();
+        long createdAtMillis = System.currentTimeMillis() - Duration.ofMinutes(29).toMillis() + 10_000;
+        order.setCreatedAt(new Date(createdAtMillis));
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(order));
+
+        PaymentResponseDto result = paymentService.createCheckoutSession(1);
+
+        assertTrue(result.isSuccess());
+        long expiresAt = stripeGateway.getLastParams().getExpiresAt();
+        assertEquals((createdAtMillis + PaymentWindow.SESSION_DEADLINE.toMillis()) / 1000, expiresAt);
+        // Stripe 的最短有效期 30 分钟
+        assertTrue(expiresAt - System.currentTimeMillis() / 1000 >= Duration.ofMinutes(30).toSeconds());
+        assertTrue(expiresAt * 1000 < createdAtMillis + PaymentWindow.CANCEL_AFTER.toMillis());
+    }
+
+    /** -------------------------
+     *  Test: createCheckoutSession (window closed) —— 剩余时间不足 Stripe 最短有效期时不再创建会话
+     *  ------------------------- */
+    @Test
+    void testCreateCheckoutSession_WindowClosed() throws StripeException {
+        OrderDto order = dummySingleOrder();
+        order.setCreatedAt(new Date(System.currentTimeMillis() - Duration.ofMinutes(29).toMillis() - 10_000));
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(order));
+
+        PaymentResponseDto result = paymentService.createCheckoutSession(1);
+
+        assertFalse(result.isSuccess());
+        assertEquals(ResultStatus.PAYMENT_WINDOW_CLOSED.getMessage(), result.getMessage());
+        assertEquals(0, stripeGateway.getCreateCalls());
+        verify(checkoutSessionCache, never()).get(anyInt(), anyLong());
+    }
+
+    /** -------------------------
+     *  Test: createCheckoutSession (cached) —— 重复点击不再调用 Stripe
+     *  ------------------------- */
+    @Test
+    void testCreateCheckoutSession_CachedSession() throws StripeException {
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(dummySingleOrder()));
+        when(checkoutSessionCache.get(1, 5000L))
+                .thenReturn(new CachedSession(5000L, "cs_test_cached", "https://checkout.stripe.test/cached"));
+
+        PaymentResponseDto result = paymentService.createCheckoutSession(1);
+
+        assertTrue(result.isSuccess());
+        assertEquals("https://checkout.stripe.test/cached", result.getCheckoutUrl());
+        assertEquals(0, stripeGateway.getCreateCalls());
+        verify(lookupClient, never()).getMagicBagById(anyInt());
+    }
+
+    /** -------------------------
+     *  Test: createCheckoutSession (cache miss retry) —— 相同幂等 key 返回同一个会话
+     *  ------------------------- */
+    @Test
+    void testCreateCheckoutSession_IdempotentRetry() throws StripeException {
+        when(orderClient.getOrderById(2)).thenReturn(Result.success(dummyCartOrder()));
+
+        PaymentResponseDto first = paymentService.createCheckoutSession(2);
+        PaymentResponseDto second = paymentService.createCheckoutSession(2);
+
+        assertEquals(first.getCheckoutUrl(), second.getCheckoutUrl());
+        assertEquals(2, stripeGateway.getCreateCalls());
+        assertEquals(2, stripeGateway.getLastParams().getLineItems().size());
+    }
+
+    /** -------------------------
+     *  Test: createCheckoutSession (stripe down) —— 熔断后快速失败
+     *  ------------------------- */
+    @Test
+    void testCreateCheckoutSession_CircuitOpen() throws StripeException {
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(dummySingleOrder()));
+        stripeGateway.setFailure(new ApiConnectionException("connection refused"));
+
+        assertThrows(StripeException.class, () -> paymentService.createCheckoutSession(1));
+        assertThrows(StripeException.class, () -> paymentService.createCheckoutSession(1));
+        PaymentResponseDto result = paymentService.createCheckoutSession(1);
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.getMessage().startsWith(ResultStatus.PAYMENT_FAILED.getMessage()));
+        assertEquals(2, stripeGateway.getCreateCalls());
+        verify(checkoutSessionCache, never()).put(anyInt(), any(), anyLong());
+    }
+
+    /** -------------------------
+     *  Test: createCheckoutSession (stripe slow) —— 超时后返回失败，不一直阻塞
+     *  ------------------------- */
+    @Test
+    void testCreateCheckoutSession_Timeout() throws StripeException {
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(dummySingleOrder()));
+        stripeGateway.setDelay(Duration.ofSeconds(3));
+
+        long start = System.currentTimeMillis();
+        PaymentResponseDto result = paymentService.createCheckoutSession(1);
+
+        assertFalse(result.isSuccess());
+        assertTrue(System.currentTimeMillis() - start < 2_500);
+    }
+
+    private String checkoutCompletedPayload(String eventId, String paymentStatus) {
+        return """
+                {"id": "%s", "object": "event", "api_version": "%s", "type": "checkout.session.completed",
+                 "data": {"object": {"id": "cs_test_1", "object": "checkout.session", "status": "complete",
+                  "payment_status": "%s", "amount_total": 5000,
+                  "metadata": {"orderId": "1", "orderNo": "ORD123456789"}}}}
+                """.formatted(eventId, Stripe.API_VERSION, paymentStatus);
+    }
+
+    /** -------------------------
+     *  Test: verifyAndUpdatePayment (webhook 未到达) —— 兜底发布 order.paid，不再同步调用 order-service
+     *  ------------------------- */
+    @Test
+    void testVerifyAndUpdatePayment_Paid() throws StripeException {
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(dummySingleOrder()));
+        PaymentResponseDto created = paymentService.createCheckoutSession(1);
+        String sessionId = created.getCheckoutUrl().substring(created.getCheckoutUrl().lastIndexOf('/') + 1);
+        stripeGateway.completePayment(sessionId);
+
+        PaymentResponseDto result = paymentService.verifyAndUpdatePayment(1, sessionId);
+
+        assertTrue(result.isSuccess());
+        verify(eventPublisher, times(1)).publish(argThat(event ->
+            EventTopicType.ORDER_PAID.equals(event.topic()) && event.data().contains("\"orderId\":1")
+        ));
+        verify(orderClient, never()).updateOrderStatus(anyInt(), anyString());
+        verify(checkoutSessionCache, times(1)).evict(1);
+    }
+
+    /** -------------------------
+     *  Test: verifyAndUpdatePayment (webhook 已确认) —— 不访问 Stripe
+     *  ------------------------- */
+    @Test
+    void testVerifyAndUpdatePayment_ConfirmedByWebhook() throws StripeException {
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(dummySingleOrder()));
+        when(paymentWebhookEventMapper.existsPublishedByOrderId(1)).thenReturn(true);
+
+        PaymentResponseDto result = paymentService.verifyAndUpdatePayment(1, "cs_test_1");
+
+        assertTrue(result.isSuccess());
+        verify(stripeGateway, never()).retrieveSession(anyString());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    /** -------------------------
+     *  Test: refundCancelledOrder —— 已取消订单的支付全额退款，重复投递（含幂等 key 过期后）只退一次
+     *  ------------------------- */
+    @Test
+    void testRefundCancelledOrder_RefundsOnce() throws StripeException {
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(dummySingleOrder()));
+        PaymentResponseDto created = paymentService.createCheckoutSession(1);
+        String sessionId = created.getCheckoutUrl().substring(created.getCheckoutUrl().lastIndexOf('/') + 1);
+        stripeGateway.completePayment(sessionId);
+
+        paymentService.refundCancelledOrder(sessionId);
+        paymentService.refundCancelledOrder(sessionId);
+        stripeGateway.expireRefundIdempotencyKeys();
+        assertDoesNotThrow(() -> paymentService.refundCancelledOrder(sessionId));
+
+        assertEquals(1, stripeGateway.getRefundCount());
+        verify(stripeGateway, times(3)).createRefund("pi_" + sessionId, "refund-" + sessionId);
+    }
+
+    /** -------------------------
+     *  Test: refundCancelledOrder (Stripe 不可用) —— 抛出异常，由 Kafka 重新投递
+     *  ------------------------- */
+    @Test
+    void testRefundCancelledOrder_StripeDownIsRetried() throws StripeException {
+        when(orderClient.getOrderById(1)).thenReturn(Result.success(dummySingleOrder()));
+        PaymentResponseDto created = paymentService.createCheckoutSession(1);
+        String sessionId = created.getCheckoutUrl().substring(created.getCheckoutUrl().lastIndexOf('/') + 1);
+        stripeGateway.completePayment(sessionId);
+        stripeGateway.setFailure(new ApiConnectionException("connection refused"));
+
+        assertThrows(ApiConnectionException.class, () -> paymentService.refundCancelledOrder(sessionId));
+
+        stripeGateway.setFailure(null);
+        paymentService.refundCancelledOrder(sessionId);
+        assertEquals(1, stripeGateway.getRefundCount());
+    }
+
+    /** -------------------------
+     *  Test: handleWebhook (checkout.session.completed) —— 写收件箱并发布 order.paid
+     *  ------------------------- */
+    @Test
+    void testHandleWebhook_PublishesOrderPaid() throws SignatureVerificationException {
+        when(paymentWebhookEventMapper.insertIgnore(any(PaymentWebhookEvent.class))).thenReturn(1);
+
+        paymentService.handleWebhook(checkoutCompletedPayload("evt_1", "paid"), StubStripeGateway.VALID_SIGNATURE);
+
+        verify(paymentWebhookEventMapper, times(1)).insertIgnore(argThat(inbox ->
+            "evt_1".equals(inbox.getEventId()) && inbox.getOrderId() == 1 && "cs_test_1".equals(inbox.getSessionId())
+        ));
+        ArgumentCaptor<EventEnvelope> captor = ArgumentCaptor.forClass(EventEnvelope.class);
+        verify(eventPublisher, times(1)).publish(captor.capture());
+        assertEquals(EventTopicType.ORDER_PAID, captor.getValue().topic());
+        assertTrue(captor.getValue().data().contains("\"amountTotal\":5000"));
+        verify(paymentWebhookEventMapper, times(1)).updateStatus("evt_1", PaymentWebhookEvent.STATUS_PUBLISHED);
+        verify(checkoutSessionCache, times(1)).evict(1);
+    }
+
+    /** -------------------------
+     *  Test: handleWebhook (duplicate) —— 已处理的事件不再发布
+     *  ------------------------- */
+    @Test
+    void testHandleWebhook_Duplicate() throws SignatureVerificationException {
+        PaymentWebhookEvent existing = new PaymentWebhookEvent();
+        existing.setEventId("evt_1");
+        existing.setStatus(PaymentWebhookEvent.STATUS_PUBLISHED);
+        when(paymentWebhookEventMapper.insertIgnore(any(PaymentWebhookEvent.class))).thenReturn(0);
+        when(paymentWebhookEventMapper.selectById("evt_1")).thenReturn(existing);
+
+        paymentService.handleWebhook(checkoutCompletedPayload("evt_1", "paid"), StubStripeGateway.VALID_SIGNATURE);
+
+        verifyNoInteractions(eventPublisher);
+        verify(paymentWebhookEventMapper, never()).updateStatus(anyString(), anyString());
+    }
+
+    /** -------------------------
+     *  Test: handleWebhook (unpaid) —— 异步支付尚未到账，只记录
+     *  ------------------------- */
+    @Test
+    void testHandleWebhook_UnpaidIgnored() throws SignatureVerificationException {
+        when(paymentWebhookEventMapper.insertIgnore(any(PaymentWebhookEvent.class))).thenReturn(1);
+
+        paymentService.handleWebhook(checkoutCompletedPayload("evt_2", "unpaid"), StubStripeGateway.VALID_SIGNATURE);
+
+        verifyNoInteractions(eventPublisher);
+        verify(paymentWebhookEventMapper, times(1)).updateStatus("evt_2", PaymentWebhookEvent.STATUS_IGNORED);
+    }
+
+    /** -------------------------
+     *  Test: handleWebhook (bad signature)
+     *  ------------------------- */
+    @Test
+    void testHandleWebhook_InvalidSignature() {
+        assertThrows(SignatureVerificationException.class, () ->
+            paymentService.handleWebhook(checkoutCompletedPayload("evt_1", "paid"), "t=1,v1=forged")
+        );
+        verifyNoInteractions(paymentWebhookEventMapper, eventPublisher);
+    }
+
     /** -------------------------
      *  Test: verifyAndUpdatePayment (order not found)
      *  ------------------------- */
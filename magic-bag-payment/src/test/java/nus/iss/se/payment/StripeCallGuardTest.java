@@ -0,0 +1,131 @@
+package nus.iss.se.payment;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.payment.stripe.StripeCallGuard;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripeCallGuardTest {
+
+    /** -------------------------
+     *  Test: 相同 key 的并发调用只执行一次
+     *  ------------------------- */
+    @Test
+    void testCall_SharesInFlightCall() throws Exception {
+        StripeCallGuard guard = new StripeCallGuard(4, Duration.ofSeconds(2), 3, Duration.ofMinutes(1));
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> callQuietly(guard, () -> {
+            calls.incrementAndGet();
+            release.await();
+            return "cs_1";
+        }));
+        while (calls.get() == 0) {
+            Thread.onSpinWait();
+        }
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> callQuietly(guard, () -> {
+            calls.incrementAndGet();
+            return "cs_2";
+        }));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals("cs_1", first.get());
+        assertEquals("cs_1", second.get());
+        assertEquals(1, calls.get());
+    }
+
+    /** -------------------------
+     *  Test: 连续连接失败后熔断，不再调用
+     *  ------------------------- */
+    @Test
+    void testCall_OpensCircuitAfterFailures() {
+        StripeCallGuard guard = new StripeCallGuard(4, Duration.ofSeconds(2), 2, Duration.ofMinutes(1));
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(ApiConnectionException.class, () -> guard.call("test", null, () -> {
+                calls.incrementAndGet();
+                throw new ApiConnectionException("connection refused");
+            }));
+        }
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> guard.call("test", null, () -> "never"));
+
+        assertEquals(ResultStatus.SERVICE_UNAVAILABLE, e.getErrInfo());
+        assertTrue(guard.isCircuitOpen());
+        assertEquals(2, calls.get());
+    }
+
+    /** -------------------------
+     *  Test: 超过并发上限立即拒绝
+     *  ------------------------- */
+    @Test
+    void testCall_RejectsWhenSaturated() throws Exception {
+        StripeCallGuard guard = new StripeCallGuard(1, Duration.ofSeconds(2), 3, Duration.ofMinutes(1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> callQuietly(guard, null, () -> {
+            started.countDown();
+            release.await();
+            return "cs_1";
+        }));
+        started.await();
+
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> guard.call("test", null, () -> "cs_2"));
+        release.countDown();
+
+        assertEquals(ResultStatus.SERVICE_UNAVAILABLE, e.getErrInfo());
+        assertEquals("cs_1", slow.get());
+        assertFalse(guard.isCircuitOpen());
+    }
+
+    /** -------------------------
+     *  Test: 超时抛 SERVICE_TIMEOUT
+     *  ------------------------- */
+    @Test
+    void testCall_Timeout() {
+        StripeCallGuard guard = new StripeCallGuard(4, Duration.ofMillis(100), 3, Duration.ofMinutes(1));
+
+        BusinessException e = assertThrows(BusinessException.class, () -> callQuietly(guard, null, () -> {
+            Thread.sleep(1_000);
+            return "cs_1";
+        }));
+
+        assertEquals(ResultStatus.SERVICE_TIMEOUT, e.getErrInfo());
+    }
+
+    private interface BlockingCall {
+        String call() throws Exception;
+    }
+
+    private static String callQuietly(StripeCallGuard guard, BlockingCall call) {
+        return callQuietly(guard, "checkout-1", call);
+    }
+
+    private static String callQuietly(StripeCallGuard guard, String key, BlockingCall call) {
+        try {
+            return guard.call("test", key, () -> {
+                try {
+                    return call.call();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (StripeException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package nus.iss.se.payment;
+
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.Refund;
+import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import com.stripe.param.checkout.SessionCreateParams;
+import nus.iss.se.payment.stripe.StripeGateway;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地 Stripe 桩：与 Stripe 一样，相同幂等 key 返回同一个会话或退款，已退款的支付再次退款时报错；可模拟延迟和故障
+ * webhook 签名固定为 VALID_SIGNATURE
+ */
+public class StubStripeGateway implements StripeGateway {
+    public static final String VALID_SIGNATURE = "t=1,v1=stub";
+
+    private final Map<String, Session> sessionsByKey = new ConcurrentHashMap<>();
+    private final Map<String, Session> sessionsById = new ConcurrentHashMap<>();
+    private final Map<String, Refund> refundsByKey = new ConcurrentHashMap<>();
+    private final Map<String, Refund> refundsByPaymentIntent = new ConcurrentHashMap<>();
+    private final AtomicInteger createCalls = new AtomicInteger();
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private volatile Duration delay = Duration.ZERO;
+    private volatile StripeException failure;
+    private volatile SessionCreateParams lastParams;
+
+    @Override
+    public Session createCheckoutSession(SessionCreateParams params, String idempotencyKey) throws StripeException {
+        createCalls.incrementAndGet();
+        simulateNetwork();
+        lastParams = params;
+        return sessionsByKey.computeIfAbsent(idempotencyKey, key -> {
+            Session session = new Session();
+            session.setId("cs_test_" + sequence.incrementAndGet());
+            session.setUrl("https://checkout.stripe.test/" + session.getId());
+            session.setStatus("open");
+            session.setPaymentStatus("unpaid");
+            session.setMetadata(params.getMetadata());
+            sessionsById.put(session.getId(), session);
+            return session;
+        });
+    }
+
+    @Override
+    public Session retrieveSession(String sessionId) throws StripeException {
+        simulateNetwork();
+        return sessionsById.get(sessionId);
+    }
+
+    @Override
+    public Refund createRefund(String paymentIntentId, String idempotencyKey) throws StripeException {
+        simulateNetwork();
+        Refund existing = refundsByKey.get(idempotencyKey);
+        if (existing != null) {
+            return existing;
+        }
+        if (refundsByPaymentIntent.containsKey(paymentIntentId)) {
+            throw new InvalidRequestException("Charge has already been refunded.", null, null,
+                    "charge_already_refunded", 400, null);
+        }
+        Refund refund = new Refund();
+        refund.setId("re_test_" + sequence.incrementAndGet());
+        refund.setPaymentIntent(paymentIntentId);
+        refund.setStatus("succeeded");
+        refundsByKey.put(idempotencyKey, refund);
+        refundsByPaymentIntent.put(paymentIntentId, refund);
+        return refund;
+    }
+
+    @Override
+    public Event constructWebhookEvent(String payload, String signature) throws SignatureVerificationException {
+        if (!VALID_SIGNATURE.equals(signature)) {
+            throw new SignatureVerificationException("No signatures found matching the expected signature", signature);
+        }
+        return ApiResource.GSON.fromJson(payload, Event.class);
+    }
+
+    /**
+     * 模拟用户在 Stripe 页面完成支付
+     */
+    public void completePayment(String sessionId) {
+        Session session = sessionsById.get(sessionId);
+        session.setStatus("complete");
+        session.setPaymentStatus("paid");
+        session.setPaymentIntent("pi_" + sessionId);
+    }
+
+    public void setDelay(Duration delay) {
+        this.delay = delay;
+    }
+
+    public void setFailure(StripeException failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * 模拟幂等 key 过期（Stripe 保留 24 小时）
+     */
+    public void expireRefundIdempotencyKeys() {
+        refundsByKey.clear();
+    }
+
+    public int getRefundCount() {
+        return refundsByPaymentIntent.size();
+    }
+
+    public int getCreateCalls() {
+        return createCalls.get();
+    }
+
+    public SessionCreateParams getLastParams() {
+        return lastParams;
+    }
+
+    private void simulateNetwork() throws StripeException {
+        if (!delay.isZero()) {
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
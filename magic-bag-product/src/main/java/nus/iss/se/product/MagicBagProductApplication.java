@@ -9,7 +9,7 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.kafka.annotation.EnableKafka;
 
 @EnableKafka
-@SpringBootApplication(scanBasePackages = {"nus.iss.se.product", "nus.iss.se.common"})
+@SpringBootApplication(scanBasePackages = {"nus.iss.se.product", "nus.iss.se.common", "nus.iss.se.kafka"})
 @EnableFeignClients(basePackages = "nus.iss.se.product.api")
 @EnableDiscoveryClient
 @EnableConfigurationProperties
@@ -3,6 +3,7 @@ package nus.iss.se.product.api;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import nus.iss.se.common.Result;
 import nus.iss.se.product.dto.MerchantDto;
+import nus.iss.se.product.dto.MerchantLocationDto;
 import nus.iss.se.product.dto.MerchantUpdateDto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
@@ -18,6 +19,11 @@ public interface MerchantClient {
     @GetMapping("/merchant/{id}")
     Result<MerchantDto> getMerchantById(@PathVariable("id") Integer id);
 
+    @GetMapping("/merchant/nearby")
+    Result<List<MerchantLocationDto>> getNearby(@RequestParam("lat") double lat,
+                                                @RequestParam("lon") double lon,
+                                                @RequestParam("radius") double radius);
+
     @PutMapping("/merchant/profile")
     Result<Void> updateMerchantProfile(@RequestBody MerchantUpdateDto merchantDto);
 
@@ -0,0 +1,172 @@
+package nus.iss.se.product.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisChannel;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.product.dto.MagicBagDto;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 盲盒详情两级缓存
+ * L1：本实例 Caffeine，容量和过期时间都有上限，命中不走网络；
+ * L2：Redis product:info:{id}，多实例共享，L1 未命中时先查这里再回源数据库。
+ * 商品变更后删除 L2 并通过 redis pub/sub 广播，所有实例清掉各自的 L1；广播丢失时 L1 最多旧 LOCAL_TTL。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MagicBagCache {
+    private static final long LOCAL_MAX_SIZE = 10_000;
+    private static final Duration LOCAL_TTL = Duration.ofSeconds(60);
+    private static final Duration REDIS_TTL = Duration.ofMinutes(10);
+
+    private final RedisUtil redisUtil;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Cache<Integer, MagicBagDto> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAX_SIZE)
+            .expireAfterWrite(LOCAL_TTL)
+            .build();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            try {
+                evictLocal(Integer.valueOf(body));
+            } catch (NumberFormatException e) {
+                log.warn("Ignore invalid cache invalidation message: {}", body);
+            }
+        }, new ChannelTopic(RedisChannel.PRODUCT_CACHE_INVALIDATED.getCode()));
+    }
+
+    /**
+     * 读穿透获取单个盲盒，同一实例内同一 id 并发未命中只回源一次
+     */
+    public MagicBagDto get(Integer id, Function<Integer, MagicBagDto> loader) {
+        return localCache.get(id, key -> {
+            MagicBagDto dto = redisUtil.getJson(redisKey(key), MagicBagDto.class);
+            if (dto != null) {
+                return dto;
+            }
+            dto = loader.apply(key);
+            if (dto != null) {
+                redisUtil.setJson(redisKey(key), dto, REDIS_TTL.getSeconds(), TimeUnit.SECONDS);
+            }
+            return dto;
+        });
+    }
+
+    /**
+     * 批量获取：先查 L1，剩余的一次 MGET 查 L2，最后只把仍未命中的 id 交给 loader 查库
+     * 返回顺序与入参一致，不存在的 id 被忽略
+     */
+    public List<MagicBagDto> getAll(Collection<Integer> ids, Function<List<Integer>, List<MagicBagDto>> loader) {
+        List<Integer> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Integer, MagicBagDto> found = new HashMap<>(localCache.getAllPresent(distinctIds));
+
+        List<Integer> redisMisses = distinctIds.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!redisMisses.isEmpty()) {
+            List<String> values = redisUtil.multiGet(redisMisses.stream().map(this::redisKey).toList());
+            List<Integer> dbMisses = new ArrayList<>();
+            for (int i = 0; i < redisMisses.size(); i++) {
+                Integer id = redisMisses.get(i);
+                MagicBagDto dto = values == null ? null : parse(values.get(i));
+                if (dto == null) {
+                    dbMisses.add(id);
+                } else {
+                    found.put(id, dto);
+                    localCache.put(id, dto);
+                }
+            }
+
+            if (!dbMisses.isEmpty()) {
+                Map<String, String> toRedis = new HashMap<>();
+                for (MagicBagDto dto : loader.apply(dbMisses)) {
+                    found.put(dto.getId(), dto);
+                    localCache.put(dto.getId(), dto);
+                    String json = serialize(dto);
+                    if (json != null) {
+                        toRedis.put(redisKey(dto.getId()), json);
+                    }
+                }
+                redisUtil.multiSet(toRedis, REDIS_TTL.getSeconds(), TimeUnit.SECONDS);
+            }
+        }
+
+        return distinctIds.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * 商品变更后调用：有事务时在提交后执行，避免其他实例在提交前把旧数据重新加载进缓存
+     */
+    public void invalidate(Integer id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doInvalidate(id);
+                }
+            });
+        } else {
+            doInvalidate(id);
+        }
+    }
+
+    /**
+     * 收到其他实例的广播后只清本地 L1
+     */
+    public void evictLocal(Integer id) {
+        localCache.invalidate(id);
+    }
+
+    private void doInvalidate(Integer id) {
+        localCache.invalidate(id);
+        redisUtil.delete(redisKey(id));
+        redisUtil.publish(RedisChannel.PRODUCT_CACHE_INVALIDATED.getCode(), String.valueOf(id));
+        log.debug("Magic bag cache invalidated: {}", id);
+    }
+
+    private MagicBagDto parse(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, MagicBagDto.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Invalid magic bag cache value, reload from database: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String serialize(MagicBagDto dto) {
+        try {
+            return objectMapper.writeValueAsString(dto);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize magic bag {}: {}", dto.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String redisKey(Integer id) {
+        return RedisPrefix.PRODUCT_INFO.getCode() + id;
+    }
+}
@@ -0,0 +1,202 @@
+package nus.iss.se.product.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.product.dto.MagicBagDto;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 商家在售盲盒索引
+ * Redis hash product:merchant-bags:{merchantId}，field 为盲盒 id，value 为 MagicBagDto JSON；
+ * 另有占位字段标记已加载，没有在售盲盒的商家也能命中。
+ * 周边 feed 对所有商家一次 pipeline HGETALL，只把未加载的商家交给 loader 一次查库。
+ * 盲盒增删改在事务提交后同步到已加载的索引，未加载的不写，下次读取时整体加载；过期时间兜底修正遗漏的更新。
+ * 每次更新同时递增 product:merchant-bags-version:{merchantId}，加载前读取版本、写入时比较，
+ * 查库期间有更新提交则放弃写入，避免旧快照覆盖新数据。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MerchantBagIndex {
+    private static final String LOADED_FIELD = "_";
+    private static final Duration TTL = Duration.ofMinutes(30);
+    /** 版本要比任何一次加载存活得久，否则加载期间版本过期会被当成没有变化 */
+    private static final Duration VERSION_TTL = TTL;
+
+    /**
+     * KEYS[1] 商家索引，KEYS[2] 商家版本，ARGV[1] 盲盒 id，ARGV[2] JSON（空串表示移出索引），ARGV[3] 版本过期秒数；
+     * 版本总是递增；索引未加载时不写，避免留下只有部分盲盒的索引
+     */
+    private static final RedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[3])
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            if ARGV[2] == '' then
+                redis.call('HDEL', KEYS[1], ARGV[1])
+            else
+                redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            end
+            return 1
+            """, Long.class);
+
+    /**
+     * KEYS[1] 商家索引，KEYS[2] 商家版本，ARGV[1] 查库前读取的版本（空串表示没有），ARGV[2] 过期秒数，ARGV[3..] field/value；
+     * 版本已变化说明查库期间有更新提交，快照可能过期，不写入
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>("""
+            if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], unpack(ARGV, 3))
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private final RedisUtil redisUtil;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 批量获取商家的在售盲盒，没有在售盲盒的商家对应空列表
+     *
+     * @param loader 按商家 id 批量查询在售盲盒，只会收到索引未加载的商家
+     */
+    public Map<Integer, List<MagicBagDto>> getAll(List<Integer> merchantIds,
+                                                  Function<List<Integer>, List<MagicBagDto>> loader) {
+        List<Integer> distinctIds = merchantIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Integer, List<MagicBagDto>> result = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        List<Map<String, String>> hashes = redisUtil.multiHashGetAll(distinctIds.stream().map(this::redisKey).toList());
+        for (int i = 0; i < distinctIds.size(); i++) {
+            Map<String, String> hash = hashes.get(i);
+            if (hash == null || !hash.containsKey(LOADED_FIELD)) {
+                misses.add(distinctIds.get(i));
+                continue;
+            }
+            List<MagicBagDto> bags = new ArrayList<>();
+            hash.forEach((field, json) -> {
+                if (!LOADED_FIELD.equals(field)) {
+                    MagicBagDto dto = parse(json);
+                    if (dto != null) {
+                        bags.add(dto);
+                    }
+                }
+            });
+            result.put(distinctIds.get(i), bags);
+        }
+
+        if (!misses.isEmpty()) {
+            // 版本必须在查库之前读取
+            List<String> versions = redisUtil.multiGet(misses.stream().map(this::versionKey).toList());
+            misses.forEach(id -> result.put(id, new ArrayList<>()));
+            for (MagicBagDto dto : loader.apply(misses)) {
+                List<MagicBagDto> bags = result.get(dto.getMerchantId());
+                if (bags != null) {
+                    bags.add(dto);
+                }
+            }
+
+            List<List<String>> keys = new ArrayList<>(misses.size());
+            List<List<String>> args = new ArrayList<>(misses.size());
+            for (int i = 0; i < misses.size(); i++) {
+                Integer merchantId = misses.get(i);
+                String version = versions == null ? null : versions.get(i);
+                List<String> arg = new ArrayList<>();
+                arg.add(version == null ? "" : version);
+                arg.add(String.valueOf(TTL.getSeconds()));
+                arg.add(LOADED_FIELD);
+                arg.add("");
+                for (MagicBagDto dto : result.get(merchantId)) {
+                    String json = serialize(dto);
+                    if (json != null) {
+                        arg.add(String.valueOf(dto.getId()));
+                        arg.add(json);
+                    }
+                }
+                keys.add(List.of(redisKey(merchantId), versionKey(merchantId)));
+                args.add(arg);
+            }
+            redisUtil.executeAll(LOAD_SCRIPT, keys, args);
+            log.debug("Merchant bag index loaded: {}", misses);
+        }
+        return result;
+    }
+
+    /**
+     * 盲盒新建或修改后调用：在售的写入索引，已下架的移出索引；有事务时在提交后执行
+     */
+    public void update(MagicBagDto dto) {
+        if (dto == null || dto.getMerchantId() == null) {
+            return;
+        }
+        afterCommit(() -> {
+            String json = "";
+            if (Boolean.TRUE.equals(dto.getIsActive())) {
+                json = serialize(dto);
+                if (json == null) {
+                    return;
+                }
+            }
+            redisUtil.execute(UPDATE_SCRIPT,
+                    List.of(redisKey(dto.getMerchantId()), versionKey(dto.getMerchantId())),
+                    String.valueOf(dto.getId()), json, String.valueOf(VERSION_TTL.getSeconds()));
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private MagicBagDto parse(String json) {
+        try {
+            return objectMapper.readValue(json, MagicBagDto.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Invalid merchant bag index value, skipped: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String serialize(MagicBagDto dto) {
+        try {
+            return objectMapper.writeValueAsString(dto);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize magic bag {}: {}", dto.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String redisKey(Integer merchantId) {
+        return RedisPrefix.PRODUCT_MERCHANT_BAGS.getCode() + merchantId;
+    }
+
+    private String versionKey(Integer merchantId) {
+        return RedisPrefix.PRODUCT_MERCHANT_BAGS_VERSION.getCode() + merchantId;
+    }
+}
@@ -11,6 +11,8 @@ import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
 
+import java.net.URI;
+
 /**
  * S3配置类 - 与现有AwsS3Config兼容
  */
@@ -31,6 +33,11 @@ public class Config {
             builder.credentialsProvider(StaticCredentialsProvider.create(awsCreds));
         }
 
+        if (StringUtils.isNotBlank(s3Properties.getEndpoint())) {
+            builder.endpointOverride(URI.create(s3Properties.getEndpoint()));
+        }
+        builder.forcePathStyle(s3Properties.isPathStyleAccess());
+
         return builder.build();
     }
 
@@ -15,6 +15,10 @@ public class S3Properties {
     private String bucketName;
     private String awsAccessKeyId;
     private String awsSecretAccessKey;
+    /** 可选，指向 MinIO / LocalStack 等 S3 兼容服务，如 http://localhost:9000 */
+    private String endpoint;
+    /** S3 兼容服务通常需要 path-style 访问 */
+    private boolean pathStyleAccess;
 }
 
 
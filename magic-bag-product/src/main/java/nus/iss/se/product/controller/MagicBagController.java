@@ -1,7 +1,6 @@
 package nus.iss.se.product.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -14,6 +13,8 @@ import nus.iss.se.product.entity.MagicBag;
 import nus.iss.se.product.enums.StorageDir;
 import nus.iss.se.product.service.FileService;
 import nus.iss.se.product.service.IMagicBagService;
+import nus.iss.se.product.service.MagicBagSearchService;
+import nus.iss.se.product.service.NearbyFeedService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -35,6 +36,8 @@ public class MagicBagController {
     private final IMagicBagService magicBagService;
     private final UserContextHolder userContextHolder;
     private final FileService fileService;
+    private final NearbyFeedService nearbyFeedService;
+    private final MagicBagSearchService magicBagSearchService;
     
     /**
      * 获取所有盲盒列表（分页）
@@ -48,6 +51,29 @@ public class MagicBagController {
         return Result.success(response);
     }
     
+    /**
+     * 按关键词、分类、商家、价格区间、日期搜索盲盒，返回分面计数
+     */
+    @GetMapping("/search")
+    @Operation(summary = "搜索盲盒", description = "全文 + 分面搜索上架的盲盒，facets 为各维度取值的命中数量")
+    public Result<MagicBagSearchResponse> searchMagicBags(MagicBagSearchRequest request) {
+        return Result.success(magicBagSearchService.search(request));
+    }
+
+    /**
+     * 周边现在可取的盲盒，按距离和取货时间排序
+     */
+    @GetMapping("/nearby")
+    @Operation(summary = "周边可取盲盒", description = "根据经纬度查询周边商家今天仍可取货的盲盒，按距离和取货时间排序并分页")
+    public Result<NearbyBagListResponse> getNearbyBags(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "1") double radius,
+            @RequestParam(defaultValue = "1") Integer page,
+            @RequestParam(defaultValue = "10") Integer size) {
+        return Result.success(nearbyFeedService.getNearbyBags(lat, lon, radius, page, size));
+    }
+
     /**
      * 根据ID获取盲盒详情
      */
@@ -133,9 +159,7 @@ public class MagicBagController {
 
         String fileName = id+"_"+System.currentTimeMillis();
         String key = fileService.uploadFile(StorageDir.PRODUCT_IMAGES_DIR.getCode(), fileName, file);
-        LambdaUpdateWrapper<MagicBag> wrapper = new LambdaUpdateWrapper<>();
-        wrapper.eq(MagicBag::getId,id).set(MagicBag::getImageUrl,key);
-        magicBagService.update(wrapper);
+        magicBagService.updateImageUrl(id, key);
 
         return Result.success();
     }
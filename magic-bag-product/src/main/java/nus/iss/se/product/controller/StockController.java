@@ -0,0 +1,50 @@
+package nus.iss.se.product.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import nus.iss.se.common.Result;
+import nus.iss.se.product.dto.StockReservationDto;
+import nus.iss.se.product.service.StockReservationService;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 库存预留控制器
+ * 供订单服务在下单、支付、取消时调用
+ */
+@RestController
+@RequestMapping("/product/stock")
+@RequiredArgsConstructor
+@Tag(name = "Magic Bag Stock API", description = "盲盒库存预留接口")
+public class StockController {
+
+    private final StockReservationService stockReservationService;
+
+    @GetMapping("/{id}")
+    @Operation(summary = "查询可售库存", description = "返回扣除未确认预留后的可售库存")
+    public Result<Integer> getAvailableStock(@PathVariable Integer id) {
+        return Result.success(stockReservationService.getAvailableStock(id));
+    }
+
+    @PostMapping("/reserve")
+    @Operation(summary = "批量预留库存", description = "一次预留订单的全部商品行，任一商品库存不足则全部失败")
+    public Result<Void> reserve(@RequestBody @Valid StockReservationDto reservation) {
+        stockReservationService.reserve(reservation);
+        return Result.success();
+    }
+
+    @PostMapping("/{reservationId}/confirm")
+    @Operation(summary = "确认预留", description = "订单支付后将预留扣减写入数据库")
+    public Result<Void> confirm(@PathVariable String reservationId) {
+        stockReservationService.confirm(reservationId);
+        return Result.success();
+    }
+
+    @PostMapping("/{reservationId}/release")
+    @Operation(summary = "释放预留", description = "订单取消时归还预留库存")
+    public Result<Void> release(@PathVariable String reservationId) {
+        stockReservationService.release(reservationId);
+        return Result.success();
+    }
+}
@@ -0,0 +1,24 @@
+package nus.iss.se.product.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * 盲盒搜索条件
+ * 所有条件都可选，sort 为 relevance / price_asc / price_desc
+ */
+@Data
+public class MagicBagSearchRequest {
+    private String keyword;
+    private String category;
+    private Integer merchantId;
+    private Double minPrice;
+    private Double maxPrice;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate date;
+    private String sort;
+    private Integer page = 1;
+    private Integer size = 10;
+}
@@ -0,0 +1,19 @@
+package nus.iss.se.product.dto;
+
+import lombok.Data;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 盲盒搜索分页响应DTO
+ * facets：维度（category / merchant / date / price）-> 值 -> 命中数量
+ */
+@Data
+public class MagicBagSearchResponse {
+    private List<MagicBagDto> magicBags;
+    private Long totalItems;
+    private Integer currentPage;
+    private Integer pageSize;
+    private Integer totalPages;
+    private Map<String, Map<String, Long>> facets;
+}
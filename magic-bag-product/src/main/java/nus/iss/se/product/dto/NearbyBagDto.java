@@ -0,0 +1,19 @@
+package nus.iss.se.product.dto;
+
+import lombok.Data;
+
+/**
+ * 周边可取盲盒
+ * 距离按用户所在 geohash 单元格中心计算
+ */
+@Data
+public class NearbyBagDto {
+    private MagicBagDto magicBag;
+    private String merchantName;
+    /** 距离（公里） */
+    private Double distance;
+    /** 距离取货开始的分钟数，0 表示已在取货时段内 */
+    private Long minutesUntilPickup;
+    /** 当前可售库存 */
+    private Integer availableStock;
+}
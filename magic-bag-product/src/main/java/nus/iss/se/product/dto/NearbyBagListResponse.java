@@ -0,0 +1,16 @@
+package nus.iss.se.product.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 周边盲盒分页响应DTO
+ */
+@Data
+public class NearbyBagListResponse {
+    private List<NearbyBagDto> bags;
+    private Long totalItems;
+    private Integer currentPage;
+    private Integer pageSize;
+    private Integer totalPages;
+}
@@ -0,0 +1,43 @@
+package nus.iss.se.product.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 库存预留请求，一次携带订单的全部商品行
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationDto {
+
+    /**
+     * 预留ID（订单号），用于确认/释放以及重复请求的幂等
+     */
+    @NotBlank(message = "reservationId is empty")
+    private String reservationId;
+
+    @Valid
+    @NotEmpty(message = "items is empty")
+    private List<StockLine> items;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StockLine {
+        @NotNull(message = "magicBagId is empty")
+        private Integer magicBagId;
+
+        @NotNull(message = "quantity is empty")
+        @Min(value = 1, message = "quantity must be positive")
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,6 @@
+package nus.iss.se.product.kafka;
+
+public interface EventTopicType {
+    String ORDER_STOCK_CONFIRM = "order.stock.confirm";
+    String ORDER_STOCK_RELEASE = "order.stock.release";
+}
@@ -0,0 +1,37 @@
+package nus.iss.se.product.kafka.handler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.EventHandler;
+import nus.iss.se.product.kafka.EventTopicType;
+import nus.iss.se.product.service.StockReservationService;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单已完成：订单服务在状态变更的事务内通过 outbox 发布，消息可能重复投递，confirm 幂等
+ * 业务失败（预留不存在、数据库库存不足）重试也不会成功，只记录日志；其余异常抛出由 Kafka 重新投递
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EventHandler(topic = EventTopicType.ORDER_STOCK_CONFIRM)
+public class StockConfirmHandler implements DomainEventHandler<String> {
+    private final StockReservationService stockReservationService;
+
+    @Override
+    public void handle(String reservationId, EventEnvelope envelope) {
+        log.debug("handling event - {}, details: {}", EventTopicType.ORDER_STOCK_CONFIRM, envelope);
+        if (reservationId == null || reservationId.isBlank()) {
+            log.warn("Ignore invalid order.stock.confirm event: {}", envelope);
+            return;
+        }
+        try {
+            stockReservationService.confirm(reservationId);
+        } catch (BusinessException e) {
+            log.error("Failed to confirm stock of order {}: {}", reservationId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package nus.iss.se.product.kafka.handler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.kafka.event.EventEnvelope;
+import nus.iss.se.kafka.listener.DomainEventHandler;
+import nus.iss.se.kafka.listener.EventHandler;
+import nus.iss.se.product.kafka.EventTopicType;
+import nus.iss.se.product.service.StockReservationService;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单已取消（含支付超时）：释放预留，已支付订单的预留已确认时加回库存；消息可能重复投递，cancel 幂等
+ * 预留正在确认时 cancel 抛出异常，由 Kafka 重新投递
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@EventHandler(topic = EventTopicType.ORDER_STOCK_RELEASE)
+public class StockReleaseHandler implements DomainEventHandler<String> {
+    private final StockReservationService stockReservationService;
+
+    @Override
+    public void handle(String reservationId, EventEnvelope envelope) {
+        log.debug("handling event - {}, details: {}", EventTopicType.ORDER_STOCK_RELEASE, envelope);
+        if (reservationId == null || reservationId.isBlank()) {
+            log.warn("Ignore invalid order.stock.release event: {}", envelope);
+            return;
+        }
+        stockReservationService.cancel(reservationId);
+    }
+}
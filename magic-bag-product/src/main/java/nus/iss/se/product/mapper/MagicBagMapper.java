@@ -3,8 +3,11 @@ package nus.iss.se.product.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import nus.iss.se.product.entity.MagicBag;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -29,6 +32,54 @@ public interface MagicBagMapper extends BaseMapper<MagicBag> {
      */
     @Select("SELECT * FROM magic_bags WHERE merchant_id = #{merchantId} AND is_active = 1")
     List<MagicBag> findByMerchantId(Integer merchantId);
+
+    /**
+     * 批量查询多个商家的活跃盲盒
+     * @param merchantIds 商家ID列表
+     * @return 盲盒列表
+     */
+    @Select("<script>SELECT * FROM magic_bags WHERE is_active = 1 AND merchant_id IN " +
+            "<foreach collection='merchantIds' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    List<MagicBag> findByMerchantIds(@Param("merchantIds") List<Integer> merchantIds);
+
+    /**
+     * 按 id 顺序分批读取活跃的盲盒，用于构建搜索索引
+     * @param afterId 上一批的最大ID
+     * @param limit 每批数量
+     * @return 盲盒列表
+     */
+    @Select("SELECT * FROM magic_bags WHERE is_active = 1 AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<MagicBag> findActiveAfterId(@Param("afterId") Integer afterId, @Param("limit") int limit);
+
+    /**
+     * 按 (updated_at, id) 顺序分批读取变更过的盲盒（含已下架），用于搜索索引增量对账
+     * @param afterTime 上一批最后一行的更新时间
+     * @param afterId 上一批最后一行的ID，第一批传 0
+     * @param limit 每批数量
+     * @return 盲盒列表
+     */
+    @Select("SELECT * FROM magic_bags WHERE updated_at > #{afterTime} OR (updated_at = #{afterTime} AND id > #{afterId}) " +
+            "ORDER BY updated_at, id LIMIT #{limit}")
+    List<MagicBag> findUpdatedAfter(@Param("afterTime") LocalDateTime afterTime, @Param("afterId") Integer afterId,
+                                    @Param("limit") int limit);
+
+    /**
+     * 条件扣减库存，库存不足时不更新
+     * @param id 盲盒ID
+     * @param quantity 扣减数量
+     * @return 影响行数，0 表示库存不足
+     */
+    @Update("UPDATE magic_bags SET quantity = quantity - #{quantity} WHERE id = #{id} AND quantity >= #{quantity}")
+    int deductQuantity(@Param("id") Integer id, @Param("quantity") Integer quantity);
+
+    /**
+     * 加回库存，已确认的预留被取消时使用
+     * @param id 盲盒ID
+     * @param quantity 加回数量
+     * @return 影响行数
+     */
+    @Update("UPDATE magic_bags SET quantity = quantity + #{quantity} WHERE id = #{id}")
+    int restoreQuantity(@Param("id") Integer id, @Param("quantity") Integer quantity);
 }
 
 
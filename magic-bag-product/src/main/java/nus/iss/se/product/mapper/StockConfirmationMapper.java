@@ -0,0 +1,50 @@
+package nus.iss.se.product.mapper;
+
+import nus.iss.se.product.dto.StockReservationDto.StockLine;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 库存预留确认记录 Mapper
+ */
+@Mapper
+public interface StockConfirmationMapper {
+
+    /**
+     * 写入确认记录，已存在时不报错
+     * @param reservationId 预留ID
+     * @return 影响行数，0 表示该预留已经确认过
+     */
+    @Insert("INSERT IGNORE INTO stock_confirmations (reservation_id, created_at) VALUES (#{reservationId}, NOW())")
+    int insertIgnore(@Param("reservationId") String reservationId);
+
+    @Select("SELECT COUNT(*) > 0 FROM stock_confirmations WHERE reservation_id = #{reservationId}")
+    boolean exists(@Param("reservationId") String reservationId);
+
+    /**
+     * 记录确认时扣减的商品行，与确认记录在同一事务内写入
+     * @param reservationId 预留ID
+     * @param lines 盲盒ID -> 数量
+     */
+    @Insert("<script>INSERT IGNORE INTO stock_confirmation_items (reservation_id, magic_bag_id, quantity) VALUES " +
+            "<foreach collection='lines' index='bagId' item='quantity' separator=','>" +
+            "(#{reservationId}, #{bagId}, #{quantity})</foreach></script>")
+    int insertItems(@Param("reservationId") String reservationId, @Param("lines") Map<Integer, Integer> lines);
+
+    @Select("SELECT magic_bag_id AS magicBagId, quantity FROM stock_confirmation_items WHERE reservation_id = #{reservationId}")
+    List<StockLine> findItems(@Param("reservationId") String reservationId);
+
+    /**
+     * 标记已确认的预留已加回库存（已支付订单被取消）
+     * @param reservationId 预留ID
+     * @return 影响行数，0 表示没有确认记录或已经加回过
+     */
+    @Update("UPDATE stock_confirmations SET restocked_at = NOW() WHERE reservation_id = #{reservationId} AND restocked_at IS NULL")
+    int markRestocked(@Param("reservationId") String reservationId);
+}
@@ -0,0 +1,332 @@
+package nus.iss.se.product.search;
+
+import jakarta.annotation.PreDestroy;
+import nus.iss.se.product.entity.MagicBag;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.range.DoubleRange;
+import org.apache.lucene.facet.range.DoubleRangeFacetCounts;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * 盲盒全文 + 分面搜索索引（Lucene，进程内）
+ * 每个实例在内存中各自维护一份，只收录上架的盲盒；启动时全量构建，之后按盲盒 id 增量更新，
+ * 搜索和分面统计都不访问数据库。
+ * 标题、描述分词检索；分类、商家、日期为 SortedSet 分面，价格为区间分面；分面计数基于整个查询的命中集。
+ */
+@Component
+public class MagicBagSearchIndex {
+    public static final String DIM_CATEGORY = "category";
+    public static final String DIM_MERCHANT = "merchant";
+    public static final String DIM_DATE = "date";
+    public static final String DIM_PRICE = "price";
+
+    private static final String F_ID = "id";
+    private static final String F_TITLE = "title";
+    private static final String F_DESCRIPTION = "description";
+    private static final String F_CATEGORY = "category";
+    private static final String F_MERCHANT = "merchantId";
+    private static final String F_PRICE = "price";
+    private static final String F_DATE = "availableDate";
+
+    private static final int MAX_FACET_VALUES = 20;
+    private static final DoubleRange[] PRICE_RANGES = {
+            new DoubleRange("0-5", 0, true, 5, false),
+            new DoubleRange("5-10", 5, true, 10, false),
+            new DoubleRange("10-20", 10, true, 20, false),
+            new DoubleRange("20+", 20, true, Double.POSITIVE_INFINITY, true)
+    };
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final FacetsConfig facetsConfig = new FacetsConfig();
+    private final ByteBuffersDirectory directory = new ByteBuffersDirectory();
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    /** 分面读取状态与 reader 绑定，构建成本较高，reader 不变时复用 */
+    private volatile SortedSetDocValuesReaderState readerState;
+
+    public enum SortBy {
+        RELEVANCE, PRICE_ASC, PRICE_DESC
+    }
+
+    /**
+     * 查询条件，为 null 的条件不参与过滤
+     */
+    public record Criteria(String keyword, String category, Integer merchantId,
+                           Double minPrice, Double maxPrice, LocalDate date) {
+    }
+
+    /**
+     * 当前页的盲盒 id（按排序）、命中总数、各维度分面计数（值 -> 数量，按数量降序；价格按区间顺序）
+     */
+    public record SearchResult(List<Integer> ids, long total, Map<String, Map<String, Long>> facets) {
+    }
+
+    public MagicBagSearchIndex() {
+        try {
+            writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+            searcherManager = new SearcherManager(writer, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 写入或覆盖盲盒，已下架的从索引删除
+     */
+    public void index(MagicBag bag) {
+        try {
+            write(bag);
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 批量写入，最后统一刷新一次
+     */
+    public void indexAll(Collection<MagicBag> bags) {
+        try {
+            for (MagicBag bag : bags) {
+                write(bag);
+            }
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void delete(Integer id) {
+        try {
+            writer.deleteDocuments(idTerm(id));
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param offset 跳过的命中数
+     * @param limit  返回的 id 数
+     */
+    public SearchResult search(Criteria criteria, SortBy sortBy, int offset, int limit) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                if (searcher.getIndexReader().numDocs() == 0) {
+                    return new SearchResult(List.of(), 0, Map.of());
+                }
+                Query query = buildQuery(criteria);
+                FacetsCollector facetsCollector = new FacetsCollector();
+                int n = Math.max(1, offset + limit);
+                TopDocs topDocs = sortBy == null || sortBy == SortBy.RELEVANCE
+                        ? FacetsCollector.search(searcher, query, n, facetsCollector)
+                        : FacetsCollector.search(searcher, query, n, sortOf(sortBy), facetsCollector);
+
+                StoredFields storedFields = searcher.storedFields();
+                List<Integer> ids = new ArrayList<>();
+                for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+                    ids.add(Integer.valueOf(storedFields.document(topDocs.scoreDocs[i].doc).get(F_ID)));
+                }
+                return new SearchResult(ids, topDocs.totalHits.value, facets(searcher, facetsCollector));
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int size() {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return searcher.getIndexReader().numDocs();
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private void write(MagicBag bag) throws IOException {
+        if (bag.getId() == null) {
+            return;
+        }
+        if (!bag.isActive()) {
+            writer.deleteDocuments(idTerm(bag.getId()));
+            return;
+        }
+        writer.updateDocument(idTerm(bag.getId()), facetsConfig.build(toDocument(bag)));
+    }
+
+    private Document toDocument(MagicBag bag) {
+        Document doc = new Document();
+        doc.add(new StringField(F_ID, String.valueOf(bag.getId()), Field.Store.YES));
+        if (bag.getTitle() != null) {
+            doc.add(new TextField(F_TITLE, bag.getTitle(), Field.Store.NO));
+        }
+        if (bag.getDescription() != null) {
+            doc.add(new TextField(F_DESCRIPTION, bag.getDescription(), Field.Store.NO));
+        }
+        if (bag.getCategory() != null && !bag.getCategory().isBlank()) {
+            doc.add(new StringField(F_CATEGORY, bag.getCategory(), Field.Store.NO));
+            doc.add(new SortedSetDocValuesFacetField(DIM_CATEGORY, bag.getCategory()));
+        }
+        if (bag.getMerchantId() != null) {
+            doc.add(new IntPoint(F_MERCHANT, bag.getMerchantId()));
+            doc.add(new SortedSetDocValuesFacetField(DIM_MERCHANT, String.valueOf(bag.getMerchantId())));
+        }
+        if (bag.getPrice() != null) {
+            double price = bag.getPrice().doubleValue();
+            doc.add(new DoublePoint(F_PRICE, price));
+            doc.add(new DoubleDocValuesField(F_PRICE, price));
+        }
+        if (bag.getAvailableDate() != null) {
+            LocalDate date = toLocalDate(bag.getAvailableDate());
+            doc.add(new LongPoint(F_DATE, date.toEpochDay()));
+            doc.add(new SortedSetDocValuesFacetField(DIM_DATE, date.toString()));
+        }
+        return doc;
+    }
+
+    private Query buildQuery(Criteria criteria) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        boolean empty = true;
+        if (criteria.keyword() != null && !criteria.keyword().isBlank()) {
+            // SimpleQueryParser 不会因用户输入的特殊字符抛异常
+            SimpleQueryParser parser = new SimpleQueryParser(analyzer, Map.of(F_TITLE, 2f, F_DESCRIPTION, 1f));
+            parser.setDefaultOperator(BooleanClause.Occur.MUST);
+            builder.add(parser.parse(criteria.keyword()), BooleanClause.Occur.MUST);
+            empty = false;
+        }
+        if (criteria.category() != null && !criteria.category().isBlank()) {
+            builder.add(new TermQuery(new Term(F_CATEGORY, criteria.category())), BooleanClause.Occur.FILTER);
+            empty = false;
+        }
+        if (criteria.merchantId() != null) {
+            builder.add(IntPoint.newExactQuery(F_MERCHANT, criteria.merchantId()), BooleanClause.Occur.FILTER);
+            empty = false;
+        }
+        if (criteria.minPrice() != null || criteria.maxPrice() != null) {
+            double min = criteria.minPrice() == null ? Double.NEGATIVE_INFINITY : criteria.minPrice();
+            double max = criteria.maxPrice() == null ? Double.POSITIVE_INFINITY : criteria.maxPrice();
+            builder.add(DoublePoint.newRangeQuery(F_PRICE, min, max), BooleanClause.Occur.FILTER);
+            empty = false;
+        }
+        if (criteria.date() != null) {
+            builder.add(LongPoint.newExactQuery(F_DATE, criteria.date().toEpochDay()), BooleanClause.Occur.FILTER);
+            empty = false;
+        }
+        return empty ? new MatchAllDocsQuery() : builder.build();
+    }
+
+    private static Sort sortOf(SortBy sortBy) {
+        return new Sort(new SortField(F_PRICE, SortField.Type.DOUBLE, sortBy == SortBy.PRICE_DESC), SortField.FIELD_SCORE);
+    }
+
+    private Map<String, Map<String, Long>> facets(IndexSearcher searcher, FacetsCollector facetsCollector) throws IOException {
+        Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+        SortedSetDocValuesReaderState state = readerState(searcher);
+        if (state != null) {
+            Facets counts = new SortedSetDocValuesFacetCounts(state, facetsCollector);
+            for (String dim : List.of(DIM_CATEGORY, DIM_MERCHANT, DIM_DATE)) {
+                facets.put(dim, topChildren(counts, dim));
+            }
+        }
+        Facets priceCounts = new DoubleRangeFacetCounts(F_PRICE, facetsCollector, PRICE_RANGES);
+        facets.put(DIM_PRICE, toMap(priceCounts.getAllChildren(F_PRICE)));
+        return facets;
+    }
+
+    private SortedSetDocValuesReaderState readerState(IndexSearcher searcher) throws IOException {
+        SortedSetDocValuesReaderState state = readerState;
+        if (state != null && state.getReader() == searcher.getIndexReader()) {
+            return state;
+        }
+        try {
+            state = new DefaultSortedSetDocValuesReaderState(searcher.getIndexReader(), facetsConfig);
+        } catch (IllegalArgumentException e) {
+            // 索引中还没有任何分面字段
+            return null;
+        }
+        readerState = state;
+        return state;
+    }
+
+    private static Map<String, Long> topChildren(Facets counts, String dim) throws IOException {
+        try {
+            return toMap(counts.getTopChildren(MAX_FACET_VALUES, dim));
+        } catch (IllegalArgumentException e) {
+            // 该维度在当前索引中没有任何值
+            return Map.of();
+        }
+    }
+
+    private static Map<String, Long> toMap(FacetResult result) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        if (result != null) {
+            for (LabelAndValue labelAndValue : result.labelValues) {
+                values.put(labelAndValue.label, labelAndValue.value.longValue());
+            }
+        }
+        return values;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static Term idTerm(Integer id) {
+        return new Term(F_ID, String.valueOf(id));
+    }
+}
@@ -9,8 +9,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.InputStream;
 
 @Slf4j
 @Service
@@ -36,11 +35,9 @@ public class FileService {
         }
 
         String key = dir + "/" + fileName + "." + getFileExtension(file.getOriginalFilename());
-        try {
-            Path tempFile = Files.createTempFile("upload-", ".");
-            Files.write(tempFile, file.getBytes());
-            // 上传文件
-            return storageService.upload(key, tempFile);
+        // 直接转发上传流，不把整个文件读入堆内存，也不再复制到临时文件
+        try (InputStream in = file.getInputStream()) {
+            return storageService.upload(key, in, file.getSize(), contentType);
         } catch (IOException e) {
             log.error("upload file failed,file-{}: {}",file.getOriginalFilename(), ExceptionUtils.getStackTrace(e));
             throw new BusinessException(ResultStatus.FAIL,"Upload file failed");
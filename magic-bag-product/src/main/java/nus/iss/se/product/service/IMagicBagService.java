@@ -5,6 +5,7 @@ import nus.iss.se.product.dto.*;
 import nus.iss.se.product.entity.MagicBag;
 
 import java.util.List;
+import java.util.Map;
 
 public interface IMagicBagService extends IService<MagicBag> {
 
@@ -23,4 +24,11 @@ public interface IMagicBagService extends IService<MagicBag> {
     boolean deleteMagicBag(Integer id);
 
     List<MagicBagDto> getBatchMagicBags(List<Integer> ids);
+
+    /**
+     * 批量获取多个商家的在售盲盒，走商家盲盒索引
+     */
+    Map<Integer, List<MagicBagDto>> getActiveBagsByMerchantIds(List<Integer> merchantIds);
+
+    void updateImageUrl(Integer id, String imageUrl);
 }
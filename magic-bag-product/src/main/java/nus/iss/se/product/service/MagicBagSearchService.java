@@ -0,0 +1,188 @@
+package nus.iss.se.product.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisChannel;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.product.dto.MagicBagDto;
+import nus.iss.se.product.dto.MagicBagSearchRequest;
+import nus.iss.se.product.dto.MagicBagSearchResponse;
+import nus.iss.se.product.entity.MagicBag;
+import nus.iss.se.product.mapper.MagicBagMapper;
+import nus.iss.se.product.search.MagicBagSearchIndex;
+import nus.iss.se.product.search.MagicBagSearchIndex.Criteria;
+import nus.iss.se.product.search.MagicBagSearchIndex.SearchResult;
+import nus.iss.se.product.search.MagicBagSearchIndex.SortBy;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 盲盒搜索服务
+ * 启动时从数据库分批构建进程内索引；商品变更通过 redis pub/sub 广播到每个实例，按 id 回库重建该文档。
+ * pub/sub 不保证送达，另外定期按 updated_at 增量对账，补上丢失的变更。
+ * 查询只命中索引，当前页的详情走 MagicBagCache 批量读取。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MagicBagSearchService {
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 50;
+    /** 深分页需要收集 offset + size 个结果，限制窗口大小 */
+    private static final int MAX_RESULT_WINDOW = 10_000;
+    private static final Duration RECONCILE_INTERVAL = Duration.ofMinutes(1);
+    /** updated_at 由应用在提交前写入，事务提交较晚或实例间时钟偏差都可能让变更落在水位之前，每轮回看这段时间 */
+    private static final Duration RECONCILE_OVERLAP = Duration.ofMinutes(5);
+
+    private final MagicBagSearchIndex searchIndex;
+    private final MagicBagMapper magicBagMapper;
+    private final IMagicBagService magicBagService;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final ScheduledExecutorService reconcileExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "magic-bag-search-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** 已对账到的最大 updated_at */
+    private volatile LocalDateTime lastSeen;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            try {
+                reindex(Integer.valueOf(body));
+            } catch (NumberFormatException e) {
+                log.warn("Ignore invalid cache invalidation message: {}", body);
+            }
+        }, new ChannelTopic(RedisChannel.PRODUCT_CACHE_INVALIDATED.getCode()));
+
+        // 快照期间的变更由第一轮对账补上
+        lastSeen = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        int lastId = 0;
+        while (true) {
+            List<MagicBag> batch = magicBagMapper.findActiveAfterId(lastId, REBUILD_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            searchIndex.indexAll(batch);
+            lastId = batch.get(batch.size() - 1).getId();
+            if (batch.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+        }
+        log.info("Magic bag search index built with {} bags in {}ms", searchIndex.size(), System.currentTimeMillis() - start);
+
+        reconcileExecutor.scheduleWithFixedDelay(this::reconcile,
+                RECONCILE_INTERVAL.toMillis(), RECONCILE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconcileExecutor.shutdownNow();
+    }
+
+    /**
+     * 增量对账：重新索引 updated_at 不早于 水位 - 重叠窗口 的盲盒，已下架的随之从索引删除，重复索引无副作用。
+     * 物理删除的行不会被查到，仍依赖变更广播
+     */
+    void reconcile() {
+        try {
+            LocalDateTime maxSeen = lastSeen;
+            LocalDateTime afterTime = maxSeen.minus(RECONCILE_OVERLAP);
+            int afterId = 0;
+            int count = 0;
+            while (true) {
+                List<MagicBag> batch = magicBagMapper.findUpdatedAfter(afterTime, afterId, REBUILD_BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                searchIndex.indexAll(batch);
+                count += batch.size();
+                MagicBag last = batch.get(batch.size() - 1);
+                afterTime = last.getUpdatedAt();
+                afterId = last.getId();
+                if (afterTime.isAfter(maxSeen)) {
+                    maxSeen = afterTime;
+                }
+                if (batch.size() < REBUILD_BATCH_SIZE) {
+                    break;
+                }
+            }
+            lastSeen = maxSeen;
+            log.debug("Magic bag search index reconciled {} bags, watermark {}", count, maxSeen);
+        } catch (Exception e) {
+            log.error("Failed to reconcile magic bag search index: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按数据库中的当前状态更新某个盲盒的索引，重复调用无副作用
+     */
+    public void reindex(Integer id) {
+        MagicBag magicBag = magicBagMapper.selectById(id);
+        if (magicBag == null) {
+            searchIndex.delete(id);
+        } else {
+            searchIndex.index(magicBag);
+        }
+    }
+
+    public MagicBagSearchResponse search(MagicBagSearchRequest request) {
+        int page = request.getPage() == null ? 1 : request.getPage();
+        int size = request.getSize() == null ? 10 : request.getSize();
+        if (page < 1 || size < 1 || size > MAX_PAGE_SIZE || (long) page * size > MAX_RESULT_WINDOW) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID,
+                    "page >= 1, size in [1, " + MAX_PAGE_SIZE + "], page * size <= " + MAX_RESULT_WINDOW);
+        }
+        if (request.getMinPrice() != null && request.getMaxPrice() != null && request.getMinPrice() > request.getMaxPrice()) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID, "minPrice > maxPrice");
+        }
+
+        Criteria criteria = new Criteria(request.getKeyword(), request.getCategory(), request.getMerchantId(),
+                request.getMinPrice(), request.getMaxPrice(), request.getDate());
+        SearchResult result = searchIndex.search(criteria, sortOf(request.getSort()), (page - 1) * size, size);
+
+        // 索引与缓存之间可能有短暂的不一致，已下架的不返回
+        List<MagicBagDto> magicBags = result.ids().isEmpty() ? List.of()
+                : magicBagService.getBatchMagicBags(result.ids()).stream()
+                .filter(dto -> Boolean.TRUE.equals(dto.getIsActive()))
+                .toList();
+
+        MagicBagSearchResponse response = new MagicBagSearchResponse();
+        response.setMagicBags(magicBags);
+        response.setTotalItems(result.total());
+        response.setCurrentPage(page);
+        response.setPageSize(size);
+        response.setTotalPages((int) ((result.total() + size - 1) / size));
+        response.setFacets(result.facets());
+        return response;
+    }
+
+    private static SortBy sortOf(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return SortBy.RELEVANCE;
+        }
+        try {
+            return SortBy.valueOf(sort.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID, "sort must be relevance, price_asc or price_desc");
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package nus.iss.se.product.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.Result;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.common.util.GeoHash;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.product.api.MerchantClient;
+import nus.iss.se.product.dto.MagicBagDto;
+import nus.iss.se.product.dto.MerchantLocationDto;
+import nus.iss.se.product.dto.NearbyBagDto;
+import nus.iss.se.product.dto.NearbyBagListResponse;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 周边现在可取的盲盒
+ * 用户坐标先归一到 geohash 单元格中心（精度 7 约 150m x 150m），同一单元格、同一半径的请求共享一份排好序的结果，
+ * 在 Redis 中短时间缓存，翻页只从缓存切片。
+ * 未命中时一次调用商家服务查周边商家，一次 pipeline 读商家盲盒索引，一次 MGET 读可售库存，代替客户端 1+N 次请求。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NearbyFeedService {
+    static final int CELL_PRECISION = 7;
+    static final double MAX_RADIUS_KM = 50;
+    static final int MAX_PAGE_SIZE = 50;
+    private static final Duration FEED_TTL = Duration.ofSeconds(30);
+    /** 排序时等待取货的分钟数折算成距离：等 2 小时相当于多走一个半径 */
+    private static final double WAIT_MINUTES_PER_RADIUS = 120;
+
+    private final MerchantClient merchantClient;
+    private final IMagicBagService magicBagService;
+    private final StockReservationService stockReservationService;
+    private final RedisUtil redisUtil;
+
+    /**
+     * @param radius 半径（公里）
+     */
+    public NearbyBagListResponse getNearbyBags(double lat, double lon, double radius, int page, int size) {
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID, "invalid coordinate: " + lat + "," + lon);
+        }
+        if (radius <= 0 || radius > MAX_RADIUS_KM) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID, "radius must be in (0, " + MAX_RADIUS_KM + "] km");
+        }
+        if (page < 1 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BusinessException(ResultStatus.PARAM_IS_INVALID, "page >= 1, size in [1, " + MAX_PAGE_SIZE + "]");
+        }
+
+        String cell = GeoHash.encode(lat, lon, CELL_PRECISION);
+        String cacheKey = RedisPrefix.PRODUCT_NEARBY.getCode() + cell + ":"
+                + BigDecimal.valueOf(radius).stripTrailingZeros().toPlainString();
+        NearbyBagDto[] cached = redisUtil.getJson(cacheKey, NearbyBagDto[].class);
+        List<NearbyBagDto> feed;
+        if (cached != null) {
+            feed = Arrays.asList(cached);
+        } else {
+            feed = buildFeed(cell, radius);
+            redisUtil.setJson(cacheKey, feed, FEED_TTL.getSeconds(), TimeUnit.SECONDS);
+        }
+        return paginate(feed, page, size);
+    }
+
+    private List<NearbyBagDto> buildFeed(String cell, double radius) {
+        GeoHash.Center center = GeoHash.decodeCenter(cell);
+        Result<List<MerchantLocationDto>> result = merchantClient.getNearby(center.latitude(), center.longitude(), radius);
+        if (!isSuccess(result)) {
+            throw new BusinessException(ResultStatus.SERVICE_UNAVAILABLE, "failed to query nearby merchants");
+        }
+        List<MerchantLocationDto> merchants = result.getData() == null ? List.of() : result.getData();
+        if (merchants.isEmpty()) {
+            return List.of();
+        }
+
+        List<Integer> merchantIds = merchants.stream().map(m -> parseId(m.getId())).filter(Objects::nonNull).toList();
+        Map<Integer, List<MagicBagDto>> bagsByMerchant = magicBagService.getActiveBagsByMerchantIds(merchantIds);
+        List<Integer> bagIds = bagsByMerchant.values().stream().flatMap(List::stream).map(MagicBagDto::getId).toList();
+        Map<Integer, Integer> stocks = stockReservationService.getLoadedStocks(bagIds);
+
+        List<NearbyBagDto> feed = rank(merchants, bagsByMerchant, stocks, radius, LocalDateTime.now());
+        log.debug("Nearby feed built: cell={}, radius={}, merchants={}, bags={}", cell, radius, merchants.size(), feed.size());
+        return feed;
+    }
+
+    /**
+     * 过滤出今天仍可取货且有库存的盲盒，按 距离/半径 + 等待分钟/120 升序排列，同分按距离
+     * 库存优先取 Redis 中的可售库存（已扣除未支付的预留），未加载时用商品库存
+     */
+    static List<NearbyBagDto> rank(List<MerchantLocationDto> merchants, Map<Integer, List<MagicBagDto>> bagsByMerchant,
+                                   Map<Integer, Integer> stocks, double radius, LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        LocalTime time = now.toLocalTime();
+        List<NearbyBagDto> feed = new ArrayList<>();
+        for (MerchantLocationDto merchant : merchants) {
+            Integer merchantId = parseId(merchant.getId());
+            if (merchantId == null) {
+                continue;
+            }
+            double distance = merchant.getDistance() == null ? radius : merchant.getDistance();
+            for (MagicBagDto bag : bagsByMerchant.getOrDefault(merchantId, List.of())) {
+                if (!Boolean.TRUE.equals(bag.getIsActive()) || !availableOn(bag, today) || pickupEnded(bag, time)) {
+                    continue;
+                }
+                Integer stock = stocks.getOrDefault(bag.getId(), bag.getQuantity());
+                if (stock == null || stock <= 0) {
+                    continue;
+                }
+                NearbyBagDto dto = new NearbyBagDto();
+                dto.setMagicBag(bag);
+                dto.setMerchantName(merchant.getName());
+                dto.setDistance(distance);
+                dto.setMinutesUntilPickup(bag.getPickupStartTime() == null || !time.isBefore(bag.getPickupStartTime())
+                        ? 0 : Duration.between(time, bag.getPickupStartTime()).toMinutes());
+                dto.setAvailableStock(stock);
+                feed.add(dto);
+            }
+        }
+        feed.sort(Comparator.comparingDouble((NearbyBagDto dto) -> score(dto, radius))
+                .thenComparingDouble(NearbyBagDto::getDistance)
+                .thenComparing(dto -> dto.getMagicBag().getId()));
+        return feed;
+    }
+
+    private static double score(NearbyBagDto dto, double radius) {
+        return dto.getDistance() / radius + dto.getMinutesUntilPickup() / WAIT_MINUTES_PER_RADIUS;
+    }
+
+    /**
+     * 没有设置日期的盲盒视为每天可取
+     */
+    private static boolean availableOn(MagicBagDto bag, LocalDate today) {
+        if (bag.getAvailableDate() == null) {
+            return true;
+        }
+        LocalDate date = Instant.ofEpochMilli(bag.getAvailableDate().getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+        return date.equals(today);
+    }
+
+    /**
+     * 结束时间早于开始时间的时段跨过午夜，当天不会结束
+     */
+    private static boolean pickupEnded(MagicBagDto bag, LocalTime time) {
+        LocalTime start = bag.getPickupStartTime();
+        LocalTime end = bag.getPickupEndTime();
+        if (end == null || (start != null && end.isBefore(start))) {
+            return false;
+        }
+        return time.isAfter(end);
+    }
+
+    private static NearbyBagListResponse paginate(List<NearbyBagDto> feed, int page, int size) {
+        int from = (int) Math.min((long) (page - 1) * size, feed.size());
+        int to = Math.min(from + size, feed.size());
+
+        NearbyBagListResponse response = new NearbyBagListResponse();
+        response.setBags(new ArrayList<>(feed.subList(from, to)));
+        response.setTotalItems((long) feed.size());
+        response.setCurrentPage(page);
+        response.setPageSize(size);
+        response.setTotalPages((feed.size() + size - 1) / size);
+        return response;
+    }
+
+    private static Integer parseId(String id) {
+        try {
+            return id == null ? null : Integer.valueOf(id);
+        } catch (NumberFormatException e) {
+            log.warn("Ignore nearby merchant with invalid id: {}", id);
+            return null;
+        }
+    }
+
+    private boolean isSuccess(Result<?> result) {
+        return result != null && result.getCode() == ResultStatus.SUCCESS.getCode();
+    }
+}
@@ -1,5 +1,6 @@
 package nus.iss.se.product.service;
 
+import lombok.extern.slf4j.Slf4j;
 import nus.iss.se.product.config.S3Properties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -8,12 +9,30 @@ import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
+@Slf4j
 @Service
 public class S3StorageService {
+    /** 超过该大小使用分片上传 */
+    static final long MULTIPART_THRESHOLD = 16L * 1024 * 1024;
+    /** 分片大小，S3 要求除最后一片外不小于 5MB */
+    static final int PART_SIZE = 8 * 1024 * 1024;
+    /** 单个上传同时在途的分片数，每个上传占用的堆内存不超过 PART_SIZE * MAX_PARTS_IN_FLIGHT */
+    static final int MAX_PARTS_IN_FLIGHT = 4;
+    private static final ExecutorService PART_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
 
     private final S3Client s3Client;
     private final String bucketName;
@@ -23,7 +42,12 @@ public class S3StorageService {
     public S3StorageService(S3Client s3Client, S3Properties properties) {
         this.s3Client = s3Client;
         this.bucketName = properties.getBucketName();
-        this.servcerUrl = String.format("https://%s.s3.%s.amazonaws.com",properties.getBucketName(),properties.getRegion());
+        if (properties.getEndpoint() != null && !properties.getEndpoint().isBlank()) {
+            // S3 兼容服务（MinIO / LocalStack）
+            this.servcerUrl = properties.getEndpoint().replaceAll("/+$", "") + "/" + properties.getBucketName();
+        } else {
+            this.servcerUrl = String.format("https://%s.s3.%s.amazonaws.com",properties.getBucketName(),properties.getRegion());
+        }
     }
 
     /**
@@ -42,6 +66,122 @@ public class S3StorageService {
         return servcerUrl+"/"+key;
     }
 
+    /**
+     * 流式上传，不把整个文件读入内存，也不落临时文件
+     * 不超过 MULTIPART_THRESHOLD 时一次 PutObject 直接转发输入流；更大的文件按 PART_SIZE 分片并行上传。
+     *
+     * @param in            调用方负责关闭
+     * @param contentLength 流的准确长度
+     */
+    public String upload(String key, InputStream in, long contentLength, String contentType) throws IOException {
+        if (contentLength > MULTIPART_THRESHOLD) {
+            multipartUpload(key, in, contentType);
+        } else {
+            PutObjectRequest putRequest = PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentLength(contentLength)
+                    .build();
+
+            s3Client.putObject(putRequest, RequestBody.fromInputStream(in, contentLength));
+        }
+        return servcerUrl+"/"+key;
+    }
+
+    /**
+     * 顺序读取分片、并行上传，在途分片数受信号量限制；任一步失败都会中止分片上传，不在桶里留下未完成的分片
+     */
+    private void multipartUpload(String key, InputStream in, String contentType) throws IOException {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build()).uploadId();
+
+        Semaphore inFlight = new Semaphore(MAX_PARTS_IN_FLIGHT);
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            while (true) {
+                acquire(inFlight);
+                byte[] buffer = new byte[PART_SIZE];
+                int read = in.readNBytes(buffer, 0, PART_SIZE);
+                if (read == 0) {
+                    inFlight.release();
+                    break;
+                }
+                int number = partNumber++;
+                parts.add(CompletableFuture.supplyAsync(() -> uploadPart(key, uploadId, number, buffer, read), PART_EXECUTOR)
+                        .whenComplete((part, e) -> inFlight.release()));
+                if (read < PART_SIZE || parts.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    break;
+                }
+            }
+
+            List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> part : parts) {
+                completedParts.add(join(part));
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+            log.debug("Multipart upload completed: key={}, parts={}", key, completedParts.size());
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(key, uploadId);
+            throw e;
+        }
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) length)
+                .build();
+        // fromInputStream 不复制缓冲区，fromBytes 会再拷贝一份
+        UploadPartResponse response = s3Client.uploadPart(request,
+                RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length));
+        return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+    }
+
+    private void abortMultipartUpload(String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (RuntimeException e) {
+            log.warn("Failed to abort multipart upload: key={}, uploadId={}: {}", key, uploadId, e.getMessage());
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws InterruptedIOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Multipart upload interrupted");
+        }
+    }
+
+    private static CompletedPart join(CompletableFuture<CompletedPart> part) {
+        try {
+            return part.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     /**
      * 上传字节数组（适用于小文件或内存数据）
      */
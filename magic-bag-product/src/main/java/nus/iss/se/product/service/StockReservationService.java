@@ -0,0 +1,570 @@
+package nus.iss.se.product.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.product.cache.MagicBagCache;
+import nus.iss.se.product.dto.StockReservationDto;
+import nus.iss.se.product.dto.StockReservationDto.StockLine;
+import nus.iss.se.product.entity.MagicBag;
+import nus.iss.se.product.mapper.MagicBagMapper;
+import nus.iss.se.product.mapper.StockConfirmationMapper;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 库存预留服务
+ * Redis 中 product:stock:{id} 保存可售库存（数据库库存 - 未确认的预留），
+ * product:stock-hold:{id} 记录该商品未确认预留的总量 reserved 和数据库库存的变更次数 epoch；
+ * 预留/释放/确认都由 Lua 脚本原子完成，高并发下不会在 magic_bags 行锁上排队；
+ * 订单支付确认后才把预留数量写回 MySQL。
+ * 可售库存 key 不存在时（首次访问、Redis 淘汰或重启）按 数据库库存 - reserved 重新加载，未确认的预留不会被再卖一次。
+ * 每个预留在 product:reservation-deadline 中有释放期限，订单服务在此之前超时取消未支付订单；
+ * 期限到了仍未确认或释放的预留（如下单中途失败）由后台线程释放。
+ * 已确认的预留在订单取消时按确认记录加回数据库库存，每个预留只加回一次。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+    /** 预留的释放期限，需长于订单服务的支付超时 PaymentWindow.CANCEL_AFTER */
+    static final Duration RESERVATION_HOLD = Duration.ofMinutes(90);
+    private static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+    private static final int SWEEP_BATCH_SIZE = 200;
+    /** 加载库存期间数据库库存被并发修改时的重试次数 */
+    private static final int LOAD_ATTEMPTS = 3;
+
+    static final String FIELD_RESERVED = "reserved";
+    private static final String FIELD_EPOCH = "epoch";
+    /** 预留记录中的状态字段：reserved / confirming，其余字段为 盲盒ID -> 数量 */
+    private static final String FIELD_STATE = "_state";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MagicBagMapper magicBagMapper;
+    private final StockConfirmationMapper stockConfirmationMapper;
+    private final MagicBagCache magicBagCache;
+
+    private final ScheduledExecutorService sweepExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stock-reservation-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * KEYS[1..n] 库存 key，KEYS[n+1..2n] 占用 key，KEYS[2n+1] 预留 key，KEYS[2n+2] 期限 zset
+     * ARGV[1..n] 数量，ARGV[n+1..2n] 盲盒ID，ARGV[2n+1] 预留ID，ARGV[2n+2] 释放期限（epoch 秒）
+     * 返回 0 成功；i 表示第 i 行库存不足；-i 表示第 i 行库存未加载或商品已下架
+     */
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+            local n = (#KEYS - 2) / 2
+            local reservationKey = KEYS[2 * n + 1]
+            if redis.call('EXISTS', reservationKey) == 1 then
+                return 0
+            end
+            for i = 1, n do
+                local stock = redis.call('GET', KEYS[i])
+                if not stock or redis.call('HEXISTS', KEYS[n + i], 'closed') == 1 then
+                    return -i
+                end
+                if tonumber(stock) < tonumber(ARGV[i]) then
+                    return i
+                end
+            end
+            for i = 1, n do
+                redis.call('DECRBY', KEYS[i], ARGV[i])
+                redis.call('HINCRBY', KEYS[n + i], 'reserved', ARGV[i])
+                redis.call('HSET', reservationKey, ARGV[n + i], ARGV[i])
+            end
+            redis.call('HSET', reservationKey, '_state', 'reserved')
+            redis.call('ZADD', KEYS[2 * n + 2], ARGV[2 * n + 2], ARGV[2 * n + 1])
+            return 0
+            """, Long.class);
+
+    /**
+     * KEYS[1] 库存 key，KEYS[2] 占用 key；ARGV[1] 数据库库存，ARGV[2] 读取数据库前的 epoch
+     * epoch 变化说明读数据库期间库存被确认或调整过，返回 nil 由调用方重试；否则按 数据库库存 - reserved 加载
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>("""
+            local epoch = redis.call('HGET', KEYS[2], 'epoch') or '0'
+            if epoch ~= ARGV[2] then
+                return false
+            end
+            redis.call('HDEL', KEYS[2], 'closed')
+            local reserved = tonumber(redis.call('HGET', KEYS[2], 'reserved') or '0')
+            redis.call('SET', KEYS[1], tonumber(ARGV[1]) - reserved, 'NX')
+            return tonumber(redis.call('GET', KEYS[1]))
+            """, Long.class);
+
+    /**
+     * KEYS[1] 预留 key，KEYS[2] 期限 zset，KEYS[3..n+2] 库存 key，KEYS[n+3..2n+2] 占用 key
+     * ARGV[1] 预留ID，ARGV[2] 确认中时顺延的期限，ARGV[3..n+2] 盲盒ID
+     * 把预留数量加回库存并删除预留记录，返回释放的行数；确认中的预留不释放，返回 -1
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            local n = (#KEYS - 2) / 2
+            local state = redis.call('HGET', KEYS[1], '_state')
+            if state == 'confirming' then
+                redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1])
+                return -1
+            end
+            if state ~= 'reserved' then
+                redis.call('ZREM', KEYS[2], ARGV[1])
+                return 0
+            end
+            for i = 1, n do
+                local quantity = redis.call('HGET', KEYS[1], ARGV[i + 2])
+                if quantity then
+                    if redis.call('EXISTS', KEYS[2 + i]) == 1 then
+                        redis.call('INCRBY', KEYS[2 + i], quantity)
+                    end
+                    redis.call('HINCRBY', KEYS[2 + n + i], 'reserved', -tonumber(quantity))
+                end
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('ZREM', KEYS[2], ARGV[1])
+            return n
+            """, Long.class);
+
+    /**
+     * KEYS[1] 预留 key：标记为确认中并返回全部字段，确认中的预留不会被释放；不存在时返回空
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>("""
+            local state = redis.call('HGET', KEYS[1], '_state')
+            if state == 'reserved' then
+                redis.call('HSET', KEYS[1], '_state', 'confirming')
+            elseif state ~= 'confirming' then
+                return {}
+            end
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    /**
+     * KEYS[1] 预留 key：确认的事务回滚后恢复为未确认，之后仍可释放
+     */
+    private static final RedisScript<Long> UNCLAIM_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HGET', KEYS[1], '_state') == 'confirming' then
+                redis.call('HSET', KEYS[1], '_state', 'reserved')
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * KEYS[1] 预留 key，KEYS[2] 期限 zset，KEYS[3..n+2] 占用 key；ARGV[1] 预留ID，ARGV[2..n+1] 盲盒ID
+     * 数据库扣减提交后调用：预留数量从 reserved 中移除（已计入数据库），epoch +1，删除预留记录
+     */
+    private static final RedisScript<Long> FINISH_CONFIRM_SCRIPT = new DefaultRedisScript<>("""
+            local n = #KEYS - 2
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            for i = 1, n do
+                local quantity = redis.call('HGET', KEYS[1], ARGV[i + 1])
+                if quantity then
+                    redis.call('HINCRBY', KEYS[2 + i], 'reserved', -tonumber(quantity))
+                    redis.call('HINCRBY', KEYS[2 + i], 'epoch', 1)
+                end
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('ZREM', KEYS[2], ARGV[1])
+            return n
+            """, Long.class);
+
+    /**
+     * KEYS[1] 库存 key，KEYS[2] 占用 key，ARGV[1] 调整量
+     * 数据库库存已变化，epoch +1；库存未加载时不处理，下次预留会从数据库重新加载
+     */
+    private static final RedisScript<Long> ADJUST_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('HINCRBY', KEYS[2], 'epoch', 1)
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return redis.call('INCRBY', KEYS[1], ARGV[1])
+            end
+            return false
+            """, Long.class);
+
+    /**
+     * KEYS[1] 库存 key，KEYS[2] 占用 key
+     * 没有未确认的预留时删除可售库存；否则保留（释放时还要加回）并标记 closed，期间不接受新的预留
+     */
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>("""
+            local reserved = tonumber(redis.call('HGET', KEYS[2], 'reserved') or '0')
+            if reserved > 0 then
+                redis.call('HSET', KEYS[2], 'closed', 1)
+                return 0
+            end
+            redis.call('DEL', KEYS[1])
+            return 1
+            """, Long.class);
+
+    @PostConstruct
+    public void init() {
+        sweepExecutor.scheduleWithFixedDelay(this::releaseExpired,
+                SWEEP_INTERVAL.toMillis(), SWEEP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweepExecutor.shutdownNow();
+    }
+
+    /**
+     * 一次性预留订单所有商品行，全部成功或全部失败
+     */
+    public void reserve(StockReservationDto reservation) {
+        // 同一商品的多行合并，保证脚本内每个库存 key 只出现一次
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        reservation.getItems().forEach(line -> lines.merge(line.getMagicBagId(), line.getQuantity(), Integer::sum));
+        List<Integer> bagIds = new ArrayList<>(lines.keySet());
+
+        List<String> keys = new ArrayList<>(bagIds.size() * 2 + 2);
+        bagIds.forEach(id -> keys.add(stockKey(id)));
+        bagIds.forEach(id -> keys.add(holdKey(id)));
+        keys.add(reservationKey(reservation.getReservationId()));
+        keys.add(deadlineKey());
+
+        List<String> args = new ArrayList<>(bagIds.size() * 2 + 2);
+        bagIds.forEach(id -> args.add(String.valueOf(lines.get(id))));
+        bagIds.forEach(id -> args.add(String.valueOf(id)));
+        args.add(reservation.getReservationId());
+        args.add(String.valueOf(Instant.now().plus(RESERVATION_HOLD).getEpochSecond()));
+
+        // 每次最多有一个库存 key 未加载，最多重试 n 次
+        for (int attempt = 0; attempt <= bagIds.size(); attempt++) {
+            Long code = redisTemplate.execute(RESERVE_SCRIPT, keys, args.toArray());
+            if (code == null) {
+                throw new BusinessException(ResultStatus.SERVICE_ERROR, "stock reservation failed");
+            }
+            if (code == 0) {
+                log.info("Stock reserved: reservationId={}, lines={}", reservation.getReservationId(), lines);
+                return;
+            }
+            Integer bagId = bagIds.get((int) Math.abs(code) - 1);
+            if (code > 0) {
+                log.info("Stock insufficient: reservationId={}, bagId={}", reservation.getReservationId(), bagId);
+                throw new BusinessException(ResultStatus.PRODUCT_OUT_OF_STOCK, "id: " + bagId);
+            }
+            loadStock(bagId);
+        }
+        throw new BusinessException(ResultStatus.SERVICE_ERROR, "stock reservation failed");
+    }
+
+    /**
+     * 订单支付后确认预留，把扣减写回数据库；重复调用无副作用
+     * 预留先标记为确认中（不再能被释放），扣减与确认记录在同一事务内写入：
+     * 任一商品数据库库存不足时整体回滚并抛出异常，预留恢复为未确认；提交后才从 Redis 删除预留。
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void confirm(String reservationId) {
+        Map<Integer, Integer> lines = claim(reservationId);
+        if (lines.isEmpty()) {
+            if (stockConfirmationMapper.exists(reservationId)) {
+                log.info("Reservation already confirmed: {}", reservationId);
+                return;
+            }
+            log.warn("Reservation not found when confirming: {}", reservationId);
+            throw new BusinessException(ResultStatus.RESULT_DATA_NONE, "reservation: " + reservationId);
+        }
+
+        boolean transactional = TransactionSynchronizationManager.isSynchronizationActive();
+        if (transactional) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        finishConfirm(reservationId, lines.keySet());
+                    } else {
+                        unclaim(reservationId);
+                    }
+                }
+            });
+        }
+        try {
+            deductConfirmed(reservationId, lines);
+        } catch (RuntimeException e) {
+            if (!transactional) {
+                unclaim(reservationId);
+            }
+            throw e;
+        }
+        if (!transactional) {
+            finishConfirm(reservationId, lines.keySet());
+        }
+        log.info("Reservation confirmed: {}", reservationId);
+    }
+
+    /**
+     * 取消订单或预留到期时释放，重复调用无副作用；确认中的预留不释放
+     */
+    public void release(String reservationId) {
+        releaseReservation(reservationId);
+    }
+
+    /**
+     * 订单取消时调用：释放未确认的预留；预留已确认（订单已支付，数量已从数据库扣减）时把确认的数量加回库存。
+     * 加回以确认记录的 restocked_at 为准只执行一次，重复调用无副作用；
+     * 预留正在确认时抛出异常，由调用方（Kafka 重新投递）在确认完成后重试
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void cancel(String reservationId) {
+        long released = releaseReservation(reservationId);
+        if (released < 0) {
+            throw new IllegalStateException("Reservation " + reservationId + " is being confirmed, retry cancel later");
+        }
+        if (released == 0) {
+            restockConfirmed(reservationId);
+        }
+    }
+
+    /**
+     * @return 释放的行数；0 表示没有未确认的预留；-1 表示正在确认
+     */
+    private long releaseReservation(String reservationId) {
+        List<Integer> bagIds = reservedBagIds(reservationId);
+
+        List<String> keys = new ArrayList<>(bagIds.size() * 2 + 2);
+        keys.add(reservationKey(reservationId));
+        keys.add(deadlineKey());
+        bagIds.forEach(id -> keys.add(stockKey(id)));
+        bagIds.forEach(id -> keys.add(holdKey(id)));
+
+        List<String> args = new ArrayList<>(bagIds.size() + 2);
+        args.add(reservationId);
+        args.add(String.valueOf(Instant.now().plus(RESERVATION_HOLD).getEpochSecond()));
+        bagIds.forEach(id -> args.add(String.valueOf(id)));
+
+        Long released = redisTemplate.execute(RELEASE_SCRIPT, keys, args.toArray());
+        if (released != null && released < 0) {
+            log.warn("Reservation is being confirmed, not released: {}", reservationId);
+        } else {
+            log.info("Reservation released: reservationId={}, lines={}", reservationId, released);
+        }
+        return released == null ? 0 : released;
+    }
+
+    /**
+     * 把已确认预留的数量加回数据库库存，并在提交后同步到可售库存
+     */
+    private void restockConfirmed(String reservationId) {
+        if (stockConfirmationMapper.markRestocked(reservationId) == 0) {
+            return;
+        }
+        List<StockLine> lines = stockConfirmationMapper.findItems(reservationId);
+        if (lines.isEmpty()) {
+            log.warn("Confirmed reservation {} has no recorded lines, stock not restored", reservationId);
+            return;
+        }
+        for (StockLine line : lines) {
+            magicBagMapper.restoreQuantity(line.getMagicBagId(), line.getQuantity());
+            magicBagCache.invalidate(line.getMagicBagId());
+            adjustStock(line.getMagicBagId(), line.getQuantity());
+        }
+        log.info("Confirmed reservation cancelled, stock restored: reservationId={}, lines={}", reservationId, lines.size());
+    }
+
+    /**
+     * 查询当前可售库存
+     */
+    public Integer getAvailableStock(Integer bagId) {
+        String stock = redisTemplate.opsForValue().get(stockKey(bagId));
+        long available = stock == null ? loadStock(bagId) : Long.parseLong(stock);
+        return (int) Math.max(0, available);
+    }
+
+    /**
+     * 批量查询已加载到 Redis 的可售库存，一次 MGET；未加载的不在结果中，不触发回源
+     */
+    public Map<Integer, Integer> getLoadedStocks(Collection<Integer> bagIds) {
+        List<Integer> ids = bagIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        List<String> values = redisTemplate.opsForValue().multiGet(ids.stream().map(this::stockKey).toList());
+        Map<Integer, Integer> stocks = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String value = values == null ? null : values.get(i);
+            if (value != null) {
+                stocks.put(ids.get(i), Math.max(0, Integer.parseInt(value)));
+            }
+        }
+        return stocks;
+    }
+
+    /**
+     * 商家修改库存时按差值调整可售库存，保留未确认的预留；有事务时在提交后执行
+     */
+    public void adjustStock(Integer bagId, int delta) {
+        if (delta != 0) {
+            afterCommit(() -> redisTemplate.execute(ADJUST_SCRIPT,
+                    List.of(stockKey(bagId), holdKey(bagId)), String.valueOf(delta)));
+        }
+    }
+
+    /**
+     * 商品下架时停止预留；有事务时在提交后执行
+     * 没有未确认的预留时清除可售库存，之后的预留会因商品已下架而失败；
+     * 否则保留可售库存供释放时加回，重新上架时不必从数据库重建
+     */
+    public void evictStock(Integer bagId) {
+        afterCommit(() -> redisTemplate.execute(EVICT_SCRIPT, List.of(stockKey(bagId), holdKey(bagId))));
+    }
+
+    /**
+     * 释放已过期限的预留：订单服务没有按时取消（如下单中途失败、没有订单）的预留不会永久占用库存
+     */
+    void releaseExpired() {
+        try {
+            Set<String> expired = redisTemplate.opsForZSet().rangeByScore(deadlineKey(),
+                    0, Instant.now().getEpochSecond(), 0, SWEEP_BATCH_SIZE);
+            if (expired == null) {
+                return;
+            }
+            for (String reservationId : expired) {
+                log.info("Reservation expired, releasing: {}", reservationId);
+                release(reservationId);
+            }
+        } catch (Exception e) {
+            log.error("Failed to release expired reservations: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 从数据库加载可售库存 = 数据库库存 - 未确认的预留，已加载时返回当前值
+     */
+    private long loadStock(Integer bagId) {
+        for (int attempt = 0; attempt < LOAD_ATTEMPTS; attempt++) {
+            Object epoch = redisTemplate.opsForHash().get(holdKey(bagId), FIELD_EPOCH);
+            MagicBag magicBag = magicBagMapper.selectById(bagId);
+            if (magicBag == null || !magicBag.isActive()) {
+                throw new BusinessException(ResultStatus.PRODUCT_NOT_FOUND, "id: " + bagId);
+            }
+            int quantity = magicBag.getQuantity() == null ? 0 : magicBag.getQuantity();
+            // 并发加载时只有第一个生效，避免覆盖已经被预留扣减过的值
+            Long stock = redisTemplate.execute(LOAD_SCRIPT, List.of(stockKey(bagId), holdKey(bagId)),
+                    String.valueOf(quantity), epoch == null ? "0" : epoch.toString());
+            if (stock != null) {
+                log.debug("Stock loaded into redis: bagId={}, quantity={}, available={}", bagId, quantity, stock);
+                return stock;
+            }
+            log.debug("Stock of bag {} changed while loading, retrying", bagId);
+        }
+        throw new BusinessException(ResultStatus.SERVICE_ERROR, "stock of bag " + bagId + " is changing, try again");
+    }
+
+    /**
+     * @return 盲盒ID -> 数量，预留不存在或已在确认时为空
+     */
+    private Map<Integer, Integer> claim(String reservationId) {
+        List<?> fields = redisTemplate.execute(CLAIM_SCRIPT, List.of(reservationKey(reservationId)));
+        Map<Integer, Integer> lines = new LinkedHashMap<>();
+        if (fields == null) {
+            return lines;
+        }
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            String field = fields.get(i).toString();
+            if (!field.startsWith("_")) {
+                lines.put(Integer.valueOf(field), Integer.valueOf(fields.get(i + 1).toString()));
+            }
+        }
+        return lines;
+    }
+
+    private void unclaim(String reservationId) {
+        redisTemplate.execute(UNCLAIM_SCRIPT, List.of(reservationKey(reservationId)));
+    }
+
+    /**
+     * 写入确认记录并扣减数据库库存；确认记录已存在说明之前已扣减（确认重试），只需完成 Redis 清理
+     */
+    private void deductConfirmed(String reservationId, Map<Integer, Integer> lines) {
+        if (stockConfirmationMapper.insertIgnore(reservationId) == 0) {
+            log.info("Reservation {} already deducted in database", reservationId);
+            return;
+        }
+        stockConfirmationMapper.insertItems(reservationId, lines);
+        lines.forEach((bagId, quantity) -> {
+            if (magicBagMapper.deductQuantity(bagId, quantity) == 0) {
+                log.error("Database stock lower than confirmed reservation: reservationId={}, bagId={}, quantity={}",
+                        reservationId, bagId, quantity);
+                throw new BusinessException(ResultStatus.PRODUCT_OUT_OF_STOCK, "id: " + bagId);
+            }
+            // 详情缓存里的 quantity 是数据库库存，写回后失效
+            magicBagCache.invalidate(bagId);
+        });
+    }
+
+    private void finishConfirm(String reservationId, Collection<Integer> bagIds) {
+        List<String> keys = new ArrayList<>(bagIds.size() + 2);
+        keys.add(reservationKey(reservationId));
+        keys.add(deadlineKey());
+        bagIds.forEach(id -> keys.add(holdKey(id)));
+
+        List<String> args = new ArrayList<>(bagIds.size() + 1);
+        args.add(reservationId);
+        bagIds.forEach(id -> args.add(String.valueOf(id)));
+        redisTemplate.execute(FINISH_CONFIRM_SCRIPT, keys, args.toArray());
+    }
+
+    /**
+     * 预留涉及的盲盒，供脚本声明 key；预留记录写入后不再变化
+     */
+    private List<Integer> reservedBagIds(String reservationId) {
+        return redisTemplate.opsForHash().keys(reservationKey(reservationId)).stream()
+                .map(Object::toString)
+                .filter(field -> !field.startsWith("_"))
+                .map(Integer::valueOf)
+                .toList();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private String stockKey(Integer bagId) {
+        return RedisPrefix.PRODUCT_STOCK.getCode() + bagId;
+    }
+
+    private String holdKey(Integer bagId) {
+        return RedisPrefix.PRODUCT_STOCK_HOLD.getCode() + bagId;
+    }
+
+    private String reservationKey(String reservationId) {
+        return RedisPrefix.STOCK_RESERVATION.getCode() + reservationId;
+    }
+
+    private String deadlineKey() {
+        return RedisPrefix.STOCK_RESERVATION_DEADLINE.getCode();
+    }
+}
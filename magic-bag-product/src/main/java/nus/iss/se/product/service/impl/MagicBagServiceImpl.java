@@ -1,9 +1,12 @@
 package nus.iss.se.product.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.RequiredArgsConstructor;
+import nus.iss.se.product.cache.MagicBagCache;
+import nus.iss.se.product.cache.MerchantBagIndex;
 import nus.iss.se.product.dto.MagicBagCreateDto;
 import nus.iss.se.product.dto.MagicBagDto;
 import nus.iss.se.product.dto.MagicBagListResponse;
@@ -11,6 +14,7 @@ import nus.iss.se.product.dto.MagicBagUpdateDto;
 import nus.iss.se.product.entity.MagicBag;
 import nus.iss.se.product.mapper.MagicBagMapper;
 import nus.iss.se.product.service.IMagicBagService;
+import nus.iss.se.product.service.StockReservationService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,10 +22,14 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class MagicBagServiceImpl extends ServiceImpl<MagicBagMapper, MagicBag> implements IMagicBagService {
+    private final StockReservationService stockReservationService;
+    private final MagicBagCache magicBagCache;
+    private final MerchantBagIndex merchantBagIndex;
 
     @Override
     public MagicBagListResponse getAllMagicBags(Integer page, Integer size) {
@@ -47,13 +55,12 @@ public class MagicBagServiceImpl extends ServiceImpl<MagicBagMapper, MagicBag> i
 
     @Override
     public MagicBagDto getMagicBagById(Integer id) {
-        QueryWrapper<MagicBag> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("id", id).eq("is_active", true);
-        MagicBag magicBag = baseMapper.selectOne(queryWrapper);
-        if (magicBag == null) {
+        // 缓存中也保存已下架的盲盒（批量接口需要），这里按原逻辑只返回上架的
+        MagicBagDto dto = magicBagCache.get(id, key -> convertToDto(baseMapper.selectById(key)));
+        if (dto == null || !Boolean.TRUE.equals(dto.getIsActive())) {
             return null;
         }
-        return convertToDto(magicBag);
+        return dto;
     }
 
     @Override
@@ -79,7 +86,11 @@ public class MagicBagServiceImpl extends ServiceImpl<MagicBagMapper, MagicBag> i
         magicBag.setUpdatedAt(LocalDateTime.now());
 
         save(magicBag);
-        return convertToDto(magicBag);
+        // 新建时缓存中没有数据，广播是为了让各实例把它加入搜索索引
+        magicBagCache.invalidate(magicBag.getId());
+        MagicBagDto dto = convertToDto(magicBag);
+        merchantBagIndex.update(dto);
+        return dto;
     }
 
     @Override
@@ -90,6 +101,11 @@ public class MagicBagServiceImpl extends ServiceImpl<MagicBagMapper, MagicBag> i
             throw new RuntimeException("盲盒不存在");
         }
 
+        int stockDelta = 0;
+        if (updateDto.getQuantity() != null && existingMagicBag.getQuantity() != null) {
+            stockDelta = updateDto.getQuantity() - existingMagicBag.getQuantity();
+        }
+
         if (updateDto.getTitle() != null) existingMagicBag.setTitle(updateDto.getTitle());
         if (updateDto.getDescription() != null) existingMagicBag.setDescription(updateDto.getDescription());
         if (updateDto.getPrice() != null) existingMagicBag.setPrice(updateDto.getPrice());
@@ -104,7 +120,16 @@ public class MagicBagServiceImpl extends ServiceImpl<MagicBagMapper, MagicBag> i
         existingMagicBag.setUpdatedAt(LocalDateTime.now());
         baseMapper.updateById(existingMagicBag);
 
-        return convertToDto(existingMagicBag);
+        // 同步可售库存（提交后执行）：改库存按差值调整，下架停止预留；未确认的预留保留到确认或释放
+        stockReservationService.adjustStock(id, stockDelta);
+        if (!existingMagicBag.isActive()) {
+            stockReservationService.evictStock(id);
+        }
+        magicBagCache.invalidate(id);
+
+        MagicBagDto dto = convertToDto(existingMagicBag);
+        merchantBagIndex.update(dto);
+        return dto;
     }
 
     @Override
@@ -117,7 +142,13 @@ public class MagicBagServiceImpl extends ServiceImpl<MagicBagMapper, MagicBag> i
         magicBag.setActive(false);
         magicBag.setUpdatedAt(LocalDateTime.now());
 
-        return baseMapper.updateById(magicBag) > 0;
+        boolean deleted = baseMapper.updateById(magicBag) > 0;
+        if (deleted) {
+            stockReservationService.evictStock(id);
+            magicBagCache.invalidate(id);
+            merchantBagIndex.update(convertToDto(magicBag));
+        }
+        return deleted;
     }
 
     private MagicBagDto convertToDto(MagicBag magicBag) {
@@ -125,6 +156,8 @@ public class MagicBagServiceImpl extends ServiceImpl<MagicBagMapper, MagicBag> i
 
         MagicBagDto dto = new MagicBagDto();
         BeanUtils.copyProperties(magicBag, dto);
+        // 实体是 boolean isActive（属性名 active），copyProperties 对不上 DTO 的 isActive
+        dto.setIsActive(magicBag.isActive());
 
         dto.setPrice(BigDecimal.valueOf(magicBag.getPrice()));
         return dto;
@@ -134,10 +167,27 @@ public class MagicBagServiceImpl extends ServiceImpl<MagicBagMapper, MagicBag> i
     public List<MagicBagDto> getBatchMagicBags(List<Integer> ids) {
         if (ids == null || ids.isEmpty()) return List.of();
 
-        List<MagicBag> bags = baseMapper.selectBatchIds(ids);
+        return magicBagCache.getAll(ids, misses -> baseMapper.selectBatchIds(misses).stream()
+                .map(this::convertToDto)
+                .toList());
+    }
 
-        return bags.stream()
+    @Override
+    public Map<Integer, List<MagicBagDto>> getActiveBagsByMerchantIds(List<Integer> merchantIds) {
+        if (merchantIds == null || merchantIds.isEmpty()) return Map.of();
+
+        return merchantBagIndex.getAll(merchantIds, misses -> baseMapper.findByMerchantIds(misses).stream()
                 .map(this::convertToDto)
-                .toList();
+                .toList());
+    }
+
+    @Override
+    public void updateImageUrl(Integer id, String imageUrl) {
+        LambdaUpdateWrapper<MagicBag> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.eq(MagicBag::getId, id).set(MagicBag::getImageUrl, imageUrl);
+        if (update(wrapper)) {
+            magicBagCache.invalidate(id);
+            merchantBagIndex.update(convertToDto(baseMapper.selectById(id)));
+        }
     }
 }
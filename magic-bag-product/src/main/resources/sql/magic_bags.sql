@@ -17,7 +17,8 @@ CREATE TABLE `magic_bags` (
     PRIMARY KEY (`id`),
     UNIQUE KEY `uk_merchant_date_title` (`merchant_id`,`available_date`,`title`),
     KEY `magic_bags_merchant_id_IDX` (`merchant_id`,`available_date`) USING BTREE,
-    KEY `magic_bags_available_date_IDX` (`available_date`,`is_active`) USING BTREE
+    KEY `magic_bags_available_date_IDX` (`available_date`,`is_active`) USING BTREE,
+    KEY `magic_bags_updated_at_IDX` (`updated_at`,`id`) USING BTREE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='魔法袋表（临期食物盲盒）';
 
 
@@ -0,0 +1,3 @@
+-- 搜索索引按 updated_at 增量对账，按 (updated_at, id) 分批扫描
+ALTER TABLE `magic_bags`
+    ADD KEY `magic_bags_updated_at_IDX` (`updated_at`,`id`) USING BTREE;
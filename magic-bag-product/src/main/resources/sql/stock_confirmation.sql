@@ -0,0 +1,16 @@
+-- 库存预留确认记录
+-- 与 magic_bags 扣减在同一事务内写入，确认重试（如事件重复投递）时据此判断数据库是否已经扣减
+CREATE TABLE `stock_confirmations` (
+    `reservation_id` varchar(64) NOT NULL COMMENT '预留ID（订单号）',
+    `created_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '确认时间',
+    `restocked_at` datetime DEFAULT NULL COMMENT '订单取消后加回库存的时间，非空表示已加回',
+    PRIMARY KEY (`reservation_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='库存预留确认记录';
+
+-- 确认时扣减的商品行，已支付订单取消时据此加回库存
+CREATE TABLE `stock_confirmation_items` (
+    `reservation_id` varchar(64) NOT NULL COMMENT '预留ID（订单号）',
+    `magic_bag_id` bigint NOT NULL COMMENT '盲盒ID',
+    `quantity` int NOT NULL COMMENT '扣减数量',
+    PRIMARY KEY (`reservation_id`, `magic_bag_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci COMMENT='库存预留确认明细';
@@ -0,0 +1,150 @@
+package nus.iss.se.product.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import nus.iss.se.common.constant.RedisChannel;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.product.dto.MagicBagDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MagicBagCacheTest {
+
+    private RedisUtil redisUtil;
+    private RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private MagicBagCache magicBagCache;
+
+    @BeforeEach
+    void setup() {
+        redisUtil = mock(RedisUtil.class);
+        listenerContainer = mock(RedisMessageListenerContainer.class);
+        magicBagCache = new MagicBagCache(redisUtil, objectMapper, listenerContainer);
+        magicBagCache.init();
+    }
+
+    @Test
+    void testGet_LocalHitSkipsRedisAndLoader() {
+        when(redisUtil.getJson("product:info:1", MagicBagDto.class)).thenReturn(null);
+        Function<Integer, MagicBagDto> loader = mockLoader();
+        when(loader.apply(1)).thenReturn(bag(1));
+
+        assertEquals("bag-1", magicBagCache.get(1, loader).getTitle());
+        assertEquals("bag-1", magicBagCache.get(1, loader).getTitle());
+
+        verify(redisUtil, times(1)).getJson("product:info:1", MagicBagDto.class);
+        verify(loader, times(1)).apply(1);
+        verify(redisUtil).setJson(eq("product:info:1"), any(MagicBagDto.class), anyLong(), eq(TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testGet_RedisHitSkipsLoader() {
+        when(redisUtil.getJson("product:info:1", MagicBagDto.class)).thenReturn(bag(1));
+        Function<Integer, MagicBagDto> loader = mockLoader();
+
+        assertEquals("bag-1", magicBagCache.get(1, loader).getTitle());
+        verifyNoInteractions(loader);
+    }
+
+    @Test
+    void testGetAll_OnlyMissesReachNextTier() throws Exception {
+        // 1 在 L1，2 在 L2，3 需要回源，4 不存在
+        when(redisUtil.getJson("product:info:1", MagicBagDto.class)).thenReturn(bag(1));
+        magicBagCache.get(1, id -> null);
+        when(redisUtil.multiGet(List.of("product:info:3", "product:info:2", "product:info:4")))
+                .thenReturn(Arrays.asList(null, objectMapper.writeValueAsString(bag(2)), null));
+        List<List<Integer>> loaded = new ArrayList<>();
+
+        List<MagicBagDto> result = magicBagCache.getAll(List.of(3, 1, 2, 4, 3), ids -> {
+            loaded.add(ids);
+            return List.of(bag(3));
+        });
+
+        assertEquals(List.of(3, 1, 2), result.stream().map(MagicBagDto::getId).toList());
+        assertEquals(List.of(List.of(3, 4)), loaded);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> written = ArgumentCaptor.forClass(Map.class);
+        verify(redisUtil).multiSet(written.capture(), anyLong(), eq(TimeUnit.SECONDS));
+        assertEquals(List.of("product:info:3"), List.copyOf(written.getValue().keySet()));
+
+        // 全部进入 L1 后不再访问 Redis
+        magicBagCache.getAll(List.of(1, 2, 3), ids -> List.of());
+        verify(redisUtil, times(1)).multiGet(anyCollection());
+    }
+
+    @Test
+    void testInvalidate_InTransactionRunsAfterCommit() {
+        when(redisUtil.getJson("product:info:1", MagicBagDto.class)).thenReturn(bag(1));
+        magicBagCache.get(1, id -> null);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            magicBagCache.invalidate(1);
+            verify(redisUtil, never()).delete(anyString());
+            verify(redisUtil, never()).publish(anyString(), anyString());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(redisUtil).delete("product:info:1");
+        verify(redisUtil).publish(RedisChannel.PRODUCT_CACHE_INVALIDATED.getCode(), "1");
+        magicBagCache.get(1, id -> null);
+        verify(redisUtil, times(2)).getJson("product:info:1", MagicBagDto.class);
+    }
+
+    @Test
+    void testBroadcast_EvictsLocalOnly() {
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listener.capture(), any(Topic.class));
+        when(redisUtil.getJson("product:info:1", MagicBagDto.class)).thenReturn(bag(1));
+        magicBagCache.get(1, id -> null);
+
+        listener.getValue().onMessage(message("1"), null);
+        listener.getValue().onMessage(message("not-an-id"), null);
+
+        magicBagCache.get(1, id -> null);
+        verify(redisUtil, times(2)).getJson("product:info:1", MagicBagDto.class);
+        verify(redisUtil, never()).delete(anyString());
+        verify(redisUtil, never()).publish(anyString(), anyString());
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(RedisChannel.PRODUCT_CACHE_INVALIDATED.getCode().getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Integer, MagicBagDto> mockLoader() {
+        return mock(Function.class);
+    }
+
+    private static MagicBagDto bag(int id) {
+        MagicBagDto dto = new MagicBagDto();
+        dto.setId(id);
+        dto.setTitle("bag-" + id);
+        dto.setPrice(BigDecimal.TEN);
+        return dto;
+    }
+}
@@ -0,0 +1,121 @@
+package nus.iss.se.product.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.product.dto.MagicBagDto;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 商家盲盒索引在真实 Redis 上的加载与更新交错测试，没有 Docker 时跳过
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class MerchantBagIndexTest {
+
+    private static final int MERCHANT_ID = 7;
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private MerchantBagIndex merchantBagIndex;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setup() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        merchantBagIndex = new MerchantBagIndex(new RedisUtil(redisTemplate, objectMapper), objectMapper);
+    }
+
+    @Test
+    void testGetAll_LoadsOnceThenServesFromRedis() {
+        List<List<Integer>> loaded = new ArrayList<>();
+
+        merchantBagIndex.getAll(List.of(MERCHANT_ID), ids -> {
+            loaded.add(ids);
+            return List.of(bag(1, "v1", true));
+        });
+        List<MagicBagDto> bags = merchantBagIndex.getAll(List.of(MERCHANT_ID), ids -> {
+            loaded.add(ids);
+            return List.of();
+        }).get(MERCHANT_ID);
+
+        assertEquals(List.of(List.of(MERCHANT_ID)), loaded);
+        assertEquals(List.of("v1"), bags.stream().map(MagicBagDto::getTitle).toList());
+    }
+
+    @Test
+    void testGetAll_UpdateDuringLoadDiscardsStaleSnapshot() {
+        // 查库拿到旧数据之后、写入 Redis 之前，盲盒被修改并提交
+        merchantBagIndex.getAll(List.of(MERCHANT_ID), ids -> {
+            merchantBagIndex.update(bag(1, "v2", true));
+            return List.of(bag(1, "v1", true));
+        });
+
+        assertFalse(redisTemplate.hasKey(indexKey()));
+        List<MagicBagDto> bags = merchantBagIndex.getAll(List.of(MERCHANT_ID), ids -> List.of(bag(1, "v2", true)))
+                .get(MERCHANT_ID);
+        assertEquals(List.of("v2"), bags.stream().map(MagicBagDto::getTitle).toList());
+        assertTrue(redisTemplate.hasKey(indexKey()));
+    }
+
+    @Test
+    void testUpdate_AppliesToLoadedIndexOnly() {
+        merchantBagIndex.update(bag(1, "v1", true));
+        assertFalse(redisTemplate.hasKey(indexKey()));
+
+        merchantBagIndex.getAll(List.of(MERCHANT_ID), ids -> List.of(bag(1, "v1", true)));
+        merchantBagIndex.update(bag(2, "v1", true));
+        merchantBagIndex.update(bag(1, "v1", false));
+
+        List<MagicBagDto> bags = merchantBagIndex.getAll(List.of(MERCHANT_ID), ids -> List.of()).get(MERCHANT_ID);
+        assertEquals(List.of(2), bags.stream().map(MagicBagDto::getId).toList());
+    }
+
+    private static String indexKey() {
+        return RedisPrefix.PRODUCT_MERCHANT_BAGS.getCode() + MERCHANT_ID;
+    }
+
+    private static MagicBagDto bag(int id, String title, boolean active) {
+        MagicBagDto dto = new MagicBagDto();
+        dto.setId(id);
+        dto.setMerchantId(MERCHANT_ID);
+        dto.setTitle(title);
+        dto.setIsActive(active);
+        return dto;
+    }
+}
@@ -0,0 +1,130 @@
+package nus.iss.se.product.search;
+
+import nus.iss.se.product.entity.MagicBag;
+import nus.iss.se.product.search.MagicBagSearchIndex.Criteria;
+import nus.iss.se.product.search.MagicBagSearchIndex.SearchResult;
+import nus.iss.se.product.search.MagicBagSearchIndex.SortBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MagicBagSearchIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    private MagicBagSearchIndex searchIndex;
+
+    @BeforeEach
+    void setup() {
+        searchIndex = new MagicBagSearchIndex();
+        searchIndex.indexAll(List.of(
+                bag(1, 10, "Bakery surprise bag", "Bread and croissants", "bakery", 4.5f, TODAY),
+                bag(2, 10, "Pastry box", "Assorted bread rolls", "bakery", 8.0f, TODAY.plusDays(1)),
+                bag(3, 20, "Sushi set", "Fresh salmon rolls", "meal", 12.0f, TODAY),
+                bag(4, 30, "Grocery bag", "Fruit and vegetables", "grocery", 25.0f, TODAY)));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        searchIndex.close();
+    }
+
+    @Test
+    void testSearch_KeywordMatchesTitleAndDescription() {
+        SearchResult result = searchIndex.search(criteria("bread", null, null, null, null), SortBy.RELEVANCE, 0, 10);
+
+        assertEquals(2, result.total());
+        assertEquals(List.of(1, 2), result.ids().stream().sorted().toList());
+    }
+
+    @Test
+    void testSearch_SpecialCharactersDoNotFail() {
+        SearchResult result = searchIndex.search(criteria("sushi)(\"", null, null, null, null), SortBy.RELEVANCE, 0, 10);
+
+        assertEquals(List.of(3), result.ids());
+    }
+
+    @Test
+    void testSearch_FiltersAndFacets() {
+        SearchResult result = searchIndex.search(criteria(null, null, 5.0, 30.0, TODAY), SortBy.PRICE_ASC, 0, 10);
+
+        assertEquals(List.of(3, 4), result.ids());
+        assertEquals(Map.of("meal", 1L, "grocery", 1L), result.facets().get(MagicBagSearchIndex.DIM_CATEGORY));
+        assertEquals(2L, result.facets().get(MagicBagSearchIndex.DIM_DATE).get(TODAY.toString()));
+        Map<String, Long> price = result.facets().get(MagicBagSearchIndex.DIM_PRICE);
+        assertEquals(List.of("0-5", "5-10", "10-20", "20+"), List.copyOf(price.keySet()));
+        assertEquals(1L, price.get("10-20"));
+        assertEquals(1L, price.get("20+"));
+        assertEquals(0L, price.get("0-5"));
+    }
+
+    @Test
+    void testSearch_CategoryFacetCountsAllMatches() {
+        SearchResult result = searchIndex.search(criteria(null, null, null, null, null), SortBy.PRICE_DESC, 0, 2);
+
+        assertEquals(4, result.total());
+        assertEquals(List.of(4, 3), result.ids());
+        assertEquals(2L, result.facets().get(MagicBagSearchIndex.DIM_CATEGORY).get("bakery"));
+        assertEquals(2L, result.facets().get(MagicBagSearchIndex.DIM_MERCHANT).get("10"));
+    }
+
+    @Test
+    void testSearch_Paging() {
+        SearchResult result = searchIndex.search(criteria(null, null, null, null, null), SortBy.PRICE_ASC, 2, 2);
+
+        assertEquals(4, result.total());
+        assertEquals(List.of(3, 4), result.ids());
+    }
+
+    @Test
+    void testIndex_UpdateAndDeactivate() {
+        searchIndex.index(bag(3, 20, "Ramen bowl", "Noodles", "meal", 9.0f, TODAY));
+        assertTrue(searchIndex.search(criteria("sushi", null, null, null, null), SortBy.RELEVANCE, 0, 10).ids().isEmpty());
+        assertEquals(List.of(3), searchIndex.search(criteria("ramen", null, null, null, null), SortBy.RELEVANCE, 0, 10).ids());
+
+        MagicBag inactive = bag(3, 20, "Ramen bowl", "Noodles", "meal", 9.0f, TODAY);
+        inactive.setActive(false);
+        searchIndex.index(inactive);
+        assertEquals(3, searchIndex.size());
+
+        searchIndex.delete(4);
+        assertEquals(2, searchIndex.size());
+    }
+
+    @Test
+    void testSearch_EmptyIndex() throws Exception {
+        searchIndex.close();
+        searchIndex = new MagicBagSearchIndex();
+
+        SearchResult result = searchIndex.search(criteria("bread", null, null, null, null), SortBy.RELEVANCE, 0, 10);
+
+        assertEquals(0, result.total());
+        assertTrue(result.ids().isEmpty());
+    }
+
+    private static Criteria criteria(String keyword, String category, Double minPrice, Double maxPrice, LocalDate date) {
+        return new Criteria(keyword, category, null, minPrice, maxPrice, date);
+    }
+
+    private static MagicBag bag(int id, int merchantId, String title, String description, String category,
+                                float price, LocalDate date) {
+        MagicBag bag = new MagicBag();
+        bag.setId(id);
+        bag.setMerchantId(merchantId);
+        bag.setTitle(title);
+        bag.setDescription(description);
+        bag.setCategory(category);
+        bag.setPrice(price);
+        bag.setAvailableDate(Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        bag.setActive(true);
+        return bag;
+    }
+}
@@ -0,0 +1,100 @@
+package nus.iss.se.product.service;
+
+import nus.iss.se.product.entity.MagicBag;
+import nus.iss.se.product.mapper.MagicBagMapper;
+import nus.iss.se.product.search.MagicBagSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MagicBagSearchServiceTest {
+
+    @InjectMocks
+    private MagicBagSearchService magicBagSearchService;
+
+    @Mock
+    private MagicBagSearchIndex searchIndex;
+
+    @Mock
+    private MagicBagMapper magicBagMapper;
+
+    @Mock
+    private IMagicBagService magicBagService;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        magicBagSearchService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        magicBagSearchService.shutdown();
+    }
+
+    /** -------------------------
+     *  Test: reconcile —— 按 (updated_at, id) 翻页，下一轮从新水位减去重叠窗口开始
+     *  ------------------------- */
+    @Test
+    void testReconcile_PagesAndAdvancesWatermark() {
+        LocalDateTime updatedAt = LocalDateTime.now().plusMinutes(1);
+        List<MagicBag> firstPage = IntStream.rangeClosed(1, 1000).mapToObj(id -> bag(id, updatedAt)).toList();
+        MagicBag tail = bag(1001, updatedAt);
+        when(magicBagMapper.findUpdatedAfter(any(), eq(0), anyInt())).thenReturn(firstPage);
+        when(magicBagMapper.findUpdatedAfter(updatedAt, 1000, 1000)).thenReturn(List.of(tail));
+
+        magicBagSearchService.reconcile();
+
+        verify(searchIndex).indexAll(firstPage);
+        verify(searchIndex).indexAll(List.of(tail));
+
+        magicBagSearchService.reconcile();
+
+        ArgumentCaptor<LocalDateTime> afterTime = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(magicBagMapper, times(2)).findUpdatedAfter(afterTime.capture(), eq(0), anyInt());
+        assertTrue(afterTime.getAllValues().get(0).isBefore(LocalDateTime.now()));
+        assertEquals(updatedAt.minusMinutes(5), afterTime.getAllValues().get(1));
+    }
+
+    /** -------------------------
+     *  Test: reconcile —— 查库失败时保留水位，下一轮重试同一窗口
+     *  ------------------------- */
+    @Test
+    void testReconcile_FailureKeepsWatermark() {
+        when(magicBagMapper.findUpdatedAfter(any(), eq(0), anyInt()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(List.of());
+
+        assertDoesNotThrow(() -> magicBagSearchService.reconcile());
+        magicBagSearchService.reconcile();
+
+        ArgumentCaptor<LocalDateTime> afterTime = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(magicBagMapper, times(2)).findUpdatedAfter(afterTime.capture(), eq(0), anyInt());
+        assertEquals(afterTime.getAllValues().get(0), afterTime.getAllValues().get(1));
+        verify(searchIndex, never()).indexAll(anyCollection());
+    }
+
+    private static MagicBag bag(int id, LocalDateTime updatedAt) {
+        MagicBag bag = new MagicBag();
+        bag.setId(id);
+        bag.setActive(true);
+        bag.setUpdatedAt(updatedAt);
+        return bag;
+    }
+}
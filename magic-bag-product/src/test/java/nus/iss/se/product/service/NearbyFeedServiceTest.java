@@ -0,0 +1,168 @@
+package nus.iss.se.product.service;
+
+import nus.iss.se.common.Result;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.common.util.RedisUtil;
+import nus.iss.se.product.api.MerchantClient;
+import nus.iss.se.product.dto.MagicBagDto;
+import nus.iss.se.product.dto.MerchantLocationDto;
+import nus.iss.se.product.dto.NearbyBagDto;
+import nus.iss.se.product.dto.NearbyBagListResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NearbyFeedServiceTest {
+
+    @InjectMocks
+    private NearbyFeedService nearbyFeedService;
+
+    @Mock
+    private MerchantClient merchantClient;
+
+    @Mock
+    private IMagicBagService magicBagService;
+
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Mock
+    private RedisUtil redisUtil;
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 18, 0);
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testRank_FiltersUnavailableBags() {
+        MerchantLocationDto merchant = merchant("1", "Shop", 0.5);
+        MagicBagDto open = bag(1, 1, LocalTime.of(17, 0), LocalTime.of(20, 0), NOW.toLocalDate(), 5);
+        MagicBagDto ended = bag(2, 1, LocalTime.of(12, 0), LocalTime.of(14, 0), NOW.toLocalDate(), 5);
+        MagicBagDto tomorrow = bag(3, 1, LocalTime.of(17, 0), LocalTime.of(20, 0), NOW.toLocalDate().plusDays(1), 5);
+        MagicBagDto soldOut = bag(4, 1, LocalTime.of(17, 0), LocalTime.of(20, 0), NOW.toLocalDate(), 5);
+        MagicBagDto overnight = bag(5, 1, LocalTime.of(22, 0), LocalTime.of(2, 0), null, 5);
+
+        List<NearbyBagDto> feed = NearbyFeedService.rank(List.of(merchant),
+                Map.of(1, List.of(open, ended, tomorrow, soldOut, overnight)), Map.of(4, 0), 1, NOW);
+
+        assertEquals(List.of(1, 5), feed.stream().map(dto -> dto.getMagicBag().getId()).toList());
+        assertEquals(0, feed.get(0).getMinutesUntilPickup());
+        assertEquals(240, feed.get(1).getMinutesUntilPickup());
+        assertEquals("Shop", feed.get(0).getMerchantName());
+    }
+
+    @Test
+    void testRank_ByDistanceAndPickupCloseness() {
+        MerchantLocationDto near = merchant("1", "Near", 0.2);
+        MerchantLocationDto far = merchant("2", "Far", 0.9);
+        // 近但两小时后才能取货：0.2 + 1.0；远但现在就能取：0.9 + 0
+        MagicBagDto nearLater = bag(1, 1, LocalTime.of(20, 0), LocalTime.of(21, 0), null, 5);
+        MagicBagDto farNow = bag(2, 2, LocalTime.of(17, 0), LocalTime.of(19, 0), null, 5);
+        MagicBagDto nearNow = bag(3, 1, null, null, null, 5);
+
+        List<NearbyBagDto> feed = NearbyFeedService.rank(List.of(near, far),
+                Map.of(1, List.of(nearLater, nearNow), 2, List.of(farNow)), Map.of(), 1, NOW);
+
+        assertEquals(List.of(3, 2, 1), feed.stream().map(dto -> dto.getMagicBag().getId()).toList());
+    }
+
+    @Test
+    void testRank_PrefersLiveStock() {
+        MagicBagDto bag = bag(1, 1, null, null, null, 0);
+
+        List<NearbyBagDto> feed = NearbyFeedService.rank(List.of(merchant("1", "Shop", 0.1)),
+                Map.of(1, List.of(bag)), Map.of(1, 3), 1, NOW);
+
+        assertEquals(1, feed.size());
+        assertEquals(3, feed.get(0).getAvailableStock());
+    }
+
+    @Test
+    void testGetNearbyBags_BuildsAndCachesFeed() {
+        when(redisUtil.getJson(anyString(), eq(NearbyBagDto[].class))).thenReturn(null);
+        when(merchantClient.getNearby(anyDouble(), anyDouble(), eq(2.0)))
+                .thenReturn(Result.success(List.of(merchant("1", "Shop", 0.3), merchant("2", "Other", 0.6))));
+        when(magicBagService.getActiveBagsByMerchantIds(List.of(1, 2))).thenReturn(Map.of(
+                1, List.of(bag(10, 1, null, null, null, 5), bag(11, 1, null, null, null, 5)),
+                2, List.of(bag(20, 2, null, null, null, 5))));
+        when(stockReservationService.getLoadedStocks(anyCollection())).thenReturn(Map.of());
+
+        NearbyBagListResponse response = nearbyFeedService.getNearbyBags(1.3521, 103.8198, 2, 2, 2);
+
+        assertEquals(3L, response.getTotalItems());
+        assertEquals(2, response.getTotalPages());
+        assertEquals(1, response.getBags().size());
+        assertEquals(20, response.getBags().get(0).getMagicBag().getId());
+        verify(redisUtil).setJson(startsWith("product:nearby:w21zd"), anyList(), anyLong(), any());
+    }
+
+    @Test
+    void testGetNearbyBags_CacheHitSkipsRemoteCalls() {
+        NearbyBagDto cached = new NearbyBagDto();
+        cached.setMagicBag(bag(10, 1, null, null, null, 5));
+        when(redisUtil.getJson(anyString(), eq(NearbyBagDto[].class))).thenReturn(new NearbyBagDto[]{cached});
+
+        NearbyBagListResponse response = nearbyFeedService.getNearbyBags(1.3521, 103.8198, 1, 1, 10);
+
+        assertEquals(1, response.getBags().size());
+        verifyNoInteractions(merchantClient, magicBagService, stockReservationService);
+    }
+
+    @Test
+    void testGetNearbyBags_SameCellSharesCacheKey() {
+        when(redisUtil.getJson(anyString(), eq(NearbyBagDto[].class))).thenReturn(new NearbyBagDto[0]);
+
+        nearbyFeedService.getNearbyBags(1.35210, 103.81980, 1, 1, 10);
+        nearbyFeedService.getNearbyBags(1.35215, 103.81985, 1.0, 1, 10);
+
+        verify(redisUtil, times(2)).getJson(eq("product:nearby:w21zdqp:1"), eq(NearbyBagDto[].class));
+    }
+
+    @Test
+    void testGetNearbyBags_InvalidParams() {
+        assertThrows(BusinessException.class, () -> nearbyFeedService.getNearbyBags(91, 0, 1, 1, 10));
+        assertThrows(BusinessException.class, () -> nearbyFeedService.getNearbyBags(0, 0, 0, 1, 10));
+        assertThrows(BusinessException.class, () -> nearbyFeedService.getNearbyBags(0, 0, 51, 1, 10));
+        assertThrows(BusinessException.class, () -> nearbyFeedService.getNearbyBags(0, 0, 1, 0, 10));
+        assertThrows(BusinessException.class, () -> nearbyFeedService.getNearbyBags(0, 0, 1, 1, 51));
+        verifyNoInteractions(redisUtil, merchantClient);
+    }
+
+    private static MerchantLocationDto merchant(String id, String name, double distance) {
+        MerchantLocationDto dto = new MerchantLocationDto();
+        dto.setId(id);
+        dto.setName(name);
+        dto.setUnit("km");
+        dto.setDistance(distance);
+        return dto;
+    }
+
+    private static MagicBagDto bag(int id, int merchantId, LocalTime start, LocalTime end, LocalDate date, int quantity) {
+        MagicBagDto dto = new MagicBagDto();
+        dto.setId(id);
+        dto.setMerchantId(merchantId);
+        dto.setPickupStartTime(start);
+        dto.setPickupEndTime(end);
+        dto.setAvailableDate(date == null ? null : Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        dto.setQuantity(quantity);
+        dto.setIsActive(true);
+        return dto;
+    }
+}
@@ -0,0 +1,110 @@
+package nus.iss.se.product.service;
+
+import nus.iss.se.product.config.S3Properties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class S3StorageServiceTest {
+
+    private S3Client s3Client;
+    private S3StorageService storageService;
+
+    @BeforeEach
+    void setup() {
+        s3Client = mock(S3Client.class);
+        S3Properties properties = new S3Properties();
+        properties.setBucketName("bucket");
+        properties.setRegion("ap-southeast-1");
+        properties.setEndpoint("http://localhost:9000/");
+        storageService = new S3StorageService(s3Client, properties);
+    }
+
+    @Test
+    void testUpload_SmallFileUsesSinglePut() throws IOException {
+        byte[] content = "image".getBytes();
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+
+        String url = storageService.upload("bags/1.png", new ByteArrayInputStream(content), content.length, "image/png");
+
+        assertEquals("http://localhost:9000/bucket/bags/1.png", url);
+        verify(s3Client).putObject(request.capture(), body.capture());
+        assertEquals(content.length, request.getValue().contentLength());
+        assertEquals("image/png", request.getValue().contentType());
+        assertArrayEquals(content, read(body.getValue()));
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testUpload_LargeFileUsesMultipart() throws IOException {
+        byte[] content = new byte[S3StorageService.PART_SIZE * 2 + 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Map<Integer, byte[]> uploaded = new ConcurrentHashMap<>();
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            uploaded.put(request.partNumber(), read(invocation.getArgument(1)));
+            return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+        });
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+
+        storageService.upload("bags/large.png", new ByteArrayInputStream(content), content.length, "image/png");
+
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        List<CompletedPart> parts = complete.getValue().multipartUpload().parts();
+        assertEquals(List.of(1, 2, 3), parts.stream().map(CompletedPart::partNumber).toList());
+        assertEquals(List.of("etag-1", "etag-2", "etag-3"), parts.stream().map(CompletedPart::eTag).toList());
+        assertEquals("upload-1", complete.getValue().uploadId());
+
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        uploaded.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> joined.writeBytes(entry.getValue()));
+        assertArrayEquals(content, joined.toByteArray());
+        assertEquals(1024, uploaded.get(3).length);
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testUpload_FailedPartAbortsMultipart() {
+        byte[] content = new byte[S3StorageService.PART_SIZE * 3];
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-2").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(SdkClientException.create("connection reset"));
+        ArgumentCaptor<AbortMultipartUploadRequest> abort = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+
+        assertThrows(SdkClientException.class, () ->
+                storageService.upload("bags/large.png", new ByteArrayInputStream(content), content.length, "image/png"));
+
+        verify(s3Client).abortMultipartUpload(abort.capture());
+        assertEquals("upload-2", abort.getValue().uploadId());
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private static byte[] read(RequestBody body) throws IOException {
+        try (InputStream in = body.contentStreamProvider().newStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
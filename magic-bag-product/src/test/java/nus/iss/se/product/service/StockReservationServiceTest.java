@@ -0,0 +1,289 @@
+package nus.iss.se.product.service;
+
+import nus.iss.se.common.constant.RedisPrefix;
+import nus.iss.se.common.constant.ResultStatus;
+import nus.iss.se.common.exception.BusinessException;
+import nus.iss.se.product.cache.MagicBagCache;
+import nus.iss.se.product.dto.StockReservationDto;
+import nus.iss.se.product.entity.MagicBag;
+import nus.iss.se.product.mapper.MagicBagMapper;
+import nus.iss.se.product.mapper.StockConfirmationMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 预留/确认/释放脚本在真实 Redis 上的并发测试，没有 Docker 时跳过
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class StockReservationServiceTest {
+
+    private static final int BAG_ID = 1;
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private MagicBagMapper magicBagMapper;
+    private StockConfirmationMapper stockConfirmationMapper;
+    private StockReservationService stockReservationService;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setup() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        magicBagMapper = mock(MagicBagMapper.class);
+        stockConfirmationMapper = mock(StockConfirmationMapper.class);
+        when(stockConfirmationMapper.insertIgnore(anyString())).thenReturn(1);
+        when(magicBagMapper.deductQuantity(anyInt(), anyInt())).thenReturn(1);
+        stockReservationService = new StockReservationService(redisTemplate, magicBagMapper,
+                stockConfirmationMapper, mock(MagicBagCache.class));
+    }
+
+    @Test
+    void testReserve_ConcurrentRequestsNeverOversell() throws Exception {
+        givenBag(50, true);
+
+        List<Boolean> results = runConcurrently(200, i -> {
+            try {
+                stockReservationService.reserve(reservation("R" + i, 1));
+                return true;
+            } catch (BusinessException e) {
+                assertEquals(ResultStatus.PRODUCT_OUT_OF_STOCK, e.getErrInfo());
+                return false;
+            }
+        });
+
+        assertEquals(50, results.stream().filter(Boolean::booleanValue).count());
+        assertEquals(0, stockReservationService.getAvailableStock(BAG_ID));
+        assertEquals(50, reserved());
+    }
+
+    @Test
+    void testConfirmAndRelease_ConcurrentlyKeepStockConsistent() throws Exception {
+        givenBag(30, true);
+        for (int i = 0; i < 30; i++) {
+            stockReservationService.reserve(reservation("R" + i, 1));
+        }
+
+        // 偶数确认、奇数释放，同一预留同时也被重复释放一次（模拟到期清理与取消并发）
+        runConcurrently(60, i -> {
+            String reservationId = "R" + (i % 30);
+            if (i < 30 && i % 2 == 0) {
+                try {
+                    stockReservationService.confirm(reservationId);
+                } catch (BusinessException e) {
+                    // 释放先完成时预留已不存在
+                    assertEquals(ResultStatus.RESULT_DATA_NONE, e.getErrInfo());
+                }
+            } else {
+                stockReservationService.release(reservationId);
+            }
+            return true;
+        });
+
+        int confirmed = mockingDetails(magicBagMapper).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("deductQuantity"))
+                .toList().size();
+        assertEquals(30 - confirmed, stockReservationService.getAvailableStock(BAG_ID));
+        assertEquals(0, reserved());
+        assertEquals(0, redisTemplate.opsForZSet().zCard(RedisPrefix.STOCK_RESERVATION_DEADLINE.getCode()));
+    }
+
+    @Test
+    void testReload_SubtractsOpenReservations() {
+        givenBag(20, true);
+        stockReservationService.reserve(reservation("R1", 5));
+
+        // Redis 淘汰或重启后可售库存 key 丢失，数据库库存仍是 20
+        redisTemplate.delete(RedisPrefix.PRODUCT_STOCK.getCode() + BAG_ID);
+
+        assertEquals(15, stockReservationService.getAvailableStock(BAG_ID));
+        stockReservationService.release("R1");
+        assertEquals(20, stockReservationService.getAvailableStock(BAG_ID));
+    }
+
+    @Test
+    void testEvictWithOpenReservations_ReactivationDoesNotRecountThem() {
+        givenBag(10, true);
+        stockReservationService.reserve(reservation("R1", 4));
+
+        givenBag(10, false);
+        stockReservationService.evictStock(BAG_ID);
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> stockReservationService.reserve(reservation("R2", 1)));
+        assertEquals(ResultStatus.PRODUCT_NOT_FOUND, e.getErrInfo());
+
+        givenBag(10, true);
+        stockReservationService.reserve(reservation("R3", 6));
+        assertEquals(0, stockReservationService.getAvailableStock(BAG_ID));
+        assertThrows(BusinessException.class, () -> stockReservationService.reserve(reservation("R4", 1)));
+    }
+
+    @Test
+    void testConfirm_DatabaseShortfallFailsAndKeepsReservation() {
+        givenBag(10, true);
+        stockReservationService.reserve(reservation("R1", 3));
+        when(magicBagMapper.deductQuantity(BAG_ID, 3)).thenReturn(0);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> stockReservationService.confirm("R1"));
+        assertEquals(ResultStatus.PRODUCT_OUT_OF_STOCK, e.getErrInfo());
+
+        // 确认失败后预留恢复为未确认，仍然可以释放
+        stockReservationService.release("R1");
+        assertEquals(10, stockReservationService.getAvailableStock(BAG_ID));
+        assertEquals(0, reserved());
+    }
+
+    @Test
+    void testConfirm_MissingReservationFailsUnlessAlreadyConfirmed() {
+        givenBag(10, true);
+        stockReservationService.reserve(reservation("R1", 2));
+        stockReservationService.confirm("R1");
+        when(stockConfirmationMapper.exists("R1")).thenReturn(true);
+
+        stockReservationService.confirm("R1");
+        verify(magicBagMapper, times(1)).deductQuantity(BAG_ID, 2);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> stockReservationService.confirm("R9"));
+        assertEquals(ResultStatus.RESULT_DATA_NONE, e.getErrInfo());
+    }
+
+    @Test
+    void testReleaseExpired_ReleasesReservationsPastDeadline() {
+        givenBag(10, true);
+        stockReservationService.reserve(reservation("R1", 4));
+        stockReservationService.reserve(reservation("R2", 1));
+        redisTemplate.opsForZSet().add(RedisPrefix.STOCK_RESERVATION_DEADLINE.getCode(), "R1", 1);
+
+        stockReservationService.releaseExpired();
+
+        assertEquals(9, stockReservationService.getAvailableStock(BAG_ID));
+        assertEquals(1, reserved());
+    }
+
+    @Test
+    void testCancel_ConfirmedReservationRestocksOnce() {
+        givenBag(10, true);
+        stockReservationService.reserve(reservation("R1", 3));
+        stockReservationService.confirm("R1");
+        verify(stockConfirmationMapper).insertItems("R1", Map.of(BAG_ID, 3));
+        when(stockConfirmationMapper.markRestocked("R1")).thenReturn(1, 0);
+        when(stockConfirmationMapper.findItems("R1")).thenReturn(List.of(new StockReservationDto.StockLine(BAG_ID, 3)));
+
+        // 已支付订单取消，事件重复投递
+        stockReservationService.cancel("R1");
+        stockReservationService.cancel("R1");
+
+        verify(magicBagMapper, times(1)).restoreQuantity(BAG_ID, 3);
+        assertEquals(10, stockReservationService.getAvailableStock(BAG_ID));
+    }
+
+    @Test
+    void testCancel_UnconfirmedReservationOnlyReleases() {
+        givenBag(10, true);
+        stockReservationService.reserve(reservation("R1", 2));
+
+        stockReservationService.cancel("R1");
+
+        assertEquals(10, stockReservationService.getAvailableStock(BAG_ID));
+        verify(stockConfirmationMapper, never()).markRestocked(anyString());
+        verify(magicBagMapper, never()).restoreQuantity(anyInt(), anyInt());
+    }
+
+    @Test
+    void testCancel_WhileConfirmingIsRetried() {
+        givenBag(10, true);
+        stockReservationService.reserve(reservation("R1", 2));
+        redisTemplate.opsForHash().put(RedisPrefix.STOCK_RESERVATION.getCode() + "R1", "_state", "confirming");
+
+        assertThrows(IllegalStateException.class, () -> stockReservationService.cancel("R1"));
+        verify(stockConfirmationMapper, never()).markRestocked(anyString());
+    }
+
+    private void givenBag(int quantity, boolean active) {
+        MagicBag bag = new MagicBag();
+        bag.setId(BAG_ID);
+        bag.setQuantity(quantity);
+        bag.setActive(active);
+        when(magicBagMapper.selectById(BAG_ID)).thenReturn(bag);
+    }
+
+    private long reserved() {
+        Object value = redisTemplate.opsForHash().get(RedisPrefix.PRODUCT_STOCK_HOLD.getCode() + BAG_ID,
+                StockReservationService.FIELD_RESERVED);
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    private static StockReservationDto reservation(String reservationId, int quantity) {
+        return new StockReservationDto(reservationId, List.of(new StockReservationDto.StockLine(BAG_ID, quantity)));
+    }
+
+    private static <T> List<T> runConcurrently(int tasks, IndexedTask<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                Callable<T> callable = () -> {
+                    start.await();
+                    return task.run(index);
+                };
+                futures.add(executor.submit(callable));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexedTask<T> {
+        T run(int index) throws Exception;
+    }
+}
@@ -17,6 +17,8 @@ import nus.iss.se.user.service.IUserService;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @Validated
 @RestController
@@ -97,4 +99,10 @@ public class UserController {
         }
         return Result.success(userDto);
     }
+
+    @PostMapping("/profile/batch-query")
+    @Operation(summary = "Batch query user profiles", description = "Fetch profiles of multiple users by id in one call")
+    public Result<List<UserDto>> getProfilesByIds(@RequestBody List<Integer> ids) {
+        return Result.success(userService.getUsersByIds(ids));
+    }
 }
@@ -6,6 +6,8 @@ import nus.iss.se.user.dto.RegisterReq;
 import nus.iss.se.user.dto.UserDto;
 import nus.iss.se.user.entity.User;
 
+import java.util.List;
+
 public interface IUserService extends IService<User> {
     User findByUsername(String username);
 
@@ -20,6 +22,8 @@ public interface IUserService extends IService<User> {
     void activateUser(String username);
 
     UserDto getUserById(Integer id);
+
+    List<UserDto> getUsersByIds(List<Integer> ids);
     
     IPage<User> getUserList(int pageNum, int pageSize, String role);
 }
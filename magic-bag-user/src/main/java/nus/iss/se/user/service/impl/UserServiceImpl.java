@@ -26,8 +26,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -46,6 +48,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     }
 
     @Override
+    @Transactional
     public void register(RegisterReq req) {
         // 检查角色是否存在
         if (!UserRole.hasRole(req.getRole())) {
@@ -155,6 +158,19 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         BeanUtils.copyProperties(user, dto);
         return dto;
     }
+
+    @Override
+    public List<UserDto> getUsersByIds(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) return List.of();
+
+        return this.baseMapper.selectBatchIds(ids).stream()
+                .map(user -> {
+                    UserDto dto = new UserDto();
+                    BeanUtils.copyProperties(user, dto);
+                    return dto;
+                })
+                .toList();
+    }
     
     @Override
     public IPage<User> getUserList(int pageNum, int pageSize, String role) {